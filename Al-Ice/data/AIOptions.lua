@@ -22,7 +22,16 @@
 --------------------------------------------------------------------------------
 
 local options = {
-
+	{ -- number
+		key     = 'frame_budget',
+		name    = 'Frame budget',
+		desc    = 'The CPU time in milliseconds the AI may use each frame before it defers low priority work',
+		type    = 'number',
+		def     = 5,
+		min     = 1,
+		max     = 33,
+		step    = 1,
+	},
 }
 
 return options
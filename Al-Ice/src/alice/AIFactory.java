@@ -18,6 +18,14 @@
  */
 package alice;
 
+import java.io.IOException;
+import java.util.HashMap;
+
+import alice.journal.JournalWriter;
+import alice.journal.RecordingAI;
+import alice.journal.RecordingCallback;
+
+import com.springrts.ai.AICallback;
 import com.springrts.ai.oo.OOAI;
 import com.springrts.ai.oo.OOAICallback;
 import com.springrts.ai.oo.OOAIFactory;
@@ -25,13 +33,88 @@ import com.springrts.ai.oo.OOAIFactory;
 /**
  * The AIFactory that creates Al Ice.
  * 
+ * If the system property alice.journal is set all events and calls to the
+ * engine are recorded to the journal file "<alice.journal>-<teamId>.journal"
+ * so that the game can be replayed with alice.journal.JournalReplay.
+ * 
+ * If the system property alice.checkthreads is set all calls to the engine
+ * are checked so that they are made from the engine thread, see
+ * EngineThreadGuard.
+ * 
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
 public class AIFactory extends OOAIFactory {
 
+	/**
+	 * Constructor
+	 */
+	public AIFactory() {
+		mJournals = new HashMap<Integer, JournalWriter>();
+		mEngineCallbacks = new HashMap<Integer, AICallback>();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.springrts.ai.oo.OOAIFactory#init(int,
+	 * com.springrts.ai.AICallback)
+	 */
+	@Override
+	public int init(int teamId, AICallback callback) {
+		if (System.getProperty(CHECK_THREADS_PROPERTY) != null) {
+			callback = EngineThreadGuard.wrap(callback);
+		}
+
+		String journalName = System.getProperty(JOURNAL_PROPERTY);
+		if (journalName != null) {
+			try {
+				JournalWriter journal = new JournalWriter(journalName + "-" + teamId + ".journal", teamId);
+				mJournals.put(teamId, journal);
+				mEngineCallbacks.put(teamId, callback);
+				return super.init(teamId, RecordingCallback.wrap(callback, journal));
+			} catch (IOException e) {
+				// Play without a journal
+				callback.Clb_Log_log(teamId, "Could not open the journal " + journalName + "-" + teamId + ".journal, playing without a journal: " + e.getMessage());
+			}
+		}
+
+		return super.init(teamId, callback);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.springrts.ai.oo.OOAIFactory#createAI(int,
+	 * com.springrts.ai.oo.OOAICallback)
+	 */
 	@Override
 	public OOAI createAI(int teamId, OOAICallback callback) {
-		return new AlIce(teamId, callback);
+		OOAI ai = new AlIce(teamId, callback);
+
+		JournalWriter journal = mJournals.get(teamId);
+		if (journal != null) {
+			ai = new RecordingAI(ai, journal, mEngineCallbacks.get(teamId), teamId);
+		}
+
+		return ai;
 	}
 
+	/**
+	 * System property with the name of the journal, no journal is recorded
+	 * if it isn't set
+	 */
+	public static final String JOURNAL_PROPERTY = "alice.journal";
+	/**
+	 * System property that turns on the check that the engine only is called
+	 * from the engine thread
+	 */
+	public static final String CHECK_THREADS_PROPERTY = "alice.checkthreads";
+	/**
+	 * The journals of the teams that are recorded
+	 */
+	private HashMap<Integer, JournalWriter> mJournals;
+	/**
+	 * The engine's callbacks of the teams that are recorded
+	 */
+	private HashMap<Integer, AICallback> mEngineCallbacks;
 }
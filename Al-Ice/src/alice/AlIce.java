@@ -18,24 +18,18 @@
  */
 package alice;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Properties;
-import java.util.Map.Entry;
-import java.util.logging.FileHandler;
+import java.util.Set;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
-import java.util.logging.Logger;
 
 import alice.Defs.UnitGroup;
 import alice.General.GameTimeTypes;
 import alice.interfaces.ICommandFinished;
+import alice.interfaces.ICommandObserver;
 import alice.interfaces.IEnemyDamaged;
 import alice.interfaces.IEnemyDestroyed;
 import alice.interfaces.IEnemyEnterLOS;
@@ -46,6 +40,7 @@ import alice.interfaces.IUnitCreated;
 import alice.interfaces.IUnitDestroyed;
 import alice.interfaces.IUnitEvents;
 import alice.interfaces.IUnitFinished;
+import alice.tasks.TaskPools;
 
 import com.springrts.ai.AICommand;
 import com.springrts.ai.AIFloat3;
@@ -74,6 +69,10 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * Default zone (should be zero)
 	 */
 	private static final int DEFAULT_ZONE = 0;
+	/**
+	 * Key of the frame budget option in data/AIOptions.lua
+	 */
+	private static final String FRAME_BUDGET_OPTION = "frame_budget";
 
 	/**
 	 * Constructor
@@ -99,30 +98,192 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		mCallback.getLog().log("After properties");
 	}
 
+	/**
+	 * Returns true if messages of the specified level will be logged. Use this
+	 * to skip expensive work (e.g. calls to the engine) that is only done for
+	 * a log message.
+	 * 
+	 * @param level
+	 *            the level of severity.
+	 * @return true if messages of the level will be logged
+	 */
+	public boolean isLoggable(Level level) {
+		return mLogWriter != null && level.intValue() >= mLogLevel.intValue() && level != Level.OFF;
+	}
+
 	/**
 	 * Logs a message into the file.
 	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
 	 * @param level
 	 *            the level of severity.
 	 * @param message
 	 *            the message to log.
 	 */
-	public void log(Level level, String message) {
-		StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
+	public void log(LogSource source, Level level, String message) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 0, null, null);
+		}
+	}
 
-		String strCallingMethod = null;
-		// If the number of stack trace elements are two or more, then the
-		// calling method should be the second element.
-		int i = 0;
-		while (strCallingMethod == null) {
-			if (stackTraceElements.length > i + 1 && stackTraceElements[i].getMethodName().equals("log")) {
-				strCallingMethod = stackTraceElements[i + 1].getClassName() + "::" + stackTraceElements[i + 1].getMethodName() +
-						"()";
-			}
-			i++;
+	/**
+	 * Logs a message into the file. The {} placeholder in the message is only
+	 * replaced by the argument if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with one {} placeholder.
+	 * @param arg0
+	 *            the argument of the placeholder
+	 */
+	public void log(LogSource source, Level level, String message, Object arg0) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 1, arg0, null);
+		}
+	}
+
+	/**
+	 * Logs a message into the file. The {} placeholders in the message are
+	 * only replaced by the arguments if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with two {} placeholders.
+	 * @param arg0
+	 *            the argument of the first placeholder
+	 * @param arg1
+	 *            the argument of the second placeholder
+	 */
+	public void log(LogSource source, Level level, String message, Object arg0, Object arg1) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 2, arg0, arg1);
+		}
+	}
+
+	/**
+	 * Logs a message into the file. The int argument is only boxed
+	 * if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with one {} placeholder.
+	 * @param arg0
+	 *            the argument of the placeholder
+	 */
+	public void log(LogSource source, Level level, String message, int arg0) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 1, Integer.valueOf(arg0), null);
 		}
+	}
+
+	/**
+	 * Logs a message into the file. The int arguments are only
+	 * boxed if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with two {} placeholders.
+	 * @param arg0
+	 *            the argument of the first placeholder
+	 * @param arg1
+	 *            the argument of the second placeholder
+	 */
+	public void log(LogSource source, Level level, String message, int arg0, int arg1) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 2, Integer.valueOf(arg0), Integer.valueOf(arg1));
+		}
+	}
 
-		mLog.log(level, strCallingMethod + " | " + message);
+	/**
+	 * Logs a message into the file. The int argument is only boxed
+	 * if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with two {} placeholders.
+	 * @param arg0
+	 *            the argument of the first placeholder
+	 * @param arg1
+	 *            the argument of the second placeholder
+	 */
+	public void log(LogSource source, Level level, String message, Object arg0, int arg1) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 2, arg0, Integer.valueOf(arg1));
+		}
+	}
+
+	/**
+	 * Logs a message into the file. The int argument is only boxed
+	 * if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with two {} placeholders.
+	 * @param arg0
+	 *            the argument of the first placeholder
+	 * @param arg1
+	 *            the argument of the second placeholder
+	 */
+	public void log(LogSource source, Level level, String message, int arg0, Object arg1) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, 2, Integer.valueOf(arg0), arg1);
+		}
+	}
+
+	/**
+	 * Logs a message into the file. The {} placeholders in the message are
+	 * only replaced by the arguments if the level is logged.
+	 * 
+	 * @param source
+	 *            the source of the message, usually the static LogSource of
+	 *            the calling class.
+	 * @param level
+	 *            the level of severity.
+	 * @param message
+	 *            the message to log, with {} placeholders.
+	 * @param args
+	 *            the arguments of the placeholders, in order
+	 */
+	public void log(LogSource source, Level level, String message, Object... args) {
+		if (isLoggable(level)) {
+			mLogWriter.append(getLogFrame(), level, source, message, args);
+		}
+	}
+
+	/**
+	 * Returns the number of log records that were dropped because the log
+	 * writer couldn't keep up
+	 * 
+	 * @return number of dropped log records
+	 */
+	public long getDroppedLogRecords() {
+		return mLogWriter != null ? mLogWriter.getDroppedRecords() : 0;
 	}
 
 	/**
@@ -134,6 +295,15 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		return mTaskHandler;
 	}
 
+	/**
+	 * Returns the static properties of all unit definitions
+	 * 
+	 * @return the unit definition catalog
+	 */
+	public UnitDefCatalog getUnitDefCatalog() {
+		return mUnitDefCatalog;
+	}
+
 	/**
 	 * Returns the reference to the ExtractionPointMap
 	 * 
@@ -186,21 +356,36 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            the event listener to add
 	 */
 	public void addEventListener(IListener eventListener) {
+		if (mEventListeners.add(eventListener)) {
+			log(LOG, Level.FINER, "Adding new event listener: {}", eventListener);
 
-		// Search through the listeners to make sure we don't have it already.
-		boolean found = false;
-		for (IListener listener : mEventListeners) {
-			if (listener == eventListener) {
-				found = true;
-				break;
+			// Sort the listener into all the event arrays it listens to
+			if (eventListener instanceof ICommandFinished) {
+				mCommandFinishedListeners.add((ICommandFinished) eventListener);
+			}
+			if (eventListener instanceof IEnemyDamaged) {
+				mEnemyDamagedListeners.add((IEnemyDamaged) eventListener);
+			}
+			if (eventListener instanceof IEnemyDestroyed) {
+				mEnemyDestroyedListeners.add((IEnemyDestroyed) eventListener);
+			}
+			if (eventListener instanceof IEnemyEnterLOS) {
+				mEnemyEnterLOSListeners.add((IEnemyEnterLOS) eventListener);
+			}
+			if (eventListener instanceof IMessage) {
+				mMessageListeners.add((IMessage) eventListener);
+			}
+			if (eventListener instanceof IUnitCreated) {
+				mUnitCreatedListeners.add((IUnitCreated) eventListener);
+			}
+			if (eventListener instanceof IUnitDestroyed) {
+				mUnitDestroyedListeners.add((IUnitDestroyed) eventListener);
+			}
+			if (eventListener instanceof IUnitFinished) {
+				mUnitFinishedListeners.add((IUnitFinished) eventListener);
 			}
-		}
-
-		if (!found) {
-			log(Level.FINER, "Adding new event listener: " + eventListener.toString());
-			mEventListeners.add(eventListener);
 		} else {
-			log(Level.WARNING, "Tried to add a listener we already had");
+			log(LOG, Level.WARNING, "Tried to add a listener we already had");
 		}
 	}
 
@@ -211,18 +396,33 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            the event listener to remove
 	 */
 	public void removeEventListener(IListener eventListener) {
-		ListIterator<IListener> it = mEventListeners.listIterator();
-
-		boolean found = false;
-		while (it.hasNext() && !found) {
-			if (it.next() == eventListener) {
-				found = true;
-				it.remove();
+		if (mEventListeners.remove(eventListener)) {
+			if (eventListener instanceof ICommandFinished) {
+				mCommandFinishedListeners.remove((ICommandFinished) eventListener);
 			}
-		}
-
-		if (!found) {
-			log(Level.WARNING, "Could not find the specified listener");
+			if (eventListener instanceof IEnemyDamaged) {
+				mEnemyDamagedListeners.remove((IEnemyDamaged) eventListener);
+			}
+			if (eventListener instanceof IEnemyDestroyed) {
+				mEnemyDestroyedListeners.remove((IEnemyDestroyed) eventListener);
+			}
+			if (eventListener instanceof IEnemyEnterLOS) {
+				mEnemyEnterLOSListeners.remove((IEnemyEnterLOS) eventListener);
+			}
+			if (eventListener instanceof IMessage) {
+				mMessageListeners.remove((IMessage) eventListener);
+			}
+			if (eventListener instanceof IUnitCreated) {
+				mUnitCreatedListeners.remove((IUnitCreated) eventListener);
+			}
+			if (eventListener instanceof IUnitDestroyed) {
+				mUnitDestroyedListeners.remove((IUnitDestroyed) eventListener);
+			}
+			if (eventListener instanceof IUnitFinished) {
+				mUnitFinishedListeners.remove((IUnitFinished) eventListener);
+			}
+		} else {
+			log(LOG, Level.WARNING, "Could not find the specified listener");
 		}
 	}
 
@@ -237,6 +437,73 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		return mCallback.getEngine().handleCommand(com.springrts.ai.AICommandWrapper.COMMAND_TO_ID_ENGINE, -1, command);
 	}
 
+	/**
+	 * Queues a unit command that is sent to the engine at the end of the
+	 * frame. If the unit gets another queued command in the same frame this
+	 * command is replaced, since the unit would only execute the last one
+	 * anyway. Only use this for orders that doesn't use the queue (shift)
+	 * option; commands that return something (e.g. path commands) should be
+	 * sent with handleEngineCommand().
+	 * 
+	 * @param unitId
+	 *            The id of the unit that should execute the command
+	 * @param command
+	 *            The command to be executed
+	 * @param observer
+	 *            Gets notified if the command fails, may be null
+	 */
+	public void queueUnitCommand(int unitId, AICommand command, ICommandObserver observer) {
+		mCommandQueue.add(unitId, command, observer);
+	}
+
+	/**
+	 * Returns the timer wheel, used for scheduling timeouts and periodic
+	 * checks
+	 * 
+	 * @return the timer wheel
+	 */
+	public TimerWheel getTimerWheel() {
+		return mTimerWheel;
+	}
+
+	/**
+	 * Returns the frame budget, used for deferring low priority work when the
+	 * frame's CPU budget is exhausted
+	 * 
+	 * @return the frame budget
+	 */
+	public FrameBudget getFrameBudget() {
+		return mFrameBudget;
+	}
+
+	/**
+	 * Returns the planner, used for running computations off the engine
+	 * thread
+	 * 
+	 * @return the planner
+	 */
+	public Planner getPlanner() {
+		return mPlanner;
+	}
+
+	/**
+	 * Returns the pools of finished tasks that can be reused
+	 * 
+	 * @return the task pools
+	 */
+	public TaskPools getTaskPools() {
+		return mTaskPools;
+	}
+
+	/**
+	 * Returns the command queue
+	 * 
+	 * @return the command queue
+	 */
+	public CommandQueue getCommandQueue() {
+		return mCommandQueue;
+	}
+
 	/**
 	 * Sends a message to the in game console window
 	 * 
@@ -344,7 +611,9 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	}
 
 	/**
-	 * Adds a units event listener
+	 * Adds a units event listener. The listener will receive the unit's events
+	 * directly, also if it's added while an event is dispatched (it will then
+	 * not receive the event that is currently dispatched).
 	 * 
 	 * @param unitId
 	 *            The id of the unit we are listening to
@@ -352,19 +621,20 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            The event listener
 	 */
 	public void addUnitEventListener(int unitId, IUnitEvents listener) {
-		LinkedList<IUnitEvents> unitListeners = mAddedUnitEventListeners.get(unitId);
+		ListenerArray<IUnitEvents> unitListeners = mUnitEventListeners.get(unitId);
 		// If we don't have a listener for the unit already, add one
 		if (unitListeners == null) {
-			unitListeners = new LinkedList<IUnitEvents>();
-			unitListeners.add(listener);
-			mAddedUnitEventListeners.put(unitId, unitListeners);
-		} else {
-			unitListeners.add(listener);
+			unitListeners = new ListenerArray<IUnitEvents>(IUnitEvents.class);
+			mUnitEventListeners.put(unitId, unitListeners);
 		}
+		unitListeners.add(listener);
 	}
 
 	/**
-	 * Removes a listener from the list
+	 * Removes a listener from the list. Safe to call while an event is
+	 * dispatched, but the dispatch iterates over the listeners it started
+	 * with, so the listener may still receive the event that is being
+	 * dispatched. It won't receive any events dispatched after that.
 	 * 
 	 * @param unitId
 	 *            The id of the unit we want to remove a listener from
@@ -372,13 +642,14 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            The listener to remove
 	 */
 	public void removeUnitEventListener(int unitId, IUnitEvents listener) {
-
-		LinkedList<IUnitEvents> unitListeners = mRemovedUnitEventListeners.get(unitId);
-		if (unitListeners == null) {
-			unitListeners = new LinkedList<IUnitEvents>();
-			mRemovedUnitEventListeners.put(unitId, unitListeners);
+		ListenerArray<IUnitEvents> unitListeners = mUnitEventListeners.get(unitId);
+		if (unitListeners != null && unitListeners.remove(listener)) {
+			if (unitListeners.isEmpty()) {
+				mUnitEventListeners.remove(unitId);
+			}
+		} else {
+			log(LOG, Level.WARNING, "Can't remove listener for unit: {}", unitId);
 		}
-		unitListeners.add(listener);
 	}
 
 	/**
@@ -390,15 +661,13 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            The enemy event listener
 	 */
 	public void addEnemyEventListener(int enemyId, IEnemyEvents listener) {
-		LinkedList<IEnemyEvents> unitListeners = mAddedEnemyEventListeners.get(enemyId);
-		// If we don't have a listener for the unit already, add one
-		if (unitListeners == null) {
-			unitListeners = new LinkedList<IEnemyEvents>();
-			unitListeners.add(listener);
-			mAddedEnemyEventListeners.put(enemyId, unitListeners);
-		} else {
-			unitListeners.add(listener);
+		ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemyId);
+		// If we don't have a listener for the enemy already, add one
+		if (enemyListeners == null) {
+			enemyListeners = new ListenerArray<IEnemyEvents>(IEnemyEvents.class);
+			mEnemyEventListeners.put(enemyId, enemyListeners);
 		}
+		enemyListeners.add(listener);
 	}
 
 	/**
@@ -410,12 +679,14 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 *            The enemy event listener to remove
 	 */
 	public void removeEnemyEventListener(int enemyId, IEnemyEvents listener) {
-		LinkedList<IEnemyEvents> unitListeners = mRemovedEnemyEventListeners.get(enemyId);
-		if (unitListeners == null) {
-			unitListeners = new LinkedList<IEnemyEvents>();
-			mRemovedEnemyEventListeners.put(enemyId, unitListeners);
+		ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemyId);
+		if (enemyListeners != null && enemyListeners.remove(listener)) {
+			if (enemyListeners.isEmpty()) {
+				mEnemyEventListeners.remove(enemyId);
+			}
+		} else {
+			log(LOG, Level.WARNING, "Can't remove listener for unit: {}", enemyId);
 		}
-		unitListeners.add(listener);
 	}
 
 	// -------------------------------------------------------------------------
@@ -430,12 +701,7 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return the current value of the resource, 0.0 if not found
 	 */
 	public float getResourceCurrent(String resourceName) {
-		Resource resource = mResources.get(resourceName);
-		if (resource != null) {
-			return mCallback.getEconomy().getCurrent(resource);
-		}
-
-		return 0.0f;
+		return mEconomy.getCurrent(resourceName);
 	}
 
 	/**
@@ -446,12 +712,7 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return the income of the resource, 0.0 if not found
 	 */
 	public float getResourceIncome(String resourceName) {
-		Resource resource = mResources.get(resourceName);
-		if (resource != null) {
-			return mCallback.getEconomy().getIncome(resource);
-		}
-
-		return 0.0f;
+		return mEconomy.getIncome(resourceName);
 	}
 
 	/**
@@ -462,12 +723,7 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return the storage of the resource, 0.0 if not found
 	 */
 	public float getResourceStorage(String resourceName) {
-		Resource resource = mResources.get(resourceName);
-		if (resource != null) {
-			return mCallback.getEconomy().getStorage(resource);
-		}
-
-		return 0;
+		return mEconomy.getStorage(resourceName);
 	}
 
 	/**
@@ -478,12 +734,7 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return the usage of the resource, 0.0 if not found
 	 */
 	public float getResourceUsage(String resourceName) {
-		Resource resource = mResources.get(resourceName);
-		if (resource != null) {
-			return mCallback.getEconomy().getUsage(resource);
-		}
-
-		return 0;
+		return mEconomy.getUsage(resourceName);
 	}
 
 	/**
@@ -497,6 +748,15 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		return mResources.get(resourceName);
 	}
 
+	/**
+	 * Returns the economy, the values are fetched at most once per frame
+	 * 
+	 * @return the economy snapshot
+	 */
+	public EconomySnapshot getEconomy() {
+		return mEconomy;
+	}
+
 	/**
 	 * Returns the TaskUnitHandler
 	 * 
@@ -524,7 +784,13 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		Unit closestEnemy = null;
 		float minDistance = Float.MAX_VALUE;
 		for (Unit enemy : enemies) {
-			boolean canFly = enemy.getDef().isAbleToFly();
+			// Enemies only seen on radar have no definition
+			UnitDefCatalog.DefInfo defInfo = mUnitDefCatalog.get(enemy.getDef());
+			if (defInfo == null) {
+				continue;
+			}
+
+			boolean canFly = defInfo.ableToFly;
 			if ((canFly && flying) || (!canFly && !flying)) {
 				float distance = SpringHelper.getDist(position, enemy.getPos());
 				if (distance < minDistance && enemy != null) {
@@ -544,7 +810,27 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return List of sighted enemies
 	 */
 	public List<Unit> getEnemyUnits() {
-		return mCallback.getEnemyUnits();
+		return mEnemySnapshot.getEnemies();
+	}
+
+	/**
+	 * Returns the specified enemy unit if we can see it
+	 * 
+	 * @param enemyId
+	 *            the id of the enemy
+	 * @return the enemy unit, null if we can't see it
+	 */
+	public Unit getEnemyUnit(int enemyId) {
+		return mEnemySnapshot.getEnemy(enemyId);
+	}
+
+	/**
+	 * Returns the snapshot of the enemy units, used for statistics
+	 * 
+	 * @return the enemy snapshot
+	 */
+	public EnemySnapshot getEnemySnapshot() {
+		return mEnemySnapshot;
 	}
 
 	/**
@@ -555,13 +841,7 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * @return true if the specified enemy exists
 	 */
 	public boolean enemyExists(int enemyId) {
-		for (Unit enemy : mCallback.getEnemyUnits()) {
-			if (enemy.getUnitId() == enemyId) {
-				return true;
-			}
-		}
-
-		return false;
+		return mEnemySnapshot.contains(enemyId);
 	}
 
 	// -------------------------------------------------------------------------
@@ -577,20 +857,18 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int commandFinished(Unit unit, int commandId, int commandTopicId) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
-			for (IListener eventListener : mEventListeners) {
-				if (eventListener instanceof ICommandFinished) {
-					ICommandFinished listener = (ICommandFinished) eventListener;
-					if (listener != null) {
-						listener.commandFinished(unit, commandId, commandTopicId);
-					}
-				}
+			for (ICommandFinished listener : mCommandFinishedListeners.getListeners()) {
+				listener.commandFinished(unit, commandId, commandTopicId);
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -606,38 +884,36 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyDamaged(Unit enemy, Unit attacker, float damage, AIFloat3 dir, WeaponDef weaponDef, boolean paralyzer) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
-			for (IListener eventListener : mEventListeners) {
-				if (eventListener instanceof IEnemyDamaged) {
-					IEnemyDamaged listener = (IEnemyDamaged) eventListener;
-					if (listener != null) {
-						listener.enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer);
-					}
-				}
+			for (IEnemyDamaged listener : mEnemyDamagedListeners.getListeners()) {
+				listener.enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer);
 			}
 
 			// Iterate through the attacker's listeners (unit event listeners)
 			if (attacker != null) {
-				LinkedList<IUnitEvents> unitListeners = mUnitEventListeners.get(attacker.getUnitId());
+				ListenerArray<IUnitEvents> unitListeners = mUnitEventListeners.get(attacker.getUnitId());
 				if (unitListeners != null) {
-					for (IUnitEvents listener : unitListeners) {
+					for (IUnitEvents listener : unitListeners.getListeners()) {
 						listener.enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer);
 					}
 				}
 			}
 
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -652,39 +928,40 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyDestroyed(Unit enemy, Unit attacker) {
-		log(Level.FINEST, "Id: " + enemy.getUnitId() + ", Def: " + enemy.getDef().getName());
+		if (isLoggable(Level.FINEST)) {
+			log(LOG, Level.FINEST, "Id: {}, Def: {}", enemy.getUnitId(), enemy.getDef().getName());
+		}
+		mEnemySnapshot.remove(enemy.getUnitId());
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
-			for (IListener eventListener : mEventListeners) {
-				if (eventListener instanceof IEnemyDestroyed) {
-					IEnemyDestroyed listener = (IEnemyDestroyed) eventListener;
-					if (listener != null) {
-						listener.enemyDestroyed(enemy, attacker);
-					}
-				}
+			for (IEnemyDestroyed listener : mEnemyDestroyedListeners.getListeners()) {
+				listener.enemyDestroyed(enemy, attacker);
 			}
 
 			// Iterate through the attacker's listeners (unit event listener)
 			if (attacker != null) {
-				LinkedList<IUnitEvents> unitListeners = mUnitEventListeners.get(attacker.getUnitId());
+				ListenerArray<IUnitEvents> unitListeners = mUnitEventListeners.get(attacker.getUnitId());
 				if (unitListeners != null) {
-					for (IUnitEvents listener : unitListeners) {
+					for (IUnitEvents listener : unitListeners.getListeners()) {
 						listener.enemyDestroyed(enemy, attacker);
 					}
 				}
 			}
 
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyDestroyed(enemy, attacker);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -698,28 +975,27 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyEnterLOS(Unit enemy) {
+		mEnemySnapshot.add(enemy);
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
-			for (IListener eventListener : mEventListeners) {
-				if (eventListener instanceof IEnemyEnterLOS) {
-					IEnemyEnterLOS listener = (IEnemyEnterLOS) eventListener;
-					if (listener != null) {
-						listener.enemyEnterLOS(enemy);
-					}
-				}
+			for (IEnemyEnterLOS listener : mEnemyEnterLOSListeners.getListeners()) {
+				listener.enemyEnterLOS(enemy);
 			}
 
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyEnterLOS(enemy);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -734,19 +1010,23 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyEnterRadar(Unit enemy) {
+		mEnemySnapshot.invalidate();
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyEnterRadar(enemy);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -760,19 +1040,23 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyLeaveLOS(Unit enemy) {
+		mEnemySnapshot.remove(enemy.getUnitId());
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyLeaveLOS(enemy);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -787,19 +1071,23 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int enemyLeaveRadar(Unit enemy) {
+		mEnemySnapshot.invalidate();
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the enemy (enemy event listeners)
-			LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
+			ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(enemy.getUnitId());
 			if (enemyListeners != null) {
-				for (IEnemyEvents listener : enemyListeners) {
+				for (IEnemyEvents listener : enemyListeners.getListeners()) {
 					listener.enemyLeaveRadar(enemy);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -823,33 +1111,33 @@ public class AlIce extends AbstractOOAI implements OOAI {
 			// Initialize logger
 			try {
 				mCallback.getLog().log("Try logger");
-				FileHandler fileLogger = new FileHandler("log-AlIce-" + teamId + ".txt", false);
-				fileLogger.setFormatter(new LogFormatter());
-				fileLogger.setLevel(Level.ALL);
-				mLog = Logger.getLogger("AlIce-" + mTeamId);
-				mLog.addHandler(fileLogger);
+				mLogWriter = new AsyncLogWriter("log-AlIce-" + teamId + ".txt");
 
 				if (msDebugging) {
-					mLog.setLevel(Level.ALL);
+					mLogLevel = Level.ALL;
 				} else {
-					mLog.setLevel(Level.INFO);
+					mLogLevel = Level.INFO;
 				}
 			} catch (Exception e) {
 				mCallback.getLog().log("Al Ice: Unable to create log!" + e.getStackTrace());
 				returnValue = -2;
 			}
 
-			log(Level.FINE, "Starting AI bot for team " + mTeamId);
+			log(LOG, Level.FINE, "Starting AI bot for team {}", mTeamId);
 			// -----------------------------
 			// INITIALIZATION
 			// -----------------------------
 
-			// Initialize armor, and weapon-types
+			// Initialize the unit definitions, armor, and weapon-types
 			List<UnitDef> unitDefs = mCallback.getUnitDefs();
+			mUnitDefCatalog = new UnitDefCatalog(unitDefs);
 			for (UnitDef unitDef : unitDefs) {
-				UnitGroup unitGroup = Defs.getUnitGroup(unitDef.getName());
+				UnitDefCatalog.DefInfo defInfo = mUnitDefCatalog.get(unitDef);
+				UnitGroup unitGroup = defInfo.unitGroup;
 				if (unitGroup != null) {
 					unitGroup.unitDef = unitDef;
+					unitGroup.defId = defInfo.defId;
+					unitGroup.defInfo = defInfo;
 
 					unitGroup.armorType = unitDef.getCustomParams().get("armortype");
 					List<WeaponMount> weaponMounts = unitDef.getWeaponMounts();
@@ -878,33 +1166,44 @@ public class AlIce extends AbstractOOAI implements OOAI {
 			for (Resource resource : resources) {
 				mResources.put(resource.getName(), resource);
 			}
+			mEconomy = new EconomySnapshot(this, mCallback, mResources.get(Defs.Metal), mResources.get(Defs.Energy));
 
 			// Initialize listener handlers
-			mEventListeners = new LinkedList<IListener>();
-			mUnitEventListeners = new HashMap<Integer, LinkedList<IUnitEvents>>();
-			mRemovedUnitEventListeners = new HashMap<Integer, LinkedList<IUnitEvents>>();
-			mAddedUnitEventListeners = new HashMap<Integer, LinkedList<IUnitEvents>>();
-			mEnemyEventListeners = new HashMap<Integer, LinkedList<IEnemyEvents>>();
-			mAddedEnemyEventListeners = new HashMap<Integer, LinkedList<IEnemyEvents>>();
-			mRemovedEnemyEventListeners = new HashMap<Integer, LinkedList<IEnemyEvents>>();
+			mEventListeners = Collections.newSetFromMap(new IdentityHashMap<IListener, Boolean>());
+			mCommandFinishedListeners = new ListenerArray<ICommandFinished>(ICommandFinished.class);
+			mEnemyDamagedListeners = new ListenerArray<IEnemyDamaged>(IEnemyDamaged.class);
+			mEnemyDestroyedListeners = new ListenerArray<IEnemyDestroyed>(IEnemyDestroyed.class);
+			mEnemyEnterLOSListeners = new ListenerArray<IEnemyEnterLOS>(IEnemyEnterLOS.class);
+			mMessageListeners = new ListenerArray<IMessage>(IMessage.class);
+			mUnitCreatedListeners = new ListenerArray<IUnitCreated>(IUnitCreated.class);
+			mUnitDestroyedListeners = new ListenerArray<IUnitDestroyed>(IUnitDestroyed.class);
+			mUnitFinishedListeners = new ListenerArray<IUnitFinished>(IUnitFinished.class);
+			mUnitEventListeners = new IntHashMap<ListenerArray<IUnitEvents>>();
+			mEnemyEventListeners = new IntHashMap<ListenerArray<IEnemyEvents>>();
 
 			// Initialize objects
+			mFrameBudget = new FrameBudget(getOptionValue(FRAME_BUDGET_OPTION, Defs.FRAME_BUDGET_TIME));
+			mTimerWheel = new TimerWheel(mGameTime.mcCurrentFrame);
+			mPlanner = new Planner(this, Defs.PLANNER_THREADS);
+			mCommandQueue = new CommandQueue(this);
+			mEnemySnapshot = new EnemySnapshot(this, mCallback);
 			mExtractionPointMap = new ExtractionPointMap(this);
 			mSightedEnemies = new SightedEnemies(this);
 			mTaskHandler = new TaskHandler(this);
+			mTaskPools = new TaskPools(this);
 			mTaskUnitHandler = new TaskUnitHandler(this);
 			mGeneral = new General(this);
 
-			log(Level.FINE, "Done initializing");
+			log(LOG, Level.FINE, "Done initializing");
 			returnValue = 0;
 			// -----------------------------
 			// END OF - INITIALIZATION
 			// -----------------------------
 		} catch (Exception e) {
 			returnValue = -1;
-			log(Level.SEVERE, "ERROR" + e.toString());
+			log(LOG, Level.SEVERE, "ERROR{}", e);
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
 		}
 
@@ -921,9 +1220,9 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		try {
 			// Don't implement
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
 		}
 
@@ -937,20 +1236,18 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int message(int player, String message) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
-			for (IListener eventListener : mEventListeners) {
-				if (eventListener instanceof IMessage) {
-					IMessage listener = (IMessage) eventListener;
-					if (listener != null) {
-						listener.message(player, message);
-					}
-				}
+			for (IMessage listener : mMessageListeners.getListeners()) {
+				listener.message(player, message);
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -967,9 +1264,9 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		try {
 			// What is this?
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
 		}
 
@@ -984,11 +1281,24 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	@Override
 	public int release(int reason) {
 		try {
-			// Release?
+			// Stop planning
+			if (mPlanner != null) {
+				mPlanner.shutdown();
+			}
+
+			// Write the last task profiles
+			if (mTaskHandler != null) {
+				mTaskHandler.getProfiler().close();
+			}
+
+			// Write the rest of the log
+			if (mLogWriter != null) {
+				mLogWriter.close();
+			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
 		}
 
@@ -1005,9 +1315,9 @@ public class AlIce extends AbstractOOAI implements OOAI {
 		try {
 			// Don't implement
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
 		}
 
@@ -1023,13 +1333,16 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int seismicPing(AIFloat3 pos, float strength) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Implement this when ISeismicPing is implemented
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1044,13 +1357,16 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitCaptured(Unit unit, int oldTeamId, int newTeamId) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Don't implement this
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1065,34 +1381,34 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitCreated(Unit unit, Unit builder) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 
 			if (unit.getTeam() == mTeamId && unit != null) {
-				log(Level.FINEST, "Id: " + unit.getUnitId() + ", Def: " + unit.getDef().getName());
-				for (IListener eventListener : mEventListeners) {
-					if (eventListener instanceof IUnitCreated) {
-						IUnitCreated listener = (IUnitCreated) eventListener;
-						if (listener != null) {
-							listener.unitCreated(unit, builder);
-						}
-					}
+				if (isLoggable(Level.FINEST)) {
+					log(LOG, Level.FINEST, "Id: {}, Def: {}", unit.getUnitId(), unit.getDef().getName());
+				}
+				for (IUnitCreated listener : mUnitCreatedListeners.getListeners()) {
+					listener.unitCreated(unit, builder);
 				}
 
 				if (builder != null) {
 					// Iterate through the builder's listeners
-					LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(builder.getUnitId());
+					ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(builder.getUnitId());
 					if (listeners != null) {
-						for (IUnitEvents listener : listeners) {
+						for (IUnitEvents listener : listeners.getListeners()) {
 							listener.unitCreated(unit, builder);
 						}
 					}
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1108,29 +1424,32 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitDamaged(Unit unit, Unit attacker, float damage, AIFloat3 dir, WeaponDef weaponDef, boolean paralyzer) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the unit (unit event listeners)
-			LinkedList<IUnitEvents> unitListeners = mUnitEventListeners.get(unit.getUnitId());
+			ListenerArray<IUnitEvents> unitListeners = mUnitEventListeners.get(unit.getUnitId());
 			if (unitListeners != null) {
-				for (IUnitEvents listener : unitListeners) {
+				for (IUnitEvents listener : unitListeners.getListeners()) {
 					listener.unitDamaged(unit, attacker, damage, dir, weaponDef, paralyzer);
 				}
 			}
 
 			// Iterate through the attacker (enemy event listeners)
 			if (attacker != null) {
-				LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(attacker.getUnitId());
+				ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(attacker.getUnitId());
 				if (enemyListeners != null) {
-					for (IEnemyEvents listener : enemyListeners) {
+					for (IEnemyEvents listener : enemyListeners.getListeners()) {
 						listener.unitDamaged(unit, attacker, damage, dir, weaponDef, paralyzer);
 					}
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1145,42 +1464,42 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitDestroyed(Unit unit, Unit attacker) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			if (unit.getTeam() == mTeamId && unit != null) {
-				log(Level.FINEST, "Id: " + unit.getUnitId() + ", Def: " + unit.getDef().getName());
+				if (isLoggable(Level.FINEST)) {
+					log(LOG, Level.FINEST, "Id: {}, Def: {}", unit.getUnitId(), unit.getDef().getName());
+				}
 
-				for (IListener eventListener : mEventListeners) {
-					if (eventListener instanceof IUnitDestroyed) {
-						IUnitDestroyed listener = (IUnitDestroyed) eventListener;
-						if (listener != null) {
-							listener.unitDestroyed(unit, attacker);
-						}
-					}
+				for (IUnitDestroyed listener : mUnitDestroyedListeners.getListeners()) {
+					listener.unitDestroyed(unit, attacker);
 				}
 
 				// Iterate through the unit (unit event listener)
-				LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
+				ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
 				if (listeners != null) {
-					for (IUnitEvents listener : listeners) {
+					for (IUnitEvents listener : listeners.getListeners()) {
 						listener.unitDestroyed(unit, attacker);
 					}
 				}
 
 				// Iterate through the attakcer (enemy event listeners)
 				if (attacker != null) {
-					LinkedList<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(attacker.getUnitId());
+					ListenerArray<IEnemyEvents> enemyListeners = mEnemyEventListeners.get(attacker.getUnitId());
 					if (enemyListeners != null) {
-						for (IEnemyEvents listener : enemyListeners) {
+						for (IEnemyEvents listener : enemyListeners.getListeners()) {
 							listener.unitDestroyed(unit, attacker);
 						}
 					}
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString() + " Id: " + unit.getDef().getName() + "was killed by: " + attacker.getDef().getName());
+			log(LOG, Level.SEVERE, "{} Id: {}was killed by: {}", e, unit.getDef().getName(), attacker.getDef().getName());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1194,32 +1513,32 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitFinished(Unit unit) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			if (unit.getTeam() == mTeamId && unit != null) {
-				log(Level.FINEST, "Id: " + unit.getUnitId() + ", Def: " + unit.getDef().getName());
+				if (isLoggable(Level.FINEST)) {
+					log(LOG, Level.FINEST, "Id: {}, Def: {}", unit.getUnitId(), unit.getDef().getName());
+				}
 
-				for (IListener eventListener : mEventListeners) {
-					if (eventListener instanceof IUnitFinished) {
-						IUnitFinished listener = (IUnitFinished) eventListener;
-						if (listener != null) {
-							listener.unitFinished(unit);
-						}
-					}
+				for (IUnitFinished listener : mUnitFinishedListeners.getListeners()) {
+					listener.unitFinished(unit);
 				}
 
 				// Iterate through the unit's listeners
-				LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
+				ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
 				if (listeners != null) {
-					for (IUnitEvents listener : listeners) {
+					for (IUnitEvents listener : listeners.getListeners()) {
 						listener.unitFinished(unit);
 					}
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1233,13 +1552,16 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitGiven(Unit unit, int oldTeamId, int newTeamId) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Don't implement this
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1252,21 +1574,24 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitIdle(Unit unit) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			if (unit.getTeam() == mTeamId) {
 				// Iterate through the unit's listeners
-				LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
+				ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
 				if (listeners != null) {
-					for (IUnitEvents listener : listeners) {
+					for (IUnitEvents listener : listeners.getListeners()) {
 						listener.unitIdle(unit);
 					}
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1280,19 +1605,22 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int unitMoveFailed(Unit unit) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the unit's listeners
-			LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
+			ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
 			if (listeners != null) {
-				for (IUnitEvents listener : listeners) {
+				for (IUnitEvents listener : listeners.getListeners()) {
 					listener.unitMoveFailed(unit);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 
 		return 0;
@@ -1305,20 +1633,36 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int update(int frame) {
+		mFrameBudget.beginFrame();
 		try {
 			mGameTime.update(frame);
-			addRemoveUnitEventListeners();
+			mEconomy.update();
+			mTimerWheel.advance(frame);
 
-			mGeneral.update();
-			mTaskHandler.update();
+			mFrameBudget.start(FrameBudget.Section.GENERAL);
+			try {
+				mPlanner.update();
+				mGeneral.update();
+			} finally {
+				mFrameBudget.stop(FrameBudget.Section.GENERAL);
+			}
 
-			addRemoveUnitEventListeners();
-			addRemoveEnemyEventListeners();
+			mFrameBudget.start(FrameBudget.Section.TASKS);
+			try {
+				mTaskHandler.update();
+			} finally {
+				mFrameBudget.stop(FrameBudget.Section.TASKS);
+			}
+
+			// Send all commands of this frame
+			mCommandQueue.flush();
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.endFrame();
 		}
 		return 0;
 	}
@@ -1332,19 +1676,22 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 */
 	@Override
 	public int weaponFired(Unit unit, WeaponDef weaponDef) {
+		mFrameBudget.start(FrameBudget.Section.CALLBACKS);
 		try {
 			// Iterate through the unit's listeners
-			LinkedList<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
+			ListenerArray<IUnitEvents> listeners = mUnitEventListeners.get(unit.getUnitId());
 			if (listeners != null) {
-				for (IUnitEvents listener : listeners) {
+				for (IUnitEvents listener : listeners.getListeners()) {
 					listener.weaponFired(unit, weaponDef);
 				}
 			}
 		} catch (Exception e) {
-			log(Level.SEVERE, e.toString());
+			log(LOG, Level.SEVERE, e.toString());
 			for (StackTraceElement element : e.getStackTrace()) {
-				log(Level.SEVERE, element.toString());
+				log(LOG, Level.SEVERE, element.toString());
 			}
+		} finally {
+			mFrameBudget.stop(FrameBudget.Section.CALLBACKS);
 		}
 		return 0;
 	}
@@ -1363,127 +1710,33 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	// ------------------------------------------------------------------------
 
 	/**
-	 * Add and remove unit event listeners
+	 * Returns the frame to stamp the log records with
+	 * 
+	 * @return the current frame, 0 before the game time has been initialized
 	 */
-	private void addRemoveUnitEventListeners() {
-		// Remove the unit event listeners
-		Iterator<Entry<Integer, LinkedList<IUnitEvents>>> it = mRemovedUnitEventListeners.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<Integer, LinkedList<IUnitEvents>> currentEntry = it.next();
-			Integer unitId = currentEntry.getKey();
-			LinkedList<IUnitEvents> removeListeners = currentEntry.getValue();
-
-			// Get LinkedList with the unit's event listeners
-			LinkedList<IUnitEvents> activeListeners = mUnitEventListeners.get(unitId);
-			if (activeListeners != null) {
-				for (IUnitEvents listener : removeListeners) {
-					activeListeners.remove(listener);
-				}
-			} else {
-				log(Level.WARNING, "Can't remove listener for unit: " + unitId);
-			}
-
-			it.remove();
-		}
-
-		// Add the unit event listeners
-		it = mAddedUnitEventListeners.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<Integer, LinkedList<IUnitEvents>> currentEntry = it.next();
-			Integer unitId = currentEntry.getKey();
-			LinkedList<IUnitEvents> addListeners = currentEntry.getValue();
-
-			// Get LinkedList with the unit's event listeners
-			LinkedList<IUnitEvents> activeListeners = mUnitEventListeners.get(unitId);
-			if (activeListeners == null) {
-				activeListeners = new LinkedList<IUnitEvents>();
-				mUnitEventListeners.put(unitId, activeListeners);
-			}
-
-			for (IUnitEvents listener : addListeners) {
-				activeListeners.add(listener);
-			}
-
-			it.remove();
-		}
+	private int getLogFrame() {
+		return mGameTime != null ? mGameTime.mcCurrentFrame : 0;
 	}
 
 	/**
-	 * Add and remove enemy event listeners
-	 */
-	private void addRemoveEnemyEventListeners() {
-		// Remove the enemy event listeners
-		Iterator<Entry<Integer, LinkedList<IEnemyEvents>>> it = mRemovedEnemyEventListeners.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<Integer, LinkedList<IEnemyEvents>> currentEntry = it.next();
-			Integer unitId = currentEntry.getKey();
-			LinkedList<IEnemyEvents> removeListeners = currentEntry.getValue();
-
-			// Get LinkedList with the enemy's event listeners
-			LinkedList<IEnemyEvents> activeListeners = mEnemyEventListeners.get(unitId);
-			if (activeListeners != null) {
-				for (IEnemyEvents listener : removeListeners) {
-					activeListeners.remove(listener);
-				}
-			} else {
-				log(Level.WARNING, "Can't remove listener for unit: " + unitId);
-			}
-
-			it.remove();
-		}
-
-		// Add the enemy event listeners
-		it = mAddedEnemyEventListeners.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<Integer, LinkedList<IEnemyEvents>> currentEntry = it.next();
-			Integer unitId = currentEntry.getKey();
-			LinkedList<IEnemyEvents> addListeners = currentEntry.getValue();
-
-			// Get LinkedList with the enemy's event listeners
-			LinkedList<IEnemyEvents> activeListeners = mEnemyEventListeners.get(unitId);
-			if (activeListeners == null) {
-				activeListeners = new LinkedList<IEnemyEvents>();
-				mEnemyEventListeners.put(unitId, activeListeners);
-			}
-
-			for (IEnemyEvents listener : addListeners) {
-				activeListeners.add(listener);
-			}
-
-			it.remove();
-		}
-	}
-
-	/**
-	 * The log formatter for the log messages.
+	 * Returns the value of a number option from data/AIOptions.lua
 	 * 
-	 * @author Matteus Magnusson <senth.wallace@gmail.com>
-	 */
-	private static class LogFormatter extends java.util.logging.Formatter {
-		/**
-		 * The date format of the logger
-		 */
-		private DateFormat mDateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss:SSS");
-
-		public String format(LogRecord record) {
-			StringBuffer buffer = new StringBuffer();
-
-			// Append date
-			Date date = new Date(record.getMillis());
-			buffer.append("[");
-			buffer.append(mDateFormat.format(date));
-			buffer.append(" ");
-
-			// Append level name
-			buffer.append(record.getLevel().getName());
-			buffer.append("]: ");
-
-			// Append formated message
-			buffer.append(formatMessage(record));
-			buffer.append("\n");
-
-			return buffer.toString();
+	 * @param key
+	 *            the key of the option
+	 * @param defaultValue
+	 *            the value to use if the option isn't set or isn't a number
+	 * @return the value of the option
+	 */
+	private double getOptionValue(String key, double defaultValue) {
+		String value = mCallback.getSkirmishAI().getOptionValues().getValueByKey(key);
+		if (value != null) {
+			try {
+				return Double.parseDouble(value);
+			} catch (NumberFormatException e) {
+				log(LOG, Level.WARNING, "Option {} is not a number: {}", key, value);
+			}
 		}
+		return defaultValue;
 	}
 
 	/**
@@ -1552,12 +1805,16 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	}
 
 	/**
-	 * The logger which the whole system uses. Cannot be directly accessed, but
-	 * can be accessed through the log() function.
+	 * The log writer which the whole system uses. Cannot be directly accessed,
+	 * but can be accessed through the log() functions.
 	 * 
 	 * @see log
 	 */
-	private Logger mLog = null;
+	private AsyncLogWriter mLogWriter = null;
+	/**
+	 * Messages below this level are not logged
+	 */
+	private Level mLogLevel = Level.INFO;
 
 	/**
 	 * The team id of the AI
@@ -1581,33 +1838,74 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	/**
 	 * All the listeners that listens to some events. The listener will listen
 	 * to all the event interfaces that it implements that derive from
-	 * IListener.
+	 * IListener. Only used for checking duplicates, the events are dispatched
+	 * through the listener arrays below.
+	 */
+	private Set<IListener> mEventListeners;
+	/**
+	 * Listeners of commandFinished
+	 */
+	private ListenerArray<ICommandFinished> mCommandFinishedListeners;
+	/**
+	 * Listeners of enemyDamaged
+	 */
+	private ListenerArray<IEnemyDamaged> mEnemyDamagedListeners;
+	/**
+	 * Listeners of enemyDestroyed
+	 */
+	private ListenerArray<IEnemyDestroyed> mEnemyDestroyedListeners;
+	/**
+	 * Listeners of enemyEnterLOS
+	 */
+	private ListenerArray<IEnemyEnterLOS> mEnemyEnterLOSListeners;
+	/**
+	 * Listeners of message
+	 */
+	private ListenerArray<IMessage> mMessageListeners;
+	/**
+	 * Listeners of unitCreated
+	 */
+	private ListenerArray<IUnitCreated> mUnitCreatedListeners;
+	/**
+	 * Listeners of unitDestroyed
+	 */
+	private ListenerArray<IUnitDestroyed> mUnitDestroyedListeners;
+	/**
+	 * Listeners of unitFinished
+	 */
+	private ListenerArray<IUnitFinished> mUnitFinishedListeners;
+	/**
+	 * Unit event listeners by unit id
 	 */
-	private LinkedList<IListener> mEventListeners;
+	private IntHashMap<ListenerArray<IUnitEvents>> mUnitEventListeners;
 	/**
-	 * HashMap of unit event listeners
+	 * Enemy event listeners by enemy id
 	 */
-	private HashMap<Integer, LinkedList<IUnitEvents>> mUnitEventListeners;
+	private IntHashMap<ListenerArray<IEnemyEvents>> mEnemyEventListeners;
 	/**
-	 * Listeners to be removed from the unit listeners
+	 * Unit commands waiting to be sent at the end of the frame
 	 */
-	private HashMap<Integer, LinkedList<IUnitEvents>> mRemovedUnitEventListeners;
+	private CommandQueue mCommandQueue;
 	/**
-	 * Listeners to be added to the unit listeners
+	 * Runs computations on background threads
 	 */
-	private HashMap<Integer, LinkedList<IUnitEvents>> mAddedUnitEventListeners;
+	private Planner mPlanner;
 	/**
-	 * Hashmap of enemy event listeners
+	 * Finished tasks that can be reused
 	 */
-	private HashMap<Integer, LinkedList<IEnemyEvents>> mEnemyEventListeners;
+	private TaskPools mTaskPools;
 	/**
-	 * Listeners to be removed from the enemy listeners
+	 * Timeouts and periodic checks, counted in frames
 	 */
-	private HashMap<Integer, LinkedList<IEnemyEvents>> mRemovedEnemyEventListeners;
+	private TimerWheel mTimerWheel;
 	/**
-	 * Listeners to be added to the enemy listeners
+	 * The CPU budget of each frame
 	 */
-	private HashMap<Integer, LinkedList<IEnemyEvents>> mAddedEnemyEventListeners;
+	private FrameBudget mFrameBudget;
+	/**
+	 * The enemy units we can see, fetched at most once per frame
+	 */
+	private EnemySnapshot mEnemySnapshot;
 	/**
 	 * The task unit handler
 	 */
@@ -1624,13 +1922,25 @@ public class AlIce extends AbstractOOAI implements OOAI {
 	 * The Energy resource
 	 */
 	private HashMap<String, Resource> mResources;
+	/**
+	 * Metal and energy, fetched at most once per frame
+	 */
+	private EconomySnapshot mEconomy;
 	/**
 	 * The Extraction point map
 	 */
 	private ExtractionPointMap mExtractionPointMap;
+	/**
+	 * The static properties of all unit definitions
+	 */
+	private UnitDefCatalog mUnitDefCatalog;
 	/**
 	 * All sighted enemies
 	 */
 	private SightedEnemies mSightedEnemies;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(AlIce.class);
 
 }
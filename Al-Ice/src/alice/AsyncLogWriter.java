@@ -0,0 +1,388 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Writes the log file on a background thread. The engine thread only copies
+ * the record (frame, level, source, message and arguments) into a
+ * preallocated ring buffer; formatting the message, the date, and writing to
+ * the file is done by the writer thread.
+ *
+ * If the ring buffer is full the record is dropped instead of waiting for the
+ * writer thread, so logging never stalls a frame. The number of dropped
+ * records is counted and written to the log when there is room again.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class AsyncLogWriter {
+
+	/**
+	 * Constructor, opens the log file and starts the writer thread
+	 *
+	 * @param fileName
+	 *            the file to write the log to, will be overwritten
+	 * @throws IOException
+	 *             if the file couldn't be opened
+	 */
+	public AsyncLogWriter(String fileName) throws IOException {
+		mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName, false), "UTF-8"), WRITE_BUFFER_SIZE);
+
+		mTimes = new long[CAPACITY];
+		mFrames = new int[CAPACITY];
+		mLevels = new Level[CAPACITY];
+		mSources = new LogSource[CAPACITY];
+		mMessages = new String[CAPACITY];
+		mArgCounts = new int[CAPACITY];
+		mArgs = new Object[CAPACITY][MAX_ARGS];
+
+		mDroppedRecords = new AtomicLong(0);
+		mRunning = true;
+		mThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "AlIce-" + fileName);
+		mThread.setDaemon(true);
+		mThread.start();
+	}
+
+	/**
+	 * Appends a record with up to two arguments to the ring buffer.
+	 *
+	 * @param frame
+	 *            the current frame
+	 * @param level
+	 *            the level of the record
+	 * @param source
+	 *            the source of the record
+	 * @param message
+	 *            the message, with {} placeholders
+	 * @param argCount
+	 *            number of arguments, 0-2
+	 * @param arg0
+	 *            the first argument
+	 * @param arg1
+	 *            the second argument
+	 * @return true if the record was added, false if it was dropped
+	 */
+	public synchronized boolean append(int frame, Level level, LogSource source, String message, int argCount, Object arg0,
+			Object arg1) {
+		int slot = claimSlot(frame, level, source, message);
+		if (slot == -1) {
+			return false;
+		}
+
+		Object[] args = mArgs[slot];
+		if (argCount > 0) {
+			args[0] = toSafeArgument(arg0);
+		}
+		if (argCount > 1) {
+			args[1] = toSafeArgument(arg1);
+		}
+		mArgCounts[slot] = argCount;
+
+		publish();
+		return true;
+	}
+
+	/**
+	 * Appends a record to the ring buffer. If there are more arguments than
+	 * fit into a record the message is formatted directly.
+	 *
+	 * @param frame
+	 *            the current frame
+	 * @param level
+	 *            the level of the record
+	 * @param source
+	 *            the source of the record
+	 * @param message
+	 *            the message, with {} placeholders
+	 * @param args
+	 *            the arguments of the placeholders, may be null
+	 * @return true if the record was added, false if it was dropped
+	 */
+	public synchronized boolean append(int frame, Level level, LogSource source, String message, Object[] args) {
+		boolean formatDirectly = args != null && args.length > MAX_ARGS;
+		int slot = claimSlot(frame, level, source, formatDirectly ? LogSource.format(message, args) : message);
+		if (slot == -1) {
+			return false;
+		}
+
+		int argCount = 0;
+		if (args != null && !formatDirectly) {
+			Object[] slotArgs = mArgs[slot];
+			for (Object arg : args) {
+				slotArgs[argCount] = toSafeArgument(arg);
+				argCount++;
+			}
+		}
+		mArgCounts[slot] = argCount;
+
+		publish();
+		return true;
+	}
+
+	/**
+	 * Returns the number of records that have been dropped because the ring
+	 * buffer was full
+	 *
+	 * @return number of dropped records
+	 */
+	public long getDroppedRecords() {
+		return mDroppedRecords.get();
+	}
+
+	/**
+	 * Stops the writer thread after it has written all records in the buffer
+	 * and closes the file.
+	 */
+	public void close() {
+		mRunning = false;
+		LockSupport.unpark(mThread);
+		try {
+			mThread.join(CLOSE_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// PRIVATE
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Claims the next slot of the ring buffer and fills it with the record's
+	 * header. Must be called while holding the lock.
+	 *
+	 * @param frame
+	 *            the current frame
+	 * @param level
+	 *            the level of the record
+	 * @param source
+	 *            the source of the record
+	 * @param message
+	 *            the message of the record
+	 * @return index of the slot, -1 if the buffer is full
+	 */
+	private int claimSlot(int frame, Level level, LogSource source, String message) {
+		if (mWriteIndex - mReadIndex >= CAPACITY) {
+			mDroppedRecords.incrementAndGet();
+			return -1;
+		}
+
+		int slot = (int) (mWriteIndex & (CAPACITY - 1));
+		mTimes[slot] = System.currentTimeMillis();
+		mFrames[slot] = frame;
+		mLevels[slot] = level;
+		mSources[slot] = source;
+		mMessages[slot] = message;
+		return slot;
+	}
+
+	/**
+	 * Makes the last claimed slot visible to the writer thread
+	 */
+	private void publish() {
+		// Volatile write, everything written to the slot before is visible
+		// to the writer thread when it reads the index.
+		mWriteIndex = mWriteIndex + 1;
+	}
+
+	/**
+	 * Converts an argument to something that can be safely formatted on the
+	 * writer thread. Immutable values are kept as they are so they are only
+	 * formatted on the writer thread, everything else (engine objects,
+	 * positions, tasks) is converted to a string directly since it might
+	 * change or call into the engine when it's formatted.
+	 *
+	 * @param arg
+	 *            the argument
+	 * @return the argument itself or its string
+	 */
+	private static Object toSafeArgument(Object arg) {
+		if (arg == null || arg instanceof String || arg instanceof Number || arg instanceof Boolean ||
+				arg instanceof Character || arg instanceof Enum<?>) {
+			return arg;
+		}
+		return String.valueOf(arg);
+	}
+
+	/**
+	 * The writer thread's loop. Formats and writes all published records,
+	 * flushes the file when the buffer is empty and then sleeps a while.
+	 */
+	private void writeLoop() {
+		DateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss:SSS");
+		Date date = new Date();
+		StringBuilder builder = new StringBuilder(256);
+		long reportedDrops = 0;
+
+		try {
+			boolean running = true;
+			while (running) {
+				// Read mRunning before the buffer so that nothing published
+				// before close() is missed
+				running = mRunning;
+
+				long writeIndex = mWriteIndex;
+				while (mReadIndex < writeIndex) {
+					int slot = (int) (mReadIndex & (CAPACITY - 1));
+
+					builder.setLength(0);
+					date.setTime(mTimes[slot]);
+					builder.append("[");
+					builder.append(dateFormat.format(date));
+					builder.append(" ");
+					builder.append(mLevels[slot].getName());
+					builder.append("] ");
+					builder.append(mFrames[slot]);
+					builder.append(": ");
+					builder.append(mSources[slot].getName());
+					builder.append(" | ");
+
+					Object[] slotArgs = mArgs[slot];
+					builder.append(LogSource.format(mMessages[slot], slotArgs, mArgCounts[slot]));
+					builder.append("\n");
+
+					// Release the references before the slot is given back
+					for (int i = 0; i < MAX_ARGS; i++) {
+						slotArgs[i] = null;
+					}
+					mSources[slot] = null;
+					mMessages[slot] = null;
+					mLevels[slot] = null;
+					mReadIndex = mReadIndex + 1;
+
+					mWriter.write(builder.toString());
+				}
+
+				long droppedRecords = mDroppedRecords.get();
+				if (droppedRecords != reportedDrops) {
+					mWriter.write("[" + dateFormat.format(new Date()) + " WARNING] Log buffer full, dropped " +
+							(droppedRecords - reportedDrops) + " records\n");
+					reportedDrops = droppedRecords;
+				}
+
+				mWriter.flush();
+
+				if (running) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_SLEEP_TIME));
+				}
+			}
+		} catch (IOException e) {
+			// Nowhere to log it, stop writing
+			mRunning = false;
+		} finally {
+			try {
+				mWriter.close();
+			} catch (IOException e) {
+				// Already closing
+			}
+		}
+	}
+
+	/**
+	 * Number of records in the ring buffer, must be a power of two
+	 */
+	private static final int CAPACITY = 8192;
+	/**
+	 * Maximum number of arguments stored in a record
+	 */
+	private static final int MAX_ARGS = 4;
+	/**
+	 * Size of the file write buffer, in characters
+	 */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * How long the writer thread sleeps when the buffer is empty, in
+	 * milliseconds
+	 */
+	private static final long IDLE_SLEEP_TIME = 10;
+	/**
+	 * How long close() waits for the writer thread, in milliseconds
+	 */
+	private static final long CLOSE_TIMEOUT = 2000;
+	/**
+	 * The log file
+	 */
+	private BufferedWriter mWriter;
+	/**
+	 * The writer thread
+	 */
+	private Thread mThread;
+	/**
+	 * False when the writer thread should stop
+	 */
+	private volatile boolean mRunning;
+	/**
+	 * Index of the next record to write, only increased by the appending
+	 * threads
+	 */
+	private volatile long mWriteIndex;
+	/**
+	 * Index of the next record to read, only increased by the writer thread
+	 */
+	private volatile long mReadIndex;
+	/**
+	 * Number of dropped records
+	 */
+	private AtomicLong mDroppedRecords;
+	/**
+	 * Time of the records, in milliseconds
+	 */
+	private long[] mTimes;
+	/**
+	 * Frame of the records
+	 */
+	private int[] mFrames;
+	/**
+	 * Level of the records
+	 */
+	private Level[] mLevels;
+	/**
+	 * Source of the records
+	 */
+	private LogSource[] mSources;
+	/**
+	 * Message of the records
+	 */
+	private String[] mMessages;
+	/**
+	 * Number of arguments of the records
+	 */
+	private int[] mArgCounts;
+	/**
+	 * Arguments of the records
+	 */
+	private Object[][] mArgs;
+}
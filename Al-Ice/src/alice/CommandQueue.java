@@ -0,0 +1,238 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+import alice.interfaces.ICommandObserver;
+
+import com.springrts.ai.AICommand;
+
+/**
+ * Collects the unit commands of a frame and sends them to the engine at the
+ * end of the frame. A unit can only execute one (non-queued) order, so if a
+ * unit gets several commands in the same frame only the last one is sent;
+ * the earlier ones are coalesced.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class CommandQueue {
+
+	/**
+	 * Constructor
+	 *
+	 * @param alIce
+	 *            the AI interface
+	 */
+	public CommandQueue(AlIce alIce) {
+		mAlIce = alIce;
+		mPendingByUnit = new IntHashMap<PendingCommand>();
+		mPending = new ArrayList<PendingCommand>();
+		mFlushing = new ArrayList<PendingCommand>();
+		mcPending = 0;
+	}
+
+	/**
+	 * Adds a command to the queue. Replaces the pending command of the unit
+	 * if it already has one this frame.
+	 *
+	 * @param unitId
+	 *            the unit that should execute the command
+	 * @param command
+	 *            the command
+	 * @param observer
+	 *            gets notified if the command fails, may be null
+	 */
+	public void add(int unitId, AICommand command, ICommandObserver observer) {
+		PendingCommand pending = mPendingByUnit.get(unitId);
+		if (pending != null) {
+			mcCoalescedThisFrame++;
+		} else {
+			// Reuse the entries from earlier frames
+			if (mcPending < mPending.size()) {
+				pending = mPending.get(mcPending);
+			} else {
+				pending = new PendingCommand();
+				mPending.add(pending);
+			}
+			mcPending++;
+			mPendingByUnit.put(unitId, pending);
+		}
+
+		pending.mCommand = command;
+		pending.mObserver = observer;
+	}
+
+	/**
+	 * Stops notifying an observer about its pending commands, the commands
+	 * are still sent. Used when the observer is reused for something else
+	 * before the commands are flushed, e.g. a task that is recycled.
+	 *
+	 * @param observer
+	 *            the observer to forget
+	 */
+	public void forgetObserver(ICommandObserver observer) {
+		for (int i = 0; i < mcPending; i++) {
+			PendingCommand pending = mPending.get(i);
+			if (pending.mObserver == observer) {
+				pending.mObserver = null;
+			}
+		}
+	}
+
+	/**
+	 * Sends all pending commands to the engine and reports failed commands
+	 * to their observers.
+	 */
+	public void flush() {
+		// Observers might add new commands when they get notified, those are
+		// added to the other list and sent the next frame.
+		ArrayList<PendingCommand> flushing = mPending;
+		mPending = mFlushing;
+		mFlushing = flushing;
+		int cPending = mcPending;
+		mcPending = 0;
+		mPendingByUnit.clear();
+
+		mcIssuedLastFrame = 0;
+		mcCoalescedLastFrame = mcCoalescedThisFrame;
+		mcCoalescedThisFrame = 0;
+
+		for (int i = 0; i < cPending; i++) {
+			PendingCommand pending = flushing.get(i);
+			AICommand command = pending.mCommand;
+			ICommandObserver observer = pending.mObserver;
+			pending.mCommand = null;
+			pending.mObserver = null;
+
+			int result = mAlIce.handleEngineCommand(command);
+			mcIssuedLastFrame++;
+			if (result != 0) {
+				mAlIce.log(LOG, Level.WARNING, "Command failed: {}, result: {}", command, result);
+				if (observer != null) {
+					observer.commandFailed(command, result);
+				}
+			}
+		}
+
+		mcIssuedTotal += mcIssuedLastFrame;
+		mcCoalescedTotal += mcCoalescedLastFrame;
+	}
+
+	/**
+	 * Returns the number of commands that were sent to the engine last frame
+	 *
+	 * @return number of issued commands last frame
+	 */
+	public int getIssuedLastFrame() {
+		return mcIssuedLastFrame;
+	}
+
+	/**
+	 * Returns the number of commands that were replaced by a later command to
+	 * the same unit last frame
+	 *
+	 * @return number of coalesced commands last frame
+	 */
+	public int getCoalescedLastFrame() {
+		return mcCoalescedLastFrame;
+	}
+
+	/**
+	 * Returns the number of commands that have been sent to the engine
+	 *
+	 * @return total number of issued commands
+	 */
+	public long getIssuedTotal() {
+		return mcIssuedTotal;
+	}
+
+	/**
+	 * Returns the number of commands that have been coalesced
+	 *
+	 * @return total number of coalesced commands
+	 */
+	public long getCoalescedTotal() {
+		return mcCoalescedTotal;
+	}
+
+	/**
+	 * A command waiting to be sent
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class PendingCommand {
+		/**
+		 * The command to send
+		 */
+		public AICommand mCommand;
+		/**
+		 * Gets notified if the command fails
+		 */
+		public ICommandObserver mObserver;
+	}
+
+	/**
+	 * The AI interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * The pending command of each unit
+	 */
+	private IntHashMap<PendingCommand> mPendingByUnit;
+	/**
+	 * The pending commands in the order they were added, the entries after
+	 * mcPending are unused and kept for the next frame
+	 */
+	private ArrayList<PendingCommand> mPending;
+	/**
+	 * The commands that are being flushed, swapped with mPending every flush
+	 */
+	private ArrayList<PendingCommand> mFlushing;
+	/**
+	 * Number of used entries in mPending
+	 */
+	private int mcPending;
+	/**
+	 * Number of commands coalesced this frame
+	 */
+	private int mcCoalescedThisFrame;
+	/**
+	 * Number of commands issued last frame
+	 */
+	private int mcIssuedLastFrame;
+	/**
+	 * Number of commands coalesced last frame
+	 */
+	private int mcCoalescedLastFrame;
+	/**
+	 * Total number of issued commands
+	 */
+	private long mcIssuedTotal;
+	/**
+	 * Total number of coalesced commands
+	 */
+	private long mcCoalescedTotal;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(CommandQueue.class);
+}
@@ -19,11 +19,13 @@
 
 package alice;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import com.springrts.ai.AICommand;
 import com.springrts.ai.oo.UnitDef;
 
 /**
@@ -356,9 +358,40 @@ public class Defs {
 	 */
 	public final static double FREE_BUILDER_UPDATE_TIME = 0.5;
 	/**
-	 * The number of seconds to split the load
+	 * How often a task is executed if it doesn't specify it itself. In frames
 	 */
-	public final static double TASK_SPLIT_LOAD_TIME = 0.1;
+	public final static int TASK_EXECUTE_INTERVAL = 3;
+	/**
+	 * The maximum number of tasks that are executed each frame
+	 */
+	public final static int TASK_MAX_EXECUTIONS_PER_FRAME = 64;
+	/**
+	 * The default CPU budget of each frame, can be changed with the
+	 * frame_budget option. In milliseconds
+	 */
+	public final static double FRAME_BUDGET_TIME = 5.0;
+	/**
+	 * Number of threads that plan computations off the engine thread
+	 */
+	public final static int PLANNER_THREADS = 2;
+	/**
+	 * The maximum number of finished tasks of each type that are kept for
+	 * reuse in TaskPools
+	 */
+	public final static int TASK_POOL_SIZE = 256;
+	/**
+	 * The initial size of the unit table in TaskUnitHandler, the table grows
+	 * when a unit has a higher id
+	 */
+	public final static int UNIT_TABLE_INITIAL_SIZE = 1024;
+	/**
+	 * How often the task profiles are dumped to the CSV file. In seconds
+	 */
+	public final static double PERF_DUMP_TIME = 60.0;
+	/**
+	 * How often the THaveUnits task checks if we have the units. In frames
+	 */
+	public final static int HAVE_UNITS_CHECK_INTERVAL = 30;
 	/**
 	 * How often we should check if the enemy still exists. In seconds
 	 */
@@ -424,6 +457,11 @@ public class Defs {
 	 * Timeout for the AICommands
 	 */
 	public static final int TIME_OUT = 10000;
+	/**
+	 * Empty options for the AICommands. Shared by all commands, the list can't
+	 * be modified
+	 */
+	public static final List<AICommand.Option> NO_OPTIONS = Collections.emptyList();
 	/**
 	 * The radius to search for close extraction points in the beginning of the
 	 * game
@@ -478,6 +516,7 @@ public class Defs {
 			this.build = build;
 			this.groups = new LinkedList<String>();
 			this.canAttackAir = canAttackAir;
+			this.defId = -1;
 			do {
 				int lastIndex = groupsString.indexOf(",");
 
@@ -495,6 +534,40 @@ public class Defs {
 			} while (true);
 			// add the last group, i.e. the remaining groupString
 			groups.add(groupsString);
+
+			int mask = 0;
+			for (String group : groups) {
+				mask |= getGroupMask(group);
+			}
+			this.groupMask = mask;
+		}
+
+		/**
+		 * Returns true if the unit belongs to any of the specified groups
+		 * 
+		 * @param groupMask
+		 *            one or more group masks, e.g. ATTACK_FORCE_MASK |
+		 *            SCOUT_MASK
+		 * @return true if the unit belongs to any of the groups
+		 */
+		public boolean isInGroup(int groupMask) {
+			return (this.groupMask & groupMask) != 0;
+		}
+
+		/**
+		 * Returns the mask of the specified group
+		 * 
+		 * @param group
+		 *            name of the group, e.g. ATTACK_FORCE
+		 * @return mask of the group, 0 if there is no such group
+		 */
+		public static int getGroupMask(String group) {
+			int index = TYPES.indexOf(group);
+			if (index != -1) {
+				return 1 << index;
+			} else {
+				return 0;
+			}
 		}
 
 		/**
@@ -517,6 +590,18 @@ public class Defs {
 		 * The definition of the unit
 		 */
 		public UnitDef unitDef;
+		/**
+		 * Id of the unit definition, -1 until the AI has been initialized
+		 */
+		public int defId;
+		/**
+		 * The groups the unit belongs to as a bitmask of the *_MASK values
+		 */
+		public final int groupMask;
+		/**
+		 * The static properties of the unit definition
+		 */
+		public UnitDefCatalog.DefInfo defInfo;
 		/**
 		 * Groups the unit belongs to
 		 */
@@ -568,7 +653,46 @@ public class Defs {
 		public static final String HEALER = "healer";
 
 		/**
-		 * List with all the group types
+		 * Mask of the ATTACK_FORCE group. The masks are derived from the
+		 * position of the group in TYPES
+		 */
+		public static final int ATTACK_FORCE_MASK;
+		/**
+		 * Mask of the ARMORED_BUILDING group
+		 */
+		public static final int ARMORED_BUILDING_MASK;
+		/**
+		 * Mask of the BUILDER group
+		 */
+		public static final int BUILDER_MASK;
+		/**
+		 * Mask of the FACTORY group
+		 */
+		public static final int FACTORY_MASK;
+		/**
+		 * Mask of the MOBILE_BUILDER group
+		 */
+		public static final int MOBILE_BUILDER_MASK;
+		/**
+		 * Mask of the ECONOMIC group
+		 */
+		public static final int ECONOMIC_MASK;
+		/**
+		 * Mask of the SCOUT group
+		 */
+		public static final int SCOUT_MASK;
+		/**
+		 * Mask of the BUILDING group
+		 */
+		public static final int BUILDING_MASK;
+		/**
+		 * Mask of the HEALER group
+		 */
+		public static final int HEALER_MASK;
+
+		/**
+		 * List with all the group types, the group masks are derived from
+		 * their order
 		 */
 		public static final LinkedList<String> TYPES;
 
@@ -585,6 +709,16 @@ public class Defs {
 			groupTypes.add(HEALER);
 
 			TYPES = groupTypes;
+
+			ATTACK_FORCE_MASK = getGroupMask(ATTACK_FORCE);
+			ARMORED_BUILDING_MASK = getGroupMask(ARMORED_BUILDING);
+			BUILDER_MASK = getGroupMask(BUILDER);
+			FACTORY_MASK = getGroupMask(FACTORY);
+			MOBILE_BUILDER_MASK = getGroupMask(MOBILE_BUILDER);
+			ECONOMIC_MASK = getGroupMask(ECONOMIC);
+			SCOUT_MASK = getGroupMask(SCOUT);
+			BUILDING_MASK = getGroupMask(BUILDING);
+			HEALER_MASK = getGroupMask(HEALER);
 		}
 	}
 
@@ -0,0 +1,320 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import com.springrts.ai.oo.Economy;
+import com.springrts.ai.oo.OOAICallback;
+import com.springrts.ai.oo.Resource;
+
+/**
+ * The current, income, storage and usage of metal and energy. The values are
+ * fetched from the engine at most once per frame, the first time they are
+ * used in that frame.
+ *
+ * The income is also sampled regularly into a short history so that the
+ * income trend can be checked without asking the engine.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class EconomySnapshot {
+
+	/**
+	 * Constructor
+	 *
+	 * @param alIce
+	 *            the AI interface, used for the current frame
+	 * @param callback
+	 *            the callback to fetch the economy from
+	 * @param metal
+	 *            the metal resource
+	 * @param energy
+	 *            the energy resource
+	 */
+	EconomySnapshot(AlIce alIce, OOAICallback callback, Resource metal, Resource energy) {
+		mAlIce = alIce;
+		mEconomy = callback.getEconomy();
+		mResources = new Resource[] { metal, energy };
+		mCurrent = new float[RESOURCE_COUNT];
+		mIncome = new float[RESOURCE_COUNT];
+		mStorage = new float[RESOURCE_COUNT];
+		mUsage = new float[RESOURCE_COUNT];
+		mIncomeHistory = new float[RESOURCE_COUNT][HISTORY_SIZE];
+		mFrame = -1;
+	}
+
+	/**
+	 * Samples the income into the history, should be called every frame
+	 */
+	void update() {
+		if (mAlIce.getCurrentFrame() % HISTORY_INTERVAL == 0) {
+			refresh();
+			for (int i = 0; i < RESOURCE_COUNT; i++) {
+				mIncomeHistory[i][mHistoryIndex] = mIncome[i];
+			}
+			mHistoryIndex = (mHistoryIndex + 1) % HISTORY_SIZE;
+			if (mcHistorySamples < HISTORY_SIZE) {
+				mcHistorySamples++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current value of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return the current value of the resource, 0.0 if not found
+	 */
+	public float getCurrent(String resourceName) {
+		int index = getIndex(resourceName);
+		if (index != -1) {
+			refresh();
+			return mCurrent[index];
+		}
+
+		return 0.0f;
+	}
+
+	/**
+	 * Returns the income of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return the income of the resource, 0.0 if not found
+	 */
+	public float getIncome(String resourceName) {
+		int index = getIndex(resourceName);
+		if (index != -1) {
+			refresh();
+			return mIncome[index];
+		}
+
+		return 0.0f;
+	}
+
+	/**
+	 * Returns the storage of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return the storage of the resource, 0.0 if not found
+	 */
+	public float getStorage(String resourceName) {
+		int index = getIndex(resourceName);
+		if (index != -1) {
+			refresh();
+			return mStorage[index];
+		}
+
+		return 0.0f;
+	}
+
+	/**
+	 * Returns the usage of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return the usage of the resource, 0.0 if not found
+	 */
+	public float getUsage(String resourceName) {
+		int index = getIndex(resourceName);
+		if (index != -1) {
+			refresh();
+			return mUsage[index];
+		}
+
+		return 0.0f;
+	}
+
+	/**
+	 * Returns the average income of the specified resource over the last
+	 * samples in the history
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @param samples
+	 *            number of samples to average, is capped to the number of
+	 *            samples in the history
+	 * @return the average income, the current income if there is no history
+	 */
+	public float getAverageIncome(String resourceName, int samples) {
+		int index = getIndex(resourceName);
+		int cSamples = Math.min(samples, mcHistorySamples);
+		if (index == -1 || cSamples <= 0) {
+			return getIncome(resourceName);
+		}
+
+		float total = 0.0f;
+		for (int i = 1; i <= cSamples; i++) {
+			total += mIncomeHistory[index][getHistoryIndex(i)];
+		}
+		return total / cSamples;
+	}
+
+	/**
+	 * Returns how much the income of the specified resource has changed since
+	 * the specified number of samples ago
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @param samples
+	 *            how many samples back to compare with, is capped to the
+	 *            oldest sample in the history
+	 * @return the change of the income, 0.0 if there is no history
+	 */
+	public float getIncomeChange(String resourceName, int samples) {
+		int index = getIndex(resourceName);
+		int cSamples = Math.min(samples, mcHistorySamples);
+		if (index == -1 || cSamples <= 0) {
+			return 0.0f;
+		}
+
+		return getIncome(resourceName) - mIncomeHistory[index][getHistoryIndex(cSamples)];
+	}
+
+	/**
+	 * Returns the number of frames between every sample in the history
+	 *
+	 * @return frames between samples
+	 */
+	public int getHistoryInterval() {
+		return HISTORY_INTERVAL;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return index of the resource, -1 if it isn't metal or energy
+	 */
+	private static int getIndex(String resourceName) {
+		if (Defs.Metal.equals(resourceName)) {
+			return METAL;
+		} else if (Defs.Energy.equals(resourceName)) {
+			return ENERGY;
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the index in the history of the sample taken samplesAgo samples
+	 * ago
+	 *
+	 * @param samplesAgo
+	 *            1 is the latest sample
+	 * @return index in the history
+	 */
+	private int getHistoryIndex(int samplesAgo) {
+		return (mHistoryIndex - samplesAgo + HISTORY_SIZE) % HISTORY_SIZE;
+	}
+
+	/**
+	 * Fetches the economy from the engine unless we already have it for this
+	 * frame
+	 */
+	private void refresh() {
+		int currentFrame = mAlIce.getCurrentFrame();
+		if (mFrame == currentFrame) {
+			return;
+		}
+
+		for (int i = 0; i < RESOURCE_COUNT; i++) {
+			Resource resource = mResources[i];
+			if (resource != null) {
+				mCurrent[i] = mEconomy.getCurrent(resource);
+				mIncome[i] = mEconomy.getIncome(resource);
+				mStorage[i] = mEconomy.getStorage(resource);
+				mUsage[i] = mEconomy.getUsage(resource);
+			}
+		}
+		mFrame = currentFrame;
+	}
+
+	/**
+	 * Index of metal
+	 */
+	private static final int METAL = 0;
+	/**
+	 * Index of energy
+	 */
+	private static final int ENERGY = 1;
+	/**
+	 * Number of resources
+	 */
+	private static final int RESOURCE_COUNT = 2;
+	/**
+	 * Number of income samples in the history
+	 */
+	private static final int HISTORY_SIZE = 60;
+	/**
+	 * Frames between every sample in the history, i.e. once per second
+	 */
+	private static final int HISTORY_INTERVAL = 30;
+	/**
+	 * The AI interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * The economy to fetch the values from
+	 */
+	private Economy mEconomy;
+	/**
+	 * Metal and energy
+	 */
+	private Resource[] mResources;
+	/**
+	 * Current value of the resources
+	 */
+	private float[] mCurrent;
+	/**
+	 * Income of the resources
+	 */
+	private float[] mIncome;
+	/**
+	 * Storage of the resources
+	 */
+	private float[] mStorage;
+	/**
+	 * Usage of the resources
+	 */
+	private float[] mUsage;
+	/**
+	 * The frame the values were fetched
+	 */
+	private int mFrame;
+	/**
+	 * Ring buffer with the sampled income of the resources
+	 */
+	private float[][] mIncomeHistory;
+	/**
+	 * Index in the history where the next sample is written
+	 */
+	private int mHistoryIndex;
+	/**
+	 * Number of samples in the history
+	 */
+	private int mcHistorySamples;
+}
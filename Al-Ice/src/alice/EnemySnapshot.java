@@ -0,0 +1,219 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.springrts.ai.oo.OOAICallback;
+import com.springrts.ai.oo.Unit;
+
+/**
+ * The enemy units we can currently see. Fetching the enemy units from the
+ * engine builds a whole new list, so the list is only fetched once per frame
+ * when someone asks for it, and indexed by the unit id so that existence
+ * checks doesn't have to search the list.
+ *
+ * Enemies entering and leaving LOS and destroyed enemies are added to and
+ * removed from the snapshot directly. Radar events invalidate the snapshot,
+ * at most once per frame.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class EnemySnapshot {
+
+	/**
+	 * Constructor
+	 *
+	 * @param alIce
+	 *            the AI interface, used for the current frame
+	 * @param callback
+	 *            the callback to fetch the enemies from
+	 */
+	EnemySnapshot(AlIce alIce, OOAICallback callback) {
+		mAlIce = alIce;
+		mCallback = callback;
+		mEnemies = null;
+		mEnemiesById = new IntHashMap<Unit>();
+		mFrame = -1;
+		mInvalidatedFrame = -1;
+	}
+
+	/**
+	 * Returns all the enemies we can see. The returned list is never changed,
+	 * a new list is returned when the snapshot has changed.
+	 *
+	 * @return read only list of the enemies
+	 */
+	public List<Unit> getEnemies() {
+		refresh();
+		if (mEnemies == null) {
+			ArrayList<Unit> enemies = new ArrayList<Unit>(mEnemiesById.size());
+			for (int slot = 0; slot < mEnemiesById.getCapacity(); slot++) {
+				Unit enemy = mEnemiesById.getValueAt(slot);
+				if (enemy != null) {
+					enemies.add(enemy);
+				}
+			}
+			mEnemies = Collections.unmodifiableList(enemies);
+		}
+		return mEnemies;
+	}
+
+	/**
+	 * Returns the specified enemy if we can see it
+	 *
+	 * @param enemyId
+	 *            the id of the enemy
+	 * @return the enemy, null if we can't see it
+	 */
+	public Unit getEnemy(int enemyId) {
+		refresh();
+		return mEnemiesById.get(enemyId);
+	}
+
+	/**
+	 * Returns true if we can see the specified enemy
+	 *
+	 * @param enemyId
+	 *            the id of the enemy
+	 * @return true if we can see the enemy
+	 */
+	public boolean contains(int enemyId) {
+		return getEnemy(enemyId) != null;
+	}
+
+	/**
+	 * Forces the snapshot to be fetched again the next time it is used. Only
+	 * the first invalidation each frame has any effect, the snapshot is
+	 * fetched at most twice per frame.
+	 */
+	void invalidate() {
+		int currentFrame = mAlIce.getCurrentFrame();
+		if (mInvalidatedFrame != currentFrame) {
+			mInvalidatedFrame = currentFrame;
+			mFrame = -1;
+		}
+	}
+
+	/**
+	 * Adds an enemy that entered LOS to the snapshot
+	 *
+	 * @param enemy
+	 *            the enemy that entered LOS
+	 */
+	void add(Unit enemy) {
+		// An old snapshot is fetched again anyway
+		if (mFrame == mAlIce.getCurrentFrame() && mEnemiesById.get(enemy.getUnitId()) == null) {
+			mEnemiesById.put(enemy.getUnitId(), enemy);
+			mEnemies = null;
+		}
+	}
+
+	/**
+	 * Removes a destroyed enemy or an enemy that left LOS from the snapshot
+	 *
+	 * @param enemyId
+	 *            the id of the enemy
+	 */
+	void remove(int enemyId) {
+		if (mEnemiesById.remove(enemyId) != null) {
+			mEnemies = null;
+		}
+	}
+
+	/**
+	 * Returns the number of times the enemies have been fetched from the
+	 * engine
+	 *
+	 * @return number of fetches
+	 */
+	public long getFetches() {
+		return mcFetches;
+	}
+
+	/**
+	 * Returns the number of times the enemies were requested but could be
+	 * served by the snapshot instead of fetching them from the engine
+	 *
+	 * @return number of saved fetches
+	 */
+	public long getSavedFetches() {
+		return mcSavedFetches;
+	}
+
+	/**
+	 * Fetches the enemies from the engine unless we already have them for
+	 * this frame
+	 */
+	private void refresh() {
+		int currentFrame = mAlIce.getCurrentFrame();
+		if (mFrame == currentFrame) {
+			mcSavedFetches++;
+			return;
+		}
+
+		List<Unit> enemies = mCallback.getEnemyUnits();
+		mEnemiesById.clear();
+		for (Unit enemy : enemies) {
+			mEnemiesById.put(enemy.getUnitId(), enemy);
+		}
+		// The engine returns a new list each time, no one else changes it
+		mEnemies = Collections.unmodifiableList(enemies);
+
+		mFrame = currentFrame;
+		mcFetches++;
+	}
+
+	/**
+	 * The AI interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * The callback to fetch the enemies from
+	 */
+	private OOAICallback mCallback;
+	/**
+	 * Read only list of the enemies we can see, returned to the users. Null
+	 * when it needs to be built again from mEnemiesById
+	 */
+	private List<Unit> mEnemies;
+	/**
+	 * The enemies by their id
+	 */
+	private IntHashMap<Unit> mEnemiesById;
+	/**
+	 * The frame the snapshot was fetched, -1 if it needs to be fetched again
+	 */
+	private int mFrame;
+	/**
+	 * The last frame the snapshot was invalidated
+	 */
+	private int mInvalidatedFrame;
+	/**
+	 * Number of times the enemies have been fetched from the engine
+	 */
+	private long mcFetches;
+	/**
+	 * Number of times a fetch was saved by using the snapshot
+	 */
+	private long mcSavedFetches;
+}
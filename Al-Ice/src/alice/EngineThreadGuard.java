@@ -0,0 +1,92 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.springrts.ai.AICallback;
+
+/**
+ * Wraps the engine's AICallback and throws an exception if the engine is
+ * called from any other thread than the one that created the guard, i.e. the
+ * engine thread. All calls to the engine goes through the AICallback, so this
+ * catches planner jobs that by mistake use the engine. Only used when
+ * debugging since every call goes through reflection.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class EngineThreadGuard implements InvocationHandler {
+
+	/**
+	 * Wraps a callback so that all calls are checked. Must be called from the
+	 * engine thread.
+	 *
+	 * @param callback
+	 *            the engine's callback
+	 * @return a callback that only may be called from the engine thread
+	 */
+	public static AICallback wrap(AICallback callback) {
+		return (AICallback) Proxy.newProxyInstance(AICallback.class.getClassLoader(), new Class<?>[] { AICallback.class },
+				new EngineThreadGuard(callback));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() != Object.class && Thread.currentThread() != mEngineThread) {
+			throw new IllegalStateException("Engine called from thread " + Thread.currentThread().getName() + ": " +
+					method.getName());
+		}
+
+		try {
+			return method.invoke(mCallback, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param callback
+	 *            the engine's callback
+	 */
+	private EngineThreadGuard(AICallback callback) {
+		mCallback = callback;
+		mEngineThread = Thread.currentThread();
+	}
+
+	/**
+	 * The engine's callback
+	 */
+	private AICallback mCallback;
+	/**
+	 * The engine thread
+	 */
+	private Thread mEngineThread;
+}
@@ -32,6 +32,7 @@ import alice.interfaces.IUnitDestroyed;
 import com.springrts.ai.AIFloat3;
 import com.springrts.ai.oo.Resource;
 import com.springrts.ai.oo.Unit;
+import com.springrts.ai.oo.UnitDef;
 
 /**
  * 
@@ -55,7 +56,7 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 		Resource metal = mAlIce.getResource(Defs.Metal);
 		List<AIFloat3> extractionPoints = new LinkedList<AIFloat3>();
 		if (metal == null) {
-			mAlIce.log(Level.SEVERE, "Could not find specified resource: " + Defs.Metal);
+			mAlIce.log(LOG, Level.SEVERE, "Could not find specified resource: {}", Defs.Metal);
 		} else {
 			extractionPoints = mAlIce.getMap().getResourceMapSpotsPositions(metal);
 
@@ -64,7 +65,7 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 				mExtractionPoints.add(exPoint);
 			}
 		}
-		mAlIce.log(Level.FINE, "Size: " + mExtractionPoints.size());
+		mAlIce.log(LOG, Level.FINE, "Size: {}", mExtractionPoints.size());
 	}
 
 	/**
@@ -164,7 +165,7 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 				}
 			}
 		} else {
-			mAlIce.log(Level.SEVERE, "Position is null");
+			mAlIce.log(LOG, Level.SEVERE, "Position is null");
 		}
 
 		return closeExtractionPoints;
@@ -178,12 +179,12 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 	 */
 	@Override
 	public void unitCreated(Unit unit, Unit builder) {
-		if (unit.getDef().getName().equals(Defs.MetalExtractor.unitName)) {
+		if (isMetalExtractor(unit)) {
 			ExtractionPoint exPoint = getClosestExtractionPoint(unit.getPos(), null);
 			if (exPoint != null) {
 				exPoint.mOwner = Owner.SELF;
 			} else {
-				mAlIce.log(Level.WARNING, "Extraction point is null!");
+				mAlIce.log(LOG, Level.WARNING, "Extraction point is null!");
 			}
 		}
 	}
@@ -197,12 +198,12 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 	 */
 	@Override
 	public void unitDestroyed(Unit unit, Unit attacker) {
-		if (unit.getDef().getName().equals(Defs.MetalExtractor.unitName)) {
+		if (isMetalExtractor(unit)) {
 			ExtractionPoint exPoint = getClosestExtractionPoint(unit.getPos(), null);
 			if (exPoint != null) {
 				exPoint.mOwner = Owner.NONE;
 			} else {
-				mAlIce.log(Level.WARNING, "Extraction point is null!");
+				mAlIce.log(LOG, Level.WARNING, "Extraction point is null!");
 			}
 		}
 	}
@@ -215,12 +216,12 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 	 */
 	@Override
 	public void enemyEnterLOS(Unit enemy) {
-		if (enemy.getDef().getName().equals(Defs.MetalExtractor.unitName)) {
+		if (isMetalExtractor(enemy)) {
 			ExtractionPoint exPoint = getClosestExtractionPoint(enemy.getPos(), null);
 			if (exPoint != null) {
 				exPoint.mOwner = Owner.ENEMY;
 			} else {
-				mAlIce.log(Level.WARNING, "Extraction point is null!");
+				mAlIce.log(LOG, Level.WARNING, "Extraction point is null!");
 			}
 		}
 
@@ -236,12 +237,12 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 	@Override
 	public void enemyDestroyed(Unit enemy, Unit attacker) {
 
-		if (enemy.getDef().getName().equals(Defs.MetalExtractor.unitName)) {
+		if (isMetalExtractor(enemy)) {
 			ExtractionPoint exPoint = getClosestExtractionPoint(enemy.getPos(), null);
 			if (exPoint != null) {
 				exPoint.mOwner = Owner.NONE;
 			} else {
-				mAlIce.log(Level.WARNING, "Extraction point is null!");
+				mAlIce.log(LOG, Level.WARNING, "Extraction point is null!");
 			}
 		}
 	}
@@ -284,11 +285,23 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 				}
 			}
 		} else {
-			mAlIce.log(Level.SEVERE, "Position is null");
+			mAlIce.log(LOG, Level.SEVERE, "Position is null");
 		}
 		return result;
 	}
 
+	/**
+	 * Checks if the unit is a metal extractor by the id of its definition
+	 * 
+	 * @param unit
+	 *            the unit to check
+	 * @return true if the unit is a metal extractor
+	 */
+	private static boolean isMetalExtractor(Unit unit) {
+		UnitDef unitDef = unit.getDef();
+		return unitDef != null && unitDef.getUnitDefId() == Defs.MetalExtractor.defId;
+	}
+
 	/**
 	 * The AI-Interface
 	 */
@@ -347,4 +360,8 @@ public class ExtractionPointMap implements IUnitCreated, IUnitDestroyed, IEnemyE
 		 */
 		private Owner mOwner;
 	}
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(ExtractionPointMap.class);
 }
@@ -0,0 +1,271 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+/**
+ * Keeps track of the CPU time the AI spends each frame and tells when the
+ * frame's budget is exhausted. The time spent in the engine's event callbacks
+ * since the last update is counted in the next frame. When the budget is
+ * exhausted low priority work should be deferred to later frames, call
+ * defer() for every deferred piece of work so that it's counted.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class FrameBudget {
+
+	/**
+	 * The parts of the AI that are measured
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	public enum Section {
+		/**
+		 * The engine's event callbacks
+		 */
+		CALLBACKS,
+		/**
+		 * General.update()
+		 */
+		GENERAL,
+		/**
+		 * TaskHandler.update()
+		 */
+		TASKS
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param budgetMillis
+	 *            the CPU time the AI may use each frame, in milliseconds
+	 */
+	public FrameBudget(double budgetMillis) {
+		mBudget = (long) (budgetMillis * NANOS_PER_MILLI);
+		mSectionTimes = new long[Section.values().length];
+		mSectionStarts = new long[Section.values().length];
+		mcFrames = 0;
+		mcOverruns = 0;
+		mcDeferred = 0;
+		mcDeferredLastFrame = 0;
+		mCallbackTime = 0;
+		mMaxFrameTime = 0;
+		mLastFrameTime = 0;
+		mInFrame = false;
+	}
+
+	/**
+	 * Starts a new frame, call first in update
+	 */
+	public void beginFrame() {
+		mFrameStart = System.nanoTime();
+		mcDeferredThisFrame = 0;
+		mInFrame = true;
+	}
+
+	/**
+	 * Ends the frame, call last in update. Counts an overrun if the frame
+	 * used more time than the budget.
+	 */
+	public void endFrame() {
+		mLastFrameTime = mCallbackTime + System.nanoTime() - mFrameStart;
+		mMaxFrameTime = Math.max(mMaxFrameTime, mLastFrameTime);
+		if (mLastFrameTime > mBudget) {
+			mcOverruns++;
+		}
+		mcFrames++;
+		mcDeferredLastFrame = mcDeferredThisFrame;
+		mCallbackTime = 0;
+		mInFrame = false;
+	}
+
+	/**
+	 * Starts measuring a section
+	 *
+	 * @param section
+	 *            the section to measure
+	 */
+	public void start(Section section) {
+		mSectionStarts[section.ordinal()] = System.nanoTime();
+	}
+
+	/**
+	 * Stops measuring a section. Time spent in callbacks outside update is
+	 * counted in the next frame.
+	 *
+	 * @param section
+	 *            the section that was measured
+	 */
+	public void stop(Section section) {
+		long time = System.nanoTime() - mSectionStarts[section.ordinal()];
+		mSectionTimes[section.ordinal()] += time;
+		if (section == Section.CALLBACKS && !mInFrame) {
+			mCallbackTime += time;
+		}
+	}
+
+	/**
+	 * Returns true if this frame has used all of its budget
+	 *
+	 * @return true if the budget is exhausted
+	 */
+	public boolean isExhausted() {
+		return mInFrame && mCallbackTime + System.nanoTime() - mFrameStart >= mBudget;
+	}
+
+	/**
+	 * Counts a piece of work that was deferred because the budget was
+	 * exhausted
+	 */
+	public void defer() {
+		mcDeferred++;
+		mcDeferredThisFrame++;
+	}
+
+	/**
+	 * Returns the budget of each frame
+	 *
+	 * @return the budget in milliseconds
+	 */
+	public double getBudgetMillis() {
+		return mBudget / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Returns the number of frames that used more time than the budget
+	 *
+	 * @return number of overrun frames
+	 */
+	public long getOverruns() {
+		return mcOverruns;
+	}
+
+	/**
+	 * Returns the number of measured frames
+	 *
+	 * @return number of frames
+	 */
+	public long getFrames() {
+		return mcFrames;
+	}
+
+	/**
+	 * Returns the total number of deferred pieces of work
+	 *
+	 * @return number of deferred pieces of work
+	 */
+	public long getDeferred() {
+		return mcDeferred;
+	}
+
+	/**
+	 * Returns the number of pieces of work deferred last frame
+	 *
+	 * @return number of pieces of work deferred last frame
+	 */
+	public int getDeferredLastFrame() {
+		return mcDeferredLastFrame;
+	}
+
+	/**
+	 * Returns the time the last frame used
+	 *
+	 * @return time of the last frame in milliseconds
+	 */
+	public double getLastFrameMillis() {
+		return mLastFrameTime / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Returns the longest time a frame has used
+	 *
+	 * @return the longest frame time in milliseconds
+	 */
+	public double getMaxFrameMillis() {
+		return mMaxFrameTime / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Returns the total time spent in a section
+	 *
+	 * @param section
+	 *            the section
+	 * @return total time of the section in milliseconds
+	 */
+	public double getTotalMillis(Section section) {
+		return mSectionTimes[section.ordinal()] / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Nanoseconds per millisecond
+	 */
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	/**
+	 * The budget of each frame in nanoseconds
+	 */
+	private long mBudget;
+	/**
+	 * When the current frame started
+	 */
+	private long mFrameStart;
+	/**
+	 * True between beginFrame() and endFrame()
+	 */
+	private boolean mInFrame;
+	/**
+	 * Time spent in callbacks since the last frame ended
+	 */
+	private long mCallbackTime;
+	/**
+	 * Total time spent in each section
+	 */
+	private long[] mSectionTimes;
+	/**
+	 * When the measurement of each section started
+	 */
+	private long[] mSectionStarts;
+	/**
+	 * Time used by the last frame
+	 */
+	private long mLastFrameTime;
+	/**
+	 * The longest time used by a frame
+	 */
+	private long mMaxFrameTime;
+	/**
+	 * Number of measured frames
+	 */
+	private long mcFrames;
+	/**
+	 * Number of frames that used more than the budget
+	 */
+	private long mcOverruns;
+	/**
+	 * Total number of deferred pieces of work
+	 */
+	private long mcDeferred;
+	/**
+	 * Number of pieces of work deferred this frame
+	 */
+	private int mcDeferredThisFrame;
+	/**
+	 * Number of pieces of work deferred last frame
+	 */
+	private int mcDeferredLastFrame;
+}
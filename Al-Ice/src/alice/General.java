@@ -36,7 +36,9 @@ import alice.Defs.UnitGroup;
 import alice.ExtractionPointMap.Owner;
 import alice.TaskUnit.TaskPriority;
 import alice.interfaces.IMessage;
+import alice.interfaces.IPlanJob;
 import alice.interfaces.ITaskObserver;
+import alice.interfaces.ITimerListener;
 import alice.tasks.TAirAttack;
 import alice.tasks.TBuildUnitByUnit;
 import alice.tasks.TBuildUnitByUnitOnPos;
@@ -48,6 +50,7 @@ import alice.tasks.TScoutRandom;
 import alice.tasks.TScoutRoaming;
 import alice.tasks.Task;
 import alice.tasks.Task.Status;
+import alice.tasks.TaskPools;
 
 import com.springrts.ai.AIFloat3;
 import com.springrts.ai.oo.UnitDef;
@@ -59,7 +62,7 @@ import com.springrts.ai.oo.UnitDef;
  * @author Tobias Hall <kazzoa@gmail.com>
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public class General implements ITaskObserver, IMessage {
+public class General implements ITaskObserver, IMessage, ITimerListener {
 
 	/**
 	 * Constructor
@@ -76,14 +79,23 @@ public class General implements ITaskObserver, IMessage {
 		mScoutRandom = null;
 		mScoutRoaming = null;
 		mScoutExtraction = null;
-		mLastAttackTime = 0.0;
-		mLastBuilderForceBuilds = new HashMap<String, Double>();
-		mLastPriorityTime = 0.0;
+		mBuilderForceBuildTimers = new HashMap<String, TimerWheel.Timer>();
 		mState = State.INITIAL_BUILD;
 		mFreeBuilders = new LinkedList<TaskUnit>();
 		mAlIce.addEventListener(this);
 		mUnitPriorities = new Vector<UnitPriority>(Defs.getAllUnits().size());
-		mLastMergeTime = mAlIce.getGameTime(GameTimeTypes.SECONDS);
+
+		// Periodic updates
+		mAttackUpdateDue = false;
+		mPriorityUpdateDue = false;
+		mPlanningPriorities = false;
+		mMergeDue = false;
+		TimerWheel timerWheel = mAlIce.getTimerWheel();
+		// The attack and priority updates are timed from the end of the
+		// initial build, they are restarted when it's finished
+		mAttackTimer = timerWheel.schedulePeriodic(SpringHelper.secondsToFrames(Defs.ATTACK_UPDATE_TIME), this);
+		mPriorityTimer = timerWheel.schedulePeriodic(SpringHelper.secondsToFrames(Defs.FREE_BUILDER_UPDATE_TIME), this);
+		mMergeTimer = timerWheel.schedulePeriodic(SpringHelper.secondsToFrames(Defs.MERGE_ATTACK_GOALS_UPDATE_TIME), this);
 
 		mGroundAttackAir = new LinkedList<TGroundAttack>();
 		mGroundAttackGround = new LinkedList<TGroundAttack>();
@@ -108,8 +120,8 @@ public class General implements ITaskObserver, IMessage {
 		updateFreeBuilders();
 
 		// USE MESSAGES INSTEAD - e.g: 0 attack - to call attack();
-		if (mState != State.ATTACK && mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE).size() >= 10) {
-			mAlIce.log(Level.FINER, "Attacking state!");
+		if (mState != State.ATTACK && mAlIce.getTaskUnitHandler().getNrFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE) >= 10) {
+			mAlIce.log(LOG, Level.FINER, "Attacking state!");
 			mState = State.ATTACK;
 		}
 		switch (mState) {
@@ -153,6 +165,16 @@ public class General implements ITaskObserver, IMessage {
 			mState = State.IDLE;
 			mAlIce.setInitialBuildFrame();
 
+			// Time the attack and priority updates from the end of the
+			// initial build
+			TimerWheel timerWheel = mAlIce.getTimerWheel();
+			timerWheel.cancel(mAttackTimer);
+			timerWheel.cancel(mPriorityTimer);
+			mAttackUpdateDue = false;
+			mPriorityUpdateDue = false;
+			mAttackTimer = timerWheel.schedulePeriodic(SpringHelper.secondsToFrames(Defs.ATTACK_UPDATE_TIME), this);
+			mPriorityTimer = timerWheel.schedulePeriodic(SpringHelper.secondsToFrames(Defs.FREE_BUILDER_UPDATE_TIME), this);
+
 			// Set the initial income
 			Defs.Priority.ENERGY_INCOME_START = mAlIce.getResourceIncome(Defs.Energy);
 			Defs.Priority.ENERGY_STORAGE_START = mAlIce.getResourceStorage(Defs.Energy);
@@ -246,7 +268,7 @@ public class General implements ITaskObserver, IMessage {
 								// int padLength = NAME_LENGTH -
 								// (unit.unitDef.length() + 1);
 								String paddedUnitDef = String.format("%1$-" + NAME_LENGTH + "s", unit.unitGroup.unitName + ":");
-								mAlIce.log(Level.FINE, paddedUnitDef + unit.priority);
+								mAlIce.log(LOG, Level.FINE, "{}{}", paddedUnitDef, unit.priority);
 								mAlIce.sendTextMsg(unit.unitGroup.unitName + ": " + unit.priority);
 								break;
 							}
@@ -258,7 +280,7 @@ public class General implements ITaskObserver, IMessage {
 							// int padLength = NAME_LENGTH -
 							// (unit.unitDef.length() + 1);
 							String paddedUnitDef = String.format("%1$-" + NAME_LENGTH + "s", unit.unitGroup.unitName + ":");
-							mAlIce.log(Level.FINE, paddedUnitDef + unit.priority);
+							mAlIce.log(LOG, Level.FINE, "{}{}", paddedUnitDef, unit.priority);
 							mAlIce.sendTextMsg(paddedUnitDef + ": " + unit.priority);
 						}
 					}
@@ -273,13 +295,13 @@ public class General implements ITaskObserver, IMessage {
 						mAlIce.sendTextMsg("--- Unit Info ---");
 						mAlIce.sendTextMsg("Anti-air units: " + taskUnitHandler.getNrAntiAirUnits());
 
-						LinkedList<TaskUnit> freeAttackingUnits = mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(
+						Set<TaskUnit> freeAttackingUnits = mAlIce.getTaskUnitHandler().getFreeUnitSetByGroup(
 								Defs.UnitGroup.ATTACK_FORCE);
 
 						int freeAir = 0;
 						int freeGround = 0;
 						for (TaskUnit taskUnit : freeAttackingUnits) {
-							if (taskUnit.getDef().isAbleToFly()) {
+							if (taskUnit.getDefInfo().ableToFly) {
 								freeAir++;
 							} else {
 								freeGround++;
@@ -376,6 +398,11 @@ public class General implements ITaskObserver, IMessage {
 							mAlIce.sendTextMsg(damageType + ": " + dps);
 						}
 						mAlIce.sendTextMsg("Total DPS: " + totalDps);
+
+						EnemySnapshot enemySnapshot = mAlIce.getEnemySnapshot();
+						mAlIce.sendTextMsg("-- Enemy list --");
+						mAlIce.sendTextMsg("Fetches: " + enemySnapshot.getFetches());
+						mAlIce.sendTextMsg("Saved fetches: " + enemySnapshot.getSavedFetches());
 					}
 				}
 				// ------------ TASK TYPES -----------
@@ -387,6 +414,78 @@ public class General implements ITaskObserver, IMessage {
 						mAlIce.sendTextMsg("--- Number Of Tasks ---");
 						mAlIce.sendTextMsg(arguments.getFirst() + ": " + tasks);
 					}
+				}
+				// ------------ COMMANDS -----------
+				else if (arguments.getFirst().equals("commands")) {
+					arguments.removeFirst();
+
+					CommandQueue commandQueue = mAlIce.getCommandQueue();
+					mAlIce.sendTextMsg("--- Commands ---");
+					mAlIce.sendTextMsg("Issued last frame: " + commandQueue.getIssuedLastFrame());
+					mAlIce.sendTextMsg("Coalesced last frame: " + commandQueue.getCoalescedLastFrame());
+					mAlIce.sendTextMsg("Issued total: " + commandQueue.getIssuedTotal());
+					mAlIce.sendTextMsg("Coalesced total: " + commandQueue.getCoalescedTotal());
+				}
+				// ------------ LOG -----------
+				else if (arguments.getFirst().equals("log")) {
+					arguments.removeFirst();
+
+					mAlIce.sendTextMsg("--- Log ---");
+					mAlIce.sendTextMsg("Dropped records: " + mAlIce.getDroppedLogRecords());
+				}
+				// ------------ BUDGET -----------
+				else if (arguments.getFirst().equals("budget")) {
+					arguments.removeFirst();
+
+					FrameBudget budget = mAlIce.getFrameBudget();
+					mAlIce.sendTextMsg("--- Frame Budget ---");
+					mAlIce.sendTextMsg("Budget: " + budget.getBudgetMillis() + "ms");
+					mAlIce.sendTextMsg("Last frame: " + budget.getLastFrameMillis() + "ms, max: " + budget.getMaxFrameMillis() + "ms");
+					mAlIce.sendTextMsg("Overruns: " + budget.getOverruns() + " of " + budget.getFrames() + " frames");
+					mAlIce.sendTextMsg("Deferred: " + budget.getDeferred() + ", last frame: " + budget.getDeferredLastFrame());
+					mAlIce.sendTextMsg("Callbacks: " + budget.getTotalMillis(FrameBudget.Section.CALLBACKS) + "ms, General: " +
+							budget.getTotalMillis(FrameBudget.Section.GENERAL) + "ms, Tasks: " +
+							budget.getTotalMillis(FrameBudget.Section.TASKS) + "ms");
+
+					Planner planner = mAlIce.getPlanner();
+					mAlIce.sendTextMsg("Planner jobs: " + planner.getApplied() + " applied, " + planner.getFailed() +
+							" failed, " + planner.getPending() + " pending");
+				}
+				// ------------ PERF -----------
+				else if (arguments.getFirst().equals("perf")) {
+					arguments.removeFirst();
+
+					TaskProfiler profiler = mAlIce.getTaskHandler().getProfiler();
+					double seconds = profiler.getElapsedSeconds();
+					mAlIce.sendTextMsg("--- Task Performance ---");
+					int cPrinted = 0;
+					for (TaskProfiler.Profile profile : profiler.getProfiles()) {
+						if (cPrinted == PERF_MAX_TASKS) {
+							break;
+						}
+						long callsPerSecond = seconds > 0.0 ? Math.round(profile.getCalls() / seconds) : 0;
+						mAlIce.sendTextMsg(profile.getName() + ": " + profile.getCalls() + " calls (" + callsPerSecond +
+								"/s), total " + profile.getTotalTime() / 1000000 + "ms, p50 " + profile.getTimePercentile(0.5) /
+								1000 + "us, p99 " + profile.getTimePercentile(0.99) / 1000 + "us, max " + profile.getMaxTime() /
+								1000 + "us, " + profile.getAllocatedPerCall() + " B/call");
+						cPrinted++;
+					}
+					if (!profiler.isMeasuringAllocations()) {
+						mAlIce.sendTextMsg("Allocations are not measured (turned off or not supported by this JVM)");
+					}
+
+					TaskPools pools = mAlIce.getTaskPools();
+					mAlIce.sendTextMsg("Task pools: " + pools.getCreated() + " created, " + pools.getReused() + " reused, " +
+							pools.getPooled() + " pooled");
+				}
+				// ------------ SUBSCRIPTIONS -----------
+				else if (arguments.getFirst().equals("subscriptions")) {
+					arguments.removeFirst();
+
+					mAlIce.sendTextMsg("--- Live Subscriptions ---");
+					for (Entry<String, Integer> taskType : mAlIce.getTaskHandler().getSubscriptionCounts().entrySet()) {
+						mAlIce.sendTextMsg(taskType.getKey() + ": " + taskType.getValue());
+					}
 				} else {
 					mAlIce.sendTextMsg("Error, invalid command!");
 				}
@@ -394,6 +493,11 @@ public class General implements ITaskObserver, IMessage {
 		}
 	}
 
+	/**
+	 * The maximum number of task types "get perf" prints
+	 */
+	private static final int PERF_MAX_TASKS = 10;
+
 	/**
 	 * States the General can be in
 	 * 
@@ -419,12 +523,30 @@ public class General implements ITaskObserver, IMessage {
 		INITIAL_BUILD
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * alice.interfaces.ITimerListener#timerExpired(alice.TimerWheel.Timer)
+	 */
+	@Override
+	public void timerExpired(TimerWheel.Timer timer) {
+		if (timer == mAttackTimer) {
+			mAttackUpdateDue = true;
+		} else if (timer == mPriorityTimer) {
+			mPriorityUpdateDue = true;
+		} else if (timer == mMergeTimer) {
+			mMergeDue = true;
+		}
+		// The builder force build timers only need to expire
+	}
+
 	/**
 	 * Updates the list of free builders
 	 */
 	private void updateFreeBuilders() {
 		mFreeBuilders.clear();
-		mFreeBuilders.addAll(mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(UnitGroup.BUILDER));
+		mFreeBuilders.addAll(mAlIce.getTaskUnitHandler().getFreeUnitSetByGroup(UnitGroup.BUILDER));
 	}
 
 	/**
@@ -432,11 +554,9 @@ public class General implements ITaskObserver, IMessage {
 	 */
 	private void attackUpdate() {
 
-		double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.SECONDS);
-		if (mLastAttackTime + Defs.ATTACK_UPDATE_TIME < gameTime &&
-				mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE).size() >= 10) {
-			mAlIce.log(Level.FINE, "Time to update and order new attacks if we got the force for it!");
-			mLastAttackTime = gameTime;
+		if (mAttackUpdateDue && mAlIce.getTaskUnitHandler().getNrFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE) >= 10) {
+			mAlIce.log(LOG, Level.FINE, "Time to update and order new attacks if we got the force for it!");
+			mAttackUpdateDue = false;
 			attack();
 		}
 	}
@@ -453,13 +573,14 @@ public class General implements ITaskObserver, IMessage {
 		LinkedList<TaskUnit> airAntiAirForce = new LinkedList<TaskUnit>();
 		LinkedList<TaskUnit> groundAntiAirForce = new LinkedList<TaskUnit>();
 
-		mAlIce.log(Level.FINE, "Total free attacking units: " +
-				mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE).size());
+		if (mAlIce.isLoggable(Level.FINE)) {
+			mAlIce.log(LOG, Level.FINE, "Total free attacking units: {}", mAlIce.getTaskUnitHandler().getNrFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE));
+		}
 		// Sort the attack force into two groups, flying and ground
-		for (TaskUnit taskUnit : mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.ATTACK_FORCE)) {
+		for (TaskUnit taskUnit : mAlIce.getTaskUnitHandler().getFreeUnitSetByGroup(Defs.UnitGroup.ATTACK_FORCE)) {
 			if (taskUnit.getUnit() != null) {
 				// Flying, anti-air
-				if (taskUnit.getUnitGroup().canAttackAir && taskUnit.getDef().isAbleToFly()) {
+				if (taskUnit.getUnitGroup().canAttackAir && taskUnit.getDefInfo().ableToFly) {
 					airAntiAirForce.add(taskUnit);
 				}
 				// Ground, anti-air
@@ -467,7 +588,7 @@ public class General implements ITaskObserver, IMessage {
 					groundAntiAirForce.add(taskUnit);
 				}
 				// Flying
-				else if (taskUnit.getDef().isAbleToFly()) {
+				else if (taskUnit.getDefInfo().ableToFly) {
 					airAttackForce.add(taskUnit);
 				}
 				// Ground
@@ -476,12 +597,12 @@ public class General implements ITaskObserver, IMessage {
 				}
 			}
 		}
-		mAlIce.log(Level.FINE, "AirForce size: " + airAttackForce.size());
-		mAlIce.log(Level.FINE, "GroudnForce size: " + groundAttackForce.size());
+		mAlIce.log(LOG, Level.FINE, "AirForce size: {}", airAttackForce.size());
+		mAlIce.log(LOG, Level.FINE, "GroudnForce size: {}", groundAttackForce.size());
 
 		// Air anti-air
 		if (airAntiAirForce.size() >= Defs.ATTACK_FORCE_AIR_ANTI_AIR_MIN) {
-			mAlIce.log(Level.FINE, "Attacking with air anti-air force)");
+			mAlIce.log(LOG, Level.FINE, "Attacking with air anti-air force)");
 
 			// No healers are assigned to air units
 			TAirAttack antiAirAttack = new TAirAttack(mAlIce, airAntiAirForce, null);
@@ -491,7 +612,7 @@ public class General implements ITaskObserver, IMessage {
 
 		// Ground anti-air
 		if (groundAntiAirForce.size() >= Defs.ATTACK_FORCE_GROUND_ANTI_AIR_MIN) {
-			mAlIce.log(Level.FINE, "Attacking with ground anti-air force)");
+			mAlIce.log(LOG, Level.FINE, "Attacking with ground anti-air force)");
 
 			// No healers are assigned to ground anti-air attacks
 			TAirAttack antiAirAttack = new TAirAttack(mAlIce, groundAntiAirForce, null);
@@ -501,7 +622,7 @@ public class General implements ITaskObserver, IMessage {
 
 		// Air ground-attack
 		if (airAttackForce.size() >= Defs.ATTACK_FORCE_AIR_MIN) {
-			mAlIce.log(Level.FINE, "Attacking with air force");
+			mAlIce.log(LOG, Level.FINE, "Attacking with air force");
 
 			// No healers are assigned to air units
 			TGroundAttack groupAirAttack = new TGroundAttack(mAlIce, airAttackForce, null);
@@ -511,7 +632,7 @@ public class General implements ITaskObserver, IMessage {
 
 		// Ground ground-attack
 		if (groundAttackForce.size() >= Defs.ATTACK_FORCE_GROUND_MIN) {
-			mAlIce.log(Level.FINE, "Attacking with ground force");
+			mAlIce.log(LOG, Level.FINE, "Attacking with ground force");
 
 			LinkedList<TaskUnit> healers = mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.HEALER);
 			TGroundAttack groupGroundAttack = new TGroundAttack(mAlIce, groundAttackForce, healers);
@@ -525,8 +646,13 @@ public class General implements ITaskObserver, IMessage {
 	 * in one method call.
 	 */
 	private void mergeAttackTasks() {
-		if (mLastMergeTime + Defs.MERGE_ATTACK_GOALS_UPDATE_TIME < mAlIce.getGameTime(GameTimeTypes.SECONDS)) {
-			mLastMergeTime = mAlIce.getGameTime(GameTimeTypes.SECONDS);
+		if (mMergeDue) {
+			// Low priority, keep it due until we have time
+			if (mAlIce.getFrameBudget().isExhausted()) {
+				mAlIce.getFrameBudget().defer();
+				return;
+			}
+			mMergeDue = false;
 
 			// Ground Attack - Ground
 			ListIterator<TGroundAttack> attackGroundItFirst = mGroundAttackGround.listIterator();
@@ -690,14 +816,20 @@ public class General implements ITaskObserver, IMessage {
 	 * decision whether we need to scout or not
 	 */
 	private void scouting() {
-		if (!mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(Defs.UnitGroup.SCOUT).isEmpty()) {
+		// Low priority, try again next frame if we're out of time
+		if (mAlIce.getFrameBudget().isExhausted()) {
+			mAlIce.getFrameBudget().defer();
+			return;
+		}
+
+		if (mAlIce.getTaskUnitHandler().getNrFreeUnitsByGroup(Defs.UnitGroup.SCOUT) > 0) {
 			if (!mIsScouting) {
-				mScoutExtraction = new TScoutExtractionPoints(mAlIce, mAlIce.getTaskUnitHandler().getFreeUnitsByGroup(
-						Defs.UnitGroup.SCOUT).getFirst());
+				mScoutExtraction = new TScoutExtractionPoints(mAlIce, mAlIce.getTaskUnitHandler().getFreeUnitSetByGroup(
+						Defs.UnitGroup.SCOUT).iterator().next());
 				mAlIce.getTaskHandler().run(mScoutExtraction, this);
 				mIsScouting = true;
 				mcScouting++;
-				mAlIce.log(Level.FINE, "Times scouted: " + mcScouting);
+				mAlIce.log(LOG, Level.FINE, "Times scouted: {}", mcScouting);
 			}
 			// } else {
 			//
@@ -714,48 +846,65 @@ public class General implements ITaskObserver, IMessage {
 	}
 
 	/**
-	 * Wrapper for generating priorities and delegate builders
+	 * Wrapper for generating priorities and delegate builders. The priorities
+	 * are generated by the planner from a snapshot of the world, the builders
+	 * are delegated when the priorities have been applied.
 	 */
 	private void generatePrioritiesAndDelegateBuilders() {
-		double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.SECONDS);
-		if (mLastPriorityTime + Defs.FREE_BUILDER_UPDATE_TIME < gameTime) {
-			mLastPriorityTime = gameTime;
+		if (mPriorityUpdateDue && !mPlanningPriorities) {
+			// Low priority, keep it due until we have time
+			if (mAlIce.getFrameBudget().isExhausted()) {
+				mAlIce.getFrameBudget().defer();
+				return;
+			}
+			mPriorityUpdateDue = false;
 
-			generatePriorities();
-			delegateBuildTaskToFreeBuilder();
+			// Don't generate any priorities if we don't have a free builder
+			if (mFreeBuilders.isEmpty()) {
+				return;
+			}
+
+			mPlanningPriorities = true;
+			mAlIce.getPlanner().submit(new PriorityJob(new WorldSnapshot(mAlIce)));
 		}
 	}
 
 	/**
-	 * Generates the build priorities for all the units. Doesn't generate any
-	 * priorities if we don't have a free builder.
+	 * Generates the build priorities for all the units. Called on a planner
+	 * thread, thus it may only use the world snapshot and the job's own
+	 * priority maps.
+	 * 
+	 * @param world
+	 *            snapshot of the world to generate the priorities from
+	 * @param attackForcePriorities
+	 *            the attack force priorities matrix, see
+	 *            generateAttackForcePriorities()
+	 * @param armoredBuildingPriorities
+	 *            the armored building priorities, see
+	 *            generateArmoredBuildingPriorities()
+	 * @return sorted priorities of the units we want to build
 	 */
-	private void generatePriorities() {
-		// Return if we don't have any free builders.
-		if (mFreeBuilders.isEmpty()) {
-			return;
-		}
-		generateAttackForcePriorities();
-		generateArmoredBuildingPriorities();
+	private Vector<UnitPriority> generatePriorities(WorldSnapshot world,
+			HashMap<String, HashMap<String, Double>> attackForcePriorities, HashMap<String, Double> armoredBuildingPriorities) {
 
-		// Clear the priority vector iterate through all the units again
+		// Iterate through all the units
 		Set<Entry<String, UnitGroup>> units = Defs.getAllUnits().entrySet();
-		mUnitPriorities.clear();
+		Vector<UnitPriority> unitPriorities = new Vector<UnitPriority>(units.size());
 
 		for (Entry<String, UnitGroup> unit : units) {
 			// Only generate a priority for units we want to build.
 			UnitGroup unitGroup = unit.getValue();
 			if (unitGroup.build) {
-				UnitPriority unitPriority = generatePriority(unitGroup);
+				UnitPriority unitPriority = generatePriority(unitGroup, world, attackForcePriorities,
+						armoredBuildingPriorities);
 				if (unitPriority != null && unitPriority.priority >= Priority.PRIORITY_MUST_HAVE) {
-					mUnitPriorities.add(unitPriority);
+					unitPriorities.add(unitPriority);
 				}
 			}
 		}
 
-		sortPrioList();
-
-		adjustBuilderPriorities();
+		Collections.sort(unitPriorities);
+		return unitPriorities;
 	}
 
 	/**
@@ -763,43 +912,51 @@ public class General implements ITaskObserver, IMessage {
 	 * 
 	 * @param unit
 	 *            the unit we want to generate the priority for
+	 * @param world
+	 *            snapshot of the world
+	 * @param attackForcePriorities
+	 *            the attack force priorities matrix
+	 * @param armoredBuildingPriorities
+	 *            the armored building priorities
 	 * @return The unit priority
 	 */
-	private UnitPriority generatePriority(UnitGroup unit) {
+	private UnitPriority generatePriority(UnitGroup unit, WorldSnapshot world,
+			HashMap<String, HashMap<String, Double>> attackForcePriorities, HashMap<String, Double> armoredBuildingPriorities) {
 
 		// Check if we only should build economics
-		boolean onlyEconomics = Priority.ECONOMICS_ONLY_TIME > mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
+		boolean onlyEconomics = Priority.ECONOMICS_ONLY_TIME > world.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
 
+		// We only keep the highest priority of the unit's groups for now
 		UnitPriority unitPriority = new UnitPriority(unit);
-		for (String resourceGroup : unit.groups) {
-			// We only keep the highest priority for now
-			double tempPriority = 0.0;
-
-			if (!onlyEconomics) {
-				if (resourceGroup.equals(UnitGroup.ATTACK_FORCE)) {
-					tempPriority = generateAttackForcePriority(unit);
-				} else if (resourceGroup.equals(UnitGroup.MOBILE_BUILDER)) {
-					tempPriority = generateMobileBuilderPriority(unit.unitName);
-				} else if (resourceGroup.equals(UnitGroup.FACTORY)) {
-					tempPriority = generateFactoryPriority(unit.unitName);
-				} else if (resourceGroup.equals(UnitGroup.ECONOMIC)) {
-					tempPriority = generateEconomyPriority(unit.unitName);
-				} else if (resourceGroup.equals(UnitGroup.BUILDING)) {
-					tempPriority = generateBuildingPriority(unit.unitName);
-				} else if (resourceGroup.equals(UnitGroup.ARMORED_BUILDING)) {
-					tempPriority = generateArmoredBuildingPriority(unit);
-				} else if (resourceGroup.equals(UnitGroup.SCOUT)) {
-					tempPriority = generateScoutPriority(unit.unitName);
-				} else if (resourceGroup.equals(UnitGroup.HEALER)) {
-					tempPriority = generateHealerPriority(unit.unitName);
-				}
-			} else if (resourceGroup.equals(UnitGroup.ECONOMIC)) {
-				tempPriority = generateEconomyPriority(unit.unitName);
+		if (!onlyEconomics) {
+			if (unit.isInGroup(UnitGroup.ATTACK_FORCE_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateAttackForcePriority(unit, world,
+						attackForcePriorities));
 			}
-
-			if (tempPriority > unitPriority.priority) {
-				unitPriority.priority = tempPriority;
+			if (unit.isInGroup(UnitGroup.MOBILE_BUILDER_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateMobileBuilderPriority(unit.unitName, world));
+			}
+			if (unit.isInGroup(UnitGroup.FACTORY_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateFactoryPriority(unit.unitName, world));
+			}
+			if (unit.isInGroup(UnitGroup.ECONOMIC_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateEconomyPriority(unit.unitName, world));
+			}
+			if (unit.isInGroup(UnitGroup.BUILDING_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateBuildingPriority(unit.unitName));
+			}
+			if (unit.isInGroup(UnitGroup.ARMORED_BUILDING_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateArmoredBuildingPriority(unit, world,
+						armoredBuildingPriorities));
+			}
+			if (unit.isInGroup(UnitGroup.SCOUT_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateScoutPriority(unit.unitName, world));
+			}
+			if (unit.isInGroup(UnitGroup.HEALER_MASK)) {
+				unitPriority.priority = Math.max(unitPriority.priority, generateHealerPriority(unit.unitName));
 			}
+		} else if (unit.isInGroup(UnitGroup.ECONOMIC_MASK)) {
+			unitPriority.priority = Math.max(unitPriority.priority, generateEconomyPriority(unit.unitName, world));
 		}
 
 		return unitPriority;
@@ -807,19 +964,26 @@ public class General implements ITaskObserver, IMessage {
 
 	/**
 	 * Generate the priority matrix for the attacking units
+	 * 
+	 * @param world
+	 *            snapshot of the world
+	 * @return new priority matrix, armor type -> damage type -> priority
 	 */
-	private void generateAttackForcePriorities() {
+	private HashMap<String, HashMap<String, Double>> generateAttackForcePriorities(WorldSnapshot world) {
+		HashMap<String, HashMap<String, Double>> attackForcePriorities = new HashMap<String, HashMap<String, Double>>();
+		for (String armorType : Defs.ArmorType.TYPES) {
+			attackForcePriorities.put(armorType, new HashMap<String, Double>());
+		}
 
 		// Set priority for all weapon types
 		HashMap<String, Double> tempDamageTypeHealth = new HashMap<String, Double>();
 		List<String> allDamageTypes = Defs.DamageType.TYPES;
 		List<String> allArmorTypes = Defs.ArmorType.TYPES;
 		double maxHealth = Double.MIN_VALUE;
-		SightedEnemies sightedEnemies = mAlIce.getSightedEnemies();
 		for (String damageType : allDamageTypes) {
 			double health = 0.0;
 			for (String armorType : allArmorTypes) {
-				health += (sightedEnemies.getEnemyArmorTypeHealth(Defs.UnitGroup.ATTACK_FORCE, armorType) + sightedEnemies
+				health += (world.getEnemyArmorTypeHealth(Defs.UnitGroup.ATTACK_FORCE, armorType) + world
 						.getEnemyArmorTypeHealth(Defs.UnitGroup.ARMORED_BUILDING, armorType)) /
 						Defs.getDamageMultiplier(armorType, damageType);
 			}
@@ -837,7 +1001,7 @@ public class General implements ITaskObserver, IMessage {
 			scaledPriority = scaleFactor - scaledPriority + Defs.Priority.DAMAGE_TYPE_PRIO_MIN;
 
 			for (String armorType : allArmorTypes) {
-				HashMap<String, Double> damagePriority = mAttackForcePriorities.get(armorType);
+				HashMap<String, Double> damagePriority = attackForcePriorities.get(armorType);
 				damagePriority.put(currentDamageType.getKey(), scaledPriority);
 			}
 		}
@@ -848,7 +1012,7 @@ public class General implements ITaskObserver, IMessage {
 		for (String armorType : allArmorTypes) {
 			double dps = 1.0;
 			for (String damageType : allDamageTypes) {
-				dps += (sightedEnemies.getEnemyDamageTypeDps(Defs.UnitGroup.ARMORED_BUILDING, damageType) + sightedEnemies
+				dps += (world.getEnemyDamageTypeDps(Defs.UnitGroup.ARMORED_BUILDING, damageType) + world
 						.getEnemyDamageTypeDps(Defs.UnitGroup.ATTACK_FORCE, damageType)) *
 						Defs.getDamageMultiplier(armorType, damageType);
 			}
@@ -864,35 +1028,39 @@ public class General implements ITaskObserver, IMessage {
 			Entry<String, Double> currentArmorType = armorTypeIt.next();
 			double scaledPriority = scaleFactor * currentArmorType.getValue() / maxDamage;
 			scaledPriority = scaleFactor - scaledPriority + Defs.Priority.ARMOR_TYPE_PRIO_MIN;
-			HashMap<String, Double> armorPriority = mAttackForcePriorities.get(currentArmorType.getKey());
+			HashMap<String, Double> armorPriority = attackForcePriorities.get(currentArmorType.getKey());
 			for (String damageType : allDamageTypes) {
 				double oldPriority = armorPriority.get(damageType);
 				armorPriority.put(damageType, oldPriority * scaledPriority);
 			}
 		}
+
+		return attackForcePriorities;
 	}
 
 	/**
 	 * Generate the priority list for armored buildings. Since all armored
 	 * buildings have armored_building as armor we don't need to check what
 	 * armor is good for that armor.
+	 * 
+	 * @param world
+	 *            snapshot of the world
+	 * @return new priority list (map), damage type -> priority
 	 */
-	private void generateArmoredBuildingPriorities() {
-
-		SightedEnemies sightedEnemies = mAlIce.getSightedEnemies();
+	private HashMap<String, Double> generateArmoredBuildingPriorities(WorldSnapshot world) {
+		HashMap<String, Double> armoredBuildingPriorities = new HashMap<String, Double>();
 
 		// Set priority for all weapon types
 		HashMap<String, Double> tempDamageTypeHealth = new HashMap<String, Double>();
 		List<String> allDamageTypes = Defs.DamageType.TYPES;
 		List<String> allArmorTypes = Defs.ArmorType.TYPES;
 		double maxHealth = Double.MIN_VALUE;
-		// SightedEnemies sightedEnemies = mAlIce.getSightedEnemies();
 		for (String damageType : allDamageTypes) {
 			double health = 0.0;
 			for (String armorType : allArmorTypes) {
 				// NOTE: This differs from the attack force calculation. We
 				// multiplies with the damage multiplier here...
-				health += (sightedEnemies.getEnemyArmorTypeHealth(Defs.UnitGroup.ATTACK_FORCE, armorType)) *
+				health += (world.getEnemyArmorTypeHealth(Defs.UnitGroup.ATTACK_FORCE, armorType)) *
 						Defs.getDamageMultiplier(armorType, damageType);
 			}
 			if (maxHealth < health) {
@@ -907,8 +1075,10 @@ public class General implements ITaskObserver, IMessage {
 		while (damageTypeIt.hasNext()) {
 			Entry<String, Double> currentDamageType = damageTypeIt.next();
 			double scaledPriority = currentDamageType.getValue() * prioMultiplier;
-			mArmoredBuildingPriorities.put(currentDamageType.getKey(), scaledPriority);
+			armoredBuildingPriorities.put(currentDamageType.getKey(), scaledPriority);
 		}
+
+		return armoredBuildingPriorities;
 	}
 
 	/**
@@ -924,27 +1094,25 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitDef
 	 *            the unit definition (name) of the unit to generate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
 	 * @return the current priority of the unit
 	 */
-	private double generateEconomyPriority(String unitDef) {
+	private double generateEconomyPriority(String unitDef, WorldSnapshot world) {
 		// Apply initial priority
 		double priority = Priority.ECONOMY_MIN;
 
-		// TaskUnitHandler used in almost all the ifs
-		TaskUnitHandler taskUnitHandler = mAlIce.getTaskUnitHandler();
-
 		if (unitDef.equals(Defs.FusionReactor.unitName)) {
 			// We want our energy to increase ENERGY_INCREMENT_START +
 			// linearIncrement each minute.
-			double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
-			double currentIncome = mAlIce.getResourceIncome(Defs.Energy) - Priority.ENERGY_INCOME_START;
+			double gameTime = world.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
+			double currentIncome = world.getResourceIncome(Defs.Energy) - Priority.ENERGY_INCOME_START;
 
 			// Only set priority if we are below the max for energy
 			if (currentIncome < Priority.ENERGY_INCOME_MAX) {
 				// Increase the income with the number of fusion reactors we're
 				// currently building
-				int cBuildingReactors = taskUnitHandler.getNrAllUnits(Defs.FusionReactor.unitName) -
-						taskUnitHandler.getNrFinishedUnits(Defs.FusionReactor.unitName);
+				int cBuildingReactors = world.getNrUnitsUnderConstruction(Defs.FusionReactor.defId);
 				currentIncome += cBuildingReactors * Priority.FUSION_INCOME;
 				double increment = Priority.ENERGY_INCREMENT_EXP * gameTime + Priority.ENERGY_INCREMENT_START;
 
@@ -960,12 +1128,11 @@ public class General implements ITaskObserver, IMessage {
 
 		} else if (unitDef.equals(Defs.MetalExtractor.unitName)) {
 			// Get how many there are free
-			ExtractionPointMap extMap = mAlIce.getExtractionPointMap();
-			int freeExtractionPoints = extMap.getNumberOfExtractionPoints(ExtractionPointMap.Owner.NONE);
+			int freeExtractionPoints = world.getNumberOfExtractionPoints(ExtractionPointMap.Owner.NONE);
 			if (freeExtractionPoints > 0) {
 				// Get how many we extraction point own
-				int ownedExtractionPoints = extMap.getNumberOfExtractionPoints(ExtractionPointMap.Owner.SELF);
-				int totalExtractionPoints = extMap.getNumberOfExtractionPoints(null);
+				int ownedExtractionPoints = world.getNumberOfExtractionPoints(ExtractionPointMap.Owner.SELF);
+				int totalExtractionPoints = world.getNumberOfExtractionPoints(null);
 
 				double partOwned = (double) ownedExtractionPoints / (double) totalExtractionPoints;
 				double multiplier = Priority.METAL_EXTRACTOR_PRIORITY;
@@ -980,7 +1147,7 @@ public class General implements ITaskObserver, IMessage {
 				// the number that's left.
 				else {
 					// Calculate how many that at least needs to be free
-					double freePartExtraction = (double) freeExtractionPoints / (double) extMap.getNumberOfExtractionPoints(null);
+					double freePartExtraction = (double) freeExtractionPoints / (double) world.getNumberOfExtractionPoints(null);
 
 					// If the number of free points or the part is higher than
 					// the minimum we calculate a multiplier. Else set to 0.
@@ -991,16 +1158,14 @@ public class General implements ITaskObserver, IMessage {
 				}
 
 				// We want our metal to increase METAL_INCREMENT each minute
-				double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
-				double currentIncome = mAlIce.getResourceIncome(Defs.Metal) - Priority.METAL_INCOME_START;
+				double gameTime = world.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
+				double currentIncome = world.getResourceIncome(Defs.Metal) - Priority.METAL_INCOME_START;
 
 				// Increase the income with the current metal extractors and
 				// metal makers we're currently building (use a value of 1 for
 				// each a.t.m.)
-				int cBuildingIncome = taskUnitHandler.getNrAllUnits(Defs.MetalExtractor.unitName) -
-						taskUnitHandler.getNrFinishedUnits(Defs.MetalExtractor.unitName) +
-						taskUnitHandler.getNrAllUnits(Defs.MetalMaker.unitName) -
-						taskUnitHandler.getNrFinishedUnits(Defs.MetalMaker.unitName);
+				int cBuildingIncome = world.getNrUnitsUnderConstruction(Defs.MetalExtractor.defId) +
+						world.getNrUnitsUnderConstruction(Defs.MetalMaker.defId);
 				currentIncome += cBuildingIncome;
 
 				double shouldHave = Priority.METAL_INCREMENT * gameTime;
@@ -1012,14 +1177,11 @@ public class General implements ITaskObserver, IMessage {
 		} else if (unitDef.equals(Defs.MetalMaker.unitName)) {
 			boolean addPriority = false;
 
-			// Get the number of free extraction points
-			ExtractionPointMap extMap = mAlIce.getExtractionPointMap();
-
 			// If there are some free extraction points, we might not build the
 			// extraction point.
-			if (extMap.getNumberOfExtractionPoints(Owner.NONE) > 0) {
-				int ownedExtractionPoints = extMap.getNumberOfExtractionPoints(ExtractionPointMap.Owner.SELF);
-				int totalExtractionPoints = extMap.getNumberOfExtractionPoints(null);
+			if (world.getNumberOfExtractionPoints(Owner.NONE) > 0) {
+				int ownedExtractionPoints = world.getNumberOfExtractionPoints(ExtractionPointMap.Owner.SELF);
+				int totalExtractionPoints = world.getNumberOfExtractionPoints(null);
 
 				double partOwned = (double) ownedExtractionPoints / (double) totalExtractionPoints;
 
@@ -1027,8 +1189,8 @@ public class General implements ITaskObserver, IMessage {
 				// But only if there are no free metal extractors
 				if (partOwned >= Priority.EXTRACTION_POINT_SHOULD_OWN) {
 					// Calculate how many that at least needs to be free
-					double freeExtractionPoints = mAlIce.getExtractionPointMap().getNumberOfExtractionPoints(Owner.NONE);
-					double freePartExtraction = (double) freeExtractionPoints / (double) extMap.getNumberOfExtractionPoints(null);
+					double freeExtractionPoints = world.getNumberOfExtractionPoints(Owner.NONE);
+					double freePartExtraction = (double) freeExtractionPoints / (double) world.getNumberOfExtractionPoints(null);
 
 					// If there are less extraction points free that we should
 					// need and the part is less than we need we should build a
@@ -1044,16 +1206,14 @@ public class General implements ITaskObserver, IMessage {
 
 			if (addPriority) {
 				// We want our metal to increase METAL_INCREMENT each minute
-				double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
-				double currentIncome = mAlIce.getResourceIncome(Defs.Metal) - Priority.METAL_INCOME_START;
+				double gameTime = world.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
+				double currentIncome = world.getResourceIncome(Defs.Metal) - Priority.METAL_INCOME_START;
 
 				// Increase the income with the current metal extractors and
 				// metal makers we're currently building (use a value of 1 for
 				// each a.t.m.)
-				int cBuildingIncome = taskUnitHandler.getNrAllUnits(Defs.MetalExtractor.unitName) -
-						taskUnitHandler.getNrFinishedUnits(Defs.MetalExtractor.unitName) +
-						taskUnitHandler.getNrAllUnits(Defs.MetalMaker.unitName) -
-						taskUnitHandler.getNrFinishedUnits(Defs.MetalMaker.unitName);
+				int cBuildingIncome = world.getNrUnitsUnderConstruction(Defs.MetalExtractor.defId) +
+						world.getNrUnitsUnderConstruction(Defs.MetalMaker.defId);
 				currentIncome += cBuildingIncome;
 
 				double shouldHave = Priority.METAL_INCREMENT * gameTime;
@@ -1066,8 +1226,8 @@ public class General implements ITaskObserver, IMessage {
 			priority -= Priority.METAL_MAKER_DECREMENT;
 
 		} else if (unitDef.equals(Defs.Storage.unitName)) {
-			double nrOfStorages = mAlIce.getTaskUnitHandler().getNrAllUnits(Defs.Storage.unitName);
-			double currentEnergyIncome = mAlIce.getResourceIncome(Defs.Energy);
+			double nrOfStorages = world.getNrAllUnits(Defs.Storage.defId);
+			double currentEnergyIncome = world.getResourceIncome(Defs.Energy);
 			double shouldHave = (currentEnergyIncome - Priority.ENERGY_INCOME_START) / Priority.ENERGY_PER_STORAGE;
 			double diffStorage = shouldHave - nrOfStorages;
 
@@ -1088,25 +1248,30 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitGroup
 	 *            the UnitGroup of the attack force unit to calculate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
+	 * @param attackForcePriorities
+	 *            the attack force priorities matrix
 	 * @return the current priority of the unit
 	 */
-	private double generateAttackForcePriority(UnitGroup unitGroup) {
+	private double generateAttackForcePriority(UnitGroup unitGroup, WorldSnapshot world,
+			HashMap<String, HashMap<String, Double>> attackForcePriorities) {
 		double priority = 0.0;
-		HashMap<String, Double> armorPriority = mAttackForcePriorities.get(unitGroup.armorType);
+		HashMap<String, Double> armorPriority = attackForcePriorities.get(unitGroup.armorType);
 		if (armorPriority != null) {
 			Double tempPrio = armorPriority.get(unitGroup.damageType);
 			if (tempPrio != null) {
 				priority += tempPrio;
 
 				// Decrement with the number of units
-				priority -= mAlIce.getTaskUnitHandler().getNrAllUnits(unitGroup.unitName) * Priority.ATTACK_FORCE_UNIT_DECREMENT;
+				priority -= world.getNrAllUnits(unitGroup.defId) * Priority.ATTACK_FORCE_UNIT_DECREMENT;
 			}
 		}
 
 		// Add extra priority for anti-air
 		if (unitGroup.canAttackAir) {
-			double antiAirUnits = mAlIce.getTaskUnitHandler().getNrAntiAirUnits();
-			double antiAirPrio = (mAlIce.getSightedEnemies().getFlyingHealth() / Priority.ANTI_AIR_PER_FLYING_HEALTH) -
+			double antiAirUnits = world.getNrAntiAirUnits();
+			double antiAirPrio = (world.getFlyingHealth() / Priority.ANTI_AIR_PER_FLYING_HEALTH) -
 					antiAirUnits;
 			antiAirPrio *= Priority.ANTI_AIR_MULTIPLIER;
 
@@ -1122,22 +1287,27 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitGroup
 	 *            the UnitGroup of the attack force unit to calculate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
+	 * @param armoredBuildingPriorities
+	 *            the armored building priorities
 	 * @return the current priority of the unit
 	 */
-	private double generateArmoredBuildingPriority(UnitGroup unitGroup) {
+	private double generateArmoredBuildingPriority(UnitGroup unitGroup, WorldSnapshot world,
+			HashMap<String, Double> armoredBuildingPriorities) {
 		double priority = Priority.ARMORED_BUILDING_PRIO_MIN;
-		Double tempPrio = mArmoredBuildingPriorities.get(unitGroup.damageType);
+		Double tempPrio = armoredBuildingPriorities.get(unitGroup.damageType);
 		if (tempPrio != null) {
 			priority += tempPrio;
 
 			// Decrement with the number of units
-			priority -= mAlIce.getTaskUnitHandler().getNrAllUnits(unitGroup.unitName);
+			priority -= world.getNrAllUnits(unitGroup.defId);
 		}
 
 		// Add extra priority for anti-air
 		if (unitGroup.canAttackAir) {
-			double antiAirUnits = mAlIce.getTaskUnitHandler().getNrAntiAirUnits();
-			double shouldHave = mAlIce.getSightedEnemies().getFlyingHealth() / Priority.ANTI_AIR_PER_FLYING_HEALTH;
+			double antiAirUnits = world.getNrAntiAirUnits();
+			double shouldHave = world.getFlyingHealth() / Priority.ANTI_AIR_PER_FLYING_HEALTH;
 			double antiAirPrio = shouldHave - antiAirUnits;
 
 			// Extra priority for copperhead
@@ -1165,14 +1335,16 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitDef
 	 *            the unit definition (name) of the unit to generate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
 	 * @return the current priority of the unit
 	 */
-	private double generateMobileBuilderPriority(String unitDef) {
+	private double generateMobileBuilderPriority(String unitDef, WorldSnapshot world) {
 		double priority = Priority.BUILDER_PRIORITY_MIN;
 
 		if (unitDef.equals(Defs.TheArchitectAir.unitName)) {
-			double builders = mAlIce.getTaskUnitHandler().getNrAllUnits(unitDef);
-			double gameTime = mAlIce.getGameTime(GameTimeTypes.MINUTES);
+			double builders = world.getNrAllUnits(unitDef);
+			double gameTime = world.getGameTime(GameTimeTypes.MINUTES);
 			double shouldHave = gameTime / Priority.BUILDER_MINUTES_PER_FLYING;
 			double diffBuilders = shouldHave - builders;
 
@@ -1188,13 +1360,15 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitDef
 	 *            the unit definition (name) of the unit to generate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
 	 * @return the current priority of the unit
 	 */
-	private double generateFactoryPriority(String unitDef) {
+	private double generateFactoryPriority(String unitDef, WorldSnapshot world) {
 		double priority = Priority.BUILDER_PRIORITY_MIN;
 
-		double gameTime = mAlIce.getGameTime(GameTimeTypes.MINUTES);
-		double factories = mAlIce.getTaskUnitHandler().getNrAllUnits(unitDef);
+		double gameTime = world.getGameTime(GameTimeTypes.MINUTES);
+		double factories = world.getNrAllUnits(unitDef);
 		double shouldHave = gameTime / Priority.FACTORY_MINUTES_PER;
 		double diffBuilders = shouldHave - factories;
 
@@ -1217,7 +1391,6 @@ public class General implements ITaskObserver, IMessage {
 	private void adjustBuilderPriorities() {
 		UnitPriority unitPriority = mUnitPriorities.get(0);
 
-		double gameTime = mAlIce.getGameTimeSinceInitialBuild(GameTimeTypes.SECONDS);
 		boolean buildBuilder = false;
 		// If we have much metal
 		if (mAlIce.getResourceCurrent(Defs.Metal) >= Priority.BUILDER_NEW_MIN_METAL) {
@@ -1225,7 +1398,7 @@ public class General implements ITaskObserver, IMessage {
 		} else {
 			boolean canBuildHighestPriority = false;
 			for (TaskUnit taskUnit : mAlIce.getTaskUnitHandler().getUnitsByGroup(Defs.UnitGroup.BUILDER)) {
-				if (SpringHelper.canBuild(taskUnit.getDef(), unitPriority.unitGroup.unitName) != null) {
+				if (mAlIce.getUnitDefCatalog().canBuild(taskUnit.getDef(), unitPriority.unitGroup.unitName) != null) {
 					canBuildHighestPriority = true;
 					break;
 				}
@@ -1238,9 +1411,9 @@ public class General implements ITaskObserver, IMessage {
 
 		if (buildBuilder) {
 			// Check so that we didn't build this builder too long ago
-			Double lastForceBuild = mLastBuilderForceBuilds.get(unitPriority.unitGroup.unitName);
+			TimerWheel.Timer forceBuildTimer = mBuilderForceBuildTimers.get(unitPriority.unitGroup.unitName);
 
-			if (lastForceBuild == null || lastForceBuild + Priority.BUILDER_WAIT_TIME < gameTime) {
+			if (forceBuildTimer == null || !forceBuildTimer.isActive()) {
 				// Find the builder in the priority queue
 				ListIterator<UnitPriority> it = mUnitPriorities.listIterator();
 				boolean foundBuilder = false;
@@ -1248,7 +1421,7 @@ public class General implements ITaskObserver, IMessage {
 					// Only check builders
 					UnitPriority builderUnitPriority = it.next();
 					if (builderUnitPriority.unitGroup.groups.getFirst().equals(Defs.UnitGroup.BUILDER) &&
-							SpringHelper.canBuild(builderUnitPriority.unitGroup.unitDef, unitPriority.unitGroup.unitName) != null) {
+							mAlIce.getUnitDefCatalog().canBuild(builderUnitPriority.unitGroup.unitDef, unitPriority.unitGroup.unitName) != null) {
 						// set the priority for this unit to FORCE_BUILD
 						builderUnitPriority.priority = Priority.FORCE_BUILD;
 						foundBuilder = true;
@@ -1256,7 +1429,8 @@ public class General implements ITaskObserver, IMessage {
 				}
 
 				if (foundBuilder) {
-					mLastBuilderForceBuilds.put(unitPriority.unitGroup.unitName, gameTime);
+					mBuilderForceBuildTimers.put(unitPriority.unitGroup.unitName, mAlIce.getTimerWheel().schedule(
+							SpringHelper.secondsToFrames(Priority.BUILDER_WAIT_TIME), this));
 
 					// Sort the priority list again
 					sortPrioList();
@@ -1271,12 +1445,14 @@ public class General implements ITaskObserver, IMessage {
 	 * @param unitDef
 	 *            the unit definition (name) of the unit to generate the
 	 *            priority for
+	 * @param world
+	 *            snapshot of the world
 	 * @return the current priority of the unit
 	 */
-	private double generateScoutPriority(String unitDef) {
+	private double generateScoutPriority(String unitDef, WorldSnapshot world) {
 		double priority = 0.0;
 
-		if (mAlIce.getTaskUnitHandler().getUnitsByGroup(Defs.UnitGroup.SCOUT).size() < (int) Priority.SCOUTS_MIN) {
+		if (world.getNrUnitsByGroup(Defs.UnitGroup.SCOUT) < (int) Priority.SCOUTS_MIN) {
 			priority = Priority.FORCE_BUILD;
 		}
 
@@ -1336,14 +1512,14 @@ public class General implements ITaskObserver, IMessage {
 			// Get the buildDef with the highest priority that they can build.
 			while (prioIt.hasNext() && buildDef == null) {
 				UnitPriority unitPriority = prioIt.next();
-				buildDef = SpringHelper.canBuild(freeBuilder.getDef(), unitPriority.unitGroup.unitName);
+				buildDef = mAlIce.getUnitDefCatalog().canBuild(freeBuilder.getDef(), unitPriority.unitGroup.unitName);
 			}
 		} while (buildDef == null && freeBuilderIt.hasNext());
 
 		// Build the unit if we found one
 		if (buildDef != null) {
 			// Special case for metal extraction points
-			if (buildDef.getName().equals(Defs.MetalExtractor.unitName)) {
+			if (buildDef.getUnitDefId() == Defs.MetalExtractor.defId) {
 				// Find closest free extraction point
 				AIFloat3 buildPos = mAlIce.getExtractionPointMap().getClosestExtractorByOwner(freeBuilder.getUnitPos(),
 						Owner.NONE);
@@ -1352,7 +1528,7 @@ public class General implements ITaskObserver, IMessage {
 					mAlIce.getTaskHandler().run(new TBuildUnitByUnitOnPos(mAlIce, buildDef.getName(), freeBuilder, buildPos),
 							null, freeBuilder, TaskPriority.MEDIUM);
 				} else {
-					mAlIce.log(Level.WARNING, "Could not find build position for metal extractor!");
+					mAlIce.log(LOG, Level.WARNING, "Could not find build position for metal extractor!");
 				}
 			} else {
 				// Create build task
@@ -1399,9 +1575,13 @@ public class General implements ITaskObserver, IMessage {
 	 */
 	private LinkedList<TAirAttack> mAirAttackAir;
 	/**
-	 * Last time we checked for merging
+	 * True when it's time to check for merging
+	 */
+	private boolean mMergeDue;
+	/**
+	 * Periodic timer for checking for merging
 	 */
-	private double mLastMergeTime;
+	private TimerWheel.Timer mMergeTimer;
 	/**
 	 * The current state we are in
 	 */
@@ -1443,25 +1623,40 @@ public class General implements ITaskObserver, IMessage {
 	 */
 	private Vector<UnitPriority> mUnitPriorities;
 	/**
-	 * The attack force priorities matrix
+	 * The attack force priorities matrix of the last applied priority job.
+	 * Only read and written on the engine thread.
 	 */
 	private HashMap<String, HashMap<String, Double>> mAttackForcePriorities;
 	/**
-	 * The last time we checked and sent attack command
+	 * True when it's time to check and send attack commands
 	 */
-	private double mLastAttackTime;
+	private boolean mAttackUpdateDue;
 	/**
-	 * The armored building priority list
+	 * Periodic timer for checking and sending attack commands
+	 */
+	private TimerWheel.Timer mAttackTimer;
+	/**
+	 * The armored building priority list of the last applied priority job.
+	 * Only read and written on the engine thread.
 	 */
 	private HashMap<String, Double> mArmoredBuildingPriorities;
 	/**
-	 * The last time we set a builder to FORCE_BUILD
+	 * Timers that are active while we wait to set a builder to FORCE_BUILD
+	 * again
+	 */
+	private HashMap<String, TimerWheel.Timer> mBuilderForceBuildTimers;
+	/**
+	 * True when it's time to generate priorities and delegate free builders
 	 */
-	private HashMap<String, Double> mLastBuilderForceBuilds;
+	private boolean mPriorityUpdateDue;
 	/**
-	 * The last time we updated iterated through a builder
+	 * Periodic timer for generating priorities and delegating free builders
 	 */
-	private double mLastPriorityTime;
+	private TimerWheel.Timer mPriorityTimer;
+	/**
+	 * True while the priorities are generated by the planner
+	 */
+	private boolean mPlanningPriorities;
 
 	/**
 	 * Unit priority of the a unit.
@@ -1505,4 +1700,100 @@ public class General implements ITaskObserver, IMessage {
 			}
 		}
 	}
+
+	/**
+	 * Generates the unit priorities on a planner thread and delegates build
+	 * tasks to the free builders when the priorities have been generated.
+	 * 
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private class PriorityJob implements IPlanJob {
+		/**
+		 * Constructor
+		 * 
+		 * @param world
+		 *            snapshot of the world to generate the priorities from
+		 */
+		PriorityJob(WorldSnapshot world) {
+			mWorld = world;
+			mPriorities = null;
+			mAttackForcePriorities = null;
+			mArmoredBuildingPriorities = null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see alice.interfaces.IPlanJob#plan()
+		 */
+		@Override
+		public void plan() {
+			mAttackForcePriorities = generateAttackForcePriorities(mWorld);
+			mArmoredBuildingPriorities = generateArmoredBuildingPriorities(mWorld);
+			mPriorities = generatePriorities(mWorld, mAttackForcePriorities, mArmoredBuildingPriorities);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see alice.interfaces.IPlanJob#apply()
+		 */
+		@Override
+		public void apply() {
+			mPlanningPriorities = false;
+			mUnitPriorities = mPriorities;
+			General.this.mAttackForcePriorities = mAttackForcePriorities;
+			General.this.mArmoredBuildingPriorities = mArmoredBuildingPriorities;
+
+			// The builders might have got something to do while planning
+			if (mFreeBuilders.isEmpty()) {
+				return;
+			}
+
+			adjustBuilderPriorities();
+			delegateBuildTaskToFreeBuilder();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see alice.interfaces.IPlanJob#planFailed(java.lang.Throwable)
+		 */
+		@Override
+		public void planFailed(Throwable e) {
+			mPlanningPriorities = false;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "PriorityJob(frame " + mWorld.getFrame() + ")";
+		}
+
+		/**
+		 * The world the priorities are generated from
+		 */
+		private WorldSnapshot mWorld;
+		/**
+		 * The generated priorities, null until planned
+		 */
+		private Vector<UnitPriority> mPriorities;
+		/**
+		 * The generated attack force priorities matrix, null until planned
+		 */
+		private HashMap<String, HashMap<String, Double>> mAttackForcePriorities;
+		/**
+		 * The generated armored building priorities, null until planned
+		 */
+		private HashMap<String, Double> mArmoredBuildingPriorities;
+	}
+
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(General.class);
 }
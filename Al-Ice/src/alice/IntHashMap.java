@@ -0,0 +1,299 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+/**
+ * A hash map with primitive int keys. Uses open addressing with linear probing
+ * so neither the keys are boxed nor any entries are allocated when looking up
+ * or inserting values. Null values are not allowed.
+ *
+ * Iterate through the map with getCapacity(), getKeyAt(), and getValueAt();
+ * slots without a value return null.
+ *
+ * @param <V>
+ *            the value type
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class IntHashMap<V> {
+
+	/**
+	 * Constructor, creates a map with the default capacity
+	 */
+	public IntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            the initial capacity, will be rounded up to a power of two
+	 */
+	public IntHashMap(int capacity) {
+		int realCapacity = MIN_CAPACITY;
+		while (realCapacity < capacity) {
+			realCapacity <<= 1;
+		}
+		mKeys = new int[realCapacity];
+		mValues = new Object[realCapacity];
+	}
+
+	/**
+	 * Returns the value of the specified key
+	 *
+	 * @param key
+	 *            the key to search for
+	 * @return the value, null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int mask = mKeys.length - 1;
+		int i = hash(key) & mask;
+		while (mValues[i] != null) {
+			if (mKeys[i] == key) {
+				return (V) mValues[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Puts a value into the map, replacing the old value if the key already
+	 * existed
+	 *
+	 * @param key
+	 *            the key of the value
+	 * @param value
+	 *            the value, must not be null
+	 * @return the old value, null if the key didn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("IntHashMap does not allow null values");
+		}
+
+		int mask = mKeys.length - 1;
+		int i = hash(key) & mask;
+		while (mValues[i] != null) {
+			if (mKeys[i] == key) {
+				V oldValue = (V) mValues[i];
+				mValues[i] = value;
+				return oldValue;
+			}
+			i = (i + 1) & mask;
+		}
+
+		mKeys[i] = key;
+		mValues[i] = value;
+		mcSize++;
+
+		// Keep the load factor at or below one half
+		if (mcSize * 2 > mKeys.length) {
+			resize(mKeys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the specified key from the map
+	 *
+	 * @param key
+	 *            the key to remove
+	 * @return the removed value, null if the key didn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int mask = mKeys.length - 1;
+		int i = hash(key) & mask;
+		while (mValues[i] != null) {
+			if (mKeys[i] == key) {
+				V oldValue = (V) mValues[i];
+				mValues[i] = null;
+				mcSize--;
+				shiftBack(i);
+				return oldValue;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all the values from the map, keeps the capacity
+	 */
+	public void clear() {
+		if (mcSize > 0) {
+			for (int i = 0; i < mValues.length; i++) {
+				mValues[i] = null;
+			}
+			mcSize = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of values in the map
+	 *
+	 * @return number of values in the map
+	 */
+	public int size() {
+		return mcSize;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 *
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return mcSize == 0;
+	}
+
+	/**
+	 * Returns the number of slots in the map, used for iterating through the
+	 * map together with getKeyAt() and getValueAt().
+	 *
+	 * @return number of slots in the map
+	 */
+	public int getCapacity() {
+		return mKeys.length;
+	}
+
+	/**
+	 * Returns the key of the specified slot. Only valid if getValueAt()
+	 * returns a value for the slot.
+	 *
+	 * @param slot
+	 *            the slot index
+	 * @return key of the slot
+	 */
+	public int getKeyAt(int slot) {
+		return mKeys[slot];
+	}
+
+	/**
+	 * Returns the value of the specified slot
+	 *
+	 * @param slot
+	 *            the slot index
+	 * @return value of the slot, null if the slot is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public V getValueAt(int slot) {
+		return (V) mValues[slot];
+	}
+
+	// ------------------------------------------------------------------------
+	// PRIVATE
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Spreads the bits of the key so that consecutive unit ids don't end up in
+	 * consecutive slots.
+	 *
+	 * @param key
+	 *            the key to hash
+	 * @return the hash of the key
+	 */
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Moves back the entries after a removed slot so that no probe chain is
+	 * broken by the empty slot.
+	 *
+	 * @param emptySlot
+	 *            the slot that was emptied
+	 */
+	private void shiftBack(int emptySlot) {
+		int mask = mKeys.length - 1;
+		int empty = emptySlot;
+		int i = (empty + 1) & mask;
+		while (mValues[i] != null) {
+			int home = hash(mKeys[i]) & mask;
+			// Move the entry if its home slot isn't between the empty slot
+			// and its current slot (cyclically)
+			boolean move;
+			if (empty <= i) {
+				move = home <= empty || home > i;
+			} else {
+				move = home <= empty && home > i;
+			}
+
+			if (move) {
+				mKeys[empty] = mKeys[i];
+				mValues[empty] = mValues[i];
+				mValues[i] = null;
+				empty = i;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Resizes the map and rehashes all entries
+	 *
+	 * @param newCapacity
+	 *            the new capacity, must be a power of two
+	 */
+	private void resize(int newCapacity) {
+		int[] oldKeys = mKeys;
+		Object[] oldValues = mValues;
+		mKeys = new int[newCapacity];
+		mValues = new Object[newCapacity];
+
+		int mask = newCapacity - 1;
+		for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+			if (oldValues[oldSlot] != null) {
+				int i = hash(oldKeys[oldSlot]) & mask;
+				while (mValues[i] != null) {
+					i = (i + 1) & mask;
+				}
+				mKeys[i] = oldKeys[oldSlot];
+				mValues[i] = oldValues[oldSlot];
+			}
+		}
+	}
+
+	/**
+	 * Default capacity of the map
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+	/**
+	 * Minimum capacity of the map
+	 */
+	private static final int MIN_CAPACITY = 8;
+	/**
+	 * The keys of the slots
+	 */
+	private int[] mKeys;
+	/**
+	 * The values of the slots, null if the slot is empty
+	 */
+	private Object[] mValues;
+	/**
+	 * Number of values in the map
+	 */
+	private int mcSize;
+}
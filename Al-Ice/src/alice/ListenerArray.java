@@ -0,0 +1,115 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.lang.reflect.Array;
+
+/**
+ * A dense array of listeners of one event interface. Adding and removing
+ * listeners replaces the array, which means that the array returned by
+ * getListeners() can safely be iterated even if a listener adds or removes
+ * listeners while the event is dispatched. The iteration still calls the
+ * listeners of the array it got, i.e. a listener that is removed during the
+ * dispatch may still be called for that event.
+ *
+ * @param <T>
+ *            the listener interface
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class ListenerArray<T> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param listenerClass
+	 *            the class of the listener interface, used for creating the
+	 *            typed arrays
+	 */
+	@SuppressWarnings("unchecked")
+	public ListenerArray(Class<T> listenerClass) {
+		mListenerClass = listenerClass;
+		mListeners = (T[]) Array.newInstance(listenerClass, 0);
+	}
+
+	/**
+	 * Adds a listener to the end of the array. Does not check for duplicates.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	@SuppressWarnings("unchecked")
+	public void add(T listener) {
+		T[] listeners = (T[]) Array.newInstance(mListenerClass, mListeners.length + 1);
+		System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+		listeners[mListeners.length] = listener;
+		mListeners = listeners;
+	}
+
+	/**
+	 * Removes the first occurrence of the listener
+	 *
+	 * @param listener
+	 *            the listener to remove
+	 * @return true if the listener was found and removed
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean remove(T listener) {
+		for (int i = 0; i < mListeners.length; i++) {
+			if (mListeners[i] == listener) {
+				T[] listeners = (T[]) Array.newInstance(mListenerClass, mListeners.length - 1);
+				System.arraycopy(mListeners, 0, listeners, 0, i);
+				System.arraycopy(mListeners, i + 1, listeners, i, mListeners.length - i - 1);
+				mListeners = listeners;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the current listeners. The returned array is never modified,
+	 * do not modify it yourself either.
+	 *
+	 * @return array with the current listeners
+	 */
+	public T[] getListeners() {
+		return mListeners;
+	}
+
+	/**
+	 * Returns true if there are no listeners
+	 *
+	 * @return true if there are no listeners
+	 */
+	public boolean isEmpty() {
+		return mListeners.length == 0;
+	}
+
+	/**
+	 * The listener interface, used for creating the typed arrays
+	 */
+	private Class<T> mListenerClass;
+	/**
+	 * The current listeners
+	 */
+	private T[] mListeners;
+}
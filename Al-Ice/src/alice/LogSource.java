@@ -0,0 +1,119 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+/**
+ * The source of a log message. Every class that logs has one static LogSource
+ * that it passes to AlIce.log(), that way we know where the message came from
+ * without walking the stack.
+ *
+ * The messages can contain {} placeholders that are replaced by the
+ * arguments, in order, but only if the message is actually logged.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class LogSource {
+
+	/**
+	 * Constructor
+	 *
+	 * @param sourceClass
+	 *            the class that logs the messages
+	 */
+	public LogSource(Class<?> sourceClass) {
+		mName = sourceClass.getName();
+	}
+
+	/**
+	 * Returns the name of the source
+	 *
+	 * @return name of the source, i.e. the full class name
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return mName;
+	}
+
+	/**
+	 * Replaces all {} placeholders in the message with the arguments. If
+	 * there are more placeholders than arguments the remaining placeholders
+	 * are left as is.
+	 *
+	 * @param message
+	 *            the message with placeholders
+	 * @param args
+	 *            the arguments, may be null
+	 * @return the formatted message
+	 */
+	public static String format(String message, Object[] args) {
+		return format(message, args, args != null ? args.length : 0);
+	}
+
+	/**
+	 * Replaces the {} placeholders in the message with the first arguments of
+	 * the array.
+	 *
+	 * @param message
+	 *            the message with placeholders
+	 * @param args
+	 *            the arguments, may be null if argCount is 0
+	 * @param argCount
+	 *            number of arguments to use from args
+	 * @return the formatted message
+	 */
+	public static String format(String message, Object[] args, int argCount) {
+		if (argCount == 0) {
+			return message;
+		}
+
+		StringBuilder builder = new StringBuilder(message.length() + 16 * argCount);
+		int argIndex = 0;
+		int start = 0;
+		int placeholder = message.indexOf(PLACEHOLDER);
+		while (placeholder != -1 && argIndex < argCount) {
+			builder.append(message, start, placeholder);
+			builder.append(String.valueOf(args[argIndex]));
+			argIndex++;
+			start = placeholder + PLACEHOLDER.length();
+			placeholder = message.indexOf(PLACEHOLDER, start);
+		}
+		builder.append(message, start, message.length());
+
+		return builder.toString();
+	}
+
+	/**
+	 * The placeholder for arguments
+	 */
+	private static final String PLACEHOLDER = "{}";
+	/**
+	 * Name of the source
+	 */
+	private final String mName;
+}
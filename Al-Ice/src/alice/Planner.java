@@ -0,0 +1,281 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import alice.interfaces.IPlanJob;
+
+/**
+ * Runs pure computations (plan jobs) on a small pool of background threads so
+ * that the engine thread only has to talk to the engine. A job gets an
+ * immutable copy of the data it needs when it is created on the engine
+ * thread, and its result is handed back through a lock-free queue and
+ * applied on the engine thread in the next update().
+ *
+ * The planner threads never call the engine, since the engine may only be
+ * called from the engine thread. If the system property alice.checkthreads is
+ * set every call to the engine is checked, see EngineThreadGuard.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class Planner {
+
+	/**
+	 * Constructor, must be called from the engine thread
+	 *
+	 * @param alIce
+	 *            the AI interface
+	 * @param cThreads
+	 *            number of planner threads
+	 */
+	Planner(AlIce alIce, int cThreads) {
+		mAlIce = alIce;
+		mEngineThread = Thread.currentThread();
+		mFinished = new ConcurrentLinkedQueue<Result>();
+		mExecutor = Executors.newFixedThreadPool(cThreads, new PlannerThreadFactory(alIce.getTeamId()));
+	}
+
+	/**
+	 * Plans the job on a planner thread, the result is applied in a later
+	 * update(). Must be called from the engine thread.
+	 *
+	 * @param job
+	 *            the job to plan
+	 */
+	public void submit(final IPlanJob job) {
+		checkEngineThread();
+		mcSubmitted++;
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Result result = new Result(job);
+				// Catch errors too, every job has to post a result or its
+				// owner waits for it forever
+				try {
+					job.plan();
+				} catch (Throwable e) {
+					result.mException = e;
+				}
+				mFinished.add(result);
+			}
+		});
+	}
+
+	/**
+	 * Applies all the jobs that have been planned since the last update.
+	 * Called every frame from the engine thread.
+	 */
+	void update() {
+		checkEngineThread();
+		Result result = mFinished.poll();
+		while (result != null) {
+			if (result.mException == null) {
+				mcApplied++;
+				result.mJob.apply();
+			} else {
+				mcFailed++;
+				mAlIce.log(LOG, Level.SEVERE, "Planning {} failed: {}", result.mJob, result.mException);
+				for (StackTraceElement element : result.mException.getStackTrace()) {
+					mAlIce.log(LOG, Level.SEVERE, element.toString());
+				}
+				result.mJob.planFailed(result.mException);
+			}
+			result = mFinished.poll();
+		}
+	}
+
+	/**
+	 * Stops the planner threads, jobs that haven't been applied are dropped
+	 */
+	void shutdown() {
+		mExecutor.shutdownNow();
+		mFinished.clear();
+	}
+
+	/**
+	 * Checks if the current thread is the engine thread
+	 *
+	 * @return true if called from the engine thread
+	 */
+	public boolean isEngineThread() {
+		return Thread.currentThread() == mEngineThread;
+	}
+
+	/**
+	 * Returns the number of submitted jobs
+	 *
+	 * @return number of submitted jobs
+	 */
+	public long getSubmitted() {
+		return mcSubmitted;
+	}
+
+	/**
+	 * Returns the number of jobs that have been applied
+	 *
+	 * @return number of applied jobs
+	 */
+	public long getApplied() {
+		return mcApplied;
+	}
+
+	/**
+	 * Returns the number of jobs that failed while planning
+	 *
+	 * @return number of failed jobs
+	 */
+	public long getFailed() {
+		return mcFailed;
+	}
+
+	/**
+	 * Returns the number of jobs that are planned or waiting to be applied
+	 *
+	 * @return number of pending jobs
+	 */
+	public long getPending() {
+		return mcSubmitted - mcApplied - mcFailed;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Throws if not called from the engine thread. The jobs are submitted and
+	 * applied on the engine thread, thus the jobs' results never have to be
+	 * synchronized.
+	 */
+	private void checkEngineThread() {
+		if (!isEngineThread()) {
+			throw new IllegalStateException("Planner used from thread " + Thread.currentThread().getName() +
+					", only the engine thread may submit and apply jobs");
+		}
+	}
+
+	/**
+	 * A planned job waiting to be applied
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class Result {
+		/**
+		 * Constructor
+		 *
+		 * @param job
+		 *            the planned job
+		 */
+		public Result(IPlanJob job) {
+			mJob = job;
+			mException = null;
+		}
+
+		/**
+		 * The planned job
+		 */
+		public IPlanJob mJob;
+		/**
+		 * The exception or error thrown while planning, null if the planning
+		 * succeeded
+		 */
+		public Throwable mException;
+	}
+
+	/**
+	 * Creates named daemon threads, so that the planner never keeps the engine
+	 * from exiting
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class PlannerThreadFactory implements ThreadFactory {
+		/**
+		 * Constructor
+		 *
+		 * @param teamId
+		 *            the team of the AI, used in the thread names
+		 */
+		public PlannerThreadFactory(int teamId) {
+			mTeamId = teamId;
+			mcThreads = 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		@Override
+		public Thread newThread(Runnable runnable) {
+			mcThreads++;
+			Thread thread = new Thread(runnable, "AlIce-" + mTeamId + "-planner-" + mcThreads);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+		/**
+		 * The team of the AI
+		 */
+		private int mTeamId;
+		/**
+		 * Number of created threads
+		 */
+		private int mcThreads;
+	}
+
+	/**
+	 * The AI interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * The thread that calls the AI, i.e. the only thread that may call the
+	 * engine
+	 */
+	private Thread mEngineThread;
+	/**
+	 * The planner threads
+	 */
+	private ExecutorService mExecutor;
+	/**
+	 * Jobs that have been planned but not applied, filled by the planner
+	 * threads and emptied by the engine thread
+	 */
+	private ConcurrentLinkedQueue<Result> mFinished;
+	/**
+	 * Number of submitted jobs
+	 */
+	private long mcSubmitted;
+	/**
+	 * Number of applied jobs
+	 */
+	private long mcApplied;
+	/**
+	 * Number of jobs that failed while planning
+	 */
+	private long mcFailed;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(Planner.class);
+}
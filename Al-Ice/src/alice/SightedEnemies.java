@@ -32,8 +32,6 @@ import alice.interfaces.IEnemyEnterLOS;
 
 import com.springrts.ai.AIFloat3;
 import com.springrts.ai.oo.Unit;
-import com.springrts.ai.oo.WeaponDef;
-import com.springrts.ai.oo.WeaponMount;
 
 /**
  * 
@@ -147,19 +145,21 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 		Enemy existingEnemy = mAllEnemies.remove(enemy.getUnitId());
 		// Only remove it if we have added it. existingEnemy will be null
 		// if we destroyed the enemy before we have seen it (e.g. nuke).
-		mAlIce.log(Level.FINE, "Killed unit: " + enemy.getDef().getName());
+		if (mAlIce.isLoggable(Level.FINE)) {
+			mAlIce.log(LOG, Level.FINE, "Killed unit: {}", enemy.getDef().getName());
+		}
 		if (existingEnemy != null && !existingEnemy.mUnitGroup.groups.isEmpty()) {
 			HashMap<Integer, Enemy> enemyGroup = mEnemyGroups.get(existingEnemy.mUnitGroup.groups.getFirst());
 			if (enemyGroup != null) {
 				enemyGroup.remove(enemy.getUnitId());
 				removeEnemy(existingEnemy);
 			} else {
-				mAlIce.log(Level.SEVERE, "Enemy group was null. Should never happen!");
+				mAlIce.log(LOG, Level.SEVERE, "Enemy group was null. Should never happen!");
 			}
 
 		} else if (existingEnemy != null && existingEnemy.mUnitGroup.groups.isEmpty()) {
 
-			mAlIce.log(Level.SEVERE, "Group is empty: " + existingEnemy.mUnitGroup.unitName);
+			mAlIce.log(LOG, Level.SEVERE, "Group is empty: {}", existingEnemy.mUnitGroup.unitName);
 		}
 	}
 
@@ -182,8 +182,8 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 			Enemy currentEnemy = it.next().getValue();
 			boolean isAbleToFly = false;
 			if (currentEnemy.mUnitGroup != null) {
-				if (currentEnemy.mUnitGroup.unitDef != null) {
-					isAbleToFly = currentEnemy.mUnitGroup.unitDef.isAbleToFly();
+				if (currentEnemy.mUnitGroup.defInfo != null) {
+					isAbleToFly = currentEnemy.mUnitGroup.defInfo.ableToFly;
 				}
 			}
 
@@ -287,16 +287,17 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 	 */
 	private void createEnemy(Unit enemy) {
 		// Get the enemy's group
-		UnitGroup unitGroup = Defs.getUnitGroup(enemy.getDef().getName());
+		UnitDefCatalog.DefInfo defInfo = mAlIce.getUnitDefCatalog().get(enemy.getDef());
+		UnitGroup unitGroup = defInfo != null ? defInfo.unitGroup : null;
 		if (unitGroup == null) {
-			mAlIce.log(Level.FINE, "The enemy's unitGroup is null! WTH!?");
-			mAlIce.log(Level.FINE, "The retarded enemy is a: " + enemy.getDef().getName());
+			mAlIce.log(LOG, Level.FINE, "The enemy's unitGroup is null! WTH!?");
+			mAlIce.log(LOG, Level.FINE, "The retarded enemy is a: {}", enemy.getDef().getName());
 		}
 		Enemy newEnemy = new Enemy(enemy.getPos(), unitGroup, enemy.getMaxHealth());
 		mAllEnemies.put(enemy.getUnitId(), newEnemy);
 
 		// Put the enemy's health into flying if it's flying
-		if (enemy.getDef().isAbleToFly()) {
+		if (defInfo != null && defInfo.ableToFly) {
 			mFlyingHealth += enemy.getMaxHealth();
 		}
 
@@ -313,12 +314,7 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 			enemyGroup.put(enemy.getUnitId(), newEnemy);
 
 			// Get the dps of the unit
-			List<WeaponMount> weaponMounts = newEnemy.mUnitGroup.unitDef.getWeaponMounts();
-			if (!weaponMounts.isEmpty()) {
-				WeaponDef weaponDef = weaponMounts.get(0).getWeaponDef();
-				List<Float> types = weaponDef.getDamage().getTypes();
-				newEnemy.mDps = (double) types.get(0) / weaponDef.getReload();
-			}
+			newEnemy.mDps = (double) newEnemy.mUnitGroup.defInfo.dps;
 
 			// Add the health to the armor type of it's groups
 			for (String groupType : newEnemy.mUnitGroup.groups) {
@@ -358,7 +354,7 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 	 */
 	public void removeEnemy(Enemy enemy) {
 		// If the enemy is flying remove it's health from flying
-		if (enemy.mUnitGroup.unitDef.isAbleToFly()) {
+		if (enemy.mUnitGroup.defInfo.ableToFly) {
 			mFlyingHealth -= enemy.mMaxHealth;
 		}
 
@@ -473,5 +469,9 @@ public class SightedEnemies implements IEnemyDestroyed, IEnemyEnterLOS {
 		 */
 		private UnitGroup mUnitGroup;
 	}
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(SightedEnemies.class);
 
 }
@@ -19,10 +19,7 @@
 
 package alice;
 
-import java.util.List;
-
 import com.springrts.ai.AIFloat3;
-import com.springrts.ai.oo.UnitDef;
 
 /**
  * Various help methods used for Spring methods.
@@ -99,30 +96,6 @@ public class SpringHelper {
 	 */
 	public static final double MINUTES_PER_FRAME = SECONDS_PER_FRAME / 60.0;
 
-	/**
-	 * Returns the UnitDef of the buildDef if we can build it, else null.
-	 * 
-	 * @param unitDef
-	 *            The builder
-	 * @param buildDef
-	 *            The definition of the building/unit that should be created
-	 * @return UnitDef of the buildDef if we can build it, else null.
-	 */
-	public static UnitDef canBuild(UnitDef unitDef, String buildDef) {
-
-		// Check if the builder can build the specified unit
-		if (unitDef != null) {
-			List<UnitDef> buildOptions = unitDef.getBuildOptions();
-			for (UnitDef def : buildOptions) {
-				if (buildDef.equals(def.getName())) {
-					return def;
-				}
-			}
-		}
-		return null;
-
-	}
-
 	/**
 	 * Convert unit coordinate to map coordinate (1 -> 1/8)
 	 * 
@@ -204,6 +177,17 @@ public class SpringHelper {
 		return radius * 64;
 	}
 
+	/**
+	 * Converts seconds to frames
+	 * 
+	 * @param seconds
+	 *            the number of seconds
+	 * @return the number of frames, rounded to the closest frame
+	 */
+	public static int secondsToFrames(double seconds) {
+		return (int) Math.round(seconds / SECONDS_PER_FRAME);
+	}
+
 	/**
 	 * Returns a new AIFloat3 containing the difference between the two vectors
 	 * 
@@ -0,0 +1,380 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.ArrayList;
+
+import alice.interfaces.IEnemyEvents;
+import alice.interfaces.IListener;
+import alice.interfaces.ITimerListener;
+import alice.interfaces.IUnitEvents;
+import alice.tasks.Task;
+
+/**
+ * The event listeners and timers of a task. Everything that is added through
+ * the subscriptions is removed when the task handler removes the task, i.e.
+ * when the task finishes or is removed, so a task can't forget to remove its
+ * listeners. Adding the same listener twice only adds it once.
+ *
+ * The task handler counts the live subscriptions by task type, see "get
+ * subscriptions". One-shot timers that have expired are counted until the
+ * next timer is scheduled or the subscriptions are released.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class Subscriptions {
+
+	/**
+	 * Constructor
+	 *
+	 * @param alIce
+	 *            the AI interface
+	 * @param owner
+	 *            the task that owns the subscriptions
+	 */
+	public Subscriptions(AlIce alIce, Task owner) {
+		mAlIce = alIce;
+		mOwner = owner;
+		mSubscriptions = new ArrayList<Subscription>(2);
+	}
+
+	/**
+	 * Adds an event listener, see AlIce.addEventListener()
+	 *
+	 * @param listener
+	 *            the event listener
+	 */
+	public void addEventListener(IListener listener) {
+		if (find(Type.EVENTS, 0, listener) == -1) {
+			mAlIce.addEventListener(listener);
+			add(new Subscription(Type.EVENTS, 0, listener));
+		}
+	}
+
+	/**
+	 * Removes an event listener before the task is removed
+	 *
+	 * @param listener
+	 *            the event listener
+	 */
+	public void removeEventListener(IListener listener) {
+		remove(find(Type.EVENTS, 0, listener));
+	}
+
+	/**
+	 * Adds a unit event listener, see AlIce.addUnitEventListener()
+	 *
+	 * @param unitId
+	 *            the id of the unit to listen to
+	 * @param listener
+	 *            the event listener
+	 */
+	public void addUnitEventListener(int unitId, IUnitEvents listener) {
+		if (find(Type.UNIT, unitId, listener) == -1) {
+			mAlIce.addUnitEventListener(unitId, listener);
+			add(new Subscription(Type.UNIT, unitId, listener));
+		}
+	}
+
+	/**
+	 * Removes a unit event listener before the task is removed
+	 *
+	 * @param unitId
+	 *            the id of the unit
+	 * @param listener
+	 *            the event listener
+	 */
+	public void removeUnitEventListener(int unitId, IUnitEvents listener) {
+		remove(find(Type.UNIT, unitId, listener));
+	}
+
+	/**
+	 * Adds an enemy event listener, see AlIce.addEnemyEventListener()
+	 *
+	 * @param enemyId
+	 *            the id of the enemy to listen to
+	 * @param listener
+	 *            the event listener
+	 */
+	public void addEnemyEventListener(int enemyId, IEnemyEvents listener) {
+		if (find(Type.ENEMY, enemyId, listener) == -1) {
+			mAlIce.addEnemyEventListener(enemyId, listener);
+			add(new Subscription(Type.ENEMY, enemyId, listener));
+		}
+	}
+
+	/**
+	 * Removes an enemy event listener before the task is removed
+	 *
+	 * @param enemyId
+	 *            the id of the enemy
+	 * @param listener
+	 *            the event listener
+	 */
+	public void removeEnemyEventListener(int enemyId, IEnemyEvents listener) {
+		remove(find(Type.ENEMY, enemyId, listener));
+	}
+
+	/**
+	 * Schedules a one-shot timer, see TimerWheel.schedule()
+	 *
+	 * @param frames
+	 *            number of frames until the timer expires
+	 * @param listener
+	 *            gets called when the timer expires
+	 * @return the timer
+	 */
+	public TimerWheel.Timer schedule(int frames, ITimerListener listener) {
+		removeExpiredTimers();
+		TimerWheel.Timer timer = mAlIce.getTimerWheel().schedule(frames, listener);
+		add(new Subscription(timer));
+		return timer;
+	}
+
+	/**
+	 * Schedules a periodic timer, see TimerWheel.schedulePeriodic()
+	 *
+	 * @param period
+	 *            number of frames between the expirations
+	 * @param listener
+	 *            gets called every time the timer expires
+	 * @return the timer
+	 */
+	public TimerWheel.Timer schedulePeriodic(int period, ITimerListener listener) {
+		removeExpiredTimers();
+		TimerWheel.Timer timer = mAlIce.getTimerWheel().schedulePeriodic(period, listener);
+		add(new Subscription(timer));
+		return timer;
+	}
+
+	/**
+	 * Cancels a timer before the task is removed
+	 *
+	 * @param timer
+	 *            the timer to cancel, may be null
+	 */
+	public void cancel(TimerWheel.Timer timer) {
+		if (timer == null) {
+			return;
+		}
+
+		for (int i = 0; i < mSubscriptions.size(); i++) {
+			if (mSubscriptions.get(i).mTimer == timer) {
+				remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes all the listeners and cancels all the timers. Called by the task
+	 * handler when the task is removed.
+	 */
+	public void releaseAll() {
+		for (int i = mSubscriptions.size() - 1; i >= 0; i--) {
+			remove(i);
+		}
+	}
+
+	/**
+	 * Returns the number of live subscriptions
+	 *
+	 * @return number of subscriptions
+	 */
+	public int size() {
+		return mSubscriptions.size();
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Adds the subscription and counts it
+	 *
+	 * @param subscription
+	 *            the subscription to add
+	 */
+	private void add(Subscription subscription) {
+		mSubscriptions.add(subscription);
+		mAlIce.getTaskHandler().countSubscriptions(mOwner, 1);
+	}
+
+	/**
+	 * Unsubscribes and removes the subscription at the index
+	 *
+	 * @param index
+	 *            index of the subscription, does nothing if -1
+	 */
+	private void remove(int index) {
+		if (index == -1) {
+			return;
+		}
+
+		// Swap in the last subscription, the order doesn't matter
+		Subscription subscription = mSubscriptions.get(index);
+		int last = mSubscriptions.size() - 1;
+		mSubscriptions.set(index, mSubscriptions.get(last));
+		mSubscriptions.remove(last);
+		mAlIce.getTaskHandler().countSubscriptions(mOwner, -1);
+
+		switch (subscription.mType) {
+		case EVENTS:
+			mAlIce.removeEventListener((IListener) subscription.mListener);
+			break;
+
+		case UNIT:
+			mAlIce.removeUnitEventListener(subscription.mId, (IUnitEvents) subscription.mListener);
+			break;
+
+		case ENEMY:
+			mAlIce.removeEnemyEventListener(subscription.mId, (IEnemyEvents) subscription.mListener);
+			break;
+
+		case TIMER:
+			mAlIce.getTimerWheel().cancel(subscription.mTimer);
+			break;
+		}
+	}
+
+	/**
+	 * Finds a listener subscription
+	 *
+	 * @param type
+	 *            the type of the subscription
+	 * @param id
+	 *            the unit or enemy id, 0 for event listeners
+	 * @param listener
+	 *            the listener
+	 * @return index of the subscription, -1 if not found
+	 */
+	private int find(Type type, int id, Object listener) {
+		for (int i = 0; i < mSubscriptions.size(); i++) {
+			Subscription subscription = mSubscriptions.get(i);
+			if (subscription.mType == type && subscription.mId == id && subscription.mListener == listener) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the one-shot timers that have expired
+	 */
+	private void removeExpiredTimers() {
+		for (int i = mSubscriptions.size() - 1; i >= 0; i--) {
+			Subscription subscription = mSubscriptions.get(i);
+			if (subscription.mType == Type.TIMER && !subscription.mTimer.isActive()) {
+				remove(i);
+			}
+		}
+	}
+
+	/**
+	 * The types of subscriptions
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private enum Type {
+		/**
+		 * Event listener added with AlIce.addEventListener()
+		 */
+		EVENTS,
+		/**
+		 * Unit event listener
+		 */
+		UNIT,
+		/**
+		 * Enemy event listener
+		 */
+		ENEMY,
+		/**
+		 * Timer in the timer wheel
+		 */
+		TIMER
+	}
+
+	/**
+	 * A listener or timer
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class Subscription {
+		/**
+		 * Constructor for listeners
+		 *
+		 * @param type
+		 *            type of the subscription
+		 * @param id
+		 *            the unit or enemy id, 0 for event listeners
+		 * @param listener
+		 *            the listener
+		 */
+		public Subscription(Type type, int id, Object listener) {
+			mType = type;
+			mId = id;
+			mListener = listener;
+			mTimer = null;
+		}
+
+		/**
+		 * Constructor for timers
+		 *
+		 * @param timer
+		 *            the timer
+		 */
+		public Subscription(TimerWheel.Timer timer) {
+			mType = Type.TIMER;
+			mId = 0;
+			mListener = null;
+			mTimer = timer;
+		}
+
+		/**
+		 * Type of the subscription
+		 */
+		public Type mType;
+		/**
+		 * The unit or enemy id
+		 */
+		public int mId;
+		/**
+		 * The listener, null for timers
+		 */
+		public Object mListener;
+		/**
+		 * The timer, null for listeners
+		 */
+		public TimerWheel.Timer mTimer;
+	}
+
+	/**
+	 * The AI interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * The task that owns the subscriptions
+	 */
+	private Task mOwner;
+	/**
+	 * The live subscriptions
+	 */
+	private ArrayList<Subscription> mSubscriptions;
+}
@@ -19,11 +19,15 @@
 
 package alice;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 import java.util.logging.Level;
 
-import alice.General.GameTimeTypes;
 import alice.interfaces.ITaskObserver;
 import alice.tasks.Task;
 import alice.tasks.Task.Status;
@@ -31,6 +35,22 @@ import alice.tasks.Task.Status;
 /**
  * A class that handles all active and halted tasks
  * 
+ * Every task's entry is indexed by the task's identity and the entry itself
+ * knows if the task is active or halted. The entries of each state are linked
+ * together through the entries, thus adding, halting, resuming, removing and
+ * (un)binding a task takes constant time no matter how many tasks there are.
+ * 
+ * Active tasks are scheduled in a priority queue by the frame they should be
+ * executed next. Each task decides how often it's executed, see
+ * Task.getNextExecuteFrame(). Parked tasks aren't scheduled at all until they
+ * are woken, see Task.park(). At most Defs.TASK_MAX_EXECUTIONS_PER_FRAME tasks
+ * are executed each frame, tasks that didn't fit are executed first the next
+ * frame. When the frame budget is exhausted only tasks bound to a task unit
+ * with HIGH priority are executed, the rest are deferred to the next frame.
+ * 
+ * The task's subscriptions (listeners and timers, see Task.getSubscriptions())
+ * are released when the task is removed.
+ * 
  * @author Tobias Hall <kazzoa@gmail.com>
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
@@ -44,12 +64,15 @@ public class TaskHandler {
 	 */
 	TaskHandler(AlIce alIce) {
 		mAlIce = alIce;
-		mActiveTasks = new LinkedList<Entry>();
-		mHaltedTasks = new LinkedList<Entry>();
-		mRecentlyHaltedTasks = new LinkedList<Entry>();
-
-		mTotalTaskIteration = 0.0;
-		mSecondsPerTask = 0.0;
+		mEntries = new IdentityHashMap<Task, Entry>();
+		mActiveTasks = new EntryList();
+		mHaltedTasks = new EntryList();
+		mSchedule = new PriorityQueue<Entry>();
+		mHighSchedule = new PriorityQueue<Entry>();
+		mcScheduled = 0;
+		mLastDeferredFrame = -1;
+		mProfiler = new TaskProfiler(mAlIce);
+		mcSubscriptions = new TreeMap<String, Integer>();
 	}
 
 	/**
@@ -64,23 +87,17 @@ public class TaskHandler {
 	 */
 	public boolean run(Task task, ITaskObserver taskObserver) {
 
-		mAlIce.log(Level.FINE, "Added task: " + task);
-		// Search if the task is already in the active or halted task lists,
-		// return false if found
-		for (Entry entry : mActiveTasks) {
-			if (entry.mTask == task) {
-				return (false);
-			}
-		}
-		for (Entry entry : mHaltedTasks) {
-			if (entry.mTask == task) {
-				return (false);
-			}
+		mAlIce.log(LOG, Level.FINE, "Added task: {}", task);
+		// Return false if the task is already active or halted
+		if (mEntries.containsKey(task)) {
+			return false;
 		}
 
 		// The task does not already exists, add it to the active tasks
 		Entry entry = new Entry(task, taskObserver);
+		mEntries.put(task, entry);
 		mActiveTasks.add(entry);
+		schedule(entry, mAlIce.getCurrentFrame());
 
 		return true;
 	}
@@ -101,18 +118,10 @@ public class TaskHandler {
 	 */
 	public boolean run(Task task, ITaskObserver taskObserver, TaskUnit taskUnit, TaskUnit.TaskPriority taskPriority) {
 
-		mAlIce.log(Level.FINE, "Added task: " + task + ", Priority: " + taskPriority);
-		// Search if the task is already in the active or halted task lists,
-		// return false if found
-		for (Entry entry : mActiveTasks) {
-			if (entry.mTask == task) {
-				return (false);
-			}
-		}
-		for (Entry entry : mHaltedTasks) {
-			if (entry.mTask == task) {
-				return (false);
-			}
+		mAlIce.log(LOG, Level.FINE, "Added task: {}, Priority: {}", task, taskPriority);
+		// Return false if the task is already active or halted
+		if (mEntries.containsKey(task)) {
+			return false;
 		}
 
 		// The task does not already exists, add it to the active tasks
@@ -122,11 +131,14 @@ public class TaskHandler {
 		}
 		taskObservers.add(taskUnit);
 		Entry entry = new Entry(task, taskObservers);
+		entry.mPriority = taskPriority;
+		mEntries.put(task, entry);
 		mActiveTasks.add(entry);
+		schedule(entry, mAlIce.getCurrentFrame());
 
 		boolean ok = taskUnit.setTask(task, taskPriority);
 		if (!ok) {
-			mAlIce.log(Level.SEVERE, "Failed to set task in taskUnit");
+			mAlIce.log(LOG, Level.SEVERE, "Failed to set task in taskUnit");
 		}
 		return true;
 	}
@@ -148,18 +160,10 @@ public class TaskHandler {
 	public boolean run(Task highLevelTask, ITaskObserver taskObserver, LinkedList<TaskUnit> taskUnits,
 			TaskUnit.TaskPriority taskPriority) {
 
-		mAlIce.log(Level.FINE, "Added high level task: " + highLevelTask);
-		// Search if the task is already in the active or halted task lists,
-		// return false if found
-		for (Entry entry : mActiveTasks) {
-			if (entry.mTask == highLevelTask) {
-				return (false);
-			}
-		}
-		for (Entry entry : mHaltedTasks) {
-			if (entry.mTask == highLevelTask) {
-				return (false);
-			}
+		mAlIce.log(LOG, Level.FINE, "Added high level task: {}", highLevelTask);
+		// Return false if the task is already active or halted
+		if (mEntries.containsKey(highLevelTask)) {
+			return false;
 		}
 		// The task does not already exists, add it to the active tasks and add
 		// its observers
@@ -172,12 +176,16 @@ public class TaskHandler {
 			taskObservers.add(taskUnit);
 			boolean ok = taskUnit.setHighLevelTask(highLevelTask);
 			if (!ok) {
-				mAlIce.log(Level.SEVERE, "Failed to set task in taskUnit: " + taskUnit.getUnitId());
+				mAlIce.log(LOG, Level.SEVERE, "Failed to set task in taskUnit: {}", taskUnit.getUnitId());
+				// The task isn't run, don't leave its listeners and timers
+				highLevelTask.releaseSubscriptions();
 				return false;
 			}
 		}
 		Entry entry = new Entry(highLevelTask, taskObservers);
+		mEntries.put(highLevelTask, entry);
 		mActiveTasks.add(entry);
+		schedule(entry, mAlIce.getCurrentFrame());
 
 		return true;
 	}
@@ -190,37 +198,18 @@ public class TaskHandler {
 	 * @return True if a task is found and removed
 	 */
 	public boolean remove(Task task) {
-
-		// Search for the task in the active tasks list
-		ListIterator<Entry> it = mActiveTasks.listIterator();
-		while (it.hasNext()) {
-			Entry currentEntry = it.next();
-			if (currentEntry.mTask == task) {
-				it.remove();
-
-				// Call the observers
-				for (ITaskObserver taskObserver : currentEntry.mTaskObservers) {
-					taskObserver.onTaskFinished(currentEntry.mTask, Status.UNEXPECTED_ERROR);
-				}
-				return true;
-			}
+		Entry foundEntry = mEntries.get(task);
+		if (foundEntry == null) {
+			return false;
 		}
 
-		// Search for the task in the halted tasks list
-		it = mHaltedTasks.listIterator();
-		while (it.hasNext()) {
-			Entry currentEntry = it.next();
-			if (currentEntry.mTask == task) {
-				it.remove();
+		removeEntry(foundEntry);
 
-				// Call the observers
-				for (ITaskObserver taskObserver : currentEntry.mTaskObservers) {
-					taskObserver.onTaskFinished(currentEntry.mTask, Status.UNEXPECTED_ERROR);
-				}
-				return true;
-			}
+		// Call the observers
+		for (ITaskObserver taskObserver : foundEntry.mTaskObservers) {
+			taskObserver.onTaskFinished(foundEntry.mTask, Status.UNEXPECTED_ERROR);
 		}
-		return false;
+		return true;
 	}
 
 	/**
@@ -232,27 +221,16 @@ public class TaskHandler {
 	 */
 	public boolean halt(Task task) {
 
-		// Search for the task in the active tasks list
-		Entry foundEntry = null;
-		ListIterator<Entry> it = mActiveTasks.listIterator();
-		while (it.hasNext() && foundEntry == null) {
-			Entry currentEntry = it.next();
-			if (currentEntry.mTask == task) {
-				foundEntry = currentEntry;
-				it.remove();
-				break;
-			}
-		}
+		Entry foundEntry = mEntries.get(task);
 
-		// Add the task to halted tasks and halt it
-		if (foundEntry != null) {
+		// Move the task to halted tasks and halt it
+		if (foundEntry != null && foundEntry.mState == State.ACTIVE) {
+			mActiveTasks.remove(foundEntry);
 			mHaltedTasks.add(foundEntry);
-
-			// Also add it to the recently added
-			mRecentlyHaltedTasks.add(foundEntry);
+			foundEntry.mState = State.HALTED;
 			foundEntry.mTask.halt();
-			mAlIce.log(Level.FINER, "Halted task: " + foundEntry.mTask);
-			mAlIce.log(Level.FINER, "Active tasks: " + mActiveTasks.size() + ", Halted tasks: " + mHaltedTasks.size());
+			mAlIce.log(LOG, Level.FINER, "Halted task: {}", foundEntry.mTask);
+			mAlIce.log(LOG, Level.FINER, "Active tasks: {}, Halted tasks: {}", mActiveTasks.mSize, mHaltedTasks.mSize);
 			return true;
 		} else {
 			return false;
@@ -268,24 +246,40 @@ public class TaskHandler {
 	 * @return True if the task is found in the halted tasks list
 	 */
 	public boolean resume(Task task) {
-		// Search for the task in the halted tasks list
-		Entry foundEntry = null;
-		ListIterator<Entry> it = mHaltedTasks.listIterator();
-		while (it.hasNext() && foundEntry == null) {
-			Entry currentEntry = it.next();
-			if (currentEntry.mTask == task) {
-				foundEntry = currentEntry;
-				it.remove();
-				break;
-			}
-		}
+		Entry foundEntry = mEntries.get(task);
 
-		// Add the task to the active tasks and resume it
-		if (foundEntry != null) {
+		// Move the task to the active tasks and resume it
+		if (foundEntry != null && foundEntry.mState == State.HALTED) {
+			mHaltedTasks.remove(foundEntry);
 			mActiveTasks.add(foundEntry);
+			foundEntry.mState = State.ACTIVE;
 			foundEntry.mTask.resume();
-			mAlIce.log(Level.FINER, "Resumed task: " + foundEntry.mTask);
-			mAlIce.log(Level.FINER, "Active tasks: " + mActiveTasks.size() + ", Halted tasks: " + mHaltedTasks.size());
+
+			// Still scheduled if it was halted after it was executed last
+			if (!foundEntry.mScheduled && !foundEntry.mTask.isParked()) {
+				schedule(foundEntry, mAlIce.getCurrentFrame());
+			}
+			mAlIce.log(LOG, Level.FINER, "Resumed task: {}", foundEntry.mTask);
+			mAlIce.log(LOG, Level.FINER, "Active tasks: {}, Halted tasks: {}", mActiveTasks.mSize, mHaltedTasks.mSize);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Schedules a woken task to be executed as soon as possible. Called by
+	 * Task.wake(), halted tasks are scheduled when they are resumed.
+	 * 
+	 * @param task
+	 *            the task that was woken
+	 * @return True if the task is active and now scheduled
+	 */
+	public boolean wake(Task task) {
+		Entry foundEntry = mEntries.get(task);
+
+		if (foundEntry != null && foundEntry.mState == State.ACTIVE && !foundEntry.mScheduled) {
+			schedule(foundEntry, mAlIce.getCurrentFrame());
 			return true;
 		} else {
 			return false;
@@ -302,27 +296,9 @@ public class TaskHandler {
 	 * @return True if the unbinding was removed successfully.
 	 */
 	public boolean unbindTask(Task task, TaskUnit taskUnit) {
-		Entry foundEntry = null;
+		Entry foundEntry = mEntries.get(task);
 		boolean taskUnitFound = false;
 
-		// Find the entry in active tasks
-		ListIterator<Entry> it = mActiveTasks.listIterator();
-		while (foundEntry == null && it.hasNext()) {
-			Entry entry = it.next();
-			if (entry.mTask == task) {
-				foundEntry = entry;
-			}
-		}
-
-		// Find the entry in halted tasks
-		it = mHaltedTasks.listIterator();
-		while (foundEntry == null && it.hasNext()) {
-			Entry entry = it.next();
-			if (entry.mTask == task) {
-				foundEntry = entry;
-			}
-		}
-
 		if (foundEntry != null) {
 			ListIterator<ITaskObserver> observerIt = foundEntry.mTaskObservers.listIterator();
 			while (!taskUnitFound && observerIt.hasNext()) {
@@ -349,25 +325,7 @@ public class TaskHandler {
 	 * @return True if the binding was successfull.
 	 */
 	public boolean bindTask(Task task, TaskUnit taskUnit) {
-		Entry foundEntry = null;
-
-		// Find the entry in active tasks
-		ListIterator<Entry> it = mActiveTasks.listIterator();
-		while (foundEntry == null && it.hasNext()) {
-			Entry entry = it.next();
-			if (entry.mTask == task) {
-				foundEntry = entry;
-			}
-		}
-
-		// Find the entry in halted tasks
-		it = mHaltedTasks.listIterator();
-		while (foundEntry == null && it.hasNext()) {
-			Entry entry = it.next();
-			if (entry.mTask == task) {
-				foundEntry = entry;
-			}
-		}
+		Entry foundEntry = mEntries.get(task);
 
 		if (foundEntry != null) {
 			foundEntry.mTaskObservers.add(taskUnit);
@@ -377,88 +335,73 @@ public class TaskHandler {
 	}
 
 	/**
-	 * Executes the active tasks
+	 * Executes the active tasks that are due this frame, at most
+	 * Defs.TASK_MAX_EXECUTIONS_PER_FRAME tasks are executed
 	 */
 	public void update() {
-
-		// List with tasks to remove
-		LinkedList<Entry> removedTasks = new LinkedList<Entry>();
-
-		// Restart the task iterator again
-		if (mTaskIterator == null || !mTaskIterator.hasNext()) {
-			mTotalTaskIteration = 0.0;
-			LinkedList<Entry> activeTasksClone = new LinkedList<Entry>(mActiveTasks);
-			mTaskIterator = activeTasksClone.listIterator();
-			mRecentlyHaltedTasks.clear();
-
-			if (!activeTasksClone.isEmpty()) {
-				mSecondsPerTask = Defs.TASK_SPLIT_LOAD_TIME / activeTasksClone.size();
+		int currentFrame = mAlIce.getCurrentFrame();
+		int cExecuted = 0;
+		FrameBudget budget = mAlIce.getFrameBudget();
+
+		Entry currentEntry = pollDue(currentFrame, budget);
+		while (currentEntry != null) {
+			currentEntry.mScheduled = false;
+
+			// Halted and removed tasks are left in the queue until they are due.
+			// Halted tasks are scheduled again when they are resumed
+			if (currentEntry.mState != State.ACTIVE) {
+				currentEntry = pollDue(currentFrame, budget);
+				continue;
 			}
-		}
-		// Iterate through some tasks
-		else {
-
-			double deltaTime = mAlIce.getDeltaTime(GameTimeTypes.SECONDS);
-			mTotalTaskIteration += deltaTime;
-
-			while (mTaskIterator.hasNext() && mTotalTaskIteration >= mSecondsPerTask) {
-				mTotalTaskIteration -= mSecondsPerTask;
 
-				Entry currentEntry = mTaskIterator.next();
+			cExecuted++;
+			mProfiler.start();
+			try {
+				currentEntry.mStatus = currentEntry.mTask.execute();
+			} finally {
+				mProfiler.stop(currentEntry.mTask);
 
-				// Iterate through the recently halted tasks and check if we can
-				// find this task. If we can it means that we have halted the
-				// task, thus we should skip processing it
-				boolean processTask = true;
-
-				for (Entry haltedEntry : mRecentlyHaltedTasks) {
-					if (haltedEntry == currentEntry) {
-						processTask = false;
-						break;
-					}
+				// Schedule the task again, even if it threw an exception
+				if (currentEntry.mState == State.ACTIVE && !currentEntry.mScheduled && !currentEntry.mTask.isParked()) {
+					schedule(currentEntry, currentEntry.mTask.getNextExecuteFrame(currentFrame));
 				}
+			}
 
-				if (processTask) {
-					// If the task has finished call the taskObserver and remove
-					// it from the list
-					if (currentEntry.mStatus == Task.Status.COMPLETED_SUCCESSFULLY ||
+			// If the task has finished call the taskObserver and remove it. A
+			// task that has been removed while executing has already called
+			// its observers
+			if (currentEntry.mState != State.REMOVED &&
+					(currentEntry.mStatus == Task.Status.COMPLETED_SUCCESSFULLY ||
 							currentEntry.mStatus == Task.Status.FAILED_CLEANLY ||
-							currentEntry.mStatus == Task.Status.UNEXPECTED_ERROR) {
-						// Remove the task
-						removedTasks.add(currentEntry);
-
-						mAlIce.log(Level.FINE, "Task: " + currentEntry.mTask + " finished with status: " + currentEntry.mStatus);
+							currentEntry.mStatus == Task.Status.UNEXPECTED_ERROR)) {
+				mAlIce.log(LOG, Level.FINE, "Task: {} finished with status: {}", currentEntry.mTask, currentEntry.mStatus);
 
-						for (ITaskObserver taskObserver : currentEntry.mTaskObservers) {
-							taskObserver.onTaskFinished(currentEntry.mTask, currentEntry.mStatus);
-						}
+				// Remove the task
+				removeEntry(currentEntry);
+				mAlIce.log(LOG, Level.FINE, "Active tasks: {}", mActiveTasks.mSize);
 
-					} else {
-						currentEntry.mStatus = currentEntry.mTask.execute();
-					}
+				for (ITaskObserver taskObserver : currentEntry.mTaskObservers) {
+					taskObserver.onTaskFinished(currentEntry.mTask, currentEntry.mStatus);
 				}
 			}
 
-		}
-
-		// Remove the entries from the original list. These are in entry so we
-		// can iterate through the original list to avoid searching for multiple
-		// tasks
-		ListIterator<Entry> it = mActiveTasks.listIterator();
-		while (!removedTasks.isEmpty() && it.hasNext()) {
-			// Found the entry, remove it
-			if (it.next() == removedTasks.getFirst()) {
-				mAlIce.log(Level.FINE, "Removing a task: " + removedTasks.getFirst().mTask);
-				it.remove();
-				removedTasks.removeFirst();
-				mAlIce.log(Level.FINE, "Active tasks: " + mActiveTasks.size());
+			if (cExecuted < Defs.TASK_MAX_EXECUTIONS_PER_FRAME) {
+				currentEntry = pollDue(currentFrame, budget);
+			} else {
+				currentEntry = null;
 			}
 		}
+	}
 
-		// If we still have tasks to remove print an error
-		if (!removedTasks.isEmpty()) {
-			mAlIce.log(Level.SEVERE, "ERROR! Still tasks to remove left.");
-		}
+	/**
+	 * Returns true if the task is active or halted
+	 * 
+	 * @param task
+	 *            the task to check
+	 * @return true if the task is active or halted
+	 */
+	public boolean contains(Task task) {
+		return mEntries.containsKey(task);
 	}
 
 	/**
@@ -470,7 +413,7 @@ public class TaskHandler {
 	 */
 	public int nrOfTasks(String taskType) {
 		int tasks = 0;
-		for (Entry entry : mActiveTasks) {
+		for (Entry entry = mActiveTasks.mFirst; entry != null; entry = entry.mNext) {
 			if (entry.mTask.getClass().getName().equals(taskType)) {
 				tasks++;
 			}
@@ -480,42 +423,195 @@ public class TaskHandler {
 	}
 
 	/**
-	 * A list of all the active tasks
+	 * Returns the number of live subscriptions by task type. Used for
+	 * finding listener leaks.
+	 * 
+	 * @return number of subscriptions by the simple class name of the tasks,
+	 *         sorted by the name
 	 */
-	private LinkedList<Entry> mActiveTasks;
+	public Map<String, Integer> getSubscriptionCounts() {
+		return Collections.unmodifiableMap(mcSubscriptions);
+	}
+
 	/**
-	 * A list of all the halted tasks
+	 * Counts added or removed subscriptions of a task, called by
+	 * Subscriptions
+	 * 
+	 * @param task
+	 *            the task that owns the subscriptions
+	 * @param delta
+	 *            number of added (positive) or removed (negative)
+	 *            subscriptions
 	 */
-	private LinkedList<Entry> mHaltedTasks;
+	void countSubscriptions(Task task, int delta) {
+		String taskType = task.getClass().getSimpleName();
+		Integer cSubscriptions = mcSubscriptions.get(taskType);
+		int newCount = (cSubscriptions != null ? cSubscriptions : 0) + delta;
+		if (newCount != 0) {
+			mcSubscriptions.put(taskType, newCount);
+		} else {
+			mcSubscriptions.remove(taskType);
+		}
+	}
+
 	/**
-	 * A list with tasks that is recently halted
+	 * Returns the profiler that measures the task executions
+	 * 
+	 * @return the task profiler
 	 */
-	private LinkedList<Entry> mRecentlyHaltedTasks;
+	public TaskProfiler getProfiler() {
+		return mProfiler;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
 	/**
-	 * The task iterator
+	 * Schedules an active entry to be executed
+	 * 
+	 * @param entry
+	 *            the entry to schedule, must not be scheduled already
+	 * @param dueFrame
+	 *            the frame the task should be executed
 	 */
-	private ListIterator<Entry> mTaskIterator;
+	private void schedule(Entry entry, int dueFrame) {
+		entry.mDueFrame = dueFrame;
+		entry.mSequence = mcScheduled;
+		entry.mScheduled = true;
+		mcScheduled++;
+		if (entry.mPriority == TaskUnit.TaskPriority.HIGH) {
+			mHighSchedule.add(entry);
+		} else {
+			mSchedule.add(entry);
+		}
+	}
+
+	/**
+	 * Takes the next due entry from the schedules. When the frame budget is
+	 * exhausted only HIGH priority entries are taken; the other entries are
+	 * left in the schedule with their due frame, thus they are executed first
+	 * the next frame.
+	 * 
+	 * @param currentFrame
+	 *            the current frame
+	 * @param budget
+	 *            the frame budget
+	 * @return the next due entry, null if there isn't any (that may run)
+	 */
+	private Entry pollDue(int currentFrame, FrameBudget budget) {
+		boolean highDue = !mHighSchedule.isEmpty() && mHighSchedule.peek().mDueFrame <= currentFrame;
+		boolean normalDue = !mSchedule.isEmpty() && mSchedule.peek().mDueFrame <= currentFrame;
+
+		// Out of time, defer everything except HIGH priority tasks. The
+		// schedule is counted once per frame as deferred work
+		if (normalDue && budget.isExhausted()) {
+			if (mLastDeferredFrame != currentFrame) {
+				budget.defer();
+				mLastDeferredFrame = currentFrame;
+			}
+			normalDue = false;
+		}
+
+		if (highDue && (!normalDue || mHighSchedule.peek().compareTo(mSchedule.peek()) <= 0)) {
+			return mHighSchedule.poll();
+		} else if (normalDue) {
+			return mSchedule.poll();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Removes an entry from the task handler without calling its observers.
+	 * Releases the task's subscriptions.
+	 * 
+	 * @param entry
+	 *            the entry to remove
+	 */
+	private void removeEntry(Entry entry) {
+		if (entry.mState == State.ACTIVE) {
+			mActiveTasks.remove(entry);
+		} else if (entry.mState == State.HALTED) {
+			mHaltedTasks.remove(entry);
+		}
+		entry.mState = State.REMOVED;
+		mEntries.remove(entry.mTask);
+		entry.mTask.releaseSubscriptions();
+	}
+
+	/**
+	 * All active and halted tasks' entries
+	 */
+	private IdentityHashMap<Task, Entry> mEntries;
+	/**
+	 * All the active tasks
+	 */
+	private EntryList mActiveTasks;
 	/**
-	 * Total time of the iteration in seconds
+	 * All the halted tasks
 	 */
-	private double mTotalTaskIteration;
+	private EntryList mHaltedTasks;
 	/**
-	 * The number of seconds that should elapse per task
+	 * The scheduled entries, ordered by the frame they should be executed.
+	 * Halted and removed entries are left in the queue until they are due
 	 */
-	private double mSecondsPerTask;
+	private PriorityQueue<Entry> mSchedule;
+	/**
+	 * The scheduled HIGH priority entries, these are executed even if the
+	 * frame budget is exhausted
+	 */
+	private PriorityQueue<Entry> mHighSchedule;
+	/**
+	 * The last frame the normal schedule was deferred
+	 */
+	private int mLastDeferredFrame;
+	/**
+	 * Number of times an entry has been scheduled, keeps the order of entries
+	 * due the same frame
+	 */
+	private long mcScheduled;
+	/**
+	 * Number of live subscriptions by task type
+	 */
+	private TreeMap<String, Integer> mcSubscriptions;
+	/**
+	 * Measures the execution time and allocations of the tasks
+	 */
+	private TaskProfiler mProfiler;
 	/**
 	 * The AI-Interface
 	 */
 	private AlIce mAlIce;
 
+	/**
+	 * The state of a task in the task handler
+	 * 
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private enum State {
+		/**
+		 * The task is executed
+		 */
+		ACTIVE,
+		/**
+		 * The task is halted
+		 */
+		HALTED,
+		/**
+		 * The task has been removed from the task handler
+		 */
+		REMOVED
+	}
+
 	/**
 	 * The task's entry in the task handler. Contains the task, latest task
-	 * status and the observers.
+	 * status, state and the observers.
 	 * 
 	 * @author Tobias Hall <kazzoa@gmail.com>
 	 * @author Matteus Magnusson <senth.wallace@gmail.com> Wrapper for tasks
 	 */
-	private class Entry {
+	private class Entry implements Comparable<Entry> {
 		/**
 		 * Constructor for Entry
 		 * 
@@ -528,6 +624,9 @@ public class TaskHandler {
 			mTask = task;
 			mTaskObservers = taskObservers;
 			mStatus = Task.Status.EXECUTED_SUCCESSFULLY;
+			mState = State.ACTIVE;
+			mScheduled = false;
+			mPriority = null;
 		}
 
 		/**
@@ -546,6 +645,25 @@ public class TaskHandler {
 				mTaskObservers.add(taskObserver);
 			}
 			mStatus = Task.Status.EXECUTED_SUCCESSFULLY;
+			mState = State.ACTIVE;
+			mScheduled = false;
+			mPriority = null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(Entry other) {
+			if (mDueFrame != other.mDueFrame) {
+				return mDueFrame < other.mDueFrame ? -1 : 1;
+			} else if (mSequence != other.mSequence) {
+				return mSequence < other.mSequence ? -1 : 1;
+			} else {
+				return 0;
+			}
 		}
 
 		/**
@@ -560,6 +678,100 @@ public class TaskHandler {
 		 * The observer of the task. null if the task doesn't have any observer
 		 */
 		public LinkedList<ITaskObserver> mTaskObservers;
+		/**
+		 * If the task is active, halted or removed
+		 */
+		public State mState;
+		/**
+		 * Priority of the task in its task unit, null if the task isn't bound
+		 * to a task unit with a priority
+		 */
+		public TaskUnit.TaskPriority mPriority;
+		/**
+		 * True if the entry is in the schedule
+		 */
+		public boolean mScheduled;
+		/**
+		 * The frame the task should be executed
+		 */
+		public int mDueFrame;
+		/**
+		 * Order of the entry among the entries due the same frame
+		 */
+		public long mSequence;
+		/**
+		 * The previous entry in the entry's list
+		 */
+		public Entry mPrev;
+		/**
+		 * The next entry in the entry's list
+		 */
+		public Entry mNext;
+	}
+
+	/**
+	 * A doubly linked list of entries that are linked through the entries
+	 * themselves, thus an entry can be removed without searching for it.
+	 * 
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class EntryList {
+		/**
+		 * Adds an entry last in the list
+		 * 
+		 * @param entry
+		 *            the entry to add, must not be in any list
+		 */
+		public void add(Entry entry) {
+			entry.mPrev = mLast;
+			entry.mNext = null;
+			if (mLast != null) {
+				mLast.mNext = entry;
+			} else {
+				mFirst = entry;
+			}
+			mLast = entry;
+			mSize++;
+		}
+
+		/**
+		 * Removes an entry from the list
+		 * 
+		 * @param entry
+		 *            the entry to remove, must be in this list
+		 */
+		public void remove(Entry entry) {
+			if (entry.mPrev != null) {
+				entry.mPrev.mNext = entry.mNext;
+			} else {
+				mFirst = entry.mNext;
+			}
+			if (entry.mNext != null) {
+				entry.mNext.mPrev = entry.mPrev;
+			} else {
+				mLast = entry.mPrev;
+			}
+			entry.mPrev = null;
+			entry.mNext = null;
+			mSize--;
+		}
+
+		/**
+		 * The first entry
+		 */
+		public Entry mFirst;
+		/**
+		 * The last entry
+		 */
+		public Entry mLast;
+		/**
+		 * Number of entries in the list
+		 */
+		public int mSize;
 	}
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TaskHandler.class);
 
 }
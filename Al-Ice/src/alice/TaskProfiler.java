@@ -0,0 +1,517 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.logging.Level;
+
+import alice.interfaces.ITimerListener;
+import alice.tasks.Task;
+
+/**
+ * Measures the time and the allocated memory of every task execution and
+ * aggregates them per task class. The times are kept in histograms with power
+ * of two buckets, thus the percentiles are approximate (upper bound of the
+ * bucket). The profiles are dumped to a CSV file every
+ * Defs.PERF_DUMP_TIME seconds and can be shown in game with "get perf".
+ *
+ * Allocated memory is only measured if the JVM supports
+ * com.sun.management.ThreadMXBean, else it's reported as -1.
+ *
+ * Measuring the allocations queries the ThreadMXBean twice per execution and
+ * the CSV file is written on the engine thread. Set the system property
+ * alice.perf.noallocations to not measure allocations and
+ * alice.perf.nocsv to not write the CSV file.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class TaskProfiler implements ITimerListener {
+
+	/**
+	 * Constructor
+	 *
+	 * @param alIce
+	 *            the AI-Interface
+	 */
+	public TaskProfiler(AlIce alIce) {
+		mAlIce = alIce;
+		mProfiles = new IdentityHashMap<Class<?>, Profile>();
+		mStartFrame = mAlIce.getCurrentFrame();
+		if (System.getProperty(NO_ALLOCATIONS_PROPERTY) == null) {
+			mAllocationCounter = AllocationCounter.create();
+		} else {
+			mAllocationCounter = null;
+		}
+		mCsvWriter = null;
+		mCsvFailed = false;
+		mThreadId = Thread.currentThread().getId();
+
+		if (System.getProperty(NO_CSV_PROPERTY) == null) {
+			mAlIce.getTimerWheel().schedulePeriodic(SpringHelper.secondsToFrames(Defs.PERF_DUMP_TIME), this);
+		} else {
+			// Never write the file, not even when closing
+			mCsvFailed = true;
+		}
+	}
+
+	/**
+	 * Starts to measure an execution, call before executing the task
+	 */
+	public void start() {
+		if (mAllocationCounter != null) {
+			mStartAllocated = mAllocationCounter.getAllocatedBytes(mThreadId);
+		}
+		mStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Stops measuring an execution and adds it to the profile of the task's
+	 * class
+	 *
+	 * @param task
+	 *            the task that was executed
+	 */
+	public void stop(Task task) {
+		long time = System.nanoTime() - mStartTime;
+		long allocated = -1;
+		if (mAllocationCounter != null) {
+			allocated = mAllocationCounter.getAllocatedBytes(mThreadId) - mStartAllocated;
+		}
+
+		Profile profile = mProfiles.get(task.getClass());
+		if (profile == null) {
+			profile = new Profile(task.getClass().getSimpleName());
+			mProfiles.put(task.getClass(), profile);
+		}
+		profile.add(time, allocated);
+	}
+
+	/**
+	 * Returns the profiles sorted by total execution time, the most expensive
+	 * first
+	 *
+	 * @return the profiles of all task classes that have been executed
+	 */
+	public List<Profile> getProfiles() {
+		List<Profile> profiles = new ArrayList<Profile>(mProfiles.values());
+		Collections.sort(profiles, new Comparator<Profile>() {
+			@Override
+			public int compare(Profile left, Profile right) {
+				if (left.mTotalTime != right.mTotalTime) {
+					return left.mTotalTime > right.mTotalTime ? -1 : 1;
+				}
+				return 0;
+			}
+		});
+		return profiles;
+	}
+
+	/**
+	 * Returns the number of seconds since profiling started
+	 *
+	 * @return game seconds since profiling started
+	 */
+	public double getElapsedSeconds() {
+		return (mAlIce.getCurrentFrame() - mStartFrame) * SpringHelper.SECONDS_PER_FRAME;
+	}
+
+	/**
+	 * Returns true if allocated memory is measured
+	 *
+	 * @return true if allocated memory is measured
+	 */
+	public boolean isMeasuringAllocations() {
+		return mAllocationCounter != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * alice.interfaces.ITimerListener#timerExpired(alice.TimerWheel.Timer)
+	 */
+	@Override
+	public void timerExpired(TimerWheel.Timer timer) {
+		dumpCsv();
+	}
+
+	/**
+	 * Writes the last rows to the CSV file and closes it
+	 */
+	public void close() {
+		dumpCsv();
+		if (mCsvWriter != null) {
+			try {
+				mCsvWriter.close();
+			} catch (IOException e) {
+				mAlIce.log(LOG, Level.WARNING, "Couldn't close the perf file: {}", e);
+			}
+			mCsvWriter = null;
+		}
+	}
+
+	/**
+	 * The aggregated measurements of a task class
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	public static class Profile {
+		/**
+		 * Constructor
+		 *
+		 * @param name
+		 *            name of the task class
+		 */
+		private Profile(String name) {
+			mName = name;
+			mHistogram = new long[BUCKETS];
+		}
+
+		/**
+		 * Returns the name of the task class
+		 *
+		 * @return name of the task class
+		 */
+		public String getName() {
+			return mName;
+		}
+
+		/**
+		 * Returns the number of executions
+		 *
+		 * @return number of executions
+		 */
+		public long getCalls() {
+			return mcCalls;
+		}
+
+		/**
+		 * Returns the total execution time
+		 *
+		 * @return total execution time in nanoseconds
+		 */
+		public long getTotalTime() {
+			return mTotalTime;
+		}
+
+		/**
+		 * Returns the longest execution time
+		 *
+		 * @return the longest execution time in nanoseconds
+		 */
+		public long getMaxTime() {
+			return mMaxTime;
+		}
+
+		/**
+		 * Returns the approximate execution time percentile
+		 *
+		 * @param percentile
+		 *            the percentile, 0.0 - 1.0
+		 * @return upper bound of the percentile's histogram bucket in
+		 *         nanoseconds, never more than the longest execution time
+		 */
+		public long getTimePercentile(double percentile) {
+			long target = (long) Math.ceil(mcCalls * percentile);
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += mHistogram[i];
+				if (count >= target && count > 0) {
+					return Math.min(1L << i, mMaxTime);
+				}
+			}
+			return mMaxTime;
+		}
+
+		/**
+		 * Returns the average number of allocated bytes per execution
+		 *
+		 * @return allocated bytes per execution, -1 if not measured
+		 */
+		public long getAllocatedPerCall() {
+			if (mTotalAllocated < 0 || mcCalls == 0) {
+				return -1;
+			}
+			return mTotalAllocated / mcCalls;
+		}
+
+		/**
+		 * Returns the most bytes allocated by one execution
+		 *
+		 * @return most allocated bytes of an execution, -1 if not measured
+		 */
+		public long getMaxAllocated() {
+			return mMaxAllocated;
+		}
+
+		/**
+		 * Adds a measured execution
+		 *
+		 * @param time
+		 *            execution time in nanoseconds
+		 * @param allocated
+		 *            allocated bytes, -1 if not measured
+		 */
+		private void add(long time, long allocated) {
+			mcCalls++;
+			mTotalTime += time;
+			mMaxTime = Math.max(mMaxTime, time);
+			int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(time, 0)));
+			mHistogram[bucket]++;
+
+			if (allocated < 0) {
+				mTotalAllocated = -1;
+				mMaxAllocated = -1;
+			} else if (mTotalAllocated >= 0) {
+				mTotalAllocated += allocated;
+				mMaxAllocated = Math.max(mMaxAllocated, allocated);
+			}
+		}
+
+		/**
+		 * Name of the task class
+		 */
+		private String mName;
+		/**
+		 * Number of executions
+		 */
+		private long mcCalls;
+		/**
+		 * Total execution time in nanoseconds
+		 */
+		private long mTotalTime;
+		/**
+		 * Longest execution time in nanoseconds
+		 */
+		private long mMaxTime;
+		/**
+		 * Number of executions per bucket, bucket i holds times shorter than
+		 * 2^i nanoseconds
+		 */
+		private long[] mHistogram;
+		/**
+		 * Total allocated bytes, -1 if not measured
+		 */
+		private long mTotalAllocated;
+		/**
+		 * Most bytes allocated by one execution, -1 if not measured
+		 */
+		private long mMaxAllocated;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Appends the current profiles to the CSV file. Opens the file the first
+	 * time, if it fails no more dumps are made.
+	 */
+	private void dumpCsv() {
+		if (mCsvFailed || mProfiles.isEmpty()) {
+			return;
+		}
+
+		try {
+			if (mCsvWriter == null) {
+				mCsvWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("perf-AlIce-" +
+						mAlIce.getTeamId() + ".csv", false), "UTF-8"));
+				mCsvWriter.write("frame,task,calls,calls_per_second,total_ms,p50_us,p99_us,max_us,bytes_per_call,max_bytes");
+				mCsvWriter.newLine();
+			}
+
+			int frame = mAlIce.getCurrentFrame();
+			double seconds = getElapsedSeconds();
+			for (Profile profile : getProfiles()) {
+				StringBuilder row = new StringBuilder();
+				row.append(frame).append(',');
+				row.append(profile.mName).append(',');
+				row.append(profile.mcCalls).append(',');
+				row.append(seconds > 0.0 ? profile.mcCalls / seconds : 0.0).append(',');
+				row.append(profile.mTotalTime / NANOS_PER_MILLI).append(',');
+				row.append(profile.getTimePercentile(0.5) / NANOS_PER_MICRO).append(',');
+				row.append(profile.getTimePercentile(0.99) / NANOS_PER_MICRO).append(',');
+				row.append(profile.mMaxTime / NANOS_PER_MICRO).append(',');
+				row.append(profile.getAllocatedPerCall()).append(',');
+				row.append(profile.mMaxAllocated);
+				mCsvWriter.write(row.toString());
+				mCsvWriter.newLine();
+			}
+			mCsvWriter.flush();
+		} catch (IOException e) {
+			mAlIce.log(LOG, Level.WARNING, "Couldn't write the perf file, stops dumping: {}", e);
+			mCsvFailed = true;
+		}
+	}
+
+	/**
+	 * Reads the allocated bytes of a thread. Only loaded if the JVM has
+	 * com.sun.management.ThreadMXBean.
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class AllocationCounter {
+		/**
+		 * Creates an allocation counter if the JVM supports it
+		 *
+		 * @return the allocation counter, null if not supported
+		 */
+		public static AllocationCounter create() {
+			try {
+				Class.forName("com.sun.management.ThreadMXBean");
+				return SunAllocationCounter.create();
+			} catch (Throwable e) {
+				// Not a HotSpot compatible JVM
+				return null;
+			}
+		}
+
+		/**
+		 * Returns the number of bytes the thread has allocated
+		 *
+		 * @param threadId
+		 *            id of the thread
+		 * @return allocated bytes
+		 */
+		public long getAllocatedBytes(long threadId) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads the allocated bytes through com.sun.management.ThreadMXBean
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private static class SunAllocationCounter extends AllocationCounter {
+		/**
+		 * Creates the allocation counter if allocated memory can be measured
+		 *
+		 * @return the allocation counter, null if not supported
+		 */
+		public static AllocationCounter create() {
+			java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+			if (threadBean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadBean;
+				if (sunBean.isThreadAllocatedMemorySupported()) {
+					sunBean.setThreadAllocatedMemoryEnabled(true);
+					return new SunAllocationCounter(sunBean);
+				}
+			}
+			return null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see alice.TaskProfiler.AllocationCounter#getAllocatedBytes(long)
+		 */
+		@Override
+		public long getAllocatedBytes(long threadId) {
+			return mThreadBean.getThreadAllocatedBytes(threadId);
+		}
+
+		/**
+		 * Constructor
+		 *
+		 * @param threadBean
+		 *            the thread bean
+		 */
+		private SunAllocationCounter(com.sun.management.ThreadMXBean threadBean) {
+			mThreadBean = threadBean;
+		}
+
+		/**
+		 * The thread bean
+		 */
+		private com.sun.management.ThreadMXBean mThreadBean;
+	}
+
+	/**
+	 * Number of histogram buckets, the last bucket holds all longer times
+	 */
+	private static final int BUCKETS = 48;
+	/**
+	 * Nanoseconds per microsecond
+	 */
+	private static final double NANOS_PER_MICRO = 1000.0;
+	/**
+	 * Nanoseconds per millisecond
+	 */
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	/**
+	 * The profiles of the task classes
+	 */
+	private IdentityHashMap<Class<?>, Profile> mProfiles;
+	/**
+	 * Frame when profiling started
+	 */
+	private int mStartFrame;
+	/**
+	 * Start time of the current measurement
+	 */
+	private long mStartTime;
+	/**
+	 * Allocated bytes when the current measurement started
+	 */
+	private long mStartAllocated;
+	/**
+	 * Measures allocated bytes, null if not supported
+	 */
+	private AllocationCounter mAllocationCounter;
+	/**
+	 * Id of the AI's thread
+	 */
+	private long mThreadId;
+	/**
+	 * The CSV file, null until the first dump
+	 */
+	private BufferedWriter mCsvWriter;
+	/**
+	 * True if we couldn't write the CSV file or it's turned off
+	 */
+	private boolean mCsvFailed;
+	/**
+	 * The AI-Interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TaskProfiler.class);
+
+	/**
+	 * System property that turns off measuring the allocated memory
+	 */
+	public static final String NO_ALLOCATIONS_PROPERTY = "alice.perf.noallocations";
+	/**
+	 * System property that turns off writing the profiles to the CSV file
+	 */
+	public static final String NO_CSV_PROPERTY = "alice.perf.nocsv";
+}
@@ -51,9 +51,12 @@ public class TaskUnit implements ITaskObserver {
 		mHighLevelTask = null;
 		mAlIce = alIce;
 		mUnitId = mUnit.getUnitId();
+		mcPosFrame = -1;
+		mcHealthFrame = -1;
 
-		// Set the unitgroup
-		mUnitGroup = Defs.getUnitGroup(getDefName());
+		// Set the unitgroup, looked up by the id of the definition
+		mDefInfo = mAlIce.getUnitDefCatalog().get(mUnit.getDef());
+		mUnitGroup = mDefInfo != null ? mDefInfo.unitGroup : null;
 	}
 
 	/**
@@ -69,12 +72,13 @@ public class TaskUnit implements ITaskObserver {
 	public boolean setTask(Task task, TaskPriority taskPriority) {
 		// Return false if we already have a task on that priority
 		if (mTasks[taskPriority.ordinal()] != null) {
-			mAlIce.log(Level.WARNING, "Unit: " + mUnit.getDef().getName() + " id: " + mUnitId + " allready have a task: " +
-					mTasks[taskPriority.ordinal()].toString());
+			mAlIce.log(LOG, Level.WARNING, "Unit: {} id: {} allready have a task: {}", mUnit.getDef().getName(), mUnitId, mTasks[taskPriority.ordinal()]);
 			return false;
 		}
 
+		boolean wasFree = isFree();
 		mTasks[taskPriority.ordinal()] = task;
+		updateFree(wasFree);
 		// Check the tasks wit a lower priority. If one exists we halt that task
 		TaskPriority[] priorities = TaskPriority.values();
 		boolean foundPriority = false;
@@ -110,11 +114,12 @@ public class TaskUnit implements ITaskObserver {
 	public boolean setHighLevelTask(Task highLevelTask) {
 		// Return false if we already have a task on that priority
 		if (mHighLevelTask != null) {
-			mAlIce.log(Level.WARNING, "Unit: " + mUnit.getDef().getName() + " id: " + mUnitId + " allready have a task: " +
-					mHighLevelTask);
+			mAlIce.log(LOG, Level.WARNING, "Unit: {} id: {} allready have a task: {}", mUnit.getDef().getName(), mUnitId, mHighLevelTask);
 			return false;
 		}
+		boolean wasFree = isFree();
 		mHighLevelTask = highLevelTask;
+		updateFree(wasFree);
 		return true;
 	}
 
@@ -135,18 +140,81 @@ public class TaskUnit implements ITaskObserver {
 	}
 
 	/**
-	 * Returns the current position of the unit
+	 * Returns the current position of the unit. The position is a new copy
+	 * every time, use getPosX() and getPosZ() if you only need to read it.
 	 * 
 	 * @return The position of the unit
 	 */
 	public AIFloat3 getUnitPos() {
 		if (mUnit != null) {
-			return mUnit.getPos();
+			updatePos();
+			return new AIFloat3(mPosX, mPosY, mPosZ);
 		} else {
 			return null;
 		}
 	}
 
+	/**
+	 * Returns the x-coordinate of the unit's current position
+	 * 
+	 * @return x-coordinate of the unit, the last known if the unit is dead
+	 */
+	public float getPosX() {
+		updatePos();
+		return mPosX;
+	}
+
+	/**
+	 * Returns the y-coordinate of the unit's current position
+	 * 
+	 * @return y-coordinate of the unit, the last known if the unit is dead
+	 */
+	public float getPosY() {
+		updatePos();
+		return mPosY;
+	}
+
+	/**
+	 * Returns the z-coordinate of the unit's current position
+	 * 
+	 * @return z-coordinate of the unit, the last known if the unit is dead
+	 */
+	public float getPosZ() {
+		updatePos();
+		return mPosZ;
+	}
+
+	/**
+	 * Returns the current health of the unit
+	 * 
+	 * @return health of the unit, the last known if the unit is dead
+	 */
+	public float getHealth() {
+		updateHealth();
+		return mHealth;
+	}
+
+	/**
+	 * Returns the maximum health of the unit
+	 * 
+	 * @return maximum health of the unit, the last known if the unit is dead
+	 */
+	public float getMaxHealth() {
+		updateHealth();
+		return mMaxHealth;
+	}
+
+	/**
+	 * Returns true if the unit is still being built
+	 * 
+	 * @return true if the unit is being built, the last known if the unit is
+	 *         dead
+	 */
+	public boolean isBeingBuilt() {
+		updateHealth();
+		return mBeingBuilt;
+	}
+
 	/**
 	 * Returns the name of the unit definition
 	 * 
@@ -186,6 +254,15 @@ public class TaskUnit implements ITaskObserver {
 		}
 	}
 
+	/**
+	 * Returns the static properties of the unit's definition
+	 * 
+	 * @return the properties of the unit's definition
+	 */
+	public UnitDefCatalog.DefInfo getDefInfo() {
+		return mDefInfo;
+	}
+
 	/**
 	 * Returns the task with specified priority
 	 * 
@@ -229,6 +306,8 @@ public class TaskUnit implements ITaskObserver {
 	 */
 	@Override
 	public void onTaskFinished(Task task, Status status) {
+		boolean wasFree = isFree();
+
 		// Check the tasks wit a lower priority. If one exists we resume that
 		// task
 		if (task == mHighLevelTask) {
@@ -253,6 +332,8 @@ public class TaskUnit implements ITaskObserver {
 				break;
 			}
 		}
+
+		updateFree(wasFree);
 	}
 
 	/**
@@ -302,6 +383,62 @@ public class TaskUnit implements ITaskObserver {
 		private final static int NR_OF_PRIORITIES = 3;
 	}
 
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Fetches the position of the unit from the engine if it hasn't been
+	 * fetched this frame
+	 */
+	private void updatePos() {
+		int currentFrame = mAlIce.getCurrentFrame();
+		if (mUnit != null && mcPosFrame != currentFrame) {
+			AIFloat3 pos = mUnit.getPos();
+			mPosX = pos.x;
+			mPosY = pos.y;
+			mPosZ = pos.z;
+			mcPosFrame = currentFrame;
+		}
+	}
+
+	/**
+	 * Fetches the health, max health and if the unit is being built from the
+	 * engine if they haven't been fetched this frame
+	 */
+	private void updateHealth() {
+		int currentFrame = mAlIce.getCurrentFrame();
+		if (mUnit != null && mcHealthFrame != currentFrame) {
+			mHealth = mUnit.getHealth();
+			mMaxHealth = mUnit.getMaxHealth();
+			mBeingBuilt = mUnit.isBeingBuilt();
+			mcHealthFrame = currentFrame;
+		}
+	}
+
+	/**
+	 * Tells the task unit handler to update its free units if the unit has
+	 * become free or busy
+	 * 
+	 * @param wasFree
+	 *            true if the unit was free before its tasks changed
+	 */
+	private void updateFree(boolean wasFree) {
+		if (wasFree != isFree()) {
+			mAlIce.getTaskUnitHandler().updateFreeUnit(this);
+		}
+	}
+
+	/**
+	 * The next finished unit of the same definition, managed by the
+	 * TaskUnitHandler
+	 */
+	TaskUnit mNextByDef;
+	/**
+	 * The previous finished unit of the same definition, managed by the
+	 * TaskUnitHandler
+	 */
+	TaskUnit mPrevByDef;
 	/**
 	 * Array with the units current tasks One for each priority
 	 */
@@ -322,11 +459,51 @@ public class TaskUnit implements ITaskObserver {
 	 * The UnitGroup of the task-unit
 	 */
 	private UnitGroup mUnitGroup;
+	/**
+	 * The static properties of the unit's definition
+	 */
+	private UnitDefCatalog.DefInfo mDefInfo;
 
 	/**
 	 * Saves the unitId. This is necessary if we want to get the id of the unit
 	 * when after it has died.
 	 */
 	private int mUnitId;
+	/**
+	 * The frame the position was fetched
+	 */
+	private int mcPosFrame;
+	/**
+	 * The x-coordinate of the position
+	 */
+	private float mPosX;
+	/**
+	 * The y-coordinate of the position
+	 */
+	private float mPosY;
+	/**
+	 * The z-coordinate of the position
+	 */
+	private float mPosZ;
+	/**
+	 * The frame the health, max health and being built were fetched
+	 */
+	private int mcHealthFrame;
+	/**
+	 * The health of the unit
+	 */
+	private float mHealth;
+	/**
+	 * The maximum health of the unit
+	 */
+	private float mMaxHealth;
+	/**
+	 * True if the unit is being built
+	 */
+	private boolean mBeingBuilt;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TaskUnit.class);
 
 }
@@ -19,11 +19,12 @@
 
 package alice;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.logging.Level;
 
 import alice.Defs.UnitGroup;
@@ -49,15 +50,26 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 */
 	public TaskUnitHandler(AlIce alIce) {
 		mAlIce = alIce;
-		mFinishedUnits = new HashMap<Integer, TaskUnit>();
-		mCreatedUnits = new LinkedHashMap<Integer, TaskUnit>();
-		mcFinishedUnits = new HashMap<String, Integer>();
-		mcAllUnits = new HashMap<String, Integer>();
+		mUnits = new TaskUnit[Defs.UNIT_TABLE_INITIAL_SIZE];
+		mUnitStates = new byte[Defs.UNIT_TABLE_INITIAL_SIZE];
+		int cDefIds = mAlIce.getUnitDefCatalog().getDefIdCount();
+		mFirstFinishedByDef = new TaskUnit[cDefIds];
+		mcFinishedUnits = new int[cDefIds];
+		mcAllUnits = new int[cDefIds];
+		mcUnitsUnderConstruction = new int[cDefIds];
+		mcGroupFinishedUnits = new int[Defs.UnitGroup.TYPES.size()];
+		mcGroupAllUnits = new int[Defs.UnitGroup.TYPES.size()];
+		mcGroupUnitsUnderConstruction = new int[Defs.UnitGroup.TYPES.size()];
 
 		// Add groups
 		mGroupedUnits = new HashMap<String, LinkedList<TaskUnit>>();
+		mFreeGroupedUnits = new HashMap<String, LinkedHashSet<TaskUnit>>();
+		mFreeGroupedUnitsViews = new HashMap<String, Set<TaskUnit>>();
 		for (String groupType : Defs.UnitGroup.TYPES) {
 			mGroupedUnits.put(groupType, new LinkedList<TaskUnit>());
+			LinkedHashSet<TaskUnit> freeUnits = new LinkedHashSet<TaskUnit>();
+			mFreeGroupedUnits.put(groupType, freeUnits);
+			mFreeGroupedUnitsViews.put(groupType, Collections.unmodifiableSet(freeUnits));
 		}
 
 		// Add ourself to the event listener
@@ -72,18 +84,15 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 * @return TaskUnit with the specified unitId, null if not found
 	 */
 	public TaskUnit getTaskUnit(int unitId) {
-		TaskUnit foundUnit = mFinishedUnits.get(unitId);
-
-		// Try to find the unit in the created units instead
-		if (foundUnit == null) {
-			foundUnit = mCreatedUnits.get(unitId);
+		if (unitId >= 0 && unitId < mUnits.length) {
+			return mUnits[unitId];
+		} else {
+			return null;
 		}
-
-		return foundUnit;
 	}
 
 	/**
-	 * Searches the units for free units by the specified def
+	 * Searches the finished units of the specified def for free units
 	 * 
 	 * @param def
 	 *            Definition of the unit
@@ -91,12 +100,12 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 */
 	public LinkedList<TaskUnit> getFreeUnitsByDef(String def) {
 		LinkedList<TaskUnit> freeUnits = new LinkedList<TaskUnit>();
-		Iterator<Entry<Integer, TaskUnit>> it = mFinishedUnits.entrySet().iterator();
-
-		while (it.hasNext()) {
-			TaskUnit currentTaskUnit = it.next().getValue();
-			if (currentTaskUnit.getDefName().equals(def) && currentTaskUnit.isFree()) {
-				freeUnits.add(currentTaskUnit);
+		int defId = getDefId(def);
+		if (defId >= 0 && defId < mFirstFinishedByDef.length) {
+			for (TaskUnit taskUnit = mFirstFinishedByDef[defId]; taskUnit != null; taskUnit = taskUnit.mNextByDef) {
+				if (taskUnit.isFree()) {
+					freeUnits.add(taskUnit);
+				}
 			}
 		}
 
@@ -111,31 +120,103 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 * @return Number of finished units by the specified definition
 	 */
 	public int getNrFinishedUnits(String def) {
-		Integer cUnits = mcFinishedUnits.get(def);
+		return getCount(mcFinishedUnits, getDefId(def));
+	}
 
-		if (cUnits != null) {
-			return cUnits;
-		} else {
-			return 0;
-		}
+	/**
+	 * Returns the number of finished units by the specified definition.
+	 * 
+	 * @param defId
+	 *            Id of the unit's definition
+	 * @return Number of finished units by the specified definition
+	 */
+	public int getNrFinishedUnits(int defId) {
+		return getCount(mcFinishedUnits, defId);
 	}
 
 	/**
 	 * Returns the number of units by the specified definition. This includes
-	 * all the units that haven't been finished yet. oe
+	 * all the units that haven't been finished yet.
 	 * 
 	 * @param def
 	 *            Definition of the unit
-	 * @return Number of finished units by the specified definition
+	 * @return Number of units by the specified definition
 	 */
 	public int getNrAllUnits(String def) {
-		Integer cUnits = mcAllUnits.get(def);
+		return getCount(mcAllUnits, getDefId(def));
+	}
 
-		if (cUnits != null) {
-			return cUnits;
-		} else {
-			return 0;
-		}
+	/**
+	 * Returns the number of units by the specified definition. This includes
+	 * all the units that haven't been finished yet.
+	 * 
+	 * @param defId
+	 *            Id of the unit's definition
+	 * @return Number of units by the specified definition
+	 */
+	public int getNrAllUnits(int defId) {
+		return getCount(mcAllUnits, defId);
+	}
+
+	/**
+	 * Returns the number of units by the specified definition that are being
+	 * built
+	 * 
+	 * @param def
+	 *            Definition of the unit
+	 * @return Number of unfinished units by the specified definition
+	 */
+	public int getNrUnitsUnderConstruction(String def) {
+		return getCount(mcUnitsUnderConstruction, getDefId(def));
+	}
+
+	/**
+	 * Returns the number of units by the specified definition that are being
+	 * built
+	 * 
+	 * @param defId
+	 *            Id of the unit's definition
+	 * @return Number of unfinished units by the specified definition
+	 */
+	public int getNrUnitsUnderConstruction(int defId) {
+		return getCount(mcUnitsUnderConstruction, defId);
+	}
+
+	/**
+	 * Returns the number of finished units belonging to the group
+	 * 
+	 * @param groupName
+	 *            The units should belong to this group
+	 * @return Number of finished units in the group, 0 if the group doesn't
+	 *         exist
+	 */
+	public int getNrFinishedUnitsByGroup(String groupName) {
+		return getCount(mcGroupFinishedUnits, Defs.UnitGroup.TYPES.indexOf(groupName));
+	}
+
+	/**
+	 * Returns the number of units belonging to the group, including those
+	 * that haven't been finished yet
+	 * 
+	 * @param groupName
+	 *            The units should belong to this group
+	 * @return Number of units in the group, 0 if the group doesn't exist
+	 */
+	public int getNrAllUnitsByGroup(String groupName) {
+		return getCount(mcGroupAllUnits, Defs.UnitGroup.TYPES.indexOf(groupName));
+	}
+
+	/**
+	 * Returns the number of units belonging to the group that are being
+	 * built
+	 * 
+	 * @param groupName
+	 *            The units should belong to this group
+	 * @return Number of unfinished units in the group, 0 if the group doesn't
+	 *         exist
+	 */
+	public int getNrUnitsUnderConstructionByGroup(String groupName) {
+		return getCount(mcGroupUnitsUnderConstruction, Defs.UnitGroup.TYPES.indexOf(groupName));
 	}
 
 	/**
@@ -162,7 +243,8 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	}
 
 	/**
-	 * Returns a list of free units belonging to that group
+	 * Returns a list of free units belonging to that group. The list is a new
+	 * copy, use getFreeUnitSetByGroup() if you only need to read the units.
 	 * 
 	 * @param groupName
 	 *            The units should belong to this group
@@ -170,20 +252,74 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 * @return A list of free units belonging to specified group
 	 */
 	public LinkedList<TaskUnit> getFreeUnitsByGroup(String groupName) {
-		LinkedList<TaskUnit> groupUnits = mGroupedUnits.get(groupName);
-		if (groupUnits == null) {
+		LinkedHashSet<TaskUnit> freeUnits = mFreeGroupedUnits.get(groupName);
+		if (freeUnits == null) {
 			return null;
 		}
 
-		// Iterate through all the units and add those that are free
-		LinkedList<TaskUnit> freeGroupUnits = new LinkedList<TaskUnit>();
-		for (TaskUnit taskUnit : groupUnits) {
-			if (taskUnit.isFree()) {
-				freeGroupUnits.add(taskUnit);
-			}
+		return new LinkedList<TaskUnit>(freeUnits);
+	}
+
+	/**
+	 * Returns the free units belonging to that group. The set is updated by
+	 * the task units when they become free or busy, i.e. it changes when a
+	 * task is run or finishes; copy it if you assign tasks while iterating.
+	 * 
+	 * @param groupName
+	 *            The units should belong to this group
+	 * 
+	 * @return Read-only set of the free units belonging to specified group,
+	 *         null if the group doesn't exist.
+	 */
+	public Set<TaskUnit> getFreeUnitSetByGroup(String groupName) {
+		return mFreeGroupedUnitsViews.get(groupName);
+	}
+
+	/**
+	 * Returns the number of free units belonging to that group
+	 * 
+	 * @param groupName
+	 *            The units should belong to this group
+	 * 
+	 * @return Number of free units belonging to specified group
+	 */
+	public int getNrFreeUnitsByGroup(String groupName) {
+		LinkedHashSet<TaskUnit> freeUnits = mFreeGroupedUnits.get(groupName);
+		if (freeUnits != null) {
+			return freeUnits.size();
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Adds or removes the unit from the free units of its groups. Called by
+	 * the task unit when it becomes free or busy. Only finished units are
+	 * added.
+	 * 
+	 * @param taskUnit
+	 *            the task unit that has become free or busy
+	 */
+	void updateFreeUnit(TaskUnit taskUnit) {
+		int unitId = taskUnit.getUnitId();
+		if (getTaskUnit(unitId) != taskUnit || mUnitStates[unitId] != UNIT_FINISHED) {
+			return;
 		}
 
-		return freeGroupUnits;
+		UnitGroup unitGroup = taskUnit.getUnitGroup();
+		if (unitGroup != null) {
+			boolean free = taskUnit.isFree();
+			for (String group : unitGroup.groups) {
+				LinkedHashSet<TaskUnit> freeUnits = mFreeGroupedUnits.get(group);
+				if (freeUnits != null) {
+					if (free) {
+						freeUnits.add(taskUnit);
+					} else {
+						freeUnits.remove(taskUnit);
+					}
+				}
+			}
+		}
 	}
 
 	// Events
@@ -196,22 +332,23 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 */
 	@Override
 	public void unitDestroyed(Unit unit, Unit attacker) {
-		TaskUnit removedUnit = mFinishedUnits.remove(unit.getUnitId());
-		if (removedUnit != null) {
+		int unitId = unit.getUnitId();
+		TaskUnit removedUnit = getTaskUnit(unitId);
+		if (removedUnit == null) {
+			return;
+		}
+		byte state = mUnitStates[unitId];
+		mUnits[unitId] = null;
+		mUnitStates[unitId] = UNIT_DEAD;
+
+		if (state == UNIT_FINISHED) {
 			// Set the unit to null in the TaskUnit
 			removedUnit.destroyUnit();
+			unlinkFinished(removedUnit);
 
-			String unitDef = unit.getDef().getName();
 			// Decrement the values
-			Integer cUnits = mcFinishedUnits.get(unitDef);
-			// Only decrement if the unit isn't building
-			if (cUnits != null && !unit.isBeingBuilt()) {
-				mcFinishedUnits.put(unitDef, --cUnits);
-			}
-			cUnits = mcAllUnits.get(unitDef);
-			if (cUnits != null) {
-				mcAllUnits.put(unitDef, --cUnits);
-			}
+			countUnit(removedUnit, -1, -1, 0);
+
 			// Remove the unit from the groups
 			UnitGroup unitGroup = removedUnit.getUnitGroup();
 			if (unitGroup != null) {
@@ -220,10 +357,23 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 					if (groupUnits != null) {
 						groupUnits.remove(removedUnit);
 					}
+					LinkedHashSet<TaskUnit> freeUnits = mFreeGroupedUnits.get(group);
+					if (freeUnits != null) {
+						freeUnits.remove(removedUnit);
+					}
 				}
 			}
 
-			if (removedUnit.getUnitGroup().canAttackAir && removedUnit.getDef().isAbleToMove()) {
+			if (removedUnit.getUnitGroup().canAttackAir && removedUnit.getDefInfo().ableToMove) {
+				mcAntiAirUnits--;
+			}
+		} else {
+			// The unit was destroyed before it was finished
+			removedUnit.destroyUnit();
+			countUnit(removedUnit, -1, 0, -1);
+
+			if (removedUnit.getUnitGroup() != null && removedUnit.getUnitGroup().canAttackAir &&
+					removedUnit.getDefInfo().ableToMove) {
 				mcAntiAirUnits--;
 			}
 		}
@@ -236,10 +386,15 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 */
 	@Override
 	public void unitFinished(Unit unit) {
-		// Move the unit from created units to units. I.e. remove from one and
-		// add in the other
-		TaskUnit taskUnit = mCreatedUnits.remove(unit.getUnitId());
-		mFinishedUnits.put(unit.getUnitId(), taskUnit);
+		// Mark the created unit as finished
+		int unitId = unit.getUnitId();
+		TaskUnit taskUnit = getTaskUnit(unitId);
+		if (taskUnit == null || mUnitStates[unitId] != UNIT_CREATED) {
+			mAlIce.log(LOG, Level.WARNING, "Finished unit {} was never created", unitId);
+			return;
+		}
+		mUnitStates[unitId] = UNIT_FINISHED;
+		linkFinished(taskUnit);
 
 		// Add the unit to the groups it belongs to.
 		UnitGroup unitGroup = taskUnit.getUnitGroup();
@@ -249,20 +404,15 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 				if (groupUnits != null) {
 					groupUnits.add(taskUnit);
 				}
+				LinkedHashSet<TaskUnit> freeUnits = mFreeGroupedUnits.get(group);
+				if (freeUnits != null && taskUnit.isFree()) {
+					freeUnits.add(taskUnit);
+				}
 			}
 		}
 
-		String unitDef = unit.getDef().getName();
-
 		// Increment the number of finished units we have
-		Integer cUnits = mcFinishedUnits.get(unitDef);
-		// If we don't have a unit with that name yet, add it to the map
-		if (cUnits == null) {
-			mcFinishedUnits.put(unitDef, new Integer(1));
-		} else {
-			// Since Java is stupid we have to put the value back
-			mcFinishedUnits.put(unitDef, ++cUnits);
-		}
+		countUnit(taskUnit, 0, 1, -1);
 	}
 
 	/*
@@ -275,23 +425,141 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	public void unitCreated(Unit unit, Unit builder) {
 		// Add the unit to the created list
 		TaskUnit createdUnit = new TaskUnit(mAlIce, unit);
-		mCreatedUnits.put(unit.getUnitId(), createdUnit);
-		mAlIce.log(Level.FINE, "Added new TaskUnit: " + unit.getUnitId());
-
-		String unitDef = unit.getDef().getName();
+		int unitId = createdUnit.getUnitId();
+		ensureUnitCapacity(unitId);
+		mUnits[unitId] = createdUnit;
+		mUnitStates[unitId] = UNIT_CREATED;
+		mAlIce.log(LOG, Level.FINE, "Added new TaskUnit: {}", unit.getUnitId());
 
 		// Increment the number of all units we have
-		Integer cUnits = mcAllUnits.get(unitDef);
-		// If we don't have a unit with that name yet, add it to the map
-		if (cUnits == null) {
-			mcAllUnits.put(unitDef, new Integer(1));
+		countUnit(createdUnit, 1, 0, 1);
+
+		if (createdUnit.getUnitGroup().canAttackAir && createdUnit.getDefInfo().ableToMove) {
+			mcAntiAirUnits++;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Adds to the counters of the unit's definition and groups
+	 * 
+	 * @param taskUnit
+	 *            the unit to count
+	 * @param cAll
+	 *            added to the number of all units
+	 * @param cFinished
+	 *            added to the number of finished units
+	 * @param cUnderConstruction
+	 *            added to the number of units under construction
+	 */
+	private void countUnit(TaskUnit taskUnit, int cAll, int cFinished, int cUnderConstruction) {
+		UnitDefCatalog.DefInfo defInfo = taskUnit.getDefInfo();
+		if (defInfo != null) {
+			mcAllUnits[defInfo.defId] += cAll;
+			mcFinishedUnits[defInfo.defId] += cFinished;
+			mcUnitsUnderConstruction[defInfo.defId] += cUnderConstruction;
+		}
+
+		UnitGroup unitGroup = taskUnit.getUnitGroup();
+		if (unitGroup != null) {
+			for (int i = 0; i < mcGroupAllUnits.length; i++) {
+				if (unitGroup.isInGroup(1 << i)) {
+					mcGroupAllUnits[i] += cAll;
+					mcGroupFinishedUnits[i] += cFinished;
+					mcGroupUnitsUnderConstruction[i] += cUnderConstruction;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Grows the unit table if it can't hold the unit id
+	 * 
+	 * @param unitId
+	 *            id of the unit to add
+	 */
+	private void ensureUnitCapacity(int unitId) {
+		if (unitId >= mUnits.length) {
+			int size = Math.max(unitId + 1, mUnits.length * 2);
+			mUnits = Arrays.copyOf(mUnits, size);
+			mUnitStates = Arrays.copyOf(mUnitStates, size);
+		}
+	}
+
+	/**
+	 * Adds a finished unit first in the list of its definition
+	 * 
+	 * @param taskUnit
+	 *            the finished unit
+	 */
+	private void linkFinished(TaskUnit taskUnit) {
+		UnitDefCatalog.DefInfo defInfo = taskUnit.getDefInfo();
+		if (defInfo != null) {
+			TaskUnit first = mFirstFinishedByDef[defInfo.defId];
+			taskUnit.mPrevByDef = null;
+			taskUnit.mNextByDef = first;
+			if (first != null) {
+				first.mPrevByDef = taskUnit;
+			}
+			mFirstFinishedByDef[defInfo.defId] = taskUnit;
+		}
+	}
+
+	/**
+	 * Removes a finished unit from the list of its definition
+	 * 
+	 * @param taskUnit
+	 *            the destroyed unit
+	 */
+	private void unlinkFinished(TaskUnit taskUnit) {
+		UnitDefCatalog.DefInfo defInfo = taskUnit.getDefInfo();
+		if (defInfo != null) {
+			if (taskUnit.mPrevByDef != null) {
+				taskUnit.mPrevByDef.mNextByDef = taskUnit.mNextByDef;
+			} else if (mFirstFinishedByDef[defInfo.defId] == taskUnit) {
+				mFirstFinishedByDef[defInfo.defId] = taskUnit.mNextByDef;
+			}
+			if (taskUnit.mNextByDef != null) {
+				taskUnit.mNextByDef.mPrevByDef = taskUnit.mPrevByDef;
+			}
+			taskUnit.mPrevByDef = null;
+			taskUnit.mNextByDef = null;
+		}
+	}
+
+	/**
+	 * Returns the id of the unit definition
+	 * 
+	 * @param def
+	 *            Definition (name) of the unit
+	 * @return id of the definition, -1 if there is no such definition
+	 */
+	private int getDefId(String def) {
+		UnitDefCatalog.DefInfo defInfo = mAlIce.getUnitDefCatalog().get(def);
+		if (defInfo != null) {
+			return defInfo.defId;
 		} else {
-			// Since Java is stupid we have to put the value back
-			mcAllUnits.put(unitDef, ++cUnits);
+			return -1;
 		}
+	}
 
-		if (createdUnit.getUnitGroup().canAttackAir && createdUnit.getDef().isAbleToMove()) {
-			mcAntiAirUnits++;
+	/**
+	 * Returns the counter at the specified index
+	 * 
+	 * @param counters
+	 *            the counters
+	 * @param index
+	 *            index of the counter, e.g. a def id
+	 * @return the counter, 0 if the index is out of bounds
+	 */
+	private static int getCount(int[] counters, int index) {
+		if (index >= 0 && index < counters.length) {
+			return counters[index];
+		} else {
+			return 0;
 		}
 	}
 
@@ -301,25 +569,65 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	private AlIce mAlIce;
 
 	/**
-	 * HashMap for all the units
+	 * State of a unit that has been created but isn't finished
+	 */
+	private static final byte UNIT_CREATED = 1;
+	/**
+	 * State of a finished unit
 	 */
-	private HashMap<Integer, TaskUnit> mFinishedUnits;
+	private static final byte UNIT_FINISHED = 2;
+	/**
+	 * State of a destroyed unit, until the id is used by a new unit
+	 */
+	private static final byte UNIT_DEAD = 3;
+
+	/**
+	 * All the created and finished units, indexed by unit id. Null for unused
+	 * ids and destroyed units.
+	 */
+	private TaskUnit[] mUnits;
 
 	/**
-	 * Map for created units, but not finished.
+	 * The state of the units, indexed by unit id. 0 for unused ids.
 	 */
-	private HashMap<Integer, TaskUnit> mCreatedUnits;
+	private byte[] mUnitStates;
 
 	/**
-	 * Counter for the active and available units. Doesn't count those that
-	 * haven't finished yet.
+	 * The first finished unit of every definition, indexed by the id of the
+	 * definition. The units are linked through TaskUnit.mNextByDef.
 	 */
-	private HashMap<String, Integer> mcFinishedUnits;
+	private TaskUnit[] mFirstFinishedByDef;
 
 	/**
-	 * Counter for all the units, also counts those that aren't finished.
+	 * Counter for the active and available units, indexed by the id of the
+	 * unit definition. Doesn't count those that haven't finished yet.
+	 */
+	private int[] mcFinishedUnits;
+
+	/**
+	 * Counter for all the units, indexed by the id of the unit definition.
+	 * Also counts those that aren't finished.
+	 */
+	private int[] mcAllUnits;
+	/**
+	 * Counter for the units that aren't finished, indexed by the id of the
+	 * unit definition
+	 */
+	private int[] mcUnitsUnderConstruction;
+	/**
+	 * Counter for the finished units of each group, indexed as
+	 * UnitGroup.TYPES
+	 */
+	private int[] mcGroupFinishedUnits;
+	/**
+	 * Counter for all the units of each group, indexed as UnitGroup.TYPES
 	 */
-	private HashMap<String, Integer> mcAllUnits;
+	private int[] mcGroupAllUnits;
+	/**
+	 * Counter for the unfinished units of each group, indexed as
+	 * UnitGroup.TYPES
+	 */
+	private int[] mcGroupUnitsUnderConstruction;
 
 	/**
 	 * Number of anti-air units we have
@@ -334,4 +642,18 @@ public class TaskUnitHandler implements IUnitCreated, IUnitDestroyed, IUnitFinis
 	 *       you merge two groups.
 	 */
 	private HashMap<String, LinkedList<TaskUnit>> mGroupedUnits;
+	/**
+	 * The finished units that are free, grouped by the group they belong in.
+	 * Kept up to date by the task units through updateFreeUnit().
+	 */
+	private HashMap<String, LinkedHashSet<TaskUnit>> mFreeGroupedUnits;
+	/**
+	 * Read-only views of mFreeGroupedUnits, returned by
+	 * getFreeUnitSetByGroup()
+	 */
+	private HashMap<String, Set<TaskUnit>> mFreeGroupedUnitsViews;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TaskUnitHandler.class);
 }
@@ -0,0 +1,338 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import alice.interfaces.ITimerListener;
+
+/**
+ * A hierarchical timing wheel that counts in frames. Timers are placed in
+ * slots of three wheels with 64 slots each; the first wheel holds timers that
+ * expire within 64 frames, the second within 64^2 frames and the third within
+ * 64^3 frames (about 2.4 hours). Timers further away are placed in the last
+ * slot of the third wheel. When a wheel has turned one lap the next slot of
+ * the wheel above is cascaded down, i.e. its timers are placed in the lower
+ * wheels again. Scheduling and cancelling a timer takes constant time and
+ * advancing one frame only touches the timers that expire or are cascaded.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class TimerWheel {
+
+	/**
+	 * Constructor
+	 *
+	 * @param currentFrame
+	 *            the current frame of the game
+	 */
+	public TimerWheel(int currentFrame) {
+		mCurrentFrame = currentFrame;
+		mSlots = new Timer[LEVELS][SLOTS];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				mSlots[level][slot] = createSentinel();
+			}
+		}
+		mExpiring = createSentinel();
+		mcScheduled = 0;
+	}
+
+	/**
+	 * Schedules a timer that expires once
+	 *
+	 * @param frames
+	 *            number of frames until the timer expires, at least 1
+	 * @param listener
+	 *            gets called when the timer expires
+	 * @return the scheduled timer, used for cancelling it
+	 */
+	public Timer schedule(int frames, ITimerListener listener) {
+		Timer timer = new Timer(listener, 0);
+		timer.mExpireFrame = mCurrentFrame + Math.max(frames, 1);
+		add(timer);
+		return timer;
+	}
+
+	/**
+	 * Schedules a timer that expires every period until it's cancelled
+	 *
+	 * @param period
+	 *            number of frames between every expiration, at least 1
+	 * @param listener
+	 *            gets called each time the timer expires
+	 * @return the scheduled timer, used for cancelling it
+	 */
+	public Timer schedulePeriodic(int period, ITimerListener listener) {
+		Timer timer = new Timer(listener, Math.max(period, 1));
+		timer.mExpireFrame = mCurrentFrame + timer.mPeriod;
+		add(timer);
+		return timer;
+	}
+
+	/**
+	 * Cancels a timer, it will not expire again
+	 *
+	 * @param timer
+	 *            the timer to cancel, may be null
+	 * @return true if the timer was scheduled
+	 */
+	public boolean cancel(Timer timer) {
+		if (timer != null && timer.isActive()) {
+			unlink(timer);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Advances the wheel to the specified frame and calls the listeners of all
+	 * timers that expire on the way. Should be called every update
+	 *
+	 * @param currentFrame
+	 *            the current frame of the game
+	 */
+	public void advance(int currentFrame) {
+		while (mCurrentFrame < currentFrame) {
+			mCurrentFrame++;
+
+			// Cascade the upper wheels when the wheel below has turned a lap
+			if ((mCurrentFrame & SLOT_MASK) == 0) {
+				if (((mCurrentFrame >> SLOT_BITS) & SLOT_MASK) == 0) {
+					cascade(2, (mCurrentFrame >> (2 * SLOT_BITS)) & SLOT_MASK);
+				}
+				cascade(1, (mCurrentFrame >> SLOT_BITS) & SLOT_MASK);
+			}
+
+			// Move the expiring timers out of the wheel, so that listeners can
+			// schedule and cancel timers while we iterate
+			Timer slot = mSlots[0][mCurrentFrame & SLOT_MASK];
+			while (slot.mNext != slot) {
+				Timer timer = slot.mNext;
+				unlink(timer);
+				linkLast(mExpiring, timer);
+			}
+
+			while (mExpiring.mNext != mExpiring) {
+				Timer timer = mExpiring.mNext;
+				unlink(timer);
+
+				if (timer.mPeriod > 0) {
+					timer.mExpireFrame = mCurrentFrame + timer.mPeriod;
+					add(timer);
+				}
+				timer.mListener.timerExpired(timer);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of scheduled timers
+	 *
+	 * @return number of scheduled timers
+	 */
+	public int getScheduledCount() {
+		return mcScheduled;
+	}
+
+	/**
+	 * A timer in the wheel
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	public static class Timer {
+		/**
+		 * Constructor
+		 *
+		 * @param listener
+		 *            gets called when the timer expires
+		 * @param period
+		 *            frames between expirations, 0 if the timer only expires
+		 *            once
+		 */
+		private Timer(ITimerListener listener, int period) {
+			mListener = listener;
+			mPeriod = period;
+		}
+
+		/**
+		 * Returns true if the timer is scheduled, i.e. it will expire
+		 *
+		 * @return true if the timer is scheduled
+		 */
+		public boolean isActive() {
+			return mNext != null;
+		}
+
+		/**
+		 * Returns the frame the timer expires
+		 *
+		 * @return the frame the timer expires
+		 */
+		public int getExpireFrame() {
+			return mExpireFrame;
+		}
+
+		/**
+		 * Gets called when the timer expires
+		 */
+		private ITimerListener mListener;
+		/**
+		 * Frames between the expirations, 0 if it only expires once
+		 */
+		private int mPeriod;
+		/**
+		 * The frame the timer expires
+		 */
+		private int mExpireFrame;
+		/**
+		 * The previous timer in the slot
+		 */
+		private Timer mPrev;
+		/**
+		 * The next timer in the slot, null if the timer isn't scheduled
+		 */
+		private Timer mNext;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Places a timer in the slot of the wheel it belongs to
+	 *
+	 * @param timer
+	 *            the timer to add, its expire frame must be set
+	 */
+	private void add(Timer timer) {
+		int frames = timer.mExpireFrame - mCurrentFrame;
+		Timer slot;
+		if (frames < SLOTS) {
+			slot = mSlots[0][timer.mExpireFrame & SLOT_MASK];
+		} else if (frames < SLOTS * SLOTS) {
+			slot = mSlots[1][(timer.mExpireFrame >> SLOT_BITS) & SLOT_MASK];
+		} else if (frames < SLOTS * SLOTS * SLOTS) {
+			slot = mSlots[2][(timer.mExpireFrame >> (2 * SLOT_BITS)) & SLOT_MASK];
+		} else {
+			// Too far away, place it in the slot that is cascaded last
+			slot = mSlots[2][(mCurrentFrame >> (2 * SLOT_BITS)) & SLOT_MASK];
+		}
+		linkLast(slot, timer);
+	}
+
+	/**
+	 * Moves all timers of a slot to the lower wheels
+	 *
+	 * @param level
+	 *            the wheel of the slot
+	 * @param slotIndex
+	 *            index of the slot in the wheel
+	 */
+	private void cascade(int level, int slotIndex) {
+		Timer slot = mSlots[level][slotIndex];
+		Timer cascaded = createSentinel();
+		while (slot.mNext != slot) {
+			Timer timer = slot.mNext;
+			unlink(timer);
+			linkLast(cascaded, timer);
+		}
+		while (cascaded.mNext != cascaded) {
+			Timer timer = cascaded.mNext;
+			unlink(timer);
+			add(timer);
+		}
+	}
+
+	/**
+	 * Adds a timer last in a slot
+	 *
+	 * @param slot
+	 *            sentinel of the slot
+	 * @param timer
+	 *            the timer to add, must not be in any slot
+	 */
+	private void linkLast(Timer slot, Timer timer) {
+		timer.mPrev = slot.mPrev;
+		timer.mNext = slot;
+		slot.mPrev.mNext = timer;
+		slot.mPrev = timer;
+		mcScheduled++;
+	}
+
+	/**
+	 * Removes a timer from its slot
+	 *
+	 * @param timer
+	 *            the timer to remove, must be in a slot
+	 */
+	private void unlink(Timer timer) {
+		timer.mPrev.mNext = timer.mNext;
+		timer.mNext.mPrev = timer.mPrev;
+		timer.mPrev = null;
+		timer.mNext = null;
+		mcScheduled--;
+	}
+
+	/**
+	 * Creates the sentinel of an empty slot
+	 *
+	 * @return the sentinel of an empty slot
+	 */
+	private static Timer createSentinel() {
+		Timer sentinel = new Timer(null, 0);
+		sentinel.mPrev = sentinel;
+		sentinel.mNext = sentinel;
+		return sentinel;
+	}
+
+	/**
+	 * Number of wheels
+	 */
+	private static final int LEVELS = 3;
+	/**
+	 * Number of bits of the slot index
+	 */
+	private static final int SLOT_BITS = 6;
+	/**
+	 * Number of slots in each wheel
+	 */
+	private static final int SLOTS = 1 << SLOT_BITS;
+	/**
+	 * Mask of the slot index
+	 */
+	private static final int SLOT_MASK = SLOTS - 1;
+	/**
+	 * The slots of the wheels. Each slot is a sentinel of a circular doubly
+	 * linked list of timers
+	 */
+	private Timer[][] mSlots;
+	/**
+	 * The timers that expire this frame
+	 */
+	private Timer mExpiring;
+	/**
+	 * The frame the wheel has advanced to
+	 */
+	private int mCurrentFrame;
+	/**
+	 * Number of scheduled timers
+	 */
+	private int mcScheduled;
+}
@@ -0,0 +1,266 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.springrts.ai.oo.UnitDef;
+import com.springrts.ai.oo.WeaponDef;
+import com.springrts.ai.oo.WeaponMount;
+
+/**
+ * The static properties of all unit definitions, read once from the engine
+ * when the AI is initialized. The properties never change during a game so
+ * they can be read from here instead of asking the engine every time.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class UnitDefCatalog {
+
+	/**
+	 * Constructor, reads the properties of all the unit definitions
+	 *
+	 * @param unitDefs
+	 *            all unit definitions of the game
+	 */
+	public UnitDefCatalog(List<UnitDef> unitDefs) {
+		int maxDefId = 0;
+		for (UnitDef unitDef : unitDefs) {
+			maxDefId = Math.max(maxDefId, unitDef.getUnitDefId());
+		}
+
+		mDefInfos = new DefInfo[maxDefId + 1];
+		mDefInfosByName = new HashMap<String, DefInfo>();
+		for (UnitDef unitDef : unitDefs) {
+			DefInfo defInfo = new DefInfo(unitDef);
+			mDefInfos[defInfo.defId] = defInfo;
+			mDefInfosByName.put(defInfo.name, defInfo);
+		}
+	}
+
+	/**
+	 * Returns the number of unit definition ids, i.e. the highest id + 1.
+	 * Used for arrays indexed by the id of the definition.
+	 *
+	 * @return number of unit definition ids
+	 */
+	public int getDefIdCount() {
+		return mDefInfos.length;
+	}
+
+	/**
+	 * Returns the properties of the specified unit definition
+	 *
+	 * @param defId
+	 *            id of the unit definition
+	 * @return the properties, null if there is no such definition
+	 */
+	public DefInfo get(int defId) {
+		if (defId >= 0 && defId < mDefInfos.length) {
+			return mDefInfos[defId];
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the properties of the specified unit definition
+	 *
+	 * @param unitDef
+	 *            the unit definition, may be null
+	 * @return the properties, null if unitDef is null
+	 */
+	public DefInfo get(UnitDef unitDef) {
+		if (unitDef != null) {
+			return get(unitDef.getUnitDefId());
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the properties of the specified unit definition
+	 *
+	 * @param defName
+	 *            name of the unit definition
+	 * @return the properties, null if there is no such definition
+	 */
+	public DefInfo get(String defName) {
+		return mDefInfosByName.get(defName);
+	}
+
+	/**
+	 * Returns the UnitDef of the buildDef if the builder can build it, else
+	 * null.
+	 *
+	 * @param builderDef
+	 *            The builder
+	 * @param buildDef
+	 *            The definition of the building/unit that should be created
+	 * @return UnitDef of the buildDef if we can build it, else null.
+	 */
+	public UnitDef canBuild(UnitDef builderDef, String buildDef) {
+		DefInfo builderInfo = get(builderDef);
+		DefInfo buildInfo = get(buildDef);
+		if (builderInfo != null && buildInfo != null && builderInfo.canBuild(buildInfo.defId)) {
+			return buildInfo.unitDef;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * The static properties of a unit definition
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	public static class DefInfo {
+		/**
+		 * Constructor, reads the properties from the engine
+		 *
+		 * @param unitDef
+		 *            the unit definition
+		 */
+		DefInfo(UnitDef unitDef) {
+			this.unitDef = unitDef;
+			defId = unitDef.getUnitDefId();
+			name = unitDef.getName();
+			unitGroup = Defs.getUnitGroup(name);
+			ableToFly = unitDef.isAbleToFly();
+			ableToMove = unitDef.isAbleToMove();
+			builder = unitDef.isBuilder();
+			xSize = unitDef.getXSize();
+			zSize = unitDef.getZSize();
+			losRadius = unitDef.getLosRadius();
+			maxWeaponRange = unitDef.getMaxWeaponRange();
+			speed = unitDef.getSpeed();
+			health = unitDef.getHealth();
+			buildTime = unitDef.getBuildTime();
+
+			// The DPS of the first weapon
+			float firstWeaponDps = 0.0f;
+			List<WeaponMount> weaponMounts = unitDef.getWeaponMounts();
+			if (!weaponMounts.isEmpty()) {
+				WeaponDef weaponDef = weaponMounts.get(0).getWeaponDef();
+				List<Float> types = weaponDef.getDamage().getTypes();
+				float reload = weaponDef.getReload();
+				if (!types.isEmpty() && reload > 0.0f) {
+					firstWeaponDps = types.get(0) / reload;
+				}
+			}
+			dps = firstWeaponDps;
+
+			List<UnitDef> buildOptions = unitDef.getBuildOptions();
+			mBuildOptionIds = new int[buildOptions.size()];
+			for (int i = 0; i < mBuildOptionIds.length; i++) {
+				mBuildOptionIds[i] = buildOptions.get(i).getUnitDefId();
+			}
+			Arrays.sort(mBuildOptionIds);
+		}
+
+		/**
+		 * Returns true if the unit can build the specified unit definition
+		 *
+		 * @param defId
+		 *            id of the unit definition to build
+		 * @return true if it's one of the unit's build options
+		 */
+		public boolean canBuild(int defId) {
+			return Arrays.binarySearch(mBuildOptionIds, defId) >= 0;
+		}
+
+		/**
+		 * The unit definition
+		 */
+		public final UnitDef unitDef;
+		/**
+		 * Id of the unit definition
+		 */
+		public final int defId;
+		/**
+		 * Name of the unit definition
+		 */
+		public final String name;
+		/**
+		 * The unit group of the definition, null if the AI doesn't use the
+		 * unit
+		 */
+		public final Defs.UnitGroup unitGroup;
+		/**
+		 * True if the unit can fly
+		 */
+		public final boolean ableToFly;
+		/**
+		 * True if the unit can move
+		 */
+		public final boolean ableToMove;
+		/**
+		 * True if the unit is a builder
+		 */
+		public final boolean builder;
+		/**
+		 * Size of the unit in x, in map coordinates
+		 */
+		public final int xSize;
+		/**
+		 * Size of the unit in z, in map coordinates
+		 */
+		public final int zSize;
+		/**
+		 * The line of sight radius
+		 */
+		public final float losRadius;
+		/**
+		 * The maximum range of the unit's weapons
+		 */
+		public final float maxWeaponRange;
+		/**
+		 * The maximum speed of the unit
+		 */
+		public final float speed;
+		/**
+		 * The maximum health of the unit
+		 */
+		public final float health;
+		/**
+		 * The build time of the unit
+		 */
+		public final float buildTime;
+		/**
+		 * The DPS of the unit's first weapon, 0 if it has none
+		 */
+		public final float dps;
+		/**
+		 * Sorted ids of the units this unit can build
+		 */
+		private final int[] mBuildOptionIds;
+	}
+
+	/**
+	 * The properties indexed by the unit definition id
+	 */
+	private final DefInfo[] mDefInfos;
+	/**
+	 * The properties by the name of the unit definition
+	 */
+	private final HashMap<String, DefInfo> mDefInfosByName;
+}
@@ -0,0 +1,407 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice;
+
+import java.util.HashMap;
+
+import alice.Defs.UnitGroup;
+import alice.ExtractionPointMap.Owner;
+import alice.General.GameTimeTypes;
+
+/**
+ * An immutable copy of the parts of the world that the build priorities are
+ * generated from. The snapshot is created on the engine thread and can then
+ * be read from any thread, e.g. by plan jobs running in the Planner.
+ *
+ * The getters have the same names as the getters of the classes the values
+ * are copied from.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class WorldSnapshot {
+
+	/**
+	 * Creates a snapshot of the current world, must be called from the engine
+	 * thread
+	 *
+	 * @param alIce
+	 *            the AI interface
+	 */
+	public WorldSnapshot(AlIce alIce) {
+		mFrame = alIce.getCurrentFrame();
+		mGameTimeMinutes = alIce.getGameTime(GameTimeTypes.MINUTES);
+		mGameTimeSinceInitialBuildMinutes = alIce.getGameTimeSinceInitialBuild(GameTimeTypes.MINUTES);
+		mMetalIncome = alIce.getResourceIncome(Defs.Metal);
+		mEnergyIncome = alIce.getResourceIncome(Defs.Energy);
+
+		ExtractionPointMap extMap = alIce.getExtractionPointMap();
+		mcFreeExtractionPoints = extMap.getNumberOfExtractionPoints(Owner.NONE);
+		mcOwnedExtractionPoints = extMap.getNumberOfExtractionPoints(Owner.SELF);
+		mcExtractionPoints = extMap.getNumberOfExtractionPoints(null);
+
+		TaskUnitHandler taskUnitHandler = alIce.getTaskUnitHandler();
+		int cDefIds = alIce.getUnitDefCatalog().getDefIdCount();
+		mcAllUnits = new int[cDefIds];
+		mcFinishedUnits = new int[cDefIds];
+		mcUnitsUnderConstruction = new int[cDefIds];
+		for (UnitGroup unitGroup : Defs.getAllUnits().values()) {
+			if (unitGroup.defId >= 0 && unitGroup.defId < cDefIds) {
+				mcAllUnits[unitGroup.defId] = taskUnitHandler.getNrAllUnits(unitGroup.defId);
+				mcFinishedUnits[unitGroup.defId] = taskUnitHandler.getNrFinishedUnits(unitGroup.defId);
+				mcUnitsUnderConstruction[unitGroup.defId] = taskUnitHandler.getNrUnitsUnderConstruction(unitGroup.defId);
+			}
+		}
+		mcAntiAirUnits = taskUnitHandler.getNrAntiAirUnits();
+		mcGroupUnits = new int[UnitGroup.TYPES.size()];
+		for (int i = 0; i < mcGroupUnits.length; i++) {
+			mcGroupUnits[i] = taskUnitHandler.getNrFinishedUnitsByGroup(UnitGroup.TYPES.get(i));
+		}
+
+		SightedEnemies sightedEnemies = alIce.getSightedEnemies();
+		mEnemyArmorTypeHealth = new HashMap<String, HashMap<String, Double>>();
+		mEnemyDamageTypeDps = new HashMap<String, HashMap<String, Double>>();
+		for (String group : UnitGroup.TYPES) {
+			HashMap<String, Double> armorTypeHealth = new HashMap<String, Double>();
+			for (String armorType : Defs.ArmorType.TYPES) {
+				armorTypeHealth.put(armorType, sightedEnemies.getEnemyArmorTypeHealth(group, armorType));
+			}
+			mEnemyArmorTypeHealth.put(group, armorTypeHealth);
+
+			HashMap<String, Double> damageTypeDps = new HashMap<String, Double>();
+			for (String damageType : Defs.DamageType.TYPES) {
+				damageTypeDps.put(damageType, sightedEnemies.getEnemyDamageTypeDps(group, damageType));
+			}
+			mEnemyDamageTypeDps.put(group, damageTypeDps);
+		}
+		mFlyingHealth = sightedEnemies.getFlyingHealth();
+	}
+
+	/**
+	 * Returns the frame the snapshot was created
+	 *
+	 * @return frame of the snapshot
+	 */
+	public int getFrame() {
+		return mFrame;
+	}
+
+	/**
+	 * Returns the elapsed time since the game started
+	 *
+	 * @param gameTimeType
+	 *            type of time to return
+	 * @return elapsed time since the game was started
+	 */
+	public double getGameTime(GameTimeTypes gameTimeType) {
+		return toType(mGameTimeMinutes, gameTimeType);
+	}
+
+	/**
+	 * Returns the elapsed time since initial build was completed
+	 *
+	 * @param gameTimeType
+	 *            type of time to return
+	 * @return elapsed time since the initial build was completed
+	 */
+	public double getGameTimeSinceInitialBuild(GameTimeTypes gameTimeType) {
+		return toType(mGameTimeSinceInitialBuildMinutes, gameTimeType);
+	}
+
+	/**
+	 * Returns the income of the specified resource
+	 *
+	 * @param resourceName
+	 *            the name of the resource
+	 * @return the income of the resource, 0.0 if not found
+	 */
+	public float getResourceIncome(String resourceName) {
+		if (Defs.Metal.equals(resourceName)) {
+			return mMetalIncome;
+		} else if (Defs.Energy.equals(resourceName)) {
+			return mEnergyIncome;
+		} else {
+			return 0.0f;
+		}
+	}
+
+	/**
+	 * Returns the number of extraction points owned by owner
+	 *
+	 * @param owner
+	 *            the owner of the extraction points, null for all
+	 * @return number of extraction points
+	 */
+	public int getNumberOfExtractionPoints(Owner owner) {
+		if (owner == null) {
+			return mcExtractionPoints;
+		} else if (owner == Owner.NONE) {
+			return mcFreeExtractionPoints;
+		} else if (owner == Owner.SELF) {
+			return mcOwnedExtractionPoints;
+		} else {
+			return mcExtractionPoints - mcFreeExtractionPoints - mcOwnedExtractionPoints;
+		}
+	}
+
+	/**
+	 * Returns the number of units by the specified definition, including the
+	 * units that haven't been finished yet
+	 *
+	 * @param def
+	 *            definition of the unit
+	 * @return number of units by the specified definition
+	 */
+	public int getNrAllUnits(String def) {
+		return getCount(mcAllUnits, def);
+	}
+
+	/**
+	 * Returns the number of units by the specified definition, including the
+	 * units that haven't been finished yet
+	 *
+	 * @param defId
+	 *            id of the unit's definition
+	 * @return number of units by the specified definition
+	 */
+	public int getNrAllUnits(int defId) {
+		return getCount(mcAllUnits, defId);
+	}
+
+	/**
+	 * Returns the number of finished units by the specified definition
+	 *
+	 * @param def
+	 *            definition of the unit
+	 * @return number of finished units by the specified definition
+	 */
+	public int getNrFinishedUnits(String def) {
+		return getCount(mcFinishedUnits, def);
+	}
+
+	/**
+	 * Returns the number of units by the specified definition that are being
+	 * built
+	 *
+	 * @param defId
+	 *            id of the unit's definition
+	 * @return number of unfinished units by the specified definition
+	 */
+	public int getNrUnitsUnderConstruction(int defId) {
+		return getCount(mcUnitsUnderConstruction, defId);
+	}
+
+	/**
+	 * Returns the number of anti-air units we have
+	 *
+	 * @return the number of anti-air units we have
+	 */
+	public int getNrAntiAirUnits() {
+		return mcAntiAirUnits;
+	}
+
+	/**
+	 * Returns the number of units belonging to the group
+	 *
+	 * @param groupName
+	 *            the group
+	 * @return number of units in the group, 0 if the group doesn't exist
+	 */
+	public int getNrUnitsByGroup(String groupName) {
+		return getCount(mcGroupUnits, UnitGroup.TYPES.indexOf(groupName));
+	}
+
+	/**
+	 * Returns the enemy's total health of the specific armor type
+	 *
+	 * @param groupType
+	 *            the group we want to get the armor health from
+	 * @param armorType
+	 *            the health of the armor type we want to get
+	 * @return the total health of the specified armor type from the group
+	 */
+	public double getEnemyArmorTypeHealth(String groupType, String armorType) {
+		return getValue(mEnemyArmorTypeHealth, groupType, armorType);
+	}
+
+	/**
+	 * Returns the enemy's total DPS of the specified damage type
+	 *
+	 * @param groupType
+	 *            the group we want to get the DPS from
+	 * @param damageType
+	 *            the damage type to get the total DPS of
+	 * @return the total DPS of the specified damage type from the group
+	 */
+	public double getEnemyDamageTypeDps(String groupType, String damageType) {
+		return getValue(mEnemyDamageTypeDps, groupType, damageType);
+	}
+
+	/**
+	 * Returns the total health of the enemies' flying units
+	 *
+	 * @return the flying health
+	 */
+	public double getFlyingHealth() {
+		return mFlyingHealth;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Converts minutes to the specified time type
+	 *
+	 * @param minutes
+	 *            the time in minutes
+	 * @param gameTimeType
+	 *            the type of time to return
+	 * @return the time
+	 */
+	private static double toType(double minutes, GameTimeTypes gameTimeType) {
+		if (gameTimeType == GameTimeTypes.SECONDS) {
+			return minutes * 60.0;
+		} else {
+			return minutes;
+		}
+	}
+
+	/**
+	 * Returns the value of the group and type
+	 *
+	 * @param groups
+	 *            the values by group and type
+	 * @param groupType
+	 *            the group
+	 * @param type
+	 *            the armor or damage type
+	 * @return the value, 0.0 if not found
+	 */
+	private static double getValue(HashMap<String, HashMap<String, Double>> groups, String groupType, String type) {
+		HashMap<String, Double> group = groups.get(groupType);
+		if (group != null) {
+			Double value = group.get(type);
+			if (value != null) {
+				return value;
+			}
+		}
+		return 0.0;
+	}
+
+	/**
+	 * Returns the counter of the unit definition
+	 *
+	 * @param counters
+	 *            the counters by definition id
+	 * @param def
+	 *            definition (name) of the unit
+	 * @return the counter, 0 if the AI doesn't use the unit
+	 */
+	private static int getCount(int[] counters, String def) {
+		UnitGroup unitGroup = Defs.getUnitGroup(def);
+		if (unitGroup != null) {
+			return getCount(counters, unitGroup.defId);
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the counter at the specified index
+	 *
+	 * @param counters
+	 *            the counters
+	 * @param index
+	 *            index of the counter, e.g. a def id
+	 * @return the counter, 0 if the index is out of bounds
+	 */
+	private static int getCount(int[] counters, int index) {
+		if (index >= 0 && index < counters.length) {
+			return counters[index];
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * The frame the snapshot was created
+	 */
+	private final int mFrame;
+	/**
+	 * Elapsed minutes since the game started
+	 */
+	private final double mGameTimeMinutes;
+	/**
+	 * Elapsed minutes since the initial build was completed
+	 */
+	private final double mGameTimeSinceInitialBuildMinutes;
+	/**
+	 * Metal income
+	 */
+	private final float mMetalIncome;
+	/**
+	 * Energy income
+	 */
+	private final float mEnergyIncome;
+	/**
+	 * Number of free extraction points
+	 */
+	private final int mcFreeExtractionPoints;
+	/**
+	 * Number of extraction points we own
+	 */
+	private final int mcOwnedExtractionPoints;
+	/**
+	 * Number of extraction points
+	 */
+	private final int mcExtractionPoints;
+	/**
+	 * Number of units by definition id, including unfinished units
+	 */
+	private final int[] mcAllUnits;
+	/**
+	 * Number of finished units by definition id
+	 */
+	private final int[] mcFinishedUnits;
+	/**
+	 * Number of unfinished units by definition id
+	 */
+	private final int[] mcUnitsUnderConstruction;
+	/**
+	 * Number of anti-air units
+	 */
+	private final int mcAntiAirUnits;
+	/**
+	 * Number of finished units by group, indexed as UnitGroup.TYPES
+	 */
+	private final int[] mcGroupUnits;
+	/**
+	 * The enemies' total health by group and armor type
+	 */
+	private final HashMap<String, HashMap<String, Double>> mEnemyArmorTypeHealth;
+	/**
+	 * The enemies' total DPS by group and damage type
+	 */
+	private final HashMap<String, HashMap<String, Double>> mEnemyDamageTypeDps;
+	/**
+	 * Total health of the enemies' flying units
+	 */
+	private final double mFlyingHealth;
+}
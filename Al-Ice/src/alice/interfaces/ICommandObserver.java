@@ -0,0 +1,40 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+package alice.interfaces;
+
+import com.springrts.ai.AICommand;
+
+/**
+ * A interface for observing the result of queued unit commands.
+ * 
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public interface ICommandObserver {
+
+	/**
+	 * Gets called when a queued command was sent to the engine at the end of
+	 * the frame and the engine returned an error.
+	 * 
+	 * @param command
+	 *            The command that failed
+	 * @param result
+	 *            The result the engine returned
+	 */
+	public void commandFailed(AICommand command, int result);
+}
@@ -0,0 +1,51 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.interfaces;
+
+/**
+ * A computation that is planned on one of the planner's threads and applied on
+ * the engine thread. plan() must only use data that was copied when the job
+ * was created (e.g. a WorldSnapshot), it may never call the engine or touch
+ * any object that the engine thread changes.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public interface IPlanJob {
+
+	/**
+	 * Does the computation, called on a planner thread
+	 */
+	public void plan();
+
+	/**
+	 * Applies the result of the computation, called on the engine thread in
+	 * the first update after plan() has finished
+	 */
+	public void apply();
+
+	/**
+	 * Called on the engine thread instead of apply() if plan() threw an
+	 * exception or an error
+	 *
+	 * @param e
+	 *            the exception or error plan() threw
+	 */
+	public void planFailed(Throwable e);
+}
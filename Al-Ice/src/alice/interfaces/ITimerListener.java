@@ -0,0 +1,39 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.interfaces;
+
+import alice.TimerWheel;
+
+/**
+ * A interface for listening to timers scheduled in the timer wheel.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public interface ITimerListener {
+
+	/**
+	 * Gets called when a timer has expired. Periodic timers have already been
+	 * scheduled again when this is called.
+	 *
+	 * @param timer
+	 *            the timer that expired
+	 */
+	public void timerExpired(TimerWheel.Timer timer);
+}
@@ -0,0 +1,224 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.springrts.ai.AICallback;
+
+/**
+ * Definitions of the event journal. The journal starts with a header (magic,
+ * version, team id, number of callback methods) followed by records. Every
+ * record starts with a byte telling its type, END (0) marks the end of the
+ * journal.
+ *
+ * CALL records contain a call to the engine: the index of the AICallback
+ * method, all the arguments (arrays as they were after the call) and the
+ * result. The other records are the events AlIce received, written before the
+ * event is handled so the CALL records after an event are the calls made
+ * while handling it.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class Journal {
+
+	/**
+	 * Returns all methods of the AICallback in a fixed order, the index in
+	 * the array is the method's index in the journal
+	 *
+	 * @return all methods of AICallback
+	 */
+	public static Method[] getCallbackMethods() {
+		return CALLBACK_METHODS;
+	}
+
+	/**
+	 * Returns the name of the record type
+	 *
+	 * @param type
+	 *            the record type
+	 * @return name of the record type
+	 */
+	public static String getTypeName(int type) {
+		if (type >= 0 && type < TYPE_NAMES.length) {
+			return TYPE_NAMES[type];
+		} else {
+			return "UNKNOWN_" + type;
+		}
+	}
+
+	/**
+	 * Private constructor, only static members
+	 */
+	private Journal() {
+		// Does nothing
+	}
+
+	/**
+	 * Sorts the callback methods by their signature
+	 *
+	 * @return the sorted callback methods
+	 */
+	private static Method[] sortCallbackMethods() {
+		Method[] methods = AICallback.class.getMethods();
+		Arrays.sort(methods, new Comparator<Method>() {
+			@Override
+			public int compare(Method first, Method second) {
+				return first.toString().compareTo(second.toString());
+			}
+		});
+		return methods;
+	}
+
+	/**
+	 * First int in the journal, "ALJ1"
+	 */
+	public static final int MAGIC = 0x414C4A31;
+	/**
+	 * Version of the journal format
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * Unit id written for no unit, 0 is a valid unit id
+	 */
+	public static final int NO_UNIT = -1;
+	/**
+	 * End of the journal
+	 */
+	public static final byte END = 0;
+	/**
+	 * A call to the engine
+	 */
+	public static final byte CALL = 1;
+	/**
+	 * init(teamId)
+	 */
+	public static final byte INIT = 2;
+	/**
+	 * release(reason)
+	 */
+	public static final byte RELEASE = 3;
+	/**
+	 * update(frame)
+	 */
+	public static final byte UPDATE = 4;
+	/**
+	 * message(player, message)
+	 */
+	public static final byte MESSAGE = 5;
+	/**
+	 * unitCreated(unit, builder)
+	 */
+	public static final byte UNIT_CREATED = 6;
+	/**
+	 * unitFinished(unit)
+	 */
+	public static final byte UNIT_FINISHED = 7;
+	/**
+	 * unitIdle(unit)
+	 */
+	public static final byte UNIT_IDLE = 8;
+	/**
+	 * unitMoveFailed(unit)
+	 */
+	public static final byte UNIT_MOVE_FAILED = 9;
+	/**
+	 * unitDamaged(unit, attacker, damage, dir, weaponDef, paralyzer)
+	 */
+	public static final byte UNIT_DAMAGED = 10;
+	/**
+	 * unitDestroyed(unit, attacker)
+	 */
+	public static final byte UNIT_DESTROYED = 11;
+	/**
+	 * unitGiven(unit, oldTeamId, newTeamId)
+	 */
+	public static final byte UNIT_GIVEN = 12;
+	/**
+	 * unitCaptured(unit, oldTeamId, newTeamId)
+	 */
+	public static final byte UNIT_CAPTURED = 13;
+	/**
+	 * enemyEnterLOS(enemy)
+	 */
+	public static final byte ENEMY_ENTER_LOS = 14;
+	/**
+	 * enemyLeaveLOS(enemy)
+	 */
+	public static final byte ENEMY_LEAVE_LOS = 15;
+	/**
+	 * enemyEnterRadar(enemy)
+	 */
+	public static final byte ENEMY_ENTER_RADAR = 16;
+	/**
+	 * enemyLeaveRadar(enemy)
+	 */
+	public static final byte ENEMY_LEAVE_RADAR = 17;
+	/**
+	 * enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer)
+	 */
+	public static final byte ENEMY_DAMAGED = 18;
+	/**
+	 * enemyDestroyed(enemy, attacker)
+	 */
+	public static final byte ENEMY_DESTROYED = 19;
+	/**
+	 * weaponFired(unit, weaponDef)
+	 */
+	public static final byte WEAPON_FIRED = 20;
+	/**
+	 * playerCommand(units, command, playerId), the command isn't recorded
+	 */
+	public static final byte PLAYER_COMMAND = 21;
+	/**
+	 * commandFinished(unit, commandId, commandTopicId)
+	 */
+	public static final byte COMMAND_FINISHED = 22;
+	/**
+	 * seismicPing(pos, strength)
+	 */
+	public static final byte SEISMIC_PING = 23;
+	/**
+	 * load(file)
+	 */
+	public static final byte LOAD = 24;
+	/**
+	 * save(file)
+	 */
+	public static final byte SAVE = 25;
+	/**
+	 * Number of record types
+	 */
+	public static final int TYPE_COUNT = 26;
+	/**
+	 * Names of the record types
+	 */
+	private static final String[] TYPE_NAMES = { "END", "CALL", "INIT", "RELEASE", "UPDATE", "MESSAGE", "UNIT_CREATED",
+			"UNIT_FINISHED", "UNIT_IDLE", "UNIT_MOVE_FAILED", "UNIT_DAMAGED", "UNIT_DESTROYED", "UNIT_GIVEN",
+			"UNIT_CAPTURED", "ENEMY_ENTER_LOS", "ENEMY_LEAVE_LOS", "ENEMY_ENTER_RADAR", "ENEMY_LEAVE_RADAR",
+			"ENEMY_DAMAGED", "ENEMY_DESTROYED", "WEAPON_FIRED", "PLAYER_COMMAND", "COMMAND_FINISHED", "SEISMIC_PING",
+			"LOAD", "SAVE" };
+	/**
+	 * All methods of AICallback, sorted
+	 */
+	private static final Method[] CALLBACK_METHODS = sortCallbackMethods();
+}
@@ -0,0 +1,278 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import com.springrts.ai.AIFloat3;
+
+/**
+ * Reads a journal written by JournalWriter. The whole file is mapped read
+ * only.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class JournalReader {
+
+	/**
+	 * Constructor, opens the journal and reads the header
+	 *
+	 * @param fileName
+	 *            the journal file
+	 * @throws IOException
+	 *             if the file couldn't be read or isn't a journal
+	 */
+	public JournalReader(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Journal is too large: " + fileName);
+			}
+			mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			file.close();
+		}
+
+		try {
+			if (mBuffer.getInt() != Journal.MAGIC) {
+				throw new IOException("Not a journal: " + fileName);
+			}
+			int version = mBuffer.getInt();
+			if (version != Journal.VERSION) {
+				throw new IOException("Unsupported journal version: " + version);
+			}
+			mTeamId = mBuffer.getInt();
+			int methodCount = mBuffer.getInt();
+			if (methodCount != Journal.getCallbackMethods().length) {
+				throw new IOException("The journal was written with another version of the AI interface");
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Not a journal: " + fileName);
+		}
+	}
+
+	/**
+	 * Returns the team the journal was recorded for
+	 *
+	 * @return team id of the AI
+	 */
+	public int getTeamId() {
+		return mTeamId;
+	}
+
+	/**
+	 * Reads the type of the next record
+	 *
+	 * @return type of the record, Journal.END at the end of the journal
+	 */
+	public int readType() {
+		if (!mBuffer.hasRemaining()) {
+			return Journal.END;
+		}
+		return mBuffer.get();
+	}
+
+	/**
+	 * Reads the rest of a CALL record
+	 *
+	 * @return the call
+	 */
+	public RecordedCall readCall() {
+		int methodIndex = readShort();
+		Method method = Journal.getCallbackMethods()[methodIndex];
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Object[] args = new Object[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			args[i] = readValue(parameterTypes[i]);
+		}
+		Object result = readValue(method.getReturnType());
+		return new RecordedCall(methodIndex, method, args, result);
+	}
+
+	/**
+	 * Reads a short
+	 *
+	 * @return the value
+	 */
+	public short readShort() {
+		return mBuffer.getShort();
+	}
+
+	/**
+	 * Reads an int
+	 *
+	 * @return the value
+	 */
+	public int readInt() {
+		return mBuffer.getInt();
+	}
+
+	/**
+	 * Reads a float
+	 *
+	 * @return the value
+	 */
+	public float readFloat() {
+		return mBuffer.getFloat();
+	}
+
+	/**
+	 * Reads a boolean
+	 *
+	 * @return the value
+	 */
+	public boolean readBoolean() {
+		return mBuffer.get() != 0;
+	}
+
+	/**
+	 * Reads a string
+	 *
+	 * @return the string, may be null
+	 */
+	public String readString() {
+		int length = mBuffer.getInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		mBuffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Reads a position
+	 *
+	 * @return the position, may be null
+	 */
+	public AIFloat3 readFloat3() {
+		if (!readBoolean()) {
+			return null;
+		}
+		float x = mBuffer.getFloat();
+		float y = mBuffer.getFloat();
+		float z = mBuffer.getFloat();
+		return new AIFloat3(x, y, z);
+	}
+
+	/**
+	 * Reads a value of one of the types used by AICallback
+	 *
+	 * @param type
+	 *            the type of the value
+	 * @return the value, null for pointers and void
+	 */
+	public Object readValue(Class<?> type) {
+		if (type == int.class) {
+			return mBuffer.getInt();
+		} else if (type == float.class) {
+			return mBuffer.getFloat();
+		} else if (type == boolean.class) {
+			return readBoolean();
+		} else if (type == short.class) {
+			return mBuffer.getShort();
+		} else if (type == byte.class) {
+			return mBuffer.get();
+		} else if (type == String.class) {
+			return readString();
+		} else if (type == AIFloat3.class) {
+			return readFloat3();
+		} else if (type.isArray()) {
+			return readArray(type.getComponentType());
+		} else {
+			return null;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Reads an array
+	 *
+	 * @param componentType
+	 *            the type of the elements
+	 * @return the array, may be null
+	 */
+	private Object readArray(Class<?> componentType) {
+		int length = mBuffer.getInt();
+		if (length == -1) {
+			return null;
+		}
+
+		if (componentType == int.class) {
+			int[] array = new int[length];
+			mBuffer.asIntBuffer().get(array);
+			mBuffer.position(mBuffer.position() + length * 4);
+			return array;
+		} else if (componentType == float.class) {
+			float[] array = new float[length];
+			mBuffer.asFloatBuffer().get(array);
+			mBuffer.position(mBuffer.position() + length * 4);
+			return array;
+		} else if (componentType == short.class) {
+			short[] array = new short[length];
+			mBuffer.asShortBuffer().get(array);
+			mBuffer.position(mBuffer.position() + length * 2);
+			return array;
+		} else if (componentType == byte.class) {
+			byte[] array = new byte[length];
+			mBuffer.get(array);
+			return array;
+		} else if (componentType == String.class) {
+			String[] array = new String[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = readString();
+			}
+			return array;
+		} else if (componentType == AIFloat3.class) {
+			AIFloat3[] array = new AIFloat3[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = readFloat3();
+			}
+			return array;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Encoding of the strings
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * The mapped journal
+	 */
+	private MappedByteBuffer mBuffer;
+	/**
+	 * The team the journal was recorded for
+	 */
+	private int mTeamId;
+}
@@ -0,0 +1,460 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import alice.AIFactory;
+
+import com.springrts.ai.AIFloat3;
+import com.springrts.ai.oo.OOAI;
+import com.springrts.ai.oo.OOAICallback;
+import com.springrts.ai.oo.Unit;
+import com.springrts.ai.oo.WeaponDef;
+
+/**
+ * Replays a journal without the engine. The events are fed to a new AI in
+ * the recorded order and all calls to the engine are answered by a
+ * ReplayCallback. The time the AI spends on every event type is measured and
+ * printed when the replay is done.
+ *
+ * Usage: java -cp ... alice.journal.JournalReplay journal-file
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class JournalReplay {
+
+	/**
+	 * Replays the journal given as the first argument
+	 *
+	 * @param args
+	 *            the journal file
+	 * @throws IOException
+	 *             if the journal couldn't be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: JournalReplay <journal file>");
+			System.exit(1);
+		}
+
+		JournalReplay replay = new JournalReplay(args[0]);
+		replay.run();
+		replay.printStatistics(System.out);
+	}
+
+	/**
+	 * Constructor, opens the journal
+	 *
+	 * @param fileName
+	 *            the journal file
+	 * @throws IOException
+	 *             if the journal couldn't be read
+	 */
+	public JournalReplay(String fileName) throws IOException {
+		mReader = new JournalReader(fileName);
+		mTeamId = mReader.getTeamId();
+		mReplayCallback = new ReplayCallback();
+		mCallback = OOAICallback.getInstance(mReplayCallback.createCallback(), mTeamId);
+		mcEvents = new long[Journal.TYPE_COUNT];
+		mEventTimes = new long[Journal.TYPE_COUNT];
+		mMaxEventTimes = new long[Journal.TYPE_COUNT];
+	}
+
+	/**
+	 * Replays the whole journal
+	 */
+	public void run() {
+		// The calls before the first event are made when the AI is created
+		List<RecordedCall> calls = new ArrayList<RecordedCall>();
+		try {
+			int type = readCalls(calls);
+			mReplayCallback.setPending(calls);
+			mAi = new AIFactory().createAI(mTeamId, mCallback);
+
+			while (type != Journal.END) {
+				// Read the event and the calls made while it was handled
+				Event event = readEvent(type);
+				calls.clear();
+				type = readCalls(calls);
+				mReplayCallback.setPending(calls);
+
+				long startTime = System.nanoTime();
+				event.dispatch();
+				long time = System.nanoTime() - startTime;
+
+				mcEvents[event.mType]++;
+				mEventTimes[event.mType] += time;
+				mMaxEventTimes[event.mType] = Math.max(mMaxEventTimes[event.mType], time);
+			}
+		} catch (BufferUnderflowException e) {
+			// The game crashed while the record was written
+			System.err.println("The journal ends with an incomplete record");
+		}
+	}
+
+	/**
+	 * Prints the time spent on every event type and how well the calls
+	 * matched the journal
+	 *
+	 * @param out
+	 *            where to print the statistics
+	 */
+	public void printStatistics(PrintStream out) {
+		out.println("--- Replay of team " + mTeamId + " ---");
+		out.println("Event, count, total ms, average us, max us");
+		long totalTime = 0;
+		for (int type = 0; type < Journal.TYPE_COUNT; type++) {
+			if (mcEvents[type] > 0) {
+				out.println(Journal.getTypeName(type) + ", " + mcEvents[type] + ", " + mEventTimes[type] / 1000000 + ", " +
+						mEventTimes[type] / mcEvents[type] / 1000 + ", " + mMaxEventTimes[type] / 1000);
+				totalTime += mEventTimes[type];
+			}
+		}
+		out.println("Total ms: " + totalTime / 1000000);
+		out.println("Calls matched: " + mReplayCallback.getMatched() + ", from earlier results: " +
+				mReplayCallback.getFallbacks() + ", missing: " + mReplayCallback.getMisses());
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Reads CALL records until the next event
+	 *
+	 * @param calls
+	 *            the read calls are added to this list
+	 * @return type of the next event, Journal.END at the end of the journal
+	 */
+	private int readCalls(List<RecordedCall> calls) {
+		int type = mReader.readType();
+		while (type == Journal.CALL) {
+			calls.add(mReader.readCall());
+			type = mReader.readType();
+		}
+		return type;
+	}
+
+	/**
+	 * Reads a unit and returns it for the replay callback. The recorded
+	 * definition and position are skipped, they are answered by the recorded
+	 * calls.
+	 *
+	 * @return the unit, null if there was no unit
+	 */
+	private Unit readUnit() {
+		int unitId = mReader.readInt();
+		if (unitId == Journal.NO_UNIT) {
+			return null;
+		}
+		mReader.readInt();
+		mReader.readFloat3();
+		return Unit.getInstance(mCallback, unitId);
+	}
+
+	/**
+	 * Reads a weapon definition
+	 *
+	 * @return the weapon definition, null if there was none
+	 */
+	private WeaponDef readWeaponDef() {
+		int weaponDefId = mReader.readInt();
+		if (weaponDefId == -1) {
+			return null;
+		}
+		return WeaponDef.getInstance(mCallback, weaponDefId);
+	}
+
+	/**
+	 * Reads the event of the specified type
+	 *
+	 * @param type
+	 *            type of the event
+	 * @return the event
+	 */
+	private Event readEvent(int type) {
+		switch (type) {
+		case Journal.INIT:
+		case Journal.RELEASE:
+		case Journal.UPDATE:
+			return new Event(type, null, null, mReader.readInt(), 0);
+		case Journal.MESSAGE: {
+			int player = mReader.readInt();
+			Event event = new Event(type, null, null, player, 0);
+			event.mText = mReader.readString();
+			return event;
+		}
+		case Journal.UNIT_CREATED:
+		case Journal.UNIT_DESTROYED:
+		case Journal.ENEMY_DESTROYED:
+			return new Event(type, readUnit(), readUnit(), 0, 0);
+		case Journal.UNIT_FINISHED:
+		case Journal.UNIT_IDLE:
+		case Journal.UNIT_MOVE_FAILED:
+		case Journal.ENEMY_ENTER_LOS:
+		case Journal.ENEMY_LEAVE_LOS:
+		case Journal.ENEMY_ENTER_RADAR:
+		case Journal.ENEMY_LEAVE_RADAR:
+			return new Event(type, readUnit(), null, 0, 0);
+		case Journal.UNIT_DAMAGED:
+		case Journal.ENEMY_DAMAGED: {
+			Event event = new Event(type, readUnit(), readUnit(), 0, 0);
+			event.mFloat = mReader.readFloat();
+			event.mPos = mReader.readFloat3();
+			event.mWeaponDef = readWeaponDef();
+			event.mFlag = mReader.readBoolean();
+			return event;
+		}
+		case Journal.UNIT_GIVEN:
+		case Journal.UNIT_CAPTURED:
+		case Journal.COMMAND_FINISHED: {
+			Unit unit = readUnit();
+			int first = mReader.readInt();
+			int second = mReader.readInt();
+			return new Event(type, unit, null, first, second);
+		}
+		case Journal.WEAPON_FIRED: {
+			Event event = new Event(type, readUnit(), null, 0, 0);
+			event.mWeaponDef = readWeaponDef();
+			return event;
+		}
+		case Journal.PLAYER_COMMAND: {
+			int cUnits = mReader.readInt();
+			LinkedList<Unit> units = new LinkedList<Unit>();
+			for (int i = 0; i < cUnits; i++) {
+				units.add(readUnit());
+			}
+			Event event = new Event(type, null, null, mReader.readInt(), 0);
+			event.mUnits = units;
+			return event;
+		}
+		case Journal.SEISMIC_PING: {
+			Event event = new Event(type, null, null, 0, 0);
+			event.mPos = mReader.readFloat3();
+			event.mFloat = mReader.readFloat();
+			return event;
+		}
+		case Journal.LOAD:
+		case Journal.SAVE: {
+			Event event = new Event(type, null, null, 0, 0);
+			event.mText = mReader.readString();
+			return event;
+		}
+		default:
+			throw new IllegalStateException("Unknown record type in journal: " + type);
+		}
+	}
+
+	/**
+	 * An event read from the journal
+	 *
+	 * @author Matteus Magnusson <senth.wallace@gmail.com>
+	 */
+	private class Event {
+		/**
+		 * Constructor
+		 *
+		 * @param type
+		 *            type of the event
+		 * @param unit
+		 *            the first unit of the event
+		 * @param otherUnit
+		 *            the second unit of the event (builder, attacker)
+		 * @param first
+		 *            the first int of the event
+		 * @param second
+		 *            the second int of the event
+		 */
+		Event(int type, Unit unit, Unit otherUnit, int first, int second) {
+			mType = type;
+			mUnit = unit;
+			mOtherUnit = otherUnit;
+			mFirst = first;
+			mSecond = second;
+		}
+
+		/**
+		 * Passes the event to the AI
+		 */
+		void dispatch() {
+			switch (mType) {
+			case Journal.INIT:
+				mAi.init(mFirst, mCallback);
+				break;
+			case Journal.RELEASE:
+				mAi.release(mFirst);
+				break;
+			case Journal.UPDATE:
+				mAi.update(mFirst);
+				break;
+			case Journal.MESSAGE:
+				mAi.message(mFirst, mText);
+				break;
+			case Journal.UNIT_CREATED:
+				mAi.unitCreated(mUnit, mOtherUnit);
+				break;
+			case Journal.UNIT_FINISHED:
+				mAi.unitFinished(mUnit);
+				break;
+			case Journal.UNIT_IDLE:
+				mAi.unitIdle(mUnit);
+				break;
+			case Journal.UNIT_MOVE_FAILED:
+				mAi.unitMoveFailed(mUnit);
+				break;
+			case Journal.UNIT_DAMAGED:
+				mAi.unitDamaged(mUnit, mOtherUnit, mFloat, mPos, mWeaponDef, mFlag);
+				break;
+			case Journal.UNIT_DESTROYED:
+				mAi.unitDestroyed(mUnit, mOtherUnit);
+				break;
+			case Journal.UNIT_GIVEN:
+				mAi.unitGiven(mUnit, mFirst, mSecond);
+				break;
+			case Journal.UNIT_CAPTURED:
+				mAi.unitCaptured(mUnit, mFirst, mSecond);
+				break;
+			case Journal.ENEMY_ENTER_LOS:
+				mAi.enemyEnterLOS(mUnit);
+				break;
+			case Journal.ENEMY_LEAVE_LOS:
+				mAi.enemyLeaveLOS(mUnit);
+				break;
+			case Journal.ENEMY_ENTER_RADAR:
+				mAi.enemyEnterRadar(mUnit);
+				break;
+			case Journal.ENEMY_LEAVE_RADAR:
+				mAi.enemyLeaveRadar(mUnit);
+				break;
+			case Journal.ENEMY_DAMAGED:
+				mAi.enemyDamaged(mUnit, mOtherUnit, mFloat, mPos, mWeaponDef, mFlag);
+				break;
+			case Journal.ENEMY_DESTROYED:
+				mAi.enemyDestroyed(mUnit, mOtherUnit);
+				break;
+			case Journal.WEAPON_FIRED:
+				mAi.weaponFired(mUnit, mWeaponDef);
+				break;
+			case Journal.PLAYER_COMMAND:
+				// The command itself isn't recorded
+				mAi.playerCommand(mUnits, null, mFirst);
+				break;
+			case Journal.COMMAND_FINISHED:
+				mAi.commandFinished(mUnit, mFirst, mSecond);
+				break;
+			case Journal.SEISMIC_PING:
+				mAi.seismicPing(mPos, mFloat);
+				break;
+			case Journal.LOAD:
+				mAi.load(mText);
+				break;
+			case Journal.SAVE:
+				mAi.save(mText);
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * Type of the event
+		 */
+		int mType;
+		/**
+		 * The unit, enemy or the damaged unit
+		 */
+		Unit mUnit;
+		/**
+		 * The builder or attacker
+		 */
+		Unit mOtherUnit;
+		/**
+		 * Team id, frame, player, old team id, or command id
+		 */
+		int mFirst;
+		/**
+		 * New team id or command topic id
+		 */
+		int mSecond;
+		/**
+		 * Damage or strength
+		 */
+		float mFloat;
+		/**
+		 * Direction or position
+		 */
+		AIFloat3 mPos;
+		/**
+		 * The weapon
+		 */
+		WeaponDef mWeaponDef;
+		/**
+		 * Paralyzer
+		 */
+		boolean mFlag;
+		/**
+		 * Message or file name
+		 */
+		String mText;
+		/**
+		 * The units of a player command
+		 */
+		List<Unit> mUnits;
+	}
+
+	/**
+	 * The journal
+	 */
+	private JournalReader mReader;
+	/**
+	 * The team of the AI
+	 */
+	private int mTeamId;
+	/**
+	 * Answers the AI's calls with the recorded results
+	 */
+	private ReplayCallback mReplayCallback;
+	/**
+	 * The callback given to the AI
+	 */
+	private OOAICallback mCallback;
+	/**
+	 * The replayed AI
+	 */
+	private OOAI mAi;
+	/**
+	 * Number of replayed events of every type
+	 */
+	private long[] mcEvents;
+	/**
+	 * Total time spent on every event type, in nanoseconds
+	 */
+	private long[] mEventTimes;
+	/**
+	 * Longest time spent on an event of every type, in nanoseconds
+	 */
+	private long[] mMaxEventTimes;
+}
@@ -0,0 +1,371 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import com.springrts.ai.AIFloat3;
+
+/**
+ * Appends records to a journal file through a memory mapped buffer. The file
+ * is mapped in chunks, when a chunk is full the next one is mapped after it.
+ * The unused part of the last chunk is zero, i.e. END records, so the journal
+ * can be read even if the game crashes before it's closed.
+ *
+ * The journal is optional and must never stop the AI; if the file can't be
+ * mapped the writer stops writing and all further records are ignored.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class JournalWriter {
+
+	/**
+	 * Constructor, creates the journal file and writes the header
+	 *
+	 * @param fileName
+	 *            the journal file, will be overwritten
+	 * @param teamId
+	 *            the team of the AI
+	 * @throws IOException
+	 *             if the file couldn't be created
+	 */
+	public JournalWriter(String fileName, int teamId) throws IOException {
+		mFile = new RandomAccessFile(fileName, "rw");
+		mFile.setLength(0);
+		mChannel = mFile.getChannel();
+		mMappedStart = 0;
+		map(CHUNK_SIZE);
+		if (mBuffer == null) {
+			throw new IOException("Unable to map journal file: " + fileName);
+		}
+
+		writeInt(Journal.MAGIC);
+		writeInt(Journal.VERSION);
+		writeInt(teamId);
+		writeInt(Journal.getCallbackMethods().length);
+	}
+
+	/**
+	 * Writes a call to the engine
+	 *
+	 * @param methodIndex
+	 *            index of the called method
+	 * @param method
+	 *            the called method
+	 * @param args
+	 *            the arguments after the call, may be null if the method has
+	 *            no arguments
+	 * @param result
+	 *            the returned value
+	 */
+	public void writeCall(int methodIndex, Method method, Object[] args, Object result) {
+		writeByte(Journal.CALL);
+		writeShort(methodIndex);
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			writeValue(parameterTypes[i], args[i]);
+		}
+		writeValue(method.getReturnType(), result);
+	}
+
+	/**
+	 * Writes a byte
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void writeByte(int value) {
+		if (ensure(1)) {
+			mBuffer.put((byte) value);
+		}
+	}
+
+	/**
+	 * Writes a short
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void writeShort(int value) {
+		if (ensure(2)) {
+			mBuffer.putShort((short) value);
+		}
+	}
+
+	/**
+	 * Writes an int
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void writeInt(int value) {
+		if (ensure(4)) {
+			mBuffer.putInt(value);
+		}
+	}
+
+	/**
+	 * Writes a float
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void writeFloat(float value) {
+		if (ensure(4)) {
+			mBuffer.putFloat(value);
+		}
+	}
+
+	/**
+	 * Writes a boolean
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Writes a string, the length in bytes followed by the UTF-8 bytes
+	 *
+	 * @param value
+	 *            the string, may be null
+	 */
+	public void writeString(String value) {
+		if (value == null) {
+			writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(UTF8);
+			writeInt(bytes.length);
+			if (ensure(bytes.length)) {
+				mBuffer.put(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Writes a position
+	 *
+	 * @param value
+	 *            the position, may be null
+	 */
+	public void writeFloat3(AIFloat3 value) {
+		if (value == null) {
+			writeBoolean(false);
+		} else {
+			writeBoolean(true);
+			writeFloat(value.x);
+			writeFloat(value.y);
+			writeFloat(value.z);
+		}
+	}
+
+	/**
+	 * Writes a value of one of the types used by AICallback. Pointers are
+	 * not written.
+	 *
+	 * @param type
+	 *            the type of the value
+	 * @param value
+	 *            the value
+	 */
+	public void writeValue(Class<?> type, Object value) {
+		if (type == int.class) {
+			writeInt((Integer) value);
+		} else if (type == float.class) {
+			writeFloat((Float) value);
+		} else if (type == boolean.class) {
+			writeBoolean((Boolean) value);
+		} else if (type == short.class) {
+			writeShort((Short) value);
+		} else if (type == byte.class) {
+			writeByte((Byte) value);
+		} else if (type == String.class) {
+			writeString((String) value);
+		} else if (type == AIFloat3.class) {
+			writeFloat3((AIFloat3) value);
+		} else if (type.isArray()) {
+			writeArray(type.getComponentType(), value);
+		}
+		// Pointers and void are not written
+	}
+
+	/**
+	 * Writes the END record and closes the file
+	 */
+	public void close() {
+		if (mClosed) {
+			return;
+		}
+		writeByte(Journal.END);
+		mClosed = true;
+
+		if (mBuffer != null) {
+			mBuffer.force();
+			mBuffer = null;
+		}
+		try {
+			mChannel.close();
+			mFile.close();
+		} catch (IOException e) {
+			// Already closing
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Writes an array, the length (-1 for null) followed by the elements
+	 *
+	 * @param componentType
+	 *            the type of the elements
+	 * @param value
+	 *            the array, may be null
+	 */
+	private void writeArray(Class<?> componentType, Object value) {
+		if (value == null) {
+			writeInt(-1);
+			return;
+		}
+
+		if (componentType == int.class) {
+			int[] array = (int[]) value;
+			writeInt(array.length);
+			if (ensure(array.length * 4)) {
+				mBuffer.asIntBuffer().put(array);
+				mBuffer.position(mBuffer.position() + array.length * 4);
+			}
+		} else if (componentType == float.class) {
+			float[] array = (float[]) value;
+			writeInt(array.length);
+			if (ensure(array.length * 4)) {
+				mBuffer.asFloatBuffer().put(array);
+				mBuffer.position(mBuffer.position() + array.length * 4);
+			}
+		} else if (componentType == short.class) {
+			short[] array = (short[]) value;
+			writeInt(array.length);
+			if (ensure(array.length * 2)) {
+				mBuffer.asShortBuffer().put(array);
+				mBuffer.position(mBuffer.position() + array.length * 2);
+			}
+		} else if (componentType == byte.class) {
+			byte[] array = (byte[]) value;
+			writeInt(array.length);
+			if (ensure(array.length)) {
+				mBuffer.put(array);
+			}
+		} else if (componentType == String.class) {
+			String[] array = (String[]) value;
+			writeInt(array.length);
+			for (String element : array) {
+				writeString(element);
+			}
+		} else if (componentType == AIFloat3.class) {
+			AIFloat3[] array = (AIFloat3[]) value;
+			writeInt(array.length);
+			for (AIFloat3 element : array) {
+				writeFloat3(element);
+			}
+		} else {
+			writeInt(-1);
+		}
+	}
+
+	/**
+	 * Makes sure there is room for the specified number of bytes, maps the
+	 * next chunk of the file if needed
+	 *
+	 * @param bytes
+	 *            number of bytes that will be written
+	 * @return true if the bytes can be written, false if the writer has
+	 *         failed or is closed
+	 */
+	private boolean ensure(int bytes) {
+		if (mBuffer == null || mClosed) {
+			return false;
+		}
+		if (mBuffer.remaining() < bytes) {
+			map(Math.max(CHUNK_SIZE, bytes));
+		}
+		return mBuffer != null;
+	}
+
+	/**
+	 * Maps the next chunk of the file, directly after what has been written.
+	 * Stops the writer if it fails.
+	 *
+	 * @param size
+	 *            size of the chunk in bytes
+	 */
+	private void map(int size) {
+		long start = mMappedStart;
+		if (mBuffer != null) {
+			start += mBuffer.position();
+			mBuffer.force();
+		}
+
+		try {
+			mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, start, size);
+			mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			mMappedStart = start;
+		} catch (IOException e) {
+			mBuffer = null;
+		}
+	}
+
+	/**
+	 * Size of every mapped chunk of the file
+	 */
+	private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+	/**
+	 * Encoding of the strings
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * The journal file
+	 */
+	private RandomAccessFile mFile;
+	/**
+	 * Channel of the file
+	 */
+	private FileChannel mChannel;
+	/**
+	 * The currently mapped chunk, null if the writer has failed
+	 */
+	private MappedByteBuffer mBuffer;
+	/**
+	 * Position in the file where the current chunk starts
+	 */
+	private long mMappedStart;
+	/**
+	 * True when the journal has been closed
+	 */
+	private boolean mClosed;
+}
@@ -0,0 +1,130 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.lang.reflect.Method;
+
+import com.sun.jna.Pointer;
+
+/**
+ * A call to the engine read from the journal
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class RecordedCall {
+
+	/**
+	 * Constructor
+	 *
+	 * @param methodIndex
+	 *            index of the called method
+	 * @param method
+	 *            the called method
+	 * @param args
+	 *            the arguments, arrays as they were after the call
+	 * @param result
+	 *            the returned value
+	 */
+	RecordedCall(int methodIndex, Method method, Object[] args, Object result) {
+		mMethodIndex = methodIndex;
+		mArgs = args;
+		mResult = result;
+		mKey = createKey(methodIndex, method, args);
+	}
+
+	/**
+	 * Creates the key of a call. Calls with the same method and the same
+	 * in-arguments (i.e. all arguments except arrays and pointers) have the
+	 * same key.
+	 *
+	 * @param methodIndex
+	 *            index of the method
+	 * @param method
+	 *            the method
+	 * @param args
+	 *            the arguments, may be null if the method has no arguments
+	 * @return key of the call
+	 */
+	static String createKey(int methodIndex, Method method, Object[] args) {
+		StringBuilder key = new StringBuilder();
+		key.append(methodIndex);
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			key.append('|');
+			if (!parameterTypes[i].isArray() && parameterTypes[i] != Pointer.class) {
+				key.append(args[i]);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the index of the called method
+	 *
+	 * @return index of the method
+	 */
+	public int getMethodIndex() {
+		return mMethodIndex;
+	}
+
+	/**
+	 * Returns the arguments, arrays are as they were after the call
+	 *
+	 * @return the arguments
+	 */
+	public Object[] getArgs() {
+		return mArgs;
+	}
+
+	/**
+	 * Returns the returned value
+	 *
+	 * @return the result of the call
+	 */
+	public Object getResult() {
+		return mResult;
+	}
+
+	/**
+	 * Returns the key of the call, see createKey()
+	 *
+	 * @return the key of the call
+	 */
+	public String getKey() {
+		return mKey;
+	}
+
+	/**
+	 * Index of the called method
+	 */
+	private int mMethodIndex;
+	/**
+	 * The arguments
+	 */
+	private Object[] mArgs;
+	/**
+	 * The returned value
+	 */
+	private Object mResult;
+	/**
+	 * The key of the call
+	 */
+	private String mKey;
+}
@@ -0,0 +1,444 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.util.List;
+
+import com.springrts.ai.AICallback;
+import com.springrts.ai.AICommand;
+import com.springrts.ai.AIFloat3;
+import com.springrts.ai.oo.OOAI;
+import com.springrts.ai.oo.OOAICallback;
+import com.springrts.ai.oo.Unit;
+import com.springrts.ai.oo.WeaponDef;
+
+/**
+ * Writes all events to the journal before passing them on to the AI.
+ *
+ * Units are written with their id, definition id and position. The definition
+ * and position are fetched directly from the engine's callback so that they
+ * aren't recorded as calls made by the AI.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class RecordingAI implements OOAI {
+
+	/**
+	 * Constructor
+	 *
+	 * @param ai
+	 *            the AI that handles the events
+	 * @param journal
+	 *            the journal to write the events to
+	 * @param engineCallback
+	 *            the engine's callback, not the recording one
+	 * @param teamId
+	 *            the team of the AI
+	 */
+	public RecordingAI(OOAI ai, JournalWriter journal, AICallback engineCallback, int teamId) {
+		mAi = ai;
+		mJournal = journal;
+		mEngineCallback = engineCallback;
+		mTeamId = teamId;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#init(int, com.springrts.ai.oo.OOAICallback)
+	 */
+	@Override
+	public int init(int teamId, OOAICallback callback) {
+		mJournal.writeByte(Journal.INIT);
+		mJournal.writeInt(teamId);
+		return mAi.init(teamId, callback);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#release(int)
+	 */
+	@Override
+	public int release(int reason) {
+		mJournal.writeByte(Journal.RELEASE);
+		mJournal.writeInt(reason);
+		int result = mAi.release(reason);
+		mJournal.close();
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#update(int)
+	 */
+	@Override
+	public int update(int frame) {
+		mJournal.writeByte(Journal.UPDATE);
+		mJournal.writeInt(frame);
+		return mAi.update(frame);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#message(int, java.lang.String)
+	 */
+	@Override
+	public int message(int player, String message) {
+		mJournal.writeByte(Journal.MESSAGE);
+		mJournal.writeInt(player);
+		mJournal.writeString(message);
+		return mAi.message(player, message);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitCreated(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int unitCreated(Unit unit, Unit builder) {
+		mJournal.writeByte(Journal.UNIT_CREATED);
+		writeUnit(unit);
+		writeUnit(builder);
+		return mAi.unitCreated(unit, builder);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitFinished(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int unitFinished(Unit unit) {
+		mJournal.writeByte(Journal.UNIT_FINISHED);
+		writeUnit(unit);
+		return mAi.unitFinished(unit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitIdle(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int unitIdle(Unit unit) {
+		mJournal.writeByte(Journal.UNIT_IDLE);
+		writeUnit(unit);
+		return mAi.unitIdle(unit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitMoveFailed(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int unitMoveFailed(Unit unit) {
+		mJournal.writeByte(Journal.UNIT_MOVE_FAILED);
+		writeUnit(unit);
+		return mAi.unitMoveFailed(unit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitDamaged(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.Unit, float, com.springrts.ai.AIFloat3,
+	 * com.springrts.ai.oo.WeaponDef, boolean)
+	 */
+	@Override
+	public int unitDamaged(Unit unit, Unit attacker, float damage, AIFloat3 dir, WeaponDef weaponDef, boolean paralyzer) {
+		mJournal.writeByte(Journal.UNIT_DAMAGED);
+		writeDamage(unit, attacker, damage, dir, weaponDef, paralyzer);
+		return mAi.unitDamaged(unit, attacker, damage, dir, weaponDef, paralyzer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitDestroyed(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int unitDestroyed(Unit unit, Unit attacker) {
+		mJournal.writeByte(Journal.UNIT_DESTROYED);
+		writeUnit(unit);
+		writeUnit(attacker);
+		return mAi.unitDestroyed(unit, attacker);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitGiven(com.springrts.ai.oo.Unit, int,
+	 * int)
+	 */
+	@Override
+	public int unitGiven(Unit unit, int oldTeamId, int newTeamId) {
+		mJournal.writeByte(Journal.UNIT_GIVEN);
+		writeUnit(unit);
+		mJournal.writeInt(oldTeamId);
+		mJournal.writeInt(newTeamId);
+		return mAi.unitGiven(unit, oldTeamId, newTeamId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#unitCaptured(com.springrts.ai.oo.Unit, int,
+	 * int)
+	 */
+	@Override
+	public int unitCaptured(Unit unit, int oldTeamId, int newTeamId) {
+		mJournal.writeByte(Journal.UNIT_CAPTURED);
+		writeUnit(unit);
+		mJournal.writeInt(oldTeamId);
+		mJournal.writeInt(newTeamId);
+		return mAi.unitCaptured(unit, oldTeamId, newTeamId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyEnterLOS(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int enemyEnterLOS(Unit enemy) {
+		mJournal.writeByte(Journal.ENEMY_ENTER_LOS);
+		writeUnit(enemy);
+		return mAi.enemyEnterLOS(enemy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyLeaveLOS(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int enemyLeaveLOS(Unit enemy) {
+		mJournal.writeByte(Journal.ENEMY_LEAVE_LOS);
+		writeUnit(enemy);
+		return mAi.enemyLeaveLOS(enemy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyEnterRadar(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int enemyEnterRadar(Unit enemy) {
+		mJournal.writeByte(Journal.ENEMY_ENTER_RADAR);
+		writeUnit(enemy);
+		return mAi.enemyEnterRadar(enemy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyLeaveRadar(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int enemyLeaveRadar(Unit enemy) {
+		mJournal.writeByte(Journal.ENEMY_LEAVE_RADAR);
+		writeUnit(enemy);
+		return mAi.enemyLeaveRadar(enemy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyDamaged(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.Unit, float, com.springrts.ai.AIFloat3,
+	 * com.springrts.ai.oo.WeaponDef, boolean)
+	 */
+	@Override
+	public int enemyDamaged(Unit enemy, Unit attacker, float damage, AIFloat3 dir, WeaponDef weaponDef, boolean paralyzer) {
+		mJournal.writeByte(Journal.ENEMY_DAMAGED);
+		writeDamage(enemy, attacker, damage, dir, weaponDef, paralyzer);
+		return mAi.enemyDamaged(enemy, attacker, damage, dir, weaponDef, paralyzer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#enemyDestroyed(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public int enemyDestroyed(Unit enemy, Unit attacker) {
+		mJournal.writeByte(Journal.ENEMY_DESTROYED);
+		writeUnit(enemy);
+		writeUnit(attacker);
+		return mAi.enemyDestroyed(enemy, attacker);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#weaponFired(com.springrts.ai.oo.Unit,
+	 * com.springrts.ai.oo.WeaponDef)
+	 */
+	@Override
+	public int weaponFired(Unit unit, WeaponDef weaponDef) {
+		mJournal.writeByte(Journal.WEAPON_FIRED);
+		writeUnit(unit);
+		mJournal.writeInt(weaponDef != null ? weaponDef.getWeaponDefId() : -1);
+		return mAi.weaponFired(unit, weaponDef);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#playerCommand(java.util.List,
+	 * com.springrts.ai.AICommand, int)
+	 */
+	@Override
+	public int playerCommand(List<Unit> units, AICommand command, int playerId) {
+		mJournal.writeByte(Journal.PLAYER_COMMAND);
+		mJournal.writeInt(units.size());
+		for (Unit unit : units) {
+			writeUnit(unit);
+		}
+		mJournal.writeInt(playerId);
+		return mAi.playerCommand(units, command, playerId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#commandFinished(com.springrts.ai.oo.Unit,
+	 * int, int)
+	 */
+	@Override
+	public int commandFinished(Unit unit, int commandId, int commandTopicId) {
+		mJournal.writeByte(Journal.COMMAND_FINISHED);
+		writeUnit(unit);
+		mJournal.writeInt(commandId);
+		mJournal.writeInt(commandTopicId);
+		return mAi.commandFinished(unit, commandId, commandTopicId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#seismicPing(com.springrts.ai.AIFloat3,
+	 * float)
+	 */
+	@Override
+	public int seismicPing(AIFloat3 pos, float strength) {
+		mJournal.writeByte(Journal.SEISMIC_PING);
+		mJournal.writeFloat3(pos);
+		mJournal.writeFloat(strength);
+		return mAi.seismicPing(pos, strength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#load(java.lang.String)
+	 */
+	@Override
+	public int load(String file) {
+		mJournal.writeByte(Journal.LOAD);
+		mJournal.writeString(file);
+		return mAi.load(file);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.springrts.ai.oo.OOAI#save(java.lang.String)
+	 */
+	@Override
+	public int save(String file) {
+		mJournal.writeByte(Journal.SAVE);
+		mJournal.writeString(file);
+		return mAi.save(file);
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Writes a unit: id (Journal.NO_UNIT for none), definition id and position
+	 *
+	 * @param unit
+	 *            the unit, may be null
+	 */
+	private void writeUnit(Unit unit) {
+		if (unit == null) {
+			mJournal.writeInt(Journal.NO_UNIT);
+			return;
+		}
+
+		int unitId = unit.getUnitId();
+		mJournal.writeInt(unitId);
+		mJournal.writeInt(mEngineCallback.Clb_Unit_0SINGLE1FETCH2UnitDef0getDef(mTeamId, unitId));
+		mJournal.writeFloat3(mEngineCallback.Clb_Unit_getPos(mTeamId, unitId));
+	}
+
+	/**
+	 * Writes the arguments of unitDamaged and enemyDamaged
+	 *
+	 * @param unit
+	 *            the damaged unit
+	 * @param attacker
+	 *            the attacker, may be null
+	 * @param damage
+	 *            the damage
+	 * @param dir
+	 *            direction of the damage
+	 * @param weaponDef
+	 *            the weapon, may be null
+	 * @param paralyzer
+	 *            if the damage was paralyzing
+	 */
+	private void writeDamage(Unit unit, Unit attacker, float damage, AIFloat3 dir, WeaponDef weaponDef, boolean paralyzer) {
+		writeUnit(unit);
+		writeUnit(attacker);
+		mJournal.writeFloat(damage);
+		mJournal.writeFloat3(dir);
+		mJournal.writeInt(weaponDef != null ? weaponDef.getWeaponDefId() : -1);
+		mJournal.writeBoolean(paralyzer);
+	}
+
+	/**
+	 * The AI that handles the events
+	 */
+	private OOAI mAi;
+	/**
+	 * The journal
+	 */
+	private JournalWriter mJournal;
+	/**
+	 * The engine's callback, calls to it are not recorded
+	 */
+	private AICallback mEngineCallback;
+	/**
+	 * The team of the AI
+	 */
+	private int mTeamId;
+}
@@ -0,0 +1,106 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+
+import com.springrts.ai.AICallback;
+
+/**
+ * Wraps the engine's AICallback and writes every call and its result to the
+ * journal. All calls to the engine goes through the AICallback, so wrapping
+ * it records everything the AI asks the engine.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class RecordingCallback implements InvocationHandler {
+
+	/**
+	 * Wraps a callback so that all calls are recorded
+	 *
+	 * @param callback
+	 *            the engine's callback
+	 * @param journal
+	 *            the journal to write the calls to
+	 * @return a callback that records all calls to the engine's callback
+	 */
+	public static AICallback wrap(AICallback callback, JournalWriter journal) {
+		return (AICallback) Proxy.newProxyInstance(AICallback.class.getClassLoader(), new Class<?>[] { AICallback.class },
+				new RecordingCallback(callback, journal));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object result;
+		try {
+			result = method.invoke(mCallback, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+
+		Integer methodIndex = mMethodIndices.get(method);
+		if (methodIndex != null) {
+			mJournal.writeCall(methodIndex, method, args, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param callback
+	 *            the engine's callback
+	 * @param journal
+	 *            the journal to write the calls to
+	 */
+	private RecordingCallback(AICallback callback, JournalWriter journal) {
+		mCallback = callback;
+		mJournal = journal;
+		mMethodIndices = new HashMap<Method, Integer>();
+		Method[] methods = Journal.getCallbackMethods();
+		for (int i = 0; i < methods.length; i++) {
+			mMethodIndices.put(methods[i], i);
+		}
+	}
+
+	/**
+	 * The engine's callback
+	 */
+	private AICallback mCallback;
+	/**
+	 * The journal
+	 */
+	private JournalWriter mJournal;
+	/**
+	 * Index of the callback methods
+	 */
+	private HashMap<Method, Integer> mMethodIndices;
+}
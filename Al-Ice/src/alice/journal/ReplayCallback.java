@@ -0,0 +1,266 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.journal;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.springrts.ai.AICallback;
+
+/**
+ * Stands in for the engine's AICallback when a journal is replayed. Every
+ * call is answered with the recorded result.
+ *
+ * The calls recorded while an event was handled are given to the callback
+ * before the event is replayed. Calls are first matched in the recorded
+ * order, if the AI makes its calls in another order (e.g. because of random
+ * numbers) the call is matched against the next recorded calls, then against
+ * the latest recorded call with the same arguments. If there isn't any such
+ * call a default value (0, false or null) is returned and the call is counted
+ * as a miss.
+ *
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class ReplayCallback implements InvocationHandler {
+
+	/**
+	 * Constructor
+	 */
+	public ReplayCallback() {
+		mMethodIndices = new HashMap<Method, Integer>();
+		Method[] methods = Journal.getCallbackMethods();
+		for (int i = 0; i < methods.length; i++) {
+			mMethodIndices.put(methods[i], i);
+		}
+		mPending = new ArrayList<RecordedCall>();
+		mLatest = new HashMap<String, RecordedCall>();
+	}
+
+	/**
+	 * Creates the callback that answers with the recorded results
+	 *
+	 * @return the stand-in callback
+	 */
+	public AICallback createCallback() {
+		return (AICallback) Proxy.newProxyInstance(AICallback.class.getClassLoader(), new Class<?>[] { AICallback.class },
+				this);
+	}
+
+	/**
+	 * Sets the calls that were recorded while handling the next event
+	 *
+	 * @param calls
+	 *            the recorded calls, in order
+	 */
+	public void setPending(List<RecordedCall> calls) {
+		mPending.clear();
+		mPending.addAll(calls);
+		mCursor = 0;
+		for (RecordedCall call : calls) {
+			mLatest.put(call.getKey(), call);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		// Object methods, called by the wrappers' maps
+		if (method.getDeclaringClass() == Object.class) {
+			if (method.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (method.getName().equals("equals")) {
+				return proxy == args[0];
+			} else {
+				return "ReplayCallback";
+			}
+		}
+
+		int methodIndex = mMethodIndices.get(method);
+		String key = RecordedCall.createKey(methodIndex, method, args);
+
+		RecordedCall call = findPending(key);
+		if (call != null) {
+			mcMatched++;
+		} else {
+			call = mLatest.get(key);
+			if (call != null) {
+				mcFallbacks++;
+			}
+		}
+
+		if (call == null) {
+			mcMisses++;
+			return getDefault(method.getReturnType());
+		}
+
+		copyArrays(method, call.getArgs(), args);
+		return call.getResult();
+	}
+
+	/**
+	 * Returns the number of calls that were matched with a call recorded
+	 * while handling the same event
+	 *
+	 * @return number of matched calls
+	 */
+	public long getMatched() {
+		return mcMatched;
+	}
+
+	/**
+	 * Returns the number of calls that were answered with a call recorded
+	 * earlier with the same arguments
+	 *
+	 * @return number of calls answered with an earlier result
+	 */
+	public long getFallbacks() {
+		return mcFallbacks;
+	}
+
+	/**
+	 * Returns the number of calls that never were recorded
+	 *
+	 * @return number of calls answered with a default value
+	 */
+	public long getMisses() {
+		return mcMisses;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Finds the call in the pending calls, starting at the cursor and looking
+	 * at most MAX_LOOKAHEAD calls ahead
+	 *
+	 * @param key
+	 *            key of the call
+	 * @return the recorded call, null if not found
+	 */
+	private RecordedCall findPending(String key) {
+		int end = Math.min(mPending.size(), mCursor + MAX_LOOKAHEAD);
+		for (int i = mCursor; i < end; i++) {
+			RecordedCall call = mPending.get(i);
+			if (call != null && call.getKey().equals(key)) {
+				if (i == mCursor) {
+					mCursor++;
+				} else {
+					// Out of order, leave the skipped calls for later
+					mPending.set(i, null);
+				}
+				// Skip calls that have been used out of order
+				while (mCursor < mPending.size() && mPending.get(mCursor) == null) {
+					mCursor++;
+				}
+				return call;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copies the recorded content of the array arguments to the arguments of
+	 * the call
+	 *
+	 * @param method
+	 *            the called method
+	 * @param recordedArgs
+	 *            the recorded arguments
+	 * @param args
+	 *            the arguments of the call
+	 */
+	private static void copyArrays(Method method, Object[] recordedArgs, Object[] args) {
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (parameterTypes[i].isArray() && recordedArgs[i] != null && args[i] != null) {
+				int length = Math.min(Array.getLength(recordedArgs[i]), Array.getLength(args[i]));
+				System.arraycopy(recordedArgs[i], 0, args[i], 0, length);
+			}
+		}
+	}
+
+	/**
+	 * Returns the default value of a type
+	 *
+	 * @param type
+	 *            the type
+	 * @return 0 for numbers, false for booleans, else null
+	 */
+	private static Object getDefault(Class<?> type) {
+		if (type == int.class) {
+			return 0;
+		} else if (type == float.class) {
+			return 0.0f;
+		} else if (type == boolean.class) {
+			return false;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * How many calls ahead a call is searched for in the pending calls
+	 */
+	private static final int MAX_LOOKAHEAD = 256;
+	/**
+	 * Index of the callback methods
+	 */
+	private HashMap<Method, Integer> mMethodIndices;
+	/**
+	 * Calls recorded while handling the current event, used calls are set to
+	 * null
+	 */
+	private ArrayList<RecordedCall> mPending;
+	/**
+	 * The next pending call to match
+	 */
+	private int mCursor;
+	/**
+	 * The latest recorded call of every key
+	 */
+	private HashMap<String, RecordedCall> mLatest;
+	/**
+	 * Number of calls matched with a pending call
+	 */
+	private long mcMatched;
+	/**
+	 * Number of calls answered with an earlier call
+	 */
+	private long mcFallbacks;
+	/**
+	 * Number of calls answered with a default value
+	 */
+	private long mcMisses;
+}
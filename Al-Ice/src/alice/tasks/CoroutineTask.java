@@ -0,0 +1,245 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.tasks;
+
+import alice.AlIce;
+import alice.interfaces.ITaskObserver;
+
+/**
+ * A task that is written as a coroutine instead of a state machine with flags.
+ * The body is split into steps at the points where the task waits, step()
+ * executes one step and tells what to wait for before the next step through
+ * one of the wait methods:
+ * 
+ * <pre>
+ * switch (step) {
+ * case START:
+ * 	return waitForTask(new TMoveCloseTo(...), MOVED);
+ * case MOVED:
+ * 	if (getTaskStatus() != Status.COMPLETED_SUCCESSFULLY) {
+ * 		return Status.FAILED_CLEANLY;
+ * 	}
+ * 	return sleep(30, DONE);
+ * ...
+ * </pre>
+ * 
+ * The coroutine is stackless, i.e. local variables don't survive a wait and
+ * values that are needed in a later step must be stored in fields. A waiting
+ * coroutine is either parked or scheduled for a later frame, so it doesn't
+ * cost anything until it's resumed. The coroutines are resumed by the task
+ * handler on the engine thread, one at a time.
+ * 
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public abstract class CoroutineTask extends Task implements ITaskObserver {
+
+	/**
+	 * Constructor, the coroutine starts at the step START
+	 * 
+	 * @param alIce
+	 *            the AI interface
+	 */
+	public CoroutineTask(AlIce alIce) {
+		super(alIce);
+		mStep = START;
+		mChildTask = null;
+		mChildStatus = null;
+		mYielded = false;
+	}
+
+	/**
+	 * Resumes the coroutine where it waited last. Steps that continue
+	 * directly with goTo() are executed in the same call.
+	 * 
+	 * @see alice.tasks.Task#execute()
+	 */
+	@Override
+	public final Status execute() {
+		// Still waiting for the child task
+		if (mChildTask != null) {
+			park();
+			return Status.EXECUTED_SUCCESSFULLY;
+		}
+
+		Status status;
+		do {
+			mYielded = false;
+			status = step(mStep);
+		} while (!mYielded && status == Status.EXECUTED_SUCCESSFULLY);
+
+		return status;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.tasks.Task#halt()
+	 */
+	@Override
+	public void halt() {
+		mAlIce.getTaskHandler().halt(mChildTask);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.tasks.Task#resume()
+	 */
+	@Override
+	public void resume() {
+		mAlIce.getTaskHandler().resume(mChildTask);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.ITaskObserver#onTaskFinished(alice.tasks.Task,
+	 * alice.tasks.Task.Status)
+	 */
+	@Override
+	public void onTaskFinished(Task task, Status status) {
+		if (task == mChildTask) {
+			mChildTask = null;
+			mChildStatus = status;
+			wake();
+		}
+	}
+
+	/**
+	 * Executes the step of the coroutine. The step shall end by returning one
+	 * of the wait methods, goTo(), or a status other than
+	 * EXECUTED_SUCCESSFULLY when the task has finished.
+	 * 
+	 * @param step
+	 *            the step to execute, START the first time
+	 * @return status of the task
+	 */
+	protected abstract Status step(int step);
+
+	/**
+	 * Continues directly with the next step
+	 * 
+	 * @param nextStep
+	 *            the step to continue with
+	 * @return EXECUTED_SUCCESSFULLY
+	 */
+	protected Status goTo(int nextStep) {
+		mStep = nextStep;
+		return Status.EXECUTED_SUCCESSFULLY;
+	}
+
+	/**
+	 * Continues with the next step the next time the task is executed, i.e.
+	 * after the execute interval
+	 * 
+	 * @param nextStep
+	 *            the step to continue with
+	 * @return EXECUTED_SUCCESSFULLY
+	 */
+	protected Status waitForNextExecute(int nextStep) {
+		mStep = nextStep;
+		mYielded = true;
+		return Status.EXECUTED_SUCCESSFULLY;
+	}
+
+	/**
+	 * Sleeps the specified number of frames before continuing with the next
+	 * step
+	 * 
+	 * @param frames
+	 *            number of frames to sleep
+	 * @param nextStep
+	 *            the step to continue with
+	 * @return EXECUTED_SUCCESSFULLY
+	 */
+	protected Status sleep(int frames, int nextStep) {
+		setNextExecuteFrame(mAlIce.getCurrentFrame() + frames);
+		return waitForNextExecute(nextStep);
+	}
+
+	/**
+	 * Runs the task and continues with the next step when it has finished.
+	 * The status of the task is returned by getTaskStatus() in the next step.
+	 * 
+	 * @param task
+	 *            the task to run and wait for
+	 * @param nextStep
+	 *            the step to continue with
+	 * @return EXECUTED_SUCCESSFULLY
+	 */
+	protected Status waitForTask(Task task, int nextStep) {
+		mChildTask = task;
+		mChildStatus = null;
+		if (!mAlIce.getTaskHandler().run(task, this)) {
+			// Already running, we can't observe it
+			mChildTask = null;
+			mChildStatus = Status.FAILED_CLEANLY;
+			return goTo(nextStep);
+		}
+		park();
+		return waitForNextExecute(nextStep);
+	}
+
+	/**
+	 * Waits until the task is woken by wake() and then continues with the
+	 * next step. Use it to wait for an event, the event listener should store
+	 * the event in a field and call wake(). Add the listener through
+	 * getSubscriptions() so that it's removed with the task.
+	 * 
+	 * @param nextStep
+	 *            the step to continue with
+	 * @return EXECUTED_SUCCESSFULLY
+	 */
+	protected Status waitForEvent(int nextStep) {
+		park();
+		return waitForNextExecute(nextStep);
+	}
+
+	/**
+	 * Returns the status of the task that was waited for with waitForTask()
+	 * 
+	 * @return status of the finished task, null if no task has finished
+	 */
+	protected Status getTaskStatus() {
+		return mChildStatus;
+	}
+
+	/**
+	 * The first step of the coroutine. Subclasses number their other steps
+	 * from START + 1.
+	 */
+	protected static final int START = 0;
+	/**
+	 * The step to execute next
+	 */
+	private int mStep;
+	/**
+	 * The task we wait for, null if we don't wait for a task
+	 */
+	private Task mChildTask;
+	/**
+	 * Status of the last task we waited for
+	 */
+	private Status mChildStatus;
+	/**
+	 * True if the current step waits for something before the next step
+	 */
+	private boolean mYielded;
+}
@@ -23,9 +23,13 @@ import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
+import alice.SpringHelper;
 import alice.TaskUnit;
-import alice.General.GameTimeTypes;
+import alice.TimerWheel;
+import alice.interfaces.ICommandObserver;
 import alice.interfaces.IEnemyEvents;
+import alice.interfaces.ITimerListener;
 
 import com.springrts.ai.AICommand;
 import com.springrts.ai.AIFloat3;
@@ -40,7 +44,7 @@ import com.springrts.ai.oo.WeaponDef;
  * @author Tobias Hall <kazzoa@gmail.com>
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public class TAttackTarget extends Task implements IEnemyEvents {
+public class TAttackTarget extends Task implements IEnemyEvents, ICommandObserver, ITimerListener {
 
 	/**
 	 * @param alIce
@@ -52,15 +56,21 @@ public class TAttackTarget extends Task implements IEnemyEvents {
 	 */
 	public TAttackTarget(AlIce alIce, TaskUnit taskUnit, int targetId) {
 		super(alIce);
-		mUnit = taskUnit;
-		mTargetId = targetId;
-		mAttackCommandSent = false;
-		mKilledTarget = false;
-		mFailType = FailTypes.NO_FAIL;
-		mLastEnemyCheck = mAlIce.getGameTime(GameTimeTypes.SECONDS);
-		mStartAttackTime = 0.0;
+		init(taskUnit, targetId);
+	}
 
-		mAlIce.addEnemyEventListener(mTargetId, this);
+	/**
+	 * Resets a finished task so that it can be run again, the task is then
+	 * the same as a newly created task. Used by TaskPools.
+	 * 
+	 * @param taskUnit
+	 *            The unit that should attack the target
+	 * @param targetId
+	 *            The id of the target to attack
+	 */
+	void reset(TaskUnit taskUnit, int targetId) {
+		resetTask();
+		init(taskUnit, targetId);
 	}
 
 	/*
@@ -72,33 +82,33 @@ public class TAttackTarget extends Task implements IEnemyEvents {
 	public Status execute() {
 		Status status = Status.EXECUTED_SUCCESSFULLY;
 
-		if (mAttackCommandSent && mStartAttackTime + Defs.ATTACK_TARGET_TIMEOUT < mAlIce.getGameTime(GameTimeTypes.SECONDS)) {
-			mFailType = FailTypes.TIMED_OUT;
-		} else if (mLastEnemyCheck + Defs.ENEMY_CHECK_TIME < mAlIce.getGameTime(GameTimeTypes.SECONDS)) {
-			mLastEnemyCheck = mAlIce.getGameTime(GameTimeTypes.SECONDS);
+		// Listen to the target first when the task is executed, a task that is
+		// never run shall not leave any listener or timer behind
+		if (mEnemyCheckTimer == null) {
+			mEnemyCheckTimer = getSubscriptions().schedulePeriodic(SpringHelper.secondsToFrames(Defs.ENEMY_CHECK_TIME), this);
+			getSubscriptions().addEnemyEventListener(mTargetId, this);
+		}
 
-			if (!mAlIce.enemyExists(mTargetId)) {
-				mFailType = FailTypes.TARGET_LOST;
+		// Timed out and lost targets are set by timerExpired()
+		if (mFailType == FailTypes.NO_FAIL) {
+			if (mUnit.getUnit() == null) {
+				mFailType = FailTypes.UNIT_DIED;
+				mAlIce.log(LOG, Level.FINE, "Unit trying to attack is destroyed");
+			} else if (mKilledTarget) {
+				mAlIce.log(LOG, Level.FINE, "Target is destroyed!");
+				status = Status.COMPLETED_SUCCESSFULLY;
 			}
-		} else if (mUnit.getUnit() == null) {
-			mFailType = FailTypes.UNIT_DIED;
-			mAlIce.log(Level.FINE, "Unit trying to attack is destroyed");
-		} else if (mKilledTarget) {
-			mAlIce.log(Level.FINE, "Target is destroyed!");
-			status = Status.COMPLETED_SUCCESSFULLY;
 		}
 
 		if (mFailType != FailTypes.NO_FAIL) {
-			mAlIce.log(Level.FINE, "Attack failed: " + mFailType.toString());
+			mAlIce.log(LOG, Level.FINE, "Attack failed: {}", mFailType);
 			status = Status.UNEXPECTED_ERROR;
 		} else if (!mAttackCommandSent) {
 			sendAICommand();
 		}
 
-		// the task is done, remove the listener
-		if (status != Status.EXECUTED_SUCCESSFULLY) {
-			mAlIce.removeEnemyEventListener(mTargetId, this);
-		}
+		// The listener and timers are released by the task handler when the
+		// task is done
 
 		return status;
 	}
@@ -145,6 +155,36 @@ public class TAttackTarget extends Task implements IEnemyEvents {
 		UNIT_DIED
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.tasks.Task#getExecuteInterval()
+	 */
+	@Override
+	public int getExecuteInterval() {
+		// In combat, react every frame
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * alice.interfaces.ITimerListener#timerExpired(alice.TimerWheel.Timer)
+	 */
+	@Override
+	public void timerExpired(TimerWheel.Timer timer) {
+		if (mFailType != FailTypes.NO_FAIL || mKilledTarget) {
+			return;
+		}
+
+		if (timer == mTimeoutTimer) {
+			mFailType = FailTypes.TIMED_OUT;
+		} else if (timer == mEnemyCheckTimer && !mAlIce.enemyExists(mTargetId)) {
+			mFailType = FailTypes.TARGET_LOST;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -261,36 +301,62 @@ public class TAttackTarget extends Task implements IEnemyEvents {
 		// Don't implement this
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.ICommandObserver#commandFailed(com.springrts.ai.
+	 * AICommand, int)
+	 */
+	@Override
+	public void commandFailed(AICommand command, int result) {
+		mAlIce.log(LOG, Level.SEVERE, "Sending attack command failed!");
+		mFailType = FailTypes.COMMAND_FAILED;
+	}
+
 	/**
 	 * Send the attack target command
 	 */
 	private void sendAICommand() {
-		mAlIce.log(Level.FINE, "Sending AI Attack command!");
+		mAlIce.log(LOG, Level.FINE, "Sending AI Attack command!");
 		// Send the attack command to the engine
 		AICommand attackCommand = new AttackUnitAICommand(mUnit.getUnitId(), -1, 0, Defs.TIME_OUT, mTargetId);
-		// If command is valid, execute it
+		// If command is valid, queue it
 		if (attackCommand != null) {
 			mAttackCommandSent = true;
-			int res = mAlIce.handleEngineCommand(attackCommand);
-			// Check if everything went OK
-			if (res != 0) {
-				mAlIce.log(Level.SEVERE, "Sending attack command failed!");
-				mFailType = FailTypes.COMMAND_FAILED;
-			}
+			mAlIce.queueUnitCommand(mUnit.getUnitId(), attackCommand, this);
+
+			// Time out the attack if the target isn't destroyed in time
+			mTimeoutTimer = getSubscriptions().schedule(SpringHelper.secondsToFrames(Defs.ATTACK_TARGET_TIMEOUT), this);
 		}
+	}
 
-		// Set the start time
-		mStartAttackTime = mAlIce.getGameTime(GameTimeTypes.SECONDS);
+	/**
+	 * Initializes the task for a unit and a target
+	 * 
+	 * @param taskUnit
+	 *            The unit that should attack the target
+	 * @param targetId
+	 *            The id of the target to attack
+	 */
+	private void init(TaskUnit taskUnit, int targetId) {
+		mUnit = taskUnit;
+		mTargetId = targetId;
+		mAttackCommandSent = false;
+		mKilledTarget = false;
+		mFailType = FailTypes.NO_FAIL;
+		mTimeoutTimer = null;
+		mEnemyCheckTimer = null;
 	}
 
 	/**
-	 * The last time we checked for enemies
+	 * Times out the attack, null until the attack command has been sent
 	 */
-	private double mLastEnemyCheck;
+	private TimerWheel.Timer mTimeoutTimer;
 	/**
-	 * Start attack time
+	 * Periodic timer for checking if the target still exists, null until the
+	 * task is executed the first time
 	 */
-	private double mStartAttackTime;
+	private TimerWheel.Timer mEnemyCheckTimer;
 	/**
 	 * True if the AttackUnitAICommand has been sent to the engine
 	 */
@@ -311,5 +377,9 @@ public class TAttackTarget extends Task implements IEnemyEvents {
 	 * If "we" have killed the target
 	 */
 	private boolean mKilledTarget;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TAttackTarget.class);
 
 }
@@ -18,12 +18,14 @@
  */
 package alice.tasks;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.ListIterator;
 import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
 import alice.TaskHandler;
 import alice.TaskUnit;
 import alice.TaskUnit.TaskPriority;
@@ -99,7 +101,7 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 
 		// Fail the task if the attack force is empty!
 		if (mAttackForce.isEmpty()) {
-			mAlIce.log(Level.FINE, "Whole attack force destroyed");
+			mAlIce.log(LOG, Level.FINE, "Whole attack force destroyed");
 			return Status.UNEXPECTED_ERROR;
 		}
 
@@ -119,7 +121,7 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 				// " herp: " + this);
 				// Create attack tasks for attack force
 				for (TaskUnit taskUnit : mAttackForce) {
-					TAttackTarget tempAttack = new TAttackTarget(mAlIce, taskUnit, closestEnemy.getUnitId());
+					TAttackTarget tempAttack = mAlIce.getTaskPools().obtainAttackTarget(taskUnit, closestEnemy.getUnitId());
 					mAttackTasks.add(tempAttack);
 					mAlIce.getTaskHandler().run(tempAttack, this, taskUnit, TaskPriority.HIGH);
 				}
@@ -130,14 +132,14 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 			mHasIssuedRegroup = true;
 			// Create move to tasks for attack/healer force
 			float radius = Defs.CLOSE_TO_WP + REGROUP_RADIUS_PER_UNIT * (mAttackForce.size() + mHealForce.size() + 1);
-			mAlIce.log(Level.FINE, "Creating regroup commamd: " + mGroupPosition + " size of group: " + mAttackForce.size());
+			mAlIce.log(LOG, Level.FINE, "Creating regroup commamd: {} size of group: {}", mGroupPosition, mAttackForce.size());
 			for (TaskUnit taskUnit : mAttackForce) {
-				TMoveCloseTo tempMove = new TMoveCloseTo(mAlIce, taskUnit, mGroupPosition, radius);
+				TMoveCloseTo tempMove = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mGroupPosition, radius);
 				mRegroupTasks.add(tempMove);
 				mAlIce.getTaskHandler().run(tempMove, this, taskUnit, TaskPriority.MEDIUM);
 			}
 			for (TaskUnit taskUnit : mHealForce) {
-				TMoveCloseTo tempMove = new TMoveCloseTo(mAlIce, taskUnit, mGroupPosition, radius);
+				TMoveCloseTo tempMove = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mGroupPosition, radius);
 				mRegroupTasks.add(tempMove);
 				mAlIce.getTaskHandler().run(tempMove, this, taskUnit, TaskPriority.MEDIUM);
 			}
@@ -151,17 +153,17 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 				mHasIssuedMovedTo = true;
 
 				for (TaskUnit taskUnit : mAttackForce) {
-					TMoveCloseTo tempMove = new TMoveCloseTo(mAlIce, taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
+					TMoveCloseTo tempMove = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
 					mMoveToTasks.add(tempMove);
 					mAlIce.getTaskHandler().run(mMoveToTasks.getLast(), this, taskUnit, TaskPriority.MEDIUM);
 				}
 				for (TaskUnit taskUnit : mHealForce) {
-					TMoveCloseTo tempMove = new TMoveCloseTo(mAlIce, taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
+					TMoveCloseTo tempMove = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
 					mMoveToTasks.add(tempMove);
 					mAlIce.getTaskHandler().run(tempMove, this, taskUnit, TaskPriority.MEDIUM);
 				}
 			} else {
-				mAlIce.log(Level.WARNING, "No target location was return...");
+				mAlIce.log(LOG, Level.WARNING, "No target location was return...");
 			}
 
 		}
@@ -213,7 +215,7 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 				if (it.next() == task) {
 					it.remove();
 					found = true;
-					mAlIce.log(Level.FINE, "MoveToTask has finished with status: " + status + ", left:" + mMoveToTasks.size());
+					mAlIce.log(LOG, Level.FINE, "MoveToTask has finished with status: {}, left:{}", status, mMoveToTasks.size());
 				}
 			}
 			// Remove regroup tasks
@@ -222,19 +224,20 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 				if (it.next() == task) {
 					it.remove();
 					found = true;
-					mAlIce.log(Level.FINE, "RegroupTask has finished with status: " + status + ", left: " + mRegroupTasks.size());
+					mAlIce.log(LOG, Level.FINE, "RegroupTask has finished with status: {}, left: {}", status, mRegroupTasks.size());
 				}
 			}
 
 			// If we found the task and it was returned with unexpected error
-			// remove the unit from this attack base
+			// remove the unit from this attack base. Unless we're clearing,
+			// then the units are freed and returned by clear()
 			if (found && status == Status.UNEXPECTED_ERROR) {
 				TMoveCloseTo moveCloseToTask = (TMoveCloseTo) task;
 				TaskUnit taskUnit = moveCloseToTask.getBoundTaskUnit();
 				mAlIce.getTaskHandler().unbindTask(task, taskUnit);
 
 				// Remove the task unit from the list
-				boolean removedUnit = false;
+				boolean removedUnit = mClearing;
 				ListIterator<TaskUnit> taskUnitIt = mAttackForce.listIterator();
 				while (!removedUnit && taskUnitIt.hasNext()) {
 					TaskUnit currentUnit = taskUnitIt.next();
@@ -253,6 +256,11 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 					}
 				}
 			}
+
+			// The task is ours and done, reuse it for the next move
+			if (found) {
+				mAlIce.getTaskPools().recycle((TMoveCloseTo) task);
+			}
 		} else if (task instanceof TAttackTarget) {
 			// If a task was completed, remove all the tasks.
 			TAttackTarget attackTargetTaks = (TAttackTarget) task;
@@ -263,6 +271,7 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 
 				for (TAttackTarget removedTask : removedTasks) {
 					mAlIce.getTaskHandler().remove(removedTask);
+					mAlIce.getTaskPools().recycle(removedTask);
 				}
 			}
 			// Else just remove the task that failed
@@ -271,8 +280,8 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 				while (it.hasNext()) {
 					if (it.next() == task) {
 						it.remove();
-						mAlIce.log(Level.FINE, "AttackTask has finished with status: " + status + ", left: " +
-								mAttackTasks.size());
+						mAlIce.log(LOG, Level.FINE, "AttackTask has finished with status: {}, left: {}", status, mAttackTasks.size());
+						mAlIce.getTaskPools().recycle(attackTargetTaks);
 						break;
 					}
 				}
@@ -289,17 +298,22 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 	public LinkedList<TaskUnit> clear() {
 		TaskHandler taskHandler = mAlIce.getTaskHandler();
 
-		for (Task task : mAttackTasks) {
+		// Removing a task calls onTaskFinished() which removes (and recycles)
+		// the task from the lists, iterate over copies. The units shall be
+		// kept in the forces until they are freed below
+		mClearing = true;
+		for (Task task : new ArrayList<Task>(mAttackTasks)) {
 			taskHandler.remove(task);
 		}
 
-		for (Task task : mRegroupTasks) {
+		for (Task task : new ArrayList<Task>(mRegroupTasks)) {
 			taskHandler.remove(task);
 		}
 
-		for (Task task : mMoveToTasks) {
+		for (Task task : new ArrayList<Task>(mMoveToTasks)) {
 			taskHandler.remove(task);
 		}
+		mClearing = false;
 
 		LinkedList<TaskUnit> removedUnits = new LinkedList<TaskUnit>();
 
@@ -336,13 +350,13 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 		if (!mRegroupTasks.isEmpty()) {
 			float radius = Defs.CLOSE_TO_WP + REGROUP_RADIUS_PER_UNIT * (mAttackForce.size() + mHealForce.size() + 1);
 			for (TaskUnit taskUnit : taskUnits) {
-				TMoveCloseTo task = new TMoveCloseTo(mAlIce, taskUnit, mGroupPosition, radius);
+				TMoveCloseTo task = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mGroupPosition, radius);
 				mRegroupTasks.add(task);
 				mAlIce.getTaskHandler().run(task, this, taskUnit, TaskPriority.MEDIUM);
 			}
 		} else if (!mMoveToTasks.isEmpty()) {
 			for (TaskUnit taskUnit : taskUnits) {
-				TMoveCloseTo task = new TMoveCloseTo(mAlIce, taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
+				TMoveCloseTo task = mAlIce.getTaskPools().obtainMoveCloseTo(taskUnit, mTargetLocation, Defs.CLOSE_TO_WP);
 				mMoveToTasks.add(task);
 				mAlIce.getTaskHandler().run(task, this, taskUnit, TaskPriority.MEDIUM);
 			}
@@ -391,8 +405,8 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 		// Since java did not want to divide we had to do this...
 		double failFix = 1.0 / mAttackForce.size();
 		for (TaskUnit taskUnit : mAttackForce) {
-			tempX += taskUnit.getUnitPos().x;
-			tempZ += taskUnit.getUnitPos().z;
+			tempX += taskUnit.getPosX();
+			tempZ += taskUnit.getPosZ();
 		}
 		tempX *= failFix;
 		tempZ *= failFix;
@@ -418,6 +432,11 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 	 * True if we sent regroup command
 	 */
 	private boolean mHasIssuedRegroup;
+	/**
+	 * True while clear() removes the tasks, the units shall then not be
+	 * removed from the forces when their tasks finish
+	 */
+	private boolean mClearing;
 	/**
 	 * The move close to tasks, one for each unit in mAttackForce and mHealForce
 	 */
@@ -442,4 +461,8 @@ public abstract class TBaseAttack extends Task implements ITaskObserver {
 	 * The radius should be bigger the more units we have
 	 */
 	private static final float REGROUP_RADIUS_PER_UNIT = 100;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TBaseAttack.class);
 }
@@ -19,15 +19,17 @@
 
 package alice.tasks;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
 import alice.SpringHelper;
 import alice.TaskUnit;
+import alice.UnitDefCatalog;
+import alice.interfaces.ICommandObserver;
 import alice.interfaces.ITaskObserver;
 import alice.interfaces.IUnitEvents;
 
@@ -47,7 +49,7 @@ import com.springrts.ai.oo.WeaponDef;
  * @author Tobias Hall <kazzoa@gmail.com>
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver {
+public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver, ICommandObserver {
 
 	/**
 	 * Constructor
@@ -68,9 +70,10 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		mConstructedUnit = null;
 		mFailed = false;
 		mBuildSuccess = false;
+		mBuildCommandFailed = false;
 		mListenerAdded = false;
 		mMinSpace = Defs.MIN_BUILD_SPACE;
-		mAlIce.log(Level.FINEST, "builder = " + mBuilder.getDefName() + ", buildDefName = " + mBuildDefName);
+		mAlIce.log(LOG, Level.FINEST, "builder = {}, buildDefName = {}", mBuilder.getDefName(), mBuildDefName);
 	}
 
 	/*
@@ -81,19 +84,19 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	@Override
 	public Status execute() {
 		if (mFailed || mBuilder.getUnit() == null) {
-			mAlIce.log(Level.FINE, "Something happend, I died or something else");
+			mAlIce.log(LOG, Level.FINE, "Something happend, I died or something else");
 			return Status.UNEXPECTED_ERROR;
 		}
 
 		if (!mListenerAdded) {
-			mAlIce.addUnitEventListener(mBuilder.getUnitId(), this);
-			// mListenerAdded = true;
+			getSubscriptions().addUnitEventListener(mBuilder.getUnitId(), this);
+			mListenerAdded = true;
 		}
 
 		if (!mCommandIssued) {
-			mBuildDef = SpringHelper.canBuild(mBuilder.getDef(), mBuildDefName);
+			mBuildDef = mAlIce.getUnitDefCatalog().canBuild(mBuilder.getDef(), mBuildDefName);
 			if (mBuildDef == null) {
-				mAlIce.log(Level.SEVERE, "Can't build " + mBuildDefName + " with " + mBuilder.getDefName());
+				mAlIce.log(LOG, Level.SEVERE, "Can't build {} with {}", mBuildDefName, mBuilder.getDefName());
 				return Status.FAILED_CLEANLY;
 			} else {
 				mCommandIssued = true;
@@ -101,13 +104,20 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 				// Send the build command
 				boolean buildOK = sendBuildCommand();
 				if (!buildOK) {
-					mAlIce.log(Level.SEVERE, "sendBuildCommand failed");
+					mAlIce.log(LOG, Level.SEVERE, "sendBuildCommand failed");
 					return Status.FAILED_CLEANLY;
 				}
 			}
+		} else if (mBuildCommandFailed) {
+			return Status.FAILED_CLEANLY;
 		} else if (mBuildSuccess) {
 			return Status.COMPLETED_SUCCESSFULLY;
 		}
+
+		// Wait for the events that finishes the building
+		if (mCommandIssued) {
+			park();
+		}
 		return Status.EXECUTED_SUCCESSFULLY;
 	}
 
@@ -119,18 +129,13 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	@Override
 	public void halt() {
 		// Remove the command from the unit if we have issued the command
-		AICommand command = new StopUnitAICommand(mBuilder.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT);
+		AICommand command = new StopUnitAICommand(mBuilder.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT);
 
-		// If command is valid, execute it
+		// If command is valid, queue it
 		if (command != null) {
-			int res = mAlIce.handleEngineCommand(command);
-
-			// Check if there were some errors report it
-			if (res != 0) {
-				mAlIce.log(Level.WARNING, "ERROR! Couldn't issuing stop command!");
-			}
+			mAlIce.queueUnitCommand(mBuilder.getUnitId(), command, this);
 		} else {
-			mAlIce.log(Level.WARNING, "ERROR! Couldn't create stop command!");
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't create stop command!");
 		}
 	}
 
@@ -143,21 +148,16 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	public void resume() {
 		// Resume building if we have a building
 		if (mBuilder.getUnit() != null && mConstructedUnit != null && mConstructedUnit.getUnit() != null) {
-			AICommand command = new RepairUnitAICommand(mBuilder.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT,
+			AICommand command = new RepairUnitAICommand(mBuilder.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT,
 					mConstructedUnit.getUnit());
 
-			// If command is valid, execute it
+			// If command is valid, queue it
 			if (command != null) {
-				int res = mAlIce.handleEngineCommand(command);
-
-				// Check if there were some errors report it
-				if (res != 0) {
-					mAlIce.log(Level.WARNING, "ERROR! Couldn't continue building!");
-					mFailed = true;
-				}
+				mAlIce.queueUnitCommand(mBuilder.getUnitId(), command, this);
 			} else {
-				mAlIce.log(Level.WARNING, "ERROR! Couldn't create continue building command!");
+				mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't create continue building command!");
 				mFailed = true;
+				wake();
 			}
 		}
 	}
@@ -191,23 +191,19 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 			// ", BuildPos: " + buildPos);
 
 			// Create build command
-			AICommand command = new BuildUnitAICommand(mBuilder.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT,
+			AICommand command = new BuildUnitAICommand(mBuilder.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT,
 					mBuildDef, buildPos, -1);
 
-			// If command is valid, execute it
+			// If command is valid, queue it. If it fails we get notified in
+			// commandFailed()
 			if (command != null) {
-				int res = mAlIce.handleEngineCommand(command);
-				// Check if something went wrong
-				if (res != 0) {
-					mAlIce.log(Level.SEVERE, "Failed issuing command!");
-					return false;
-				}
+				mAlIce.queueUnitCommand(mBuilder.getUnitId(), command, this);
 			}
 
 		} catch (Exception ex) {
-			mAlIce.log(Level.SEVERE, "Exception: " + ex.toString());
+			mAlIce.log(LOG, Level.SEVERE, "Exception: {}", ex);
 			for (StackTraceElement element : ex.getStackTrace()) {
-				mAlIce.log(Level.SEVERE, element.toString());
+				mAlIce.log(LOG, Level.SEVERE, element.toString());
 			}
 			return false;
 		}
@@ -215,6 +211,27 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		return true;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.ICommandObserver#commandFailed(com.springrts.ai.
+	 * AICommand, int)
+	 */
+	@Override
+	public void commandFailed(AICommand command, int result) {
+		// Check if there were some errors report it
+		if (command instanceof StopUnitAICommand) {
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't issuing stop command!");
+		} else if (command instanceof RepairUnitAICommand) {
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't continue building!");
+			mFailed = true;
+		} else {
+			mAlIce.log(LOG, Level.SEVERE, "Failed issuing command!");
+			mBuildCommandFailed = true;
+		}
+		wake();
+	}
+
 	/**
 	 * Returns true if the unit definition name represents a moving unit
 	 * 
@@ -265,9 +282,9 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 			mConstructedUnit = mAlIce.getTaskUnitHandler().getTaskUnit(unit.getUnitId());
 
 			if (mConstructedUnit != null) {
-				mAlIce.addUnitEventListener(mConstructedUnit.getUnitId(), this);
+				getSubscriptions().addUnitEventListener(mConstructedUnit.getUnitId(), this);
 			} else {
-				mAlIce.log(Level.SEVERE, "Constructed unit is null! UnitId: " + unit.getUnitId());
+				mAlIce.log(LOG, Level.SEVERE, "Constructed unit is null! UnitId: {}", unit.getUnitId());
 			}
 		}
 	}
@@ -294,13 +311,11 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	public void unitDestroyed(Unit unit, Unit attacker) {
 		mFailed = true;
 
-		if (mBuilder.getUnit() != null) {
-			mAlIce.removeUnitEventListener(mBuilder.getUnitId(), this);
-		}
-		if (mConstructedUnit != null) {
-			mAlIce.removeUnitEventListener(mConstructedUnit.getUnitId(), this);
-			mConstructedUnit = null;
-		}
+		// The unit's id may be reused, the other listeners are released when
+		// the task is removed
+		getSubscriptions().removeUnitEventListener(unit.getUnitId(), this);
+		mConstructedUnit = null;
+		wake();
 	}
 
 	/*
@@ -313,9 +328,9 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		if (mConstructedUnit != null && mConstructedUnit.getUnitId() == unit.getUnitId()) {
 			// mAlIce.log(Level.FINER, "" + toString() + " finished building");
 
-			mAlIce.removeUnitEventListener(unit.getUnitId(), this);
-			mAlIce.removeUnitEventListener(mBuilder.getUnitId(), this);
+			getSubscriptions().removeUnitEventListener(unit.getUnitId(), this);
 			mBuildSuccess = true;
+			wake();
 		}
 
 	}
@@ -332,6 +347,7 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		// the unit
 		if (mConstructedUnit == null) {
 			mFailed = true;
+			wake();
 		}
 	}
 
@@ -346,6 +362,7 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		// Just fail the task and it will probably try to build again and
 		// hopefully in another direction...
 		mFailed = true;
+		wake();
 	}
 
 	/*
@@ -371,6 +388,7 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 		// task is finished we can set the commandIssued to false to try
 		// building again.
 		mCommandIssued = false;
+		wake();
 	}
 
 	/**
@@ -380,8 +398,10 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	 * @return minimum build distance for mobile units.
 	 */
 	protected float calculateMinBuildDistance() {
-		final float x = (mBuildDef.getXSize() + mBuilder.getDef().getXSize()) * BUILD_OFFSET_MULTIPLIER;
-		final float z = (mBuildDef.getZSize() + mBuilder.getDef().getZSize()) * BUILD_OFFSET_MULTIPLIER;
+		UnitDefCatalog.DefInfo buildDefInfo = mAlIce.getUnitDefCatalog().get(mBuildDef);
+		UnitDefCatalog.DefInfo builderDefInfo = mBuilder.getDefInfo();
+		final float x = (buildDefInfo.xSize + builderDefInfo.xSize) * BUILD_OFFSET_MULTIPLIER;
+		final float z = (buildDefInfo.zSize + builderDefInfo.zSize) * BUILD_OFFSET_MULTIPLIER;
 
 		return (float) Math.sqrt(x * x + z * z);
 	}
@@ -434,11 +454,13 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	 */
 	protected boolean validBuildPos(AIFloat3 buildPos, boolean checkExtractionPoints) {
 		// Check for minimum range from the unit
-		int xDiff = Math.abs((int) (mBuilder.getUnitPos().x - buildPos.x));
-		int zDiff = Math.abs((int) (mBuilder.getUnitPos().z - buildPos.z));
-		int xSize = Math.abs(mBuilder.getUnit().getDef().getXSize() + mBuildDef.getXSize());
+		int xDiff = Math.abs((int) (mBuilder.getPosX() - buildPos.x));
+		int zDiff = Math.abs((int) (mBuilder.getPosZ() - buildPos.z));
+		UnitDefCatalog.DefInfo buildDefInfo = mAlIce.getUnitDefCatalog().get(mBuildDef);
+		UnitDefCatalog.DefInfo builderDefInfo = mBuilder.getDefInfo();
+		int xSize = Math.abs(builderDefInfo.xSize + buildDefInfo.xSize);
 		xSize *= BUILD_OFFSET_MULTIPLIER;
-		int zSize = Math.abs(mBuilder.getUnit().getDef().getZSize() + mBuildDef.getZSize());
+		int zSize = Math.abs(builderDefInfo.zSize + buildDefInfo.zSize);
 		zSize *= BUILD_OFFSET_MULTIPLIER;
 
 		if ((xDiff * xDiff + zDiff * zDiff) < (xSize * xSize + zSize * zSize)) {
@@ -447,8 +469,8 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 
 		if (checkExtractionPoints) {
 			// Check so that we don't build on a metal extraction point.
-			float buildingSize = (float) (Math.sqrt(mBuildDef.getXSize() * mBuildDef.getXSize() + mBuildDef.getZSize() *
-					mBuildDef.getZSize()) * BUILD_OFFSET_MULTIPLIER);
+			float buildingSize = (float) (Math.sqrt(buildDefInfo.xSize * buildDefInfo.xSize + buildDefInfo.zSize *
+					buildDefInfo.zSize) * BUILD_OFFSET_MULTIPLIER);
 			Resource metal = mAlIce.getResource(Defs.Metal);
 			List<AIFloat3> extractionPoints = mAlIce.getMap().getResourceMapSpotsPositions(metal);
 			for (AIFloat3 extractionPoint : extractionPoints) {
@@ -500,6 +522,10 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	 * The building was completed successfully
 	 */
 	private boolean mBuildSuccess;
+	/**
+	 * The engine couldn't execute the build command
+	 */
+	private boolean mBuildCommandFailed;
 	/**
 	 * If we have added the listener for the unit
 	 */
@@ -512,4 +538,8 @@ public class TBuildUnitByUnit extends Task implements IUnitEvents, ITaskObserver
 	 * True if the task has failed, e.g. if one of the unit has died
 	 */
 	private boolean mFailed;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TBuildUnitByUnit.class);
 }
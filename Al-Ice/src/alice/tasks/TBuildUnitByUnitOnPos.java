@@ -21,6 +21,7 @@ package alice.tasks;
 import java.util.logging.Level;
 
 import alice.AlIce;
+import alice.LogSource;
 import alice.SpringHelper;
 import alice.TaskUnit;
 import alice.interfaces.ITaskObserver;
@@ -59,7 +60,7 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 		mClosestBuildPos = mAlIce.getMap().findClosestBuildSite(mBuildDef, mSearchPosition, SEARCH_RADIUS, mMinSpace, FACING);
 
 		// Autoset buildDistanceOk to true when our unit is flying
-		if (mBuilder.getUnitGroup().unitDef.isAbleToFly()) {
+		if (mBuilder.getDefInfo().ableToFly) {
 			mBuildDistanceOk = true;
 		}
 	}
@@ -73,8 +74,8 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 		Status status = Status.EXECUTED_SUCCESSFULLY;
 
 		if (!mBuildDistanceOk && mMoveToTask == null) {
-			float distance = SpringHelper.getDist(mClosestBuildPos, mBuilder.getUnitPos());
-			mAlIce.log(Level.FINEST, "Distance: " + distance + ", Min distance: " + mMinBuildDistance);
+			float distance = SpringHelper.getDist(mClosestBuildPos.x, mClosestBuildPos.z, mBuilder.getPosX(), mBuilder.getPosZ());
+			mAlIce.log(LOG, Level.FINEST, "Distance: {}, Min distance: {}", distance, mMinBuildDistance);
 			if (distance < mMinBuildDistance) {
 				AIFloat3 direction = SpringHelper.getDiff(mBuilder.getUnitPos(), mClosestBuildPos);
 				SpringHelper.normalizeVec(direction, false);
@@ -85,7 +86,7 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 
 				// Get the elevation (y) from the map
 				movePos.y = mAlIce.getMap().getElevationAt(movePos.x, movePos.z);
-				mAlIce.log(Level.FINEST, "Unit position: " + mBuilder.getUnitPos() + ", Build position: " + mClosestBuildPos);
+				mAlIce.log(LOG, Level.FINEST, "Unit position: {}, Build position: {}", mBuilder.getUnitPos(), mClosestBuildPos);
 
 				mMoveToTask = new TMoveCloseTo(mAlIce, mBuilder, movePos, CLOSE_RADIUS * mMinBuildDistance);
 				mAlIce.getTaskHandler().run(mMoveToTask, this);
@@ -96,6 +97,9 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 
 		if (mBuildDistanceOk) {
 			status = super.execute();
+		} else if (mMoveToTask != null) {
+			// Wait until we have moved away from the build position
+			park();
 		}
 
 		return status;
@@ -115,8 +119,9 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 	public void onTaskFinished(Task task, Status status) {
 		// If our move to task finished, set it to null.
 		if (task == mMoveToTask) {
-			mAlIce.log(Level.FINE, "MoveCloseTo finished!");
+			mAlIce.log(LOG, Level.FINE, "MoveCloseTo finished!");
 			mMoveToTask = null;
+			wake();
 		} else {
 			super.onTaskFinished(task, status);
 		}
@@ -158,4 +163,8 @@ public class TBuildUnitByUnitOnPos extends TBuildUnitByUnit implements ITaskObse
 	 * The minimum distance we need to be from the building site.
 	 */
 	private float mMinBuildDistance;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TBuildUnitByUnitOnPos.class);
 }
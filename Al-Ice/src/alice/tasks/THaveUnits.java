@@ -23,6 +23,12 @@ import java.util.ListIterator;
 import java.util.logging.Level;
 
 import alice.AlIce;
+import alice.Defs;
+import alice.LogSource;
+import alice.UnitDefCatalog;
+import alice.interfaces.IUnitFinished;
+
+import com.springrts.ai.oo.Unit;
 
 /**
  * A task that takes a list of units and checks if we have all of those. When we
@@ -30,7 +36,7 @@ import alice.AlIce;
  * 
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public class THaveUnits extends Task {
+public class THaveUnits extends Task implements IUnitFinished {
 
 	/**
 	 * Constructor that takes a list of unit definitions and another list (of
@@ -47,11 +53,20 @@ public class THaveUnits extends Task {
 	public THaveUnits(AlIce alIce, LinkedList<String> unitDefs, LinkedList<Integer> cUnits) {
 		super(alIce);
 		if (unitDefs.size() != cUnits.size()) {
-			mAlIce.log(Level.SEVERE, "The lists doesn't have equal size!");
+			mAlIce.log(LOG, Level.SEVERE, "The lists doesn't have equal size!");
 		}
 
-		mUnitDefs = unitDefs;
-		mcUnits = cUnits;
+		// Look up the ids of the definitions once
+		int cDefs = Math.min(unitDefs.size(), cUnits.size());
+		mDefIds = new int[cDefs];
+		mcUnits = new int[cDefs];
+		ListIterator<String> unitDefIt = unitDefs.listIterator();
+		ListIterator<Integer> cUnitIt = cUnits.listIterator();
+		for (int i = 0; i < cDefs; i++) {
+			UnitDefCatalog.DefInfo defInfo = mAlIce.getUnitDefCatalog().get(unitDefIt.next());
+			mDefIds[i] = defInfo != null ? defInfo.defId : -1;
+			mcUnits[i] = cUnitIt.next();
+		}
 	}
 
 	/*
@@ -63,20 +78,41 @@ public class THaveUnits extends Task {
 	public Status execute() {
 
 		// Iterate through all the units. As soon as one isn't done we return
-		ListIterator<String> unitDefIt = mUnitDefs.listIterator();
-		ListIterator<Integer> cUnitIt = mcUnits.listIterator();
-
-		while (unitDefIt.hasNext()) {
-			String unitDef = unitDefIt.next();
-			int cUnit = cUnitIt.next();
-
-			if (mAlIce.getTaskUnitHandler().getNrFinishedUnits(unitDef) < cUnit) {
+		for (int i = 0; i < mDefIds.length; i++) {
+			if (mAlIce.getTaskUnitHandler().getNrFinishedUnits(mDefIds[i]) < mcUnits[i]) {
+				// Wait until another unit has been finished
+				getSubscriptions().addEventListener(this);
+				park();
 				return Status.EXECUTED_SUCCESSFULLY;
 			}
 		}
+
 		return Status.COMPLETED_SUCCESSFULLY;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.IUnitFinished#unitFinished(com.springrts.ai.oo.Unit)
+	 */
+	@Override
+	public void unitFinished(Unit unit) {
+		// The number of units can only have reached the goal when a unit is
+		// finished
+		wake();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.tasks.Task#getExecuteInterval()
+	 */
+	@Override
+	public int getExecuteInterval() {
+		// The units are built slowly, no need to check often
+		return Defs.HAVE_UNITS_CHECK_INTERVAL;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -98,13 +134,17 @@ public class THaveUnits extends Task {
 	}
 
 	/**
-	 * List with all the unit definitions that we need to have to complete this
-	 * goal
+	 * Ids of all the unit definitions that we need to have to complete this
+	 * goal, -1 for unknown definitions
 	 */
-	private LinkedList<String> mUnitDefs;
+	private int[] mDefIds;
 
 	/**
 	 * Number of the units that we need to have to complete this goal
 	 */
-	private LinkedList<Integer> mcUnits;
+	private int[] mcUnits;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(THaveUnits.class);
 }
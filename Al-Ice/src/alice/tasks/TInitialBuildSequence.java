@@ -24,6 +24,7 @@ import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
 import alice.TaskUnit;
 import alice.TaskUnit.TaskPriority;
 import alice.interfaces.ITaskObserver;
@@ -105,7 +106,7 @@ public class TInitialBuildSequence extends Task implements ITaskObserver {
 	 */
 	@Override
 	public void halt() {
-		mAlIce.log(Level.WARNING, "This task should never be halted!");
+		mAlIce.log(LOG, Level.WARNING, "This task should never be halted!");
 	}
 
 	/*
@@ -115,7 +116,7 @@ public class TInitialBuildSequence extends Task implements ITaskObserver {
 	 */
 	@Override
 	public void resume() {
-		mAlIce.log(Level.WARNING, "This task should never be resumed!");
+		mAlIce.log(LOG, Level.WARNING, "This task should never be resumed!");
 	}
 
 	/**
@@ -128,7 +129,7 @@ public class TInitialBuildSequence extends Task implements ITaskObserver {
 		if (commanders != null && !commanders.isEmpty()) {
 			commander = commanders.getFirst();
 		} else {
-			mAlIce.log(Level.SEVERE, "No commanders found, can't set building tasks!");
+			mAlIce.log(LOG, Level.SEVERE, "No commanders found, can't set building tasks!");
 			return;
 		}
 
@@ -161,5 +162,9 @@ public class TInitialBuildSequence extends Task implements ITaskObserver {
 	 * Task containing all the starting build buildings tasks
 	 */
 	private TSequence mBuildSequence;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TInitialBuildSequence.class);
 
 }
@@ -19,14 +19,16 @@
 
 package alice.tasks;
 
-import java.util.ArrayList;
 import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
 import alice.SpringHelper;
 import alice.TaskUnit;
-import alice.General.GameTimeTypes;
+import alice.TimerWheel;
+import alice.interfaces.ICommandObserver;
+import alice.interfaces.ITimerListener;
 
 import com.springrts.ai.AICommand;
 import com.springrts.ai.AIFloat3;
@@ -40,7 +42,7 @@ import com.springrts.ai.command.StopUnitAICommand;
  * 
  * @author Tobias Hall <kazzoa@gmail.com>
  */
-public class TMoveCloseTo extends Task {
+public class TMoveCloseTo extends Task implements ICommandObserver, ITimerListener {
 
 	/**
 	 * 
@@ -56,24 +58,26 @@ public class TMoveCloseTo extends Task {
 	public TMoveCloseTo(AlIce alIce, TaskUnit taskUnit, AIFloat3 destination, float closeRadius) {
 		super(alIce);
 
-		mUnit = taskUnit;
-		mDestination = destination;
-		mPosition = taskUnit.getUnitPos();
-		mCloseRadius = closeRadius;
-		mReachedDestination = false;
-		mCommandSent = false;
-		mWpPos = new AIFloat3(0, 0, 0);
-		mLastStopTime = mAlIce.getGameTime(GameTimeTypes.SECONDS);
-		mLastStopPosition = mPosition;
-		mRetries = 0;
-		if (!mUnit.getDef().isAbleToFly()) {
-			mPathId = initNewPath(mUnit, mDestination);
-		} else {
-			mPathId = 0;
-			mWpPos = mDestination;
-		}
-		mAlIce.log(Level.FINE, "PathId: " + mPathId);
+		mPosition = new AIFloat3(0, 0, 0);
+		mLastStopPosition = new AIFloat3(0, 0, 0);
+		mWaypoint = new AIFloat3(0, 0, 0);
+		init(taskUnit, destination, closeRadius);
+	}
 
+	/**
+	 * Resets a finished task so that it can be run again, the task is then
+	 * the same as a newly created task. Used by TaskPools.
+	 * 
+	 * @param taskUnit
+	 *            The unit to move
+	 * @param destination
+	 *            The position to move to
+	 * @param closeRadius
+	 *            The radius we consider close enough to the destination
+	 */
+	void reset(TaskUnit taskUnit, AIFloat3 destination, float closeRadius) {
+		resetTask();
+		init(taskUnit, destination, closeRadius);
 	}
 
 	/**
@@ -81,11 +85,11 @@ public class TMoveCloseTo extends Task {
 	 */
 	public void checkProgress() {
 		if (mUnit != null) {
-			float dist = SpringHelper.getDist(mUnit.getUnitPos().x, mUnit.getUnitPos().z, mDestination.x, mDestination.z);
+			float dist = SpringHelper.getDist(mUnit.getPosX(), mUnit.getPosZ(), mDestination.x, mDestination.z);
 			if (dist < mCloseRadius || mPosition == mDestination) {
 				mReachedDestination = true;
 			}
-			if (mUnit.getDef().isAbleToFly()) {
+			if (mUnit.getDefInfo().ableToFly) {
 				// mAlIce.log(Level.FINE, "Type: " + mUnit.getDefName() +
 				// " Distance: " + dist + "  CloseRadius: " + mCloseRadius);
 			}
@@ -99,7 +103,7 @@ public class TMoveCloseTo extends Task {
 	private void moveToDestination() {
 		try {
 			// Create move command
-			if (!mUnit.getDef().isAbleToFly()) {
+			if (!mUnit.getDefInfo().ableToFly) {
 				// mAlIce.log(Level.FINE, "GROUND UNIT - Issuing command");
 				mWpPos = getNextWaypoint(mPathId);
 				if (mWpPos != null) {
@@ -107,20 +111,16 @@ public class TMoveCloseTo extends Task {
 
 					AICommand command = null;
 					if (mWpPos.y >= 0) {
-						command = new MoveUnitAICommand(mUnit.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT,
+						command = new MoveUnitAICommand(mUnit.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT,
 								mWpPos);
 					}
 
-					// If command is valid, execute it
+					// If command is valid, queue it
 					if (command != null) {
-						int res = mAlIce.handleEngineCommand(command);
-						// Check if something went wrong
-						if (res != 0) {
-							mAlIce.log(Level.SEVERE, "Error sending command to engine!");
-						}
+						mAlIce.queueUnitCommand(mUnit.getUnitId(), command, this);
 					} else {
-						mAlIce.log(Level.SEVERE, "Could not create AICommand for ground unit");
-						mAlIce.log(Level.SEVERE, this.toString() + " unitPos: " + mUnit.getUnitPos());
+						mAlIce.log(LOG, Level.SEVERE, "Could not create AICommand for ground unit");
+						mAlIce.log(LOG, Level.SEVERE, "{} unitPos: {}", this, mUnit.getUnitPos());
 					}
 				}
 			}
@@ -128,21 +128,17 @@ public class TMoveCloseTo extends Task {
 			else {
 				// mAlIce.log(Level.FINE, "FLYING UNIT - Issuing command");
 				AICommand command = null;
-				command = new MoveUnitAICommand(mUnit.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT,
+				command = new MoveUnitAICommand(mUnit.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT,
 						mDestination);
-				// If command is valid, execute it
+				// If command is valid, queue it
 				if (command != null) {
-					int res = mAlIce.handleEngineCommand(command);
-					// Check if something went wrong
-					if (res != 0) {
-						mAlIce.log(Level.SEVERE, "Sending move command failed!");
-					}
+					mAlIce.queueUnitCommand(mUnit.getUnitId(), command, this);
 				} else {
-					mAlIce.log(Level.SEVERE, "Could not create AICommand for air unit");
+					mAlIce.log(LOG, Level.SEVERE, "Could not create AICommand for air unit");
 				}
 			}
 		} catch (Exception e) {
-			mAlIce.log(Level.SEVERE, "Move command = null | Exception:  " + e.toString());
+			mAlIce.log(LOG, Level.SEVERE, "Move command = null | Exception:  {}", e);
 		}
 	}
 
@@ -159,36 +155,43 @@ public class TMoveCloseTo extends Task {
 			return Status.UNEXPECTED_ERROR;
 		}
 
-		mPosition = new AIFloat3(mUnit.getUnitPos());
+		updatePosition();
 
 		checkProgress();
 
 		if (mReachedDestination) {
-			mAlIce.log(Level.FINEST, mUnit.getDefName() + " Id: " + mUnit.getUnitId() + " reached destination!");
+			mAlIce.log(LOG, Level.FINEST, "{} Id: {} reached destination!", mUnit.getDefName(), mUnit.getUnitId());
 			return Status.COMPLETED_SUCCESSFULLY;
 		} else if (!mCommandSent) {
 			mCommandSent = true;
 			moveToDestination();
+
+			// Start checking if the unit stops. The timer is first scheduled
+			// here so that a task that is never run doesn't leave it behind
+			mLastStopPosition.x = mPosition.x;
+			mLastStopPosition.y = mPosition.y;
+			mLastStopPosition.z = mPosition.z;
+			getSubscriptions().schedule(STOP_CHECK_FRAMES, this);
 		}
 		// We're close to the destination go to the next
-		else if (SpringHelper.getDist(mWpPos.x, mWpPos.z, mUnit.getUnitPos().x, mUnit.getUnitPos().z) <= Defs.CLOSE_TO_WP) {
+		else if (SpringHelper.getDist(mWpPos.x, mWpPos.z, mUnit.getPosX(), mUnit.getPosZ()) <= Defs.CLOSE_TO_WP) {
 			moveToDestination();
 		}
 		// We have stopped and are probably stuck and have not reached target
 		// destination , send command again. Only try for not flying...
-		else if (!mUnit.getDef().isAbleToFly() && unitHasStopped()) {
+		else if (!mUnit.getDefInfo().ableToFly && unitHasStopped()) {
 			mRetries++;
 
 			if (mRetries > Defs.MOVE_CLOSE_TO_MAX_RETRIES) {
 				return Status.UNEXPECTED_ERROR;
 			} else {
-				mAlIce.log(Level.FINE, "Unit has stopped, trying to initialize a new path");
+				mAlIce.log(LOG, Level.FINE, "Unit has stopped, trying to initialize a new path");
 				int tempPathId = initNewPath(mUnit, mDestination);
 				if (tempPathId != -1) {
 					mPathId = tempPathId;
 					moveToDestination();
 				} else {
-					mAlIce.log(Level.INFO, "Unit stopped, returning false");
+					mAlIce.log(LOG, Level.INFO, "Unit stopped, returning false");
 					return Status.UNEXPECTED_ERROR;
 				}
 				// moveToDestination();
@@ -237,12 +240,15 @@ public class TMoveCloseTo extends Task {
 	 * @return Destination way point and a status message in the y-position
 	 */
 	private AIFloat3 getNextWaypoint(int pathId) {
-		AIFloat3 wp = new AIFloat3(0, 0, 0);
-		GetNextWaypointPathAICommand command = new GetNextWaypointPathAICommand(pathId, wp);
+		// The waypoint is written to the same position each time
+		mWaypoint.x = 0;
+		mWaypoint.y = 0;
+		mWaypoint.z = 0;
+		GetNextWaypointPathAICommand command = new GetNextWaypointPathAICommand(pathId, mWaypoint);
 		int res = mAlIce.handleEngineCommand(command);
 		if (res == 0) {
 			// Command succeeded
-			return wp;
+			return mWaypoint;
 		}
 		// Failed command
 		return null;
@@ -256,18 +262,13 @@ public class TMoveCloseTo extends Task {
 	@Override
 	public void halt() {
 		// Remove the command from the unit if we have issued the command
-		AICommand command = new StopUnitAICommand(mUnit.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT);
+		AICommand command = new StopUnitAICommand(mUnit.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT);
 
-		// If command is valid, execute it
+		// If command is valid, queue it
 		if (command != null) {
-			int res = mAlIce.handleEngineCommand(command);
-
-			// Check if there were some errors report it
-			if (res != 0) {
-				mAlIce.log(Level.WARNING, "ERROR! Couldn't issuing stop command!");
-			}
+			mAlIce.queueUnitCommand(mUnit.getUnitId(), command, this);
 		} else {
-			mAlIce.log(Level.WARNING, "ERROR! Couldn't create stop command!");
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't create stop command!");
 		}
 
 	}
@@ -283,7 +284,7 @@ public class TMoveCloseTo extends Task {
 		// a new path. And implement it
 		if (mUnit.getUnit() != null) {
 			// Only initialize new path if the unit can't fly
-			if (mUnit.getDef().isAbleToFly()) {
+			if (mUnit.getDefInfo().ableToFly) {
 				int pathId = initNewPath(mUnit, mDestination);
 				// only set a new path if the returned path is valid
 				if (pathId != -1) {
@@ -294,6 +295,22 @@ public class TMoveCloseTo extends Task {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.ICommandObserver#commandFailed(com.springrts.ai.
+	 * AICommand, int)
+	 */
+	@Override
+	public void commandFailed(AICommand command, int result) {
+		// Check if there were some errors report it
+		if (command instanceof StopUnitAICommand) {
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't issuing stop command!");
+		} else {
+			mAlIce.log(LOG, Level.SEVERE, "Sending move command failed!");
+		}
+	}
+
 	/**
 	 * Returns the bound task unit
 	 * 
@@ -308,25 +325,77 @@ public class TMoveCloseTo extends Task {
 		return "TMoveCloseTo(" + mUnit.getDefName() + ", " + mDestination + ", " + mCloseRadius + ")";
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * alice.interfaces.ITimerListener#timerExpired(alice.TimerWheel.Timer)
+	 */
+	@Override
+	public void timerExpired(TimerWheel.Timer timer) {
+		mStopCheckDue = true;
+	}
+
 	/**
 	 * Checks if the unit has stopped, returns true if it has. Only checks each
-	 * MOVE_CLOSE_TO_STOP_CHECK_TIME
+	 * MOVE_CLOSE_TO_STOP_CHECK_TIME, when the stop check timer has expired
 	 * 
 	 * @return true if the unit has stopped
 	 */
 	private boolean unitHasStopped() {
-		if (mLastStopTime + Defs.MOVE_CLOSE_TO_STOP_CHECK_TIME < mAlIce.getGameTime(GameTimeTypes.SECONDS)) {
+		if (mStopCheckDue) {
 			if (Math.abs(mPosition.x - mLastStopPosition.x) <= 0.001 && Math.abs(mPosition.z - mLastStopPosition.z) <= 0.001) {
 				return true;
 			} else {
-				mLastStopPosition = mPosition;
-				mLastStopTime = mAlIce.getGameTime(GameTimeTypes.SECONDS);
+				mLastStopPosition.x = mPosition.x;
+				mLastStopPosition.y = mPosition.y;
+				mLastStopPosition.z = mPosition.z;
+				mStopCheckDue = false;
+				getSubscriptions().schedule(STOP_CHECK_FRAMES, this);
 			}
 		}
 
 		return false;
 	}
 
+	/**
+	 * Initializes the task for a unit and a destination
+	 * 
+	 * @param taskUnit
+	 *            The unit to move
+	 * @param destination
+	 *            The position to move to
+	 * @param closeRadius
+	 *            The radius we consider close enough to the destination
+	 */
+	private void init(TaskUnit taskUnit, AIFloat3 destination, float closeRadius) {
+		mUnit = taskUnit;
+		mDestination = destination;
+		updatePosition();
+		mCloseRadius = closeRadius;
+		mReachedDestination = false;
+		mCommandSent = false;
+		mWpPos = mWaypoint;
+		mStopCheckDue = false;
+		mRetries = 0;
+		if (!mUnit.getDefInfo().ableToFly) {
+			mPathId = initNewPath(mUnit, mDestination);
+		} else {
+			mPathId = 0;
+			mWpPos = mDestination;
+		}
+		mAlIce.log(LOG, Level.FINE, "PathId: {}", mPathId);
+	}
+
+	/**
+	 * Copies the unit's current position to mPosition
+	 */
+	private void updatePosition() {
+		mPosition.x = mUnit.getPosX();
+		mPosition.y = mUnit.getPosY();
+		mPosition.z = mUnit.getPosZ();
+	}
+
 	/**
 	 * The destination of the unit
 	 */
@@ -336,9 +405,13 @@ public class TMoveCloseTo extends Task {
 	 */
 	private AIFloat3 mPosition;
 	/**
-	 * The time we last tested if we have stopped
+	 * True when it's time to test if we have stopped
+	 */
+	private boolean mStopCheckDue;
+	/**
+	 * Number of frames between the stop tests
 	 */
-	private double mLastStopTime;
+	private static final int STOP_CHECK_FRAMES = SpringHelper.secondsToFrames(Defs.MOVE_CLOSE_TO_STOP_CHECK_TIME);
 	/**
 	 * The position when we tested the stop last time
 	 */
@@ -348,9 +421,13 @@ public class TMoveCloseTo extends Task {
 	 */
 	private int mRetries;
 	/**
-	 * Current way point position
+	 * Current way point position, either mWaypoint or the destination
 	 */
 	private AIFloat3 mWpPos;
+	/**
+	 * The way point returned by the engine, reused for every way point
+	 */
+	private AIFloat3 mWaypoint;
 	/**
 	 * The radius we consider close enough to the destination
 	 */
@@ -371,5 +448,9 @@ public class TMoveCloseTo extends Task {
 	 * If the command was sent or not
 	 */
 	private boolean mCommandSent;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TMoveCloseTo.class);
 
 }
@@ -18,12 +18,13 @@
  */
 package alice.tasks;
 
-import java.util.ArrayList;
 import java.util.logging.Level;
 
 import alice.AlIce;
 import alice.Defs;
+import alice.LogSource;
 import alice.TaskUnit;
+import alice.interfaces.ICommandObserver;
 import alice.interfaces.IMessage;
 
 import com.springrts.ai.AICommand;
@@ -35,7 +36,7 @@ import com.springrts.ai.command.StopUnitAICommand;
  * 
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public class TRepairUnit extends Task implements IMessage {
+public class TRepairUnit extends Task implements IMessage, ICommandObserver {
 
 	/**
 	 * @param alIce
@@ -49,19 +50,18 @@ public class TRepairUnit extends Task implements IMessage {
 		super(alIce);
 
 		if (repairer == null) {
-			mAlIce.log(Level.WARNING, "Repairer is null!");
+			mAlIce.log(LOG, Level.WARNING, "Repairer is null!");
 		}
 
 		if (unitToRepair == null) {
-			mAlIce.log(Level.WARNING, "The unit to repair is null!");
+			mAlIce.log(LOG, Level.WARNING, "The unit to repair is null!");
 		}
 
-		mAlIce.addEventListener(this);
-
 		mRepairer = repairer;
 		mUnitToRepair = unitToRepair;
 		mCommandIssued = false;
 		mFailed = false;
+		mRepairCommandFailed = false;
 	}
 
 	/*
@@ -73,10 +73,17 @@ public class TRepairUnit extends Task implements IMessage {
 	public Status execute() {
 		if (mFailed == true || mUnitToRepair.getUnit() == null || mRepairer.getUnit() == null) {
 			return Status.UNEXPECTED_ERROR;
+		} else if (mRepairCommandFailed) {
+			return Status.FAILED_CLEANLY;
 		} else if (!mCommandIssued) {
-			mAlIce.log(Level.FINER, "Issuing repair command");
+			// Added first when the task is run so that an unused task doesn't
+			// leave it behind. Released by the task handler when the task is
+			// removed
+			getSubscriptions().addEventListener(this);
+
+			mAlIce.log(LOG, Level.FINER, "Issuing repair command");
 			boolean commandOk = sendRepairCommand();
-			mAlIce.log(Level.FINER, "Repair command issued");
+			mAlIce.log(LOG, Level.FINER, "Repair command issued");
 
 			mCommandIssued = true;
 
@@ -87,7 +94,7 @@ public class TRepairUnit extends Task implements IMessage {
 
 		// If the unit we want to repair has full health (even before we start
 		// repairing) we have completed the task
-		if (mUnitToRepair.getUnit().getHealth() == mUnitToRepair.getUnit().getMaxHealth()) {
+		if (mUnitToRepair.getHealth() == mUnitToRepair.getMaxHealth()) {
 			return Status.COMPLETED_SUCCESSFULLY;
 		}
 
@@ -102,18 +109,13 @@ public class TRepairUnit extends Task implements IMessage {
 	@Override
 	public void halt() {
 		// Remove the command from the unit if we have issued the command
-		AICommand command = new StopUnitAICommand(mRepairer.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT);
+		AICommand command = new StopUnitAICommand(mRepairer.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT);
 
-		// If command is valid, execute it
+		// If command is valid, queue it
 		if (command != null) {
-			int res = mAlIce.handleEngineCommand(command);
-
-			// Check if there were some errors report it
-			if (res != 0) {
-				mAlIce.log(Level.WARNING, "ERROR! Couldn't issuing stop command!");
-			}
+			mAlIce.queueUnitCommand(mRepairer.getUnitId(), command, this);
 		} else {
-			mAlIce.log(Level.WARNING, "ERROR! Couldn't create stop command!");
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't create stop command!");
 		}
 	}
 
@@ -134,21 +136,34 @@ public class TRepairUnit extends Task implements IMessage {
 	 * @return true if successful
 	 */
 	private boolean sendRepairCommand() {
-		AICommand command = new RepairUnitAICommand(mRepairer.getUnit(), -1, new ArrayList<AICommand.Option>(), Defs.TIME_OUT,
+		AICommand command = new RepairUnitAICommand(mRepairer.getUnit(), -1, Defs.NO_OPTIONS, Defs.TIME_OUT,
 				mUnitToRepair.getUnit());
 
-		// If command is valid, execute it
+		// If command is valid, queue it. If it fails we get notified in
+		// commandFailed()
 		if (command != null) {
-			int res = mAlIce.handleEngineCommand(command);
-			// Check if everything went OK
-			if (res == 0) {
-				return true;
-			}
+			mAlIce.queueUnitCommand(mRepairer.getUnitId(), command, this);
+			return true;
 		}
 
 		return false;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see alice.interfaces.ICommandObserver#commandFailed(com.springrts.ai.
+	 * AICommand, int)
+	 */
+	@Override
+	public void commandFailed(AICommand command, int result) {
+		if (command instanceof StopUnitAICommand) {
+			mAlIce.log(LOG, Level.WARNING, "ERROR! Couldn't issuing stop command!");
+		} else {
+			mRepairCommandFailed = true;
+		}
+	}
+
 	/**
 	 * The repair unit, i.e. the one that will repair the mUnitToRepair
 	 */
@@ -169,6 +184,11 @@ public class TRepairUnit extends Task implements IMessage {
 	 */
 	private boolean mCommandIssued;
 
+	/**
+	 * If the engine couldn't execute the repair command
+	 */
+	private boolean mRepairCommandFailed;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -183,4 +203,8 @@ public class TRepairUnit extends Task implements IMessage {
 		}
 
 	}
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TRepairUnit.class);
 }
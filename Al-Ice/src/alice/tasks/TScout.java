@@ -22,19 +22,21 @@ package alice.tasks;
 import java.util.logging.Level;
 
 import alice.AlIce;
+import alice.LogSource;
 import alice.TaskUnit;
-import alice.interfaces.ITaskObserver;
 
 import com.springrts.ai.AIFloat3;
 
 /**
  * 
- * Abstract scouting class, subclasses implements the nextScoutPosition method
+ * Abstract scouting class, subclasses implements the nextScoutPosition method.
+ * Moves the scout to the scout positions one by one and returns to the home
+ * base when there are no more positions.
  * 
  * @author Tobias Hall <kazzoa@gmail.com>
  * @author Matteus Magnusson <senth.wallace@gmail.com>
  */
-public abstract class TScout extends Task implements ITaskObserver {
+public abstract class TScout extends CoroutineTask {
 
 	/**
 	 * @param alIce
@@ -44,14 +46,6 @@ public abstract class TScout extends Task implements ITaskObserver {
 	 */
 	public TScout(AlIce alIce, TaskUnit taskUnit) {
 		super(alIce);
-		mMoveToDestination = null; // Set it first when we get a destination
-		// from
-		// subclass
-		mScoutingComplete = false;
-		mFirstDestination = false;
-		mUnexpectedError = false;
-		mReturningHome = false;
-		mReachedScoutPosition = false;
 		mScout = taskUnit;
 		mHomeBase = mAlIce.getMap().getStartPos();
 
@@ -61,87 +55,49 @@ public abstract class TScout extends Task implements ITaskObserver {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see alice.tasks.Task#execute()
+	 * @see alice.tasks.CoroutineTask#step(int)
 	 */
 	@Override
-	public Status execute() {
-		if (mUnexpectedError || mScout.getUnit() == null) {
+	protected Status step(int step) {
+		if (mScout.getUnit() == null) {
 			return Status.UNEXPECTED_ERROR;
 		}
-		if (mReachedScoutPosition) {
-			mReachedScoutPosition = false;
-			mMoveToDestination = nextScoutPosition();
-			if (mMoveToDestination != null) {
-				mAlIce.getTaskHandler().run(mMoveToDestination, this);
-			} else {
-				// Scouting complete, return to base
-				if (!mReturningHome) {
-					mReturningHome = true;
-					mAlIce.getTaskHandler().run(mReturnToBase, this);
-				}
-			}
-		}
-		// First time, get a destination
-		if (!mFirstDestination) {
-			mMoveToDestination = nextScoutPosition();
 
-			mFirstDestination = true;
-			if (mMoveToDestination == null) {
+		switch (step) {
+		case START:
+			// First time, get a destination
+			TMoveCloseTo firstDestination = nextScoutPosition();
+			if (firstDestination == null) {
 				// First destination was null, something went wrong or the task
 				// is ready at the beginning
-				mAlIce.log(Level.WARNING, "First scout destination was null");
+				mAlIce.log(LOG, Level.WARNING, "First scout destination was null");
 				return Status.FAILED_CLEANLY;
-			} else {
-				// Run the first MoveClostTo task
-				mAlIce.getTaskHandler().run(mMoveToDestination, this);
 			}
+			return waitForTask(firstDestination, REACHED_SCOUT_POSITION);
 
-		}
+		case REACHED_SCOUT_POSITION:
+			if (getTaskStatus() != Status.COMPLETED_SUCCESSFULLY) {
+				return Status.UNEXPECTED_ERROR;
+			}
 
-		if (mScoutingComplete) {
-			return Status.COMPLETED_SUCCESSFULLY;
-		}
-		return Status.EXECUTED_SUCCESSFULLY;
-	}
+			// We have reached our destination, get new target
+			TMoveCloseTo destination = nextScoutPosition();
+			if (destination != null) {
+				return waitForTask(destination, REACHED_SCOUT_POSITION);
+			}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see alice.tasks.Task#halt()
-	 */
-	@Override
-	public void halt() {
-		mAlIce.getTaskHandler().halt(mMoveToDestination);
-	}
+			// Scouting complete, return to base
+			return waitForTask(mReturnToBase, RETURNED_HOME);
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see alice.tasks.Task#resume()
-	 */
-	@Override
-	public void resume() {
-		mAlIce.getTaskHandler().resume(mMoveToDestination);
-	}
+		case RETURNED_HOME:
+			if (getTaskStatus() != Status.COMPLETED_SUCCESSFULLY) {
+				// Returning to base failed or something
+				return Status.UNEXPECTED_ERROR;
+			}
+			return Status.COMPLETED_SUCCESSFULLY;
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see alice.TaskObserver#onTaskFinished(alice.tasks.Task,
-	 * alice.tasks.Task.Status)
-	 */
-	@Override
-	public void onTaskFinished(Task task, Status status) {
-		if (task == mMoveToDestination && status == Status.COMPLETED_SUCCESSFULLY) {
-			// We have reached our destination, get new target
-			mReachedScoutPosition = true;
-		} else if (task == mMoveToDestination) {
-			mUnexpectedError = true;
-		} else if (task == mReturnToBase && status == Status.COMPLETED_SUCCESSFULLY) {
-			mScoutingComplete = true;
-		} else if (task == mReturnToBase) {
-			// Returning to base failer or something
-			mUnexpectedError = true;
+		default:
+			return Status.UNEXPECTED_ERROR;
 		}
 	}
 
@@ -153,41 +109,28 @@ public abstract class TScout extends Task implements ITaskObserver {
 	protected abstract TMoveCloseTo nextScoutPosition();
 
 	/**
-	 * Return to base task
+	 * Step when the scout has moved to a scout position
 	 */
-	private TMoveCloseTo mReturnToBase;
+	private static final int REACHED_SCOUT_POSITION = START + 1;
 	/**
-	 * True if the scout is returning home to base
+	 * Step when the scout has returned to the home base
 	 */
-	private boolean mReturningHome;
+	private static final int RETURNED_HOME = START + 2;
 	/**
-	 * The scout unit
+	 * Return to base task
 	 */
-	protected TaskUnit mScout;
+	private TMoveCloseTo mReturnToBase;
 	/**
-	 * True if the scout task is complete and we returned to home base
+	 * The scout unit
 	 */
-	private boolean mScoutingComplete;
+	protected TaskUnit mScout;
 	/**
 	 * The home base position
 	 */
 	private AIFloat3 mHomeBase;
 	/**
-	 * The current destination
-	 */
-	private TMoveCloseTo mMoveToDestination;
-	/**
-	 * True if we reached a scout position
-	 */
-	private boolean mReachedScoutPosition;
-	/**
-	 * True if we got the first destination from subclass
-	 */
-	private boolean mFirstDestination;
-
-	/**
-	 * True if mMoveToDestination returned UNEXPECTED_ERROR
+	 * Source of the log messages from this class
 	 */
-	private boolean mUnexpectedError;
+	private static final LogSource LOG = new LogSource(TScout.class);
 
 }
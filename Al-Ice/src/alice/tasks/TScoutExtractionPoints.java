@@ -69,15 +69,14 @@ public class TScoutExtractionPoints extends TScout {
 			AIFloat3 result = new AIFloat3(0, 0, 0);
 
 			for (AIFloat3 exPoint : mPositions) {
-				distance = SpringHelper.getDist(mScout.getUnitPos().x, mScout.getUnitPos().z, exPoint.x, exPoint.z);
+				distance = SpringHelper.getDist(mScout.getPosX(), mScout.getPosZ(), exPoint.x, exPoint.z);
 				if (min > distance) {
 					min = distance;
 					result = exPoint;
 				}
 			}
 			mPositions.remove(result);
-			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, result, SpringHelper.getRealRadius(mScout.getUnit().getDef()
-					.getLosRadius()));
+			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, result, SpringHelper.getRealRadius(mScout.getDefInfo().losRadius));
 
 			return mMoveToDestination;
 		}
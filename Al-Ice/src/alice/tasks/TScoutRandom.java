@@ -62,8 +62,7 @@ public class TScoutRandom extends TScout {
 
 			// Get the elevation (y) on the randomized position
 			mRandomPos.y = mAlIce.getMap().getElevationAt(mRandomPos.x, mRandomPos.z);
-			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, mRandomPos, SpringHelper.getRealRadius(mScout.getUnit()
-					.getDef().getLosRadius()));
+			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, mRandomPos, SpringHelper.getRealRadius(mScout.getDefInfo().losRadius));
 			mcRandomPos++;
 			return mMoveToDestination;
 		} else {
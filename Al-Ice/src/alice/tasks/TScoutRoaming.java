@@ -63,8 +63,8 @@ public class TScoutRoaming extends TScout {
 		if (mPositions.isEmpty()) {
 			return null;
 		} else {
-			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, mPositions.getFirst(), SpringHelper.getRealRadius(mScout
-					.getUnit().getDef().getLosRadius()));
+			mMoveToDestination = new TMoveCloseTo(mAlIce, mScout, mPositions.getFirst(), SpringHelper.getRealRadius(mScout.getDefInfo()
+					.losRadius));
 			mPositions.remove(mPositions.getFirst());
 			return mMoveToDestination;
 		}
@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.logging.Level;
 
 import alice.AlIce;
+import alice.LogSource;
 import alice.interfaces.ITaskObserver;
 
 /**
@@ -59,6 +60,9 @@ public class TSequence extends Task implements ITaskObserver {
 			mAlIce.getTaskHandler().run(mTaskSequence.getFirst(), this);
 			mStartExecute = false;
 		}
+
+		// Nothing to do until the last task in the sequence has finished
+		park();
 		return Status.EXECUTED_SUCCESSFULLY;
 	}
 
@@ -73,10 +77,12 @@ public class TSequence extends Task implements ITaskObserver {
 		// For now, always continue with the next task
 		if (mTaskSequence.getFirst() == task) {
 			// A task is done, run next task
-			mAlIce.log(Level.FINE, "Task finished, run next task in sequence");
+			mAlIce.log(LOG, Level.FINE, "Task finished, run next task in sequence");
 			mTaskSequence.removeFirst();
 			if (!mTaskSequence.isEmpty()) {
 				mAlIce.getTaskHandler().run(mTaskSequence.getFirst(), this);
+			} else {
+				wake();
 			}
 		}
 	}
@@ -121,5 +127,9 @@ public class TSequence extends Task implements ITaskObserver {
 	 * True if it's the first time we are in execute()
 	 */
 	private boolean mStartExecute;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TSequence.class);
 
 }
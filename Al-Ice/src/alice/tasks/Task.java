@@ -20,6 +20,8 @@
 package alice.tasks;
 
 import alice.AlIce;
+import alice.Defs;
+import alice.Subscriptions;
 
 /**
  * An abstract class that all tasks inherit from
@@ -37,6 +39,11 @@ public abstract class Task {
 	 */
 	public Task(AlIce alIce) {
 		mAlIce = alIce;
+		mNextExecuteFrame = 0;
+		mParked = false;
+		mWakePending = false;
+		mSubscriptions = null;
+		mPooled = false;
 	}
 
 	/**
@@ -56,6 +63,143 @@ public abstract class Task {
 	 */
 	public abstract void resume();
 
+	/**
+	 * Returns how often the task should be executed. Tasks that need to react
+	 * fast should override this and return a low value, tasks that only poll
+	 * for something should return a high value.
+	 * 
+	 * @return number of frames between the executions of the task
+	 */
+	public int getExecuteInterval() {
+		return Defs.TASK_EXECUTE_INTERVAL;
+	}
+
+	/**
+	 * Returns the frame the task should be executed next. Called by the task
+	 * handler after the task has been executed.
+	 * 
+	 * @param currentFrame
+	 *            the current frame
+	 * @return the frame set by setNextExecuteFrame() if it's in the future,
+	 *         else the current frame plus the execute interval
+	 */
+	public int getNextExecuteFrame(int currentFrame) {
+		if (mNextExecuteFrame > currentFrame) {
+			return mNextExecuteFrame;
+		} else {
+			return currentFrame + getExecuteInterval();
+		}
+	}
+
+	/**
+	 * Sets the frame the task should be executed next, overrides the execute
+	 * interval once. E.g. when the task knows it has nothing to do until a
+	 * specific frame.
+	 * 
+	 * @param frame
+	 *            the frame to execute the task next
+	 */
+	protected void setNextExecuteFrame(int frame) {
+		mNextExecuteFrame = frame;
+	}
+
+	/**
+	 * Returns true if the task is parked, i.e. waiting to be woken and not
+	 * executed
+	 * 
+	 * @return true if the task is parked
+	 */
+	public boolean isParked() {
+		return mParked;
+	}
+
+	/**
+	 * Parks the task. The task handler doesn't execute a parked task until
+	 * it's woken by wake(). Call it in execute() when the task waits for
+	 * something that it will be notified about, e.g. a unit event or a child
+	 * task that finishes. Use setNextExecuteFrame() to wait for a frame.
+	 * 
+	 * The task isn't parked if it has been woken since it was last parked,
+	 * i.e. if the event came between subscribing and parking.
+	 */
+	protected void park() {
+		if (mWakePending) {
+			mWakePending = false;
+		} else {
+			mParked = true;
+		}
+	}
+
+	/**
+	 * Wakes a parked task, it's executed as soon as possible. If the task
+	 * isn't parked the wake is kept and the next park() doesn't park the
+	 * task.
+	 */
+	protected void wake() {
+		if (mParked) {
+			mParked = false;
+			mAlIce.getTaskHandler().wake(this);
+		} else {
+			mWakePending = true;
+		}
+	}
+
+	/**
+	 * Returns the task's event listeners and timers. Listeners and timers
+	 * added through them are removed automatically when the task handler
+	 * removes the task, i.e. when it finishes or is removed.
+	 * 
+	 * @return the subscriptions of the task
+	 */
+	protected Subscriptions getSubscriptions() {
+		if (mSubscriptions == null) {
+			mSubscriptions = new Subscriptions(mAlIce, this);
+		}
+		return mSubscriptions;
+	}
+
+	/**
+	 * Removes all the task's event listeners and timers. Called by the task
+	 * handler when the task is removed.
+	 */
+	public void releaseSubscriptions() {
+		if (mSubscriptions != null) {
+			mSubscriptions.releaseAll();
+		}
+	}
+
+	/**
+	 * Resets the scheduling state and removes the listeners and timers so
+	 * that a finished task can be run again. Used by tasks that are reused
+	 * through TaskPools.
+	 */
+	protected void resetTask() {
+		mNextExecuteFrame = 0;
+		mParked = false;
+		mWakePending = false;
+		releaseSubscriptions();
+	}
+
+	/**
+	 * Returns true if the task lies in a pool waiting to be reused
+	 * 
+	 * @return true if the task is pooled
+	 */
+	boolean isPooled() {
+		return mPooled;
+	}
+
+	/**
+	 * Sets if the task lies in a pool waiting to be reused
+	 * 
+	 * @param pooled
+	 *            true if the task is put in a pool, false when it's taken
+	 *            from it
+	 */
+	void setPooled(boolean pooled) {
+		mPooled = pooled;
+	}
+
 	/**
 	 * Status result after executing the task.
 	 * 
@@ -85,4 +229,25 @@ public abstract class Task {
 	 * The AI interface
 	 */
 	protected AlIce mAlIce;
+	/**
+	 * The frame the task has asked to be executed next
+	 */
+	private int mNextExecuteFrame;
+	/**
+	 * True if the task waits to be woken
+	 */
+	private boolean mParked;
+	/**
+	 * True if the task has been woken while it wasn't parked, the next park()
+	 * is then skipped
+	 */
+	private boolean mWakePending;
+	/**
+	 * The task's listeners and timers, null until the first subscription
+	 */
+	private Subscriptions mSubscriptions;
+	/**
+	 * True while the task lies in a pool waiting to be reused
+	 */
+	private boolean mPooled;
 }
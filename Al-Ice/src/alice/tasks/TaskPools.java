@@ -0,0 +1,215 @@
+/**
+ * @file
+ * @version 0.3
+ * Copyright © Kool Banana
+ *
+ * @section LICENSE
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details at
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package alice.tasks;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+import alice.AlIce;
+import alice.Defs;
+import alice.LogSource;
+import alice.TaskUnit;
+
+import com.springrts.ai.AIFloat3;
+
+/**
+ * Keeps finished move and attack tasks so that they can be reused. An attack
+ * group creates one TMoveCloseTo or TAttackTarget per unit every time it
+ * regroups, moves or finds a target, pooling them keeps these short lived
+ * tasks from being allocated over and over.
+ * 
+ * A task may only be recycled when it has finished or been removed from the
+ * task handler, and it may not be used by the one that recycled it after
+ * that. At most Defs.TASK_POOL_SIZE tasks of each type are kept. Recycling
+ * releases the task's subscriptions and detaches it from the commands that
+ * haven't been sent yet, so a reused task isn't notified about them.
+ * 
+ * @author Matteus Magnusson <senth.wallace@gmail.com>
+ */
+public class TaskPools {
+
+	/**
+	 * Constructor
+	 * 
+	 * @param alIce
+	 *            The AI-interface
+	 */
+	public TaskPools(AlIce alIce) {
+		mAlIce = alIce;
+		mMoveCloseToPool = new ArrayList<TMoveCloseTo>();
+		mAttackTargetPool = new ArrayList<TAttackTarget>();
+		mcCreated = 0;
+		mcReused = 0;
+	}
+
+	/**
+	 * Returns a move task, reused if there is any in the pool
+	 * 
+	 * @param taskUnit
+	 *            The unit to move
+	 * @param destination
+	 *            The position to move to
+	 * @param closeRadius
+	 *            The radius we consider close enough to the destination
+	 * @return a move task ready to be run
+	 */
+	public TMoveCloseTo obtainMoveCloseTo(TaskUnit taskUnit, AIFloat3 destination, float closeRadius) {
+		if (mMoveCloseToPool.isEmpty()) {
+			mcCreated++;
+			return new TMoveCloseTo(mAlIce, taskUnit, destination, closeRadius);
+		}
+
+		mcReused++;
+		TMoveCloseTo task = mMoveCloseToPool.remove(mMoveCloseToPool.size() - 1);
+		task.setPooled(false);
+		task.reset(taskUnit, destination, closeRadius);
+		return task;
+	}
+
+	/**
+	 * Returns an attack task, reused if there is any in the pool
+	 * 
+	 * @param taskUnit
+	 *            The unit that should attack the target
+	 * @param targetId
+	 *            The id of the target to attack
+	 * @return an attack task ready to be run
+	 */
+	public TAttackTarget obtainAttackTarget(TaskUnit taskUnit, int targetId) {
+		if (mAttackTargetPool.isEmpty()) {
+			mcCreated++;
+			return new TAttackTarget(mAlIce, taskUnit, targetId);
+		}
+
+		mcReused++;
+		TAttackTarget task = mAttackTargetPool.remove(mAttackTargetPool.size() - 1);
+		task.setPooled(false);
+		task.reset(taskUnit, targetId);
+		return task;
+	}
+
+	/**
+	 * Puts a finished move task in the pool
+	 * 
+	 * @param task
+	 *            the finished task
+	 */
+	public void recycle(TMoveCloseTo task) {
+		if (canRecycle(task) && mMoveCloseToPool.size() < Defs.TASK_POOL_SIZE) {
+			task.releaseSubscriptions();
+			// The task may be obtained again before its commands are sent
+			mAlIce.getCommandQueue().forgetObserver(task);
+			task.setPooled(true);
+			mMoveCloseToPool.add(task);
+		}
+	}
+
+	/**
+	 * Puts a finished attack task in the pool
+	 * 
+	 * @param task
+	 *            the finished task
+	 */
+	public void recycle(TAttackTarget task) {
+		if (canRecycle(task) && mAttackTargetPool.size() < Defs.TASK_POOL_SIZE) {
+			task.releaseSubscriptions();
+			// The task may be obtained again before its commands are sent
+			mAlIce.getCommandQueue().forgetObserver(task);
+			task.setPooled(true);
+			mAttackTargetPool.add(task);
+		}
+	}
+
+	/**
+	 * Returns the number of tasks that have been created because the pool was
+	 * empty
+	 * 
+	 * @return number of created tasks
+	 */
+	public long getCreated() {
+		return mcCreated;
+	}
+
+	/**
+	 * Returns the number of tasks that have been taken from the pool
+	 * 
+	 * @return number of reused tasks
+	 */
+	public long getReused() {
+		return mcReused;
+	}
+
+	/**
+	 * Returns the number of tasks waiting in the pools
+	 * 
+	 * @return number of pooled tasks
+	 */
+	public int getPooled() {
+		return mMoveCloseToPool.size() + mAttackTargetPool.size();
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Checks that the task isn't already pooled or still run by the task
+	 * handler
+	 * 
+	 * @param task
+	 *            the task to recycle
+	 * @return true if the task can be put in the pool
+	 */
+	private boolean canRecycle(Task task) {
+		if (task.isPooled()) {
+			mAlIce.log(LOG, Level.WARNING, "Task recycled twice: {}", task);
+			return false;
+		} else if (mAlIce.getTaskHandler().contains(task)) {
+			mAlIce.log(LOG, Level.WARNING, "Task recycled while it's still run: {}", task);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The AI-interface
+	 */
+	private AlIce mAlIce;
+	/**
+	 * Finished move tasks
+	 */
+	private ArrayList<TMoveCloseTo> mMoveCloseToPool;
+	/**
+	 * Finished attack tasks
+	 */
+	private ArrayList<TAttackTarget> mAttackTargetPool;
+	/**
+	 * Number of tasks created because the pool was empty
+	 */
+	private long mcCreated;
+	/**
+	 * Number of tasks taken from the pool
+	 */
+	private long mcReused;
+	/**
+	 * Source of the log messages from this class
+	 */
+	private static final LogSource LOG = new LogSource(TaskPools.class);
+}